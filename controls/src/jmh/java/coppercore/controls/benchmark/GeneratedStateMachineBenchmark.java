@@ -0,0 +1,202 @@
+package coppercore.controls.benchmark;
+
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import coppercore.controls.state_machine.codegen.GenerateStateMachine;
+import coppercore.controls.state_machine.codegen.OnEntry;
+import coppercore.controls.state_machine.codegen.Periodic;
+import coppercore.controls.state_machine.codegen.Transition;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the cost of one periodic call of a state machine generated by the
+ * StateMachineProcessor against the same state machine built at runtime with lambdas, both
+ * uncompiled and compiled.
+ *
+ * <p>Each invocation runs a full cycle of inputs so that every transition is taken.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(GeneratedStateMachineBenchmark.CYCLE_LENGTH)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GeneratedStateMachineBenchmark {
+
+    static final int CYCLE_LENGTH = 40;
+
+    public static class Shooter {
+        public boolean wantsIntake = false;
+        public boolean hasNote = false;
+        public boolean wantsShoot = false;
+        public double motorSpeed = 0.0;
+        public double armPosition = 0.0;
+    }
+
+    @GenerateStateMachine(
+            world = Shooter.class,
+            states = {"Idle", "Intaking", "WarmingUp", "Shooting"})
+    public static class ShooterDefinition {
+        @Periodic("Idle")
+        void idle(Shooter shooter) {
+            shooter.motorSpeed = 0.0;
+        }
+
+        @Periodic("Intaking")
+        void intake(Shooter shooter) {
+            shooter.motorSpeed = -100.0;
+        }
+
+        @OnEntry("WarmingUp")
+        void raiseArm(Shooter shooter) {
+            shooter.armPosition = 3.0;
+        }
+
+        @Periodic("WarmingUp")
+        void warmUp(Shooter shooter) {
+            shooter.motorSpeed = 50.0;
+        }
+
+        @Periodic("Shooting")
+        void shoot(Shooter shooter) {
+            shooter.motorSpeed = 100.0;
+        }
+
+        @Transition(from = "Idle", to = "Intaking")
+        boolean wantsIntake(Shooter shooter) {
+            return shooter.wantsIntake && !shooter.hasNote;
+        }
+
+        @Transition(from = "Intaking", to = "Idle")
+        boolean gotNote(Shooter shooter) {
+            return shooter.hasNote;
+        }
+
+        @Transition(from = "Idle", to = "WarmingUp")
+        boolean wantsShoot(Shooter shooter) {
+            return shooter.wantsShoot && shooter.hasNote;
+        }
+
+        @Transition(from = "WarmingUp", to = "Shooting")
+        boolean warmedUp(Shooter shooter) {
+            return shooter.motorSpeed >= 50.0;
+        }
+
+        @Transition(from = "Shooting", to = "Idle")
+        @Transition(from = "WarmingUp", to = "Idle")
+        boolean noNote(Shooter shooter) {
+            return !shooter.hasNote;
+        }
+    }
+
+    static class ActionState extends State<Shooter> {
+        private final double motorSpeed;
+
+        ActionState(String name, double motorSpeed) {
+            super(name);
+            this.motorSpeed = motorSpeed;
+        }
+
+        @Override
+        protected void periodic(StateMachine<Shooter> stateMachine, Shooter world) {
+            world.motorSpeed = motorSpeed;
+        }
+    }
+
+    static StateMachine<Shooter> createLambdaStateMachine(Shooter world) {
+        State<Shooter> idle = new ActionState("Idle", 0.0);
+        State<Shooter> intaking = new ActionState("Intaking", -100.0);
+        State<Shooter> warmingUp =
+                new ActionState("WarmingUp", 50.0) {
+                    @Override
+                    protected void onEntry(StateMachine<Shooter> stateMachine, Shooter world) {
+                        world.armPosition = 3.0;
+                    }
+                };
+        State<Shooter> shooting = new ActionState("Shooting", 100.0);
+
+        StateMachine<Shooter> stateMachine = new StateMachine<>(world);
+        stateMachine.registerState(idle);
+        stateMachine.registerState(intaking);
+        stateMachine.registerState(warmingUp);
+        stateMachine.registerState(shooting);
+
+        idle.when(shooter -> shooter.wantsIntake && !shooter.hasNote, "wantsIntake")
+                .transitionTo(intaking);
+        intaking.when(shooter -> shooter.hasNote, "gotNote").transitionTo(idle);
+        idle.when(shooter -> shooter.wantsShoot && shooter.hasNote, "wantsShoot")
+                .transitionTo(warmingUp);
+        warmingUp.when(shooter -> shooter.motorSpeed >= 50.0, "warmedUp").transitionTo(shooting);
+        shooting.when(shooter -> !shooter.hasNote, "noNote").transitionTo(idle);
+        warmingUp.when(shooter -> !shooter.hasNote, "noNote").transitionTo(idle);
+        stateMachine.setState(idle);
+        return stateMachine;
+    }
+
+    private Shooter lambdaWorld;
+    private StateMachine<Shooter> lambdaStateMachine;
+    private Shooter compiledWorld;
+    private StateMachine<Shooter> compiledStateMachine;
+    private Shooter generatedWorld;
+    private ShooterDefinitionStateMachine generatedStateMachine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lambdaWorld = new Shooter();
+        lambdaStateMachine = createLambdaStateMachine(lambdaWorld);
+
+        compiledWorld = new Shooter();
+        compiledStateMachine = createLambdaStateMachine(compiledWorld);
+        compiledStateMachine.compile();
+
+        generatedWorld = new Shooter();
+        generatedStateMachine =
+                new ShooterDefinitionStateMachine(new ShooterDefinition(), generatedWorld);
+        generatedStateMachine.setState(ShooterDefinitionStateMachine.State.Idle);
+    }
+
+    static void setInputs(Shooter world, int step) {
+        world.wantsIntake = step < 10;
+        world.hasNote = step >= 5 && step < 30;
+        world.wantsShoot = step >= 15 && step < 35;
+    }
+
+    @Benchmark
+    public State<Shooter> lambda() {
+        for (int step = 0; step < CYCLE_LENGTH; step++) {
+            setInputs(lambdaWorld, step);
+            lambdaStateMachine.periodic();
+        }
+        return lambdaStateMachine.getCurrentState();
+    }
+
+    @Benchmark
+    public State<Shooter> lambdaCompiled() {
+        for (int step = 0; step < CYCLE_LENGTH; step++) {
+            setInputs(compiledWorld, step);
+            compiledStateMachine.periodic();
+        }
+        return compiledStateMachine.getCurrentState();
+    }
+
+    @Benchmark
+    public ShooterDefinitionStateMachine.State generated() {
+        for (int step = 0; step < CYCLE_LENGTH; step++) {
+            setInputs(generatedWorld, step);
+            generatedStateMachine.periodic();
+        }
+        return generatedStateMachine.getCurrentState();
+    }
+}
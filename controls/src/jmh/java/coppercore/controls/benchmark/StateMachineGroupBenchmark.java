@@ -0,0 +1,115 @@
+package coppercore.controls.benchmark;
+
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import coppercore.controls.state_machine.StateMachineGroup;
+import coppercore.controls.state_machine.StateMachineGroup.ExecutionMode;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long one tick of a StateMachineGroup takes as the number of threads grows.
+ *
+ * <p>A thread count of 0 runs the group in SEQUENTIAL mode, which is the baseline that the parallel
+ * runs should be compared against. Each state machine does a fixed amount of work per tick, similar
+ * to a simulated mechanism updating its physics.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StateMachineGroupBenchmark {
+
+    @Param({"0", "1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"64", "256"})
+    public int machines;
+
+    @Param({"2000"})
+    public int workPerTick;
+
+    public static class SimulatedMechanism {
+        public double position = 0.0;
+        public double velocity = 1.0;
+    }
+
+    static class IntegratingState extends State<SimulatedMechanism> {
+        private final int steps;
+        private final double direction;
+
+        IntegratingState(String name, int steps, double direction) {
+            super(name);
+            this.steps = steps;
+            this.direction = direction;
+        }
+
+        @Override
+        protected void periodic(
+                StateMachine<SimulatedMechanism> stateMachine, SimulatedMechanism world) {
+            double dt = 0.02 / steps;
+            for (int i = 0; i < steps; i++) {
+                world.velocity += direction * Math.cos(world.position) * dt;
+                world.position += world.velocity * dt;
+            }
+        }
+    }
+
+    private ForkJoinPool pool;
+    private StateMachineGroup group;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (threads == 0) {
+            group = new StateMachineGroup(ExecutionMode.SEQUENTIAL);
+        } else {
+            pool = new ForkJoinPool(threads);
+            group = new StateMachineGroup(pool, 1);
+        }
+
+        for (int i = 0; i < machines; i++) {
+            SimulatedMechanism world = new SimulatedMechanism();
+            StateMachine<SimulatedMechanism> stateMachine = new StateMachine<>(world);
+            State<SimulatedMechanism> extending = new IntegratingState("Extending", workPerTick, 1);
+            State<SimulatedMechanism> retracting =
+                    new IntegratingState("Retracting", workPerTick, -1);
+            stateMachine.registerState(extending);
+            stateMachine.registerState(retracting);
+            extending
+                    .when(mechanism -> mechanism.position > 1.0, "extended")
+                    .transitionTo(retracting);
+            retracting
+                    .when(mechanism -> mechanism.position < 0.0, "retracted")
+                    .transitionTo(extending);
+            stateMachine.compile();
+            stateMachine.setState(extending);
+            group.add(stateMachine);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void tick() {
+        group.periodic();
+    }
+}
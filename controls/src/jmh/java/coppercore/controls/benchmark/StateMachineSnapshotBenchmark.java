@@ -0,0 +1,152 @@
+package coppercore.controls.benchmark;
+
+import static edu.wpi.first.units.Units.Seconds;
+
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import coppercore.controls.state_machine.StateMachineSnapshot;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many variations of the end of a simulated autonomous routine can be run per second,
+ * either by replaying every scenario from the start of the match or by forking each one from a
+ * snapshot taken part way through.
+ *
+ * <p>Each scenario runs a 15 second routine at 50 Hz. The variations only differ after the fork
+ * point at 10 seconds, where the drive speed is changed.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StateMachineSnapshotBenchmark {
+
+    static final int MATCH_TICKS = 750;
+    static final int FORK_TICK = 500;
+    static final double NOTE_SPACING = 1.5;
+
+    public static class Robot {
+        public double time = 0.0;
+        public double speed = 1.0;
+        public double position = 0.0;
+        public double nextNoteAt = NOTE_SPACING;
+        public int scored = 0;
+
+        Robot copy() {
+            Robot copy = new Robot();
+            copy.restore(this);
+            return copy;
+        }
+
+        void restore(Robot saved) {
+            time = saved.time;
+            speed = saved.speed;
+            position = saved.position;
+            nextNoteAt = saved.nextNoteAt;
+            scored = saved.scored;
+        }
+    }
+
+    static class DriveState extends State<Robot> {
+        DriveState() {
+            super("Drive");
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {
+            world.position += world.speed * 0.02;
+        }
+    }
+
+    static class WaitState extends State<Robot> {
+        WaitState(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {}
+    }
+
+    static class ShootState extends State<Robot> {
+        ShootState() {
+            super("Shoot");
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {
+            world.scored++;
+            world.nextNoteAt = world.position + NOTE_SPACING;
+            finish();
+        }
+    }
+
+    private Robot world;
+    private StateMachine<Robot> stateMachine;
+    private State<Robot> driveState;
+    private StateMachineSnapshot<Robot> forkPoint;
+    private int variant = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        world = new Robot();
+        stateMachine = new StateMachine<>(world);
+        driveState = stateMachine.registerState(new DriveState());
+        State<Robot> intake = stateMachine.registerState(new WaitState("Intake"));
+        State<Robot> spinUp = stateMachine.registerState(new WaitState("SpinUp"));
+        State<Robot> shoot = stateMachine.registerState(new ShootState());
+        driveState.when(robot -> robot.position >= robot.nextNoteAt, "atNote").transitionTo(intake);
+        intake.whenTimeout(Seconds.of(0.3)).transitionTo(spinUp);
+        spinUp.whenTimeout(Seconds.of(0.5)).transitionTo(shoot);
+        shoot.whenFinished().transitionTo(driveState);
+        stateMachine.setTimeSource(() -> world.time);
+        stateMachine.setWorldSnapshotHooks(Robot::copy, Robot::restore);
+        stateMachine.compile();
+
+        stateMachine.setState(driveState);
+        runTicks(0, FORK_TICK);
+        forkPoint = stateMachine.createSnapshot();
+        stateMachine.saveSnapshot(forkPoint);
+    }
+
+    private void runTicks(int fromTick, int toTick) {
+        for (int tick = fromTick; tick < toTick; tick++) {
+            world.time += 0.02;
+            stateMachine.periodic();
+        }
+    }
+
+    private double nextVariantSpeed() {
+        variant++;
+        return 1.0 + (variant % 7) * 0.1;
+    }
+
+    @Benchmark
+    public int replayFromStart() {
+        world.restore(new Robot());
+        stateMachine.setState(driveState);
+        runTicks(0, FORK_TICK);
+        world.speed = nextVariantSpeed();
+        runTicks(FORK_TICK, MATCH_TICKS);
+        return world.scored;
+    }
+
+    @Benchmark
+    public int forkFromSnapshot() {
+        stateMachine.restoreSnapshot(forkPoint);
+        world.speed = nextVariantSpeed();
+        runTicks(FORK_TICK, MATCH_TICKS);
+        return world.scored;
+    }
+}
@@ -0,0 +1,308 @@
+package coppercore.controls.simulation;
+
+import static edu.wpi.first.units.Units.Milliseconds;
+import static edu.wpi.first.units.Units.Seconds;
+
+import coppercore.controls.state_machine.StateMachine;
+import edu.wpi.first.units.measure.Time;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A discrete event simulation engine that runs faster than real time.
+ *
+ * <p>Events are actions scheduled at a point in virtual time. Time is an integer number of ticks,
+ * whose length is chosen when the simulator is constructed (one millisecond by default). Running
+ * the simulation jumps straight from one event to the next, so simulating a whole match of 20 ms
+ * robot loops takes only as long as the loops themselves.
+ *
+ * <p>Events scheduled for the same tick run in the order they were scheduled, so a simulation
+ * always runs the same way given the same inputs. Periodic events are rescheduled after each run,
+ * and are ordered as if they had been scheduled at that point.
+ *
+ * <p>State machines can be added with addStateMachine, which calls their periodic method at a
+ * fixed rate and makes their timeouts use the simulator's virtual clock.
+ *
+ * <p>Events are stored in a binary min-heap of parallel primitive arrays, so scheduling and
+ * running events does not allocate once the arrays have grown to fit the simulation.
+ *
+ * <p>This class is not thread-safe. To run many simulations in parallel, give each thread its own
+ * simulator.
+ */
+public class DiscreteEventSimulator {
+
+    /** An action that runs at a scheduled point in virtual time. */
+    @FunctionalInterface
+    public interface Action {
+        /**
+         * Runs the action.
+         *
+         * @param simulationTime the current simulation time, in ticks
+         */
+        void run(long simulationTime);
+    }
+
+    private final double secondsPerTick;
+
+    private long currentTime = 0;
+    private long nextSequence = 0;
+
+    private long[] times = new long[16];
+    private long[] sequences = new long[16];
+    private long[] periods = new long[16];
+    private Action[] actions = new Action[16];
+    private int size = 0;
+
+    /** Constructs a new simulator with a tick length of one millisecond. */
+    public DiscreteEventSimulator() {
+        this(Milliseconds.of(1));
+    }
+
+    /**
+     * Constructs a new simulator.
+     *
+     * @param tickDuration The length of one tick of virtual time
+     */
+    public DiscreteEventSimulator(Time tickDuration) {
+        Objects.requireNonNull(tickDuration, "Tick duration cannot be null");
+        this.secondsPerTick = tickDuration.in(Seconds);
+        if (!(secondsPerTick > 0.0)) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+    }
+
+    /**
+     * Gets the current simulation time.
+     *
+     * @return The current simulation time, in ticks
+     */
+    public long getTime() {
+        return currentTime;
+    }
+
+    /**
+     * Gets the current simulation time in seconds. This can be used as the time source of
+     * anything that measures time, such as a StateMachine.
+     *
+     * @return The current simulation time, in seconds
+     */
+    public double getTimeSeconds() {
+        return currentTime * secondsPerTick;
+    }
+
+    /**
+     * Converts a duration to a whole number of ticks, rounding to the nearest tick.
+     *
+     * @param duration The duration to convert
+     * @return The duration in ticks
+     */
+    public long toTicks(Time duration) {
+        return Math.round(duration.in(Seconds) / secondsPerTick);
+    }
+
+    /**
+     * Schedules an action to run once.
+     *
+     * @param time The simulation time at which to run the action, in ticks
+     * @param action The action to run
+     * @throws IllegalArgumentException if time is before the current simulation time
+     */
+    public void schedule(long time, Action action) {
+        Objects.requireNonNull(action, "Action cannot be null");
+        checkNotInPast(time);
+        push(time, 0, action);
+    }
+
+    /**
+     * Schedules a change to the world of a simulation, such as a sensor reading or a driver
+     * input, to happen once.
+     *
+     * @param time The simulation time at which to make the change, in ticks
+     * @param mutation The change to make
+     * @throws IllegalArgumentException if time is before the current simulation time
+     */
+    public void scheduleMutation(long time, Runnable mutation) {
+        Objects.requireNonNull(mutation, "Mutation cannot be null");
+        schedule(time, simulationTime -> mutation.run());
+    }
+
+    /**
+     * Schedules an action to run repeatedly.
+     *
+     * @param firstTime The simulation time at which to first run the action, in ticks
+     * @param period The time between runs, in ticks
+     * @param action The action to run
+     * @throws IllegalArgumentException if firstTime is in the past or the period isn't positive
+     */
+    public void schedulePeriodic(long firstTime, long period, Action action) {
+        Objects.requireNonNull(action, "Action cannot be null");
+        checkNotInPast(firstTime);
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive, got " + period);
+        }
+        push(firstTime, period, action);
+    }
+
+    /**
+     * Adds a state machine to the simulation. Its periodic method is called every period, starting
+     * at the current simulation time, and its timeouts are measured using the simulation clock.
+     *
+     * @param stateMachine The state machine to run
+     * @param period The time between calls to periodic, in ticks
+     */
+    public void addStateMachine(StateMachine<?> stateMachine, long period) {
+        Objects.requireNonNull(stateMachine, "State machine cannot be null");
+        stateMachine.setTimeSource(this::getTimeSeconds);
+        schedulePeriodic(currentTime, period, simulationTime -> stateMachine.periodic());
+    }
+
+    /**
+     * Runs every event scheduled at or before endTime, including events scheduled by those events.
+     * Afterwards, the simulation time is endTime.
+     *
+     * @param endTime The time of the last events to run, inclusive, in ticks
+     * @return The number of events that were run
+     */
+    public long simulate(long endTime) {
+        long eventsRun = 0;
+        while (size > 0 && times[0] <= endTime) {
+            runNext();
+            eventsRun++;
+        }
+        if (endTime > currentTime) {
+            currentTime = endTime;
+        }
+        return eventsRun;
+    }
+
+    /**
+     * Runs the next event, if there is one.
+     *
+     * @return true if an event was run, false if there are no events left
+     */
+    public boolean step() {
+        if (size == 0) {
+            return false;
+        }
+        runNext();
+        return true;
+    }
+
+    /**
+     * Gets the number of scheduled events.
+     *
+     * @return The number of scheduled events
+     */
+    public int getPendingEventCount() {
+        return size;
+    }
+
+    /**
+     * Gets the time of the next event.
+     *
+     * @return The time of the next event in ticks, or Long.MAX_VALUE if there are none
+     */
+    public long getNextEventTime() {
+        return size > 0 ? times[0] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Removes all scheduled events and resets the simulation time to 0, so that the simulator can
+     * be reused for another simulation.
+     */
+    public void reset() {
+        Arrays.fill(actions, 0, size, null);
+        size = 0;
+        currentTime = 0;
+        nextSequence = 0;
+    }
+
+    private void checkNotInPast(long time) {
+        if (time < currentTime) {
+            throw new IllegalArgumentException(
+                    "Can't schedule an event at " + time + ", which is before " + currentTime);
+        }
+    }
+
+    private void runNext() {
+        long time = times[0];
+        long period = periods[0];
+        Action action = actions[0];
+        removeFirst();
+        currentTime = time;
+        action.run(time);
+        if (period > 0) {
+            push(time + period, period, action);
+        }
+    }
+
+    private boolean isBefore(int i, long time, long sequence) {
+        return times[i] < time || (times[i] == time && sequences[i] < sequence);
+    }
+
+    private void push(long time, long period, Action action) {
+        if (size == times.length) {
+            grow();
+        }
+        long sequence = nextSequence++;
+        int i = size++;
+        // Sift up
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (isBefore(parent, time, sequence)) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        set(i, time, sequence, period, action);
+    }
+
+    private void removeFirst() {
+        size--;
+        long time = times[size];
+        long sequence = sequences[size];
+        long period = periods[size];
+        Action action = actions[size];
+        actions[size] = null;
+        if (size == 0) {
+            return;
+        }
+        // Sift the last event down from the root
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && isBefore(child + 1, times[child], sequences[child])) {
+                child++;
+            }
+            if (!isBefore(child, time, sequence)) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        set(i, time, sequence, period, action);
+    }
+
+    private void set(int i, long time, long sequence, long period, Action action) {
+        times[i] = time;
+        sequences[i] = sequence;
+        periods[i] = period;
+        actions[i] = action;
+    }
+
+    private void move(int from, int to) {
+        set(to, times[from], sequences[from], periods[from], actions[from]);
+    }
+
+    private void grow() {
+        int capacity = times.length * 2;
+        times = Arrays.copyOf(times, capacity);
+        sequences = Arrays.copyOf(sequences, capacity);
+        periods = Arrays.copyOf(periods, capacity);
+        actions = Arrays.copyOf(actions, capacity);
+    }
+}
@@ -0,0 +1,580 @@
+package coppercore.controls.simulation;
+
+import static edu.wpi.first.units.Units.Milliseconds;
+
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import edu.wpi.first.units.measure.Time;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs large numbers of randomized scenarios against a state machine, in parallel, to find problems
+ * that hand-written tests miss.
+ *
+ * <p>Each scenario builds a new world and state machine using the given factories and runs them in
+ * a {@link DiscreteEventSimulator}, calling periodic every robot loop. At random times, a random
+ * world mutation is applied or a random state is requested. After the last of these events, the
+ * simulation keeps running without any input for a settle time.
+ *
+ * <p>Across all scenarios, the explorer reports:
+ *
+ * <ul>
+ *   <li>States that were entered but never exited in any scenario, which may be dead ends.
+ *   <li>Cycles of states that the state machine kept going around during the second half of the
+ *       settle time, entering at least one state twice, which may never finish.
+ *   <li>How many times each transition was taken, and which transitions were never taken.
+ * </ul>
+ *
+ * <p>Every scenario is generated from its own seed, and example seeds are reported for each cycle,
+ * so a scenario can be replayed on its own with runScenario. Scenarios are split into batches run
+ * on a ForkJoinPool, so the factories must be thread-safe, and the state machine factory must
+ * create new State objects for every state machine, since states keep runtime state such as their
+ * finished flag. It must also register the same states and transitions every time, and give the
+ * state machine its initial state.
+ *
+ * @param <World> The type of the world in which the state machine lives.
+ */
+public class ScenarioExplorer<World> {
+
+    private final Supplier<World> worldFactory;
+    private final Function<World, StateMachine<World>> stateMachineFactory;
+
+    private final List<String> mutationNames = new ArrayList<>();
+    private final List<Consumer<World>> mutations = new ArrayList<>();
+
+    /** The names of the states that may be requested, or null to allow every registered state */
+    private List<String> requestableStates = null;
+
+    private int eventsPerScenario = 20;
+    private long loopTicks = 20;
+    private long maxTicksBetweenEvents = 500;
+    private long settleTicks = 2000;
+    private int scenariosPerTask = 256;
+
+    /**
+     * Constructs a new explorer.
+     *
+     * @param worldFactory Creates a new world for each scenario
+     * @param stateMachineFactory Creates a new state machine over a world, with new states and its
+     *     initial state set
+     */
+    public ScenarioExplorer(
+            Supplier<World> worldFactory,
+            Function<World, StateMachine<World>> stateMachineFactory) {
+        this.worldFactory = Objects.requireNonNull(worldFactory, "World factory cannot be null");
+        this.stateMachineFactory =
+                Objects.requireNonNull(stateMachineFactory, "State machine factory cannot be null");
+    }
+
+    /**
+     * Adds a change to the world that scenarios may apply, such as a sensor reading or a driver
+     * input changing.
+     *
+     * @param name The name of the mutation
+     * @param mutation The change to apply to the world
+     * @return This explorer
+     */
+    public ScenarioExplorer<World> addMutation(String name, Consumer<World> mutation) {
+        Objects.requireNonNull(name, "Mutation name cannot be null");
+        Objects.requireNonNull(mutation, "Mutation cannot be null");
+        mutationNames.add(name);
+        mutations.add(mutation);
+        return this;
+    }
+
+    /**
+     * Limits which states scenarios may request with requestState. By default, every registered
+     * state may be requested. Passing no names disables requests.
+     *
+     * @param stateNames The names of the states that may be requested
+     * @return This explorer
+     */
+    public ScenarioExplorer<World> setRequestableStates(String... stateNames) {
+        for (String stateName : stateNames) {
+            Objects.requireNonNull(stateName, "State name cannot be null");
+        }
+        this.requestableStates = List.of(stateNames);
+        return this;
+    }
+
+    /**
+     * Sets the number of mutations and requests in each scenario. The default is 20.
+     *
+     * @param events The number of events per scenario
+     * @return This explorer
+     */
+    public ScenarioExplorer<World> setEventsPerScenario(int events) {
+        if (events < 1) {
+            throw new IllegalArgumentException("Events per scenario must be at least 1");
+        }
+        this.eventsPerScenario = events;
+        return this;
+    }
+
+    /**
+     * Sets the period of the robot loop that calls periodic. The default is 20 ms.
+     *
+     * @param period The period, at least 1 ms
+     * @return This explorer
+     */
+    public ScenarioExplorer<World> setLoopPeriod(Time period) {
+        this.loopTicks = toPositiveTicks(period, "Loop period");
+        return this;
+    }
+
+    /**
+     * Sets the longest time between two events of a scenario. The time between events is chosen
+     * uniformly between 1 ms and this time. The default is 500 ms.
+     *
+     * @param maxTime The longest time between events, at least 1 ms
+     * @return This explorer
+     */
+    public ScenarioExplorer<World> setMaxTimeBetweenEvents(Time maxTime) {
+        this.maxTicksBetweenEvents = toPositiveTicks(maxTime, "Time between events");
+        return this;
+    }
+
+    /**
+     * Sets how long each scenario keeps running without any input after its last event. The state
+     * machine is expected to have stopped changing state by the second half of this time. The
+     * default is 2 s.
+     *
+     * @param settleTime The settle time, at least 2 ms
+     * @return This explorer
+     */
+    public ScenarioExplorer<World> setSettleTime(Time settleTime) {
+        long ticks = toPositiveTicks(settleTime, "Settle time");
+        if (ticks < 2) {
+            throw new IllegalArgumentException("Settle time must be at least 2 ms");
+        }
+        this.settleTicks = ticks;
+        return this;
+    }
+
+    /**
+     * Sets how many scenarios are run in each batch handed to a thread. The default is 256.
+     *
+     * @param scenarios The number of scenarios per batch
+     * @return This explorer
+     */
+    public ScenarioExplorer<World> setScenariosPerTask(int scenarios) {
+        if (scenarios < 1) {
+            throw new IllegalArgumentException("Scenarios per task must be at least 1");
+        }
+        this.scenariosPerTask = scenarios;
+        return this;
+    }
+
+    private static long toPositiveTicks(Time time, String what) {
+        Objects.requireNonNull(time, what + " cannot be null");
+        long ticks = Math.round(time.in(Milliseconds));
+        if (ticks < 1) {
+            throw new IllegalArgumentException(what + " must be at least 1 ms");
+        }
+        return ticks;
+    }
+
+    /**
+     * Runs scenarios on the common ForkJoinPool, using every core.
+     *
+     * @param scenarioCount The number of scenarios to run
+     * @param baseSeed The seed of the first scenario. Scenario i uses the seed baseSeed + i.
+     * @return The combined report of every scenario
+     * @throws IllegalStateException if a scenario throws an exception, with the seed of the
+     *     scenario in the message
+     */
+    public Report explore(int scenarioCount, long baseSeed) {
+        return explore(ForkJoinPool.commonPool(), scenarioCount, baseSeed);
+    }
+
+    /**
+     * Runs scenarios on the given pool.
+     *
+     * @param pool The pool to run the scenarios on
+     * @param scenarioCount The number of scenarios to run
+     * @param baseSeed The seed of the first scenario. Scenario i uses the seed baseSeed + i.
+     * @return The combined report of every scenario
+     * @throws IllegalStateException if a scenario throws an exception, with the seed of the
+     *     scenario in the message
+     */
+    public Report explore(ForkJoinPool pool, int scenarioCount, long baseSeed) {
+        Objects.requireNonNull(pool, "Pool cannot be null");
+        if (scenarioCount < 1) {
+            throw new IllegalArgumentException("Scenario count must be at least 1");
+        }
+        checkHasEvents();
+        return pool.invoke(new ExploreTask(baseSeed, 0, scenarioCount));
+    }
+
+    /**
+     * Runs a single scenario on the calling thread, for example to replay a scenario found by
+     * explore while debugging.
+     *
+     * @param seed The seed of the scenario
+     * @return The report of the scenario
+     * @throws IllegalStateException if the scenario throws an exception, with its seed in the
+     *     message, or if no mutations were added and requests are disabled
+     */
+    public Report runScenario(long seed) {
+        checkHasEvents();
+        return runScenario(seed, null, new DiscreteEventSimulator());
+    }
+
+    /** Checks that there is at least one kind of event to generate scenarios from. */
+    private void checkHasEvents() {
+        if (mutations.isEmpty() && requestableStates != null && requestableStates.isEmpty()) {
+            throw new IllegalStateException("No mutations were added and requests are disabled");
+        }
+    }
+
+    /** Runs a contiguous range of scenarios, splitting it in half until it is small enough. */
+    private class ExploreTask extends RecursiveTask<Report> {
+        private static final long serialVersionUID = 1L;
+
+        private final long baseSeed;
+        private final int from;
+        private final int to;
+
+        ExploreTask(long baseSeed, int from, int to) {
+            this.baseSeed = baseSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Report compute() {
+            if (to - from <= scenariosPerTask) {
+                DiscreteEventSimulator sim = new DiscreteEventSimulator();
+                Report report = null;
+                for (int i = from; i < to; i++) {
+                    report = runScenario(baseSeed + i, report, sim);
+                }
+                return report;
+            }
+            int middle = (from + to) >>> 1;
+            ExploreTask left = new ExploreTask(baseSeed, from, middle);
+            left.fork();
+            Report report = new ExploreTask(baseSeed, middle, to).compute();
+            report.merge(left.join());
+            return report;
+        }
+    }
+
+    private Report runScenario(long seed, Report report, DiscreteEventSimulator sim) {
+        try {
+            return runScenarioUnchecked(seed, report, sim);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Scenario with seed " + seed + " failed", e);
+        }
+    }
+
+    private Report runScenarioUnchecked(long seed, Report report, DiscreteEventSimulator sim) {
+        World world = worldFactory.get();
+        StateMachine<World> stateMachine = stateMachineFactory.apply(world);
+        List<State<World>> states = new ArrayList<>(stateMachine.getStates());
+        if (report == null) {
+            report = new Report(states);
+        } else {
+            report.checkSameStates(states);
+        }
+        if (stateMachine.getCurrentState() == null) {
+            throw new IllegalStateException("The state machine factory must set an initial state");
+        }
+
+        Map<State<World>, Integer> ordinals = new IdentityHashMap<>();
+        for (int i = 0; i < states.size(); i++) {
+            ordinals.put(states.get(i), i);
+        }
+        List<State<World>> requestable = new ArrayList<>();
+        if (requestableStates == null) {
+            requestable.addAll(states);
+        } else {
+            for (String stateName : requestableStates) {
+                State<World> state = stateMachine.getStateByName(stateName);
+                if (state == null) {
+                    throw new IllegalArgumentException("Unknown requestable state " + stateName);
+                }
+                requestable.add(state);
+            }
+        }
+
+        // Generate every event up front, so that the settle window is known before running
+        SplittableRandom random = new SplittableRandom(seed);
+        sim.reset();
+        sim.addStateMachine(stateMachine, loopTicks);
+        long time = 0;
+        for (int event = 0; event < eventsPerScenario; event++) {
+            time += 1 + random.nextLong(maxTicksBetweenEvents);
+            int choice = random.nextInt(mutations.size() + requestable.size());
+            if (choice < mutations.size()) {
+                Consumer<World> mutation = mutations.get(choice);
+                sim.scheduleMutation(time, () -> mutation.accept(world));
+            } else {
+                State<World> state = requestable.get(choice - mutations.size());
+                sim.scheduleMutation(time, () -> stateMachine.requestState(state));
+            }
+        }
+        long endTime = time + settleTicks;
+        long windowStart = time + settleTicks / 2;
+
+        boolean[] entered = new boolean[states.size()];
+        boolean[] exited = new boolean[states.size()];
+        int[] windowEntries = new int[states.size()];
+        long[][] transitionCounts = report.transitionCounts;
+        entered[ordinals.get(stateMachine.getCurrentState())] = true;
+        stateMachine.setTransitionListener(
+                (from, to, source, transitionIndex) -> {
+                    int toOrdinal = ordinals.get(to);
+                    if (from != null) {
+                        exited[ordinals.get(from)] = true;
+                    }
+                    entered[toOrdinal] = true;
+                    if (source != null) {
+                        transitionCounts[ordinals.get(source)][transitionIndex]++;
+                    }
+                    if (sim.getTime() >= windowStart) {
+                        windowEntries[toOrdinal]++;
+                    }
+                });
+        sim.simulate(endTime);
+        stateMachine.setTransitionListener(null);
+
+        report.scenarioCount++;
+        boolean repeated = false;
+        for (int i = 0; i < states.size(); i++) {
+            if (entered[i]) {
+                report.enteredScenarios[i]++;
+            }
+            if (exited[i]) {
+                report.exitedScenarios[i]++;
+            }
+            repeated |= windowEntries[i] > 1;
+        }
+        if (repeated) {
+            List<String> cycle = new ArrayList<>();
+            for (int i = 0; i < states.size(); i++) {
+                if (windowEntries[i] > 0) {
+                    cycle.add(report.stateNames[i]);
+                }
+            }
+            report.unsettledCycles.merge(List.copyOf(cycle), seed, Math::min);
+        }
+        return report;
+    }
+
+    /** The combined results of a number of scenarios. */
+    public static final class Report {
+        private long scenarioCount = 0;
+        private final String[] stateNames;
+        private final String[][] transitionDescriptions;
+        private final long[] enteredScenarios;
+        private final long[] exitedScenarios;
+        private final long[][] transitionCounts;
+
+        /** Cycles of state names, in registration order, mapped to the smallest example seed */
+        private final Map<List<String>, Long> unsettledCycles = new HashMap<>();
+
+        private <World> Report(List<State<World>> states) {
+            int stateCount = states.size();
+            stateNames = new String[stateCount];
+            transitionDescriptions = new String[stateCount][];
+            enteredScenarios = new long[stateCount];
+            exitedScenarios = new long[stateCount];
+            transitionCounts = new long[stateCount][];
+            for (int i = 0; i < stateCount; i++) {
+                State<World> state = states.get(i);
+                stateNames[i] = state.getName();
+                transitionDescriptions[i] = new String[state.getTransitionCount()];
+                for (int t = 0; t < state.getTransitionCount(); t++) {
+                    State<World>.Transition transition = state.getTransition(t);
+                    transitionDescriptions[i][t] =
+                            state.getName()
+                                    + " -> "
+                                    + transition.getTargetState().getName()
+                                    + " ["
+                                    + transition.getDescription()
+                                    + "]";
+                }
+                transitionCounts[i] = new long[state.getTransitionCount()];
+            }
+        }
+
+        private <World> void checkSameStates(List<State<World>> states) {
+            boolean same = states.size() == stateNames.length;
+            for (int i = 0; same && i < stateNames.length; i++) {
+                same =
+                        states.get(i).getName().equals(stateNames[i])
+                                && states.get(i).getTransitionCount()
+                                        == transitionCounts[i].length;
+            }
+            if (!same) {
+                throw new IllegalStateException(
+                        "The state machine factory must register the same states and transitions"
+                                + " every time");
+            }
+        }
+
+        private void merge(Report other) {
+            if (!Arrays.equals(stateNames, other.stateNames)) {
+                throw new IllegalStateException("Can't merge reports of different state machines");
+            }
+            scenarioCount += other.scenarioCount;
+            for (int i = 0; i < stateNames.length; i++) {
+                enteredScenarios[i] += other.enteredScenarios[i];
+                exitedScenarios[i] += other.exitedScenarios[i];
+                for (int t = 0; t < transitionCounts[i].length; t++) {
+                    transitionCounts[i][t] += other.transitionCounts[i][t];
+                }
+            }
+            other.unsettledCycles.forEach(
+                    (cycle, seed) -> unsettledCycles.merge(cycle, seed, Math::min));
+        }
+
+        /**
+         * Gets the number of scenarios that were run.
+         *
+         * @return The number of scenarios
+         */
+        public long getScenarioCount() {
+            return scenarioCount;
+        }
+
+        /**
+         * Gets the states that were entered in at least one scenario but never exited in any.
+         *
+         * @return The names of the states, in registration order
+         */
+        public List<String> getStatesNeverExited() {
+            List<String> states = new ArrayList<>();
+            for (int i = 0; i < stateNames.length; i++) {
+                if (enteredScenarios[i] > 0 && exitedScenarios[i] == 0) {
+                    states.add(stateNames[i]);
+                }
+            }
+            return states;
+        }
+
+        /**
+         * Gets the states that were never entered in any scenario, including as the initial state.
+         *
+         * @return The names of the states, in registration order
+         */
+        public List<String> getStatesNeverEntered() {
+            List<String> states = new ArrayList<>();
+            for (int i = 0; i < stateNames.length; i++) {
+                if (enteredScenarios[i] == 0) {
+                    states.add(stateNames[i]);
+                }
+            }
+            return states;
+        }
+
+        /**
+         * Gets the cycles of states that the state machine was still going around at the end of a
+         * scenario, each with the smallest seed of a scenario that ended in it.
+         *
+         * @return An unmodifiable map from the names of the states in each cycle, in registration
+         *     order, to an example seed
+         */
+        public Map<List<String>, Long> getUnsettledCycles() {
+            return Collections.unmodifiableMap(unsettledCycles);
+        }
+
+        /**
+         * Gets how many times a transition was taken, over all scenarios.
+         *
+         * @param stateName The name of the state that defines the transition
+         * @param transitionIndex The index of the transition within the state
+         * @return The number of times the transition was taken
+         * @throws IllegalArgumentException if there is no state with the given name
+         */
+        public long getTransitionCount(String stateName, int transitionIndex) {
+            for (int i = 0; i < stateNames.length; i++) {
+                if (stateNames[i].equals(stateName)) {
+                    return transitionCounts[i][transitionIndex];
+                }
+            }
+            throw new IllegalArgumentException("Unknown state " + stateName);
+        }
+
+        /**
+         * Gets the transitions that were never taken in any scenario.
+         *
+         * @return Descriptions of the transitions, like "Idle -> Intaking [wantsIntake]"
+         */
+        public List<String> getUncoveredTransitions() {
+            List<String> transitions = new ArrayList<>();
+            for (int i = 0; i < stateNames.length; i++) {
+                for (int t = 0; t < transitionCounts[i].length; t++) {
+                    if (transitionCounts[i][t] == 0) {
+                        transitions.add(transitionDescriptions[i][t]);
+                    }
+                }
+            }
+            return transitions;
+        }
+
+        /**
+         * Gets the fraction of transitions that were taken at least once.
+         *
+         * @return The transition coverage, between 0 and 1, or 1 if there are no transitions
+         */
+        public double getTransitionCoverage() {
+            int total = 0;
+            int covered = 0;
+            for (long[] counts : transitionCounts) {
+                for (long count : counts) {
+                    total++;
+                    if (count > 0) {
+                        covered++;
+                    }
+                }
+            }
+            return total == 0 ? 1.0 : (double) covered / total;
+        }
+
+        /**
+         * Returns a summary of the report.
+         *
+         * @return The summary
+         */
+        @Override
+        public String toString() {
+            StringBuilder summary = new StringBuilder();
+            summary.append(scenarioCount).append(" scenarios\n");
+            summary.append(
+                    String.format(
+                            "Transition coverage: %.1f%%%n", 100.0 * getTransitionCoverage()));
+            for (String transition : getUncoveredTransitions()) {
+                summary.append("  Never taken: ").append(transition).append('\n');
+            }
+            for (String state : getStatesNeverEntered()) {
+                summary.append("  Never entered: ").append(state).append('\n');
+            }
+            for (String state : getStatesNeverExited()) {
+                summary.append("  Never exited: ").append(state).append('\n');
+            }
+            unsettledCycles.forEach(
+                    (cycle, seed) ->
+                            summary.append("  Never settled: ")
+                                    .append(String.join(", ", cycle))
+                                    .append(" (seed ")
+                                    .append(seed)
+                                    .append(")\n"));
+            return summary.toString();
+        }
+    }
+}
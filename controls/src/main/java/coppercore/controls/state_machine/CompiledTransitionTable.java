@@ -0,0 +1,301 @@
+package coppercore.controls.state_machine;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A frozen, array-based copy of the transitions of every state registered to a {@link
+ * StateMachine}.
+ *
+ * <p>Each registered state is given an ordinal in registration order. For every state, the table
+ * stores the conditions of each transition as a flat array of predicates (the individual terms
+ * that were combined with andWhen) and the ordinal of the state each transition leads to. Looking
+ * up the next state is then a pair of nested array loops that does not allocate.
+ *
+ * <p>Transitions that declare the events they depend on are skipped unless one of those events has
+ * been marked dirty since the last update, or their state was just entered. Dirty events are kept
+ * in a bitset indexed by event id.
+ *
+ * <p>For nested states, the table also stores the ordinals of every state's ancestors, so that the
+ * transitions of all active states can be checked outermost first, and the ordinal of the state
+ * actually entered when transitioning to a state with substates.
+ *
+ * <p>The table is a snapshot: transitions added to a state after the table was built are not seen
+ * until the state machine is compiled again.
+ *
+ * @param <World> The type of the world in which the state machine lives.
+ */
+final class CompiledTransitionTable<World> {
+
+    /** Transition index returned when no transition is taken. */
+    static final int NO_TRANSITION = -1;
+
+    private final State<World>[] states;
+    private final Map<State<World>, Integer> ordinals;
+
+    /** guards[stateOrdinal][transitionIndex][conditionIndex] */
+    private final Predicate<World>[][][] guards;
+
+    /** targets[stateOrdinal][transitionIndex] is the ordinal of the state to transition to */
+    private final int[][] targets;
+
+    /**
+     * paths[stateOrdinal] holds the ordinals of the state's ancestors, outermost first, followed by
+     * the ordinal of the state itself
+     */
+    private final int[][] paths;
+
+    /** initialLeaves[stateOrdinal] is the ordinal of the state entered when entering that state */
+    private final int[] initialLeaves;
+
+    private final Map<Object, Integer> eventIds;
+
+    /**
+     * dependencyMasks[stateOrdinal][transitionIndex] is a bitset of event ids, or null if the
+     * transition did not declare any events and must always be evaluated
+     */
+    private final long[][][] dependencyMasks;
+
+    /** Bitset of events fired since the dirty events were last cleared */
+    private final long[] dirtyEvents;
+
+    /**
+     * Builds the table from the given registered states.
+     *
+     * @param registeredStates The states registered to the state machine, in registration order
+     * @throws IllegalStateException if a transition leads to a state that is not registered
+     */
+    @SuppressWarnings("unchecked")
+    CompiledTransitionTable(Collection<State<World>> registeredStates) {
+        int stateCount = registeredStates.size();
+        this.states = (State<World>[]) new State<?>[stateCount];
+        this.ordinals = new IdentityHashMap<>();
+
+        int ordinal = 0;
+        for (State<World> state : registeredStates) {
+            states[ordinal] = state;
+            ordinals.put(state, ordinal);
+            ordinal++;
+        }
+
+        this.paths = new int[stateCount][];
+        this.initialLeaves = new int[stateCount];
+        for (int i = 0; i < stateCount; i++) {
+            List<State<World>> path = states[i].getPath();
+            paths[i] = new int[path.size()];
+            for (int level = 0; level < path.size(); level++) {
+                paths[i][level] = ordinalOf(path.get(level));
+            }
+            initialLeaves[i] = ordinalOf(states[i].getInitialLeaf());
+        }
+
+        this.eventIds = new HashMap<>();
+        for (State<World> state : states) {
+            for (State<World>.Transition transition : state.getTransitions()) {
+                for (Object event : transition.dependencies) {
+                    eventIds.putIfAbsent(event, eventIds.size());
+                }
+            }
+        }
+        int eventWords = (eventIds.size() + 63) / 64;
+        this.dirtyEvents = new long[eventWords];
+
+        this.guards = (Predicate<World>[][][]) new Predicate<?>[stateCount][][];
+        this.targets = new int[stateCount][];
+        this.dependencyMasks = new long[stateCount][][];
+
+        for (int i = 0; i < stateCount; i++) {
+            List<State<World>.Transition> transitions = states[i].getTransitions();
+            guards[i] = (Predicate<World>[][]) new Predicate<?>[transitions.size()][];
+            targets[i] = new int[transitions.size()];
+            dependencyMasks[i] = new long[transitions.size()][];
+            for (int t = 0; t < transitions.size(); t++) {
+                State<World>.Transition transition = transitions.get(t);
+                Integer target = ordinals.get(transition.toState);
+                if (target == null) {
+                    throw new IllegalStateException(
+                            "Transition \""
+                                    + transition.description
+                                    + "\" from "
+                                    + states[i]
+                                    + " leads to unregistered state "
+                                    + transition.toState);
+                }
+                guards[i][t] = transition.conditions.toArray(new Predicate[0]);
+                targets[i][t] = target;
+                if (!transition.dependencies.isEmpty()) {
+                    long[] mask = new long[eventWords];
+                    for (Object event : transition.dependencies) {
+                        int id = eventIds.get(event);
+                        mask[id >>> 6] |= 1L << id;
+                    }
+                    dependencyMasks[i][t] = mask;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the ordinal of a registered state.
+     *
+     * @param state The state to look up
+     * @return The ordinal of the state
+     * @throws IllegalArgumentException if the state was not registered when the table was built
+     */
+    int ordinalOf(State<World> state) {
+        Integer ordinal = ordinals.get(state);
+        if (ordinal == null) {
+            throw new IllegalArgumentException(
+                    "State " + state + " was not registered when the state machine was compiled");
+        }
+        return ordinal;
+    }
+
+    /**
+     * Gets the state with the given ordinal.
+     *
+     * @param ordinal The ordinal of the state
+     * @return The state
+     */
+    State<World> stateAt(int ordinal) {
+        return states[ordinal];
+    }
+
+    /**
+     * Gets the number of states in the table.
+     *
+     * @return The number of states
+     */
+    int size() {
+        return states.length;
+    }
+
+    /**
+     * Gets the ordinals of the states that are active while the given state is the current state.
+     *
+     * @param ordinal The ordinal of the current state
+     * @return The ordinals of the state's ancestors, outermost first, followed by the ordinal
+     *     itself. The array must not be modified.
+     */
+    int[] pathOf(int ordinal) {
+        return paths[ordinal];
+    }
+
+    /**
+     * Gets the state that is actually entered when transitioning to a state, following initial
+     * substates.
+     *
+     * @param ordinal The ordinal of the state transitioned to
+     * @return The ordinal of the innermost initial substate, or ordinal if it has no substates
+     */
+    int initialLeafOf(int ordinal) {
+        return initialLeaves[ordinal];
+    }
+
+    /**
+     * Marks an event as fired, so that transitions depending on it are evaluated on the next
+     * update. Events that no transition depends on are ignored.
+     *
+     * @param event The event that was fired
+     */
+    void markDirty(Object event) {
+        Integer id = eventIds.get(event);
+        if (id != null) {
+            dirtyEvents[id >>> 6] |= 1L << id;
+        }
+    }
+
+    /**
+     * Gets the number of words in the bitset of fired events.
+     *
+     * @return The length of the arrays used by saveDirty and restoreDirty
+     */
+    int dirtyWords() {
+        return dirtyEvents.length;
+    }
+
+    /**
+     * Copies the bitset of fired events into an array. Used by state machine snapshots.
+     *
+     * @param dirty The array to copy into, of length dirtyWords()
+     */
+    void saveDirty(long[] dirty) {
+        System.arraycopy(dirtyEvents, 0, dirty, 0, dirtyEvents.length);
+    }
+
+    /**
+     * Restores the bitset of fired events from an array. Used by state machine snapshots.
+     *
+     * @param dirty The array to copy from, of length dirtyWords()
+     */
+    void restoreDirty(long[] dirty) {
+        System.arraycopy(dirty, 0, dirtyEvents, 0, dirtyEvents.length);
+    }
+
+    /** Clears all fired events. Called once the transitions of an update have been evaluated. */
+    void clearDirty() {
+        Arrays.fill(dirtyEvents, 0L);
+    }
+
+    /**
+     * Determines which transition to take from the given state. Transitions are checked in the
+     * order they were defined and the first whose conditions are all true is taken, matching {@link
+     * State#getNextState}.
+     *
+     * <p>Transitions that declared their events are skipped unless one of those events is dirty or
+     * the state was just entered, since their conditions were already false the last time they
+     * were evaluated.
+     *
+     * @param stateOrdinal The ordinal of the current state
+     * @param world The current world state
+     * @param stateJustEntered Whether this is the first evaluation since the state was entered
+     * @return The index of the transition to take, or {@link #NO_TRANSITION} if none is taken
+     */
+    int nextTransitionIndex(int stateOrdinal, World world, boolean stateJustEntered) {
+        Predicate<World>[][] stateGuards = guards[stateOrdinal];
+        long[][] stateMasks = dependencyMasks[stateOrdinal];
+        for (int t = 0; t < stateGuards.length; t++) {
+            if (!stateJustEntered && stateMasks[t] != null && !anyDirty(stateMasks[t])) {
+                continue;
+            }
+            if (allTrue(stateGuards[t], world)) {
+                return t;
+            }
+        }
+        return NO_TRANSITION;
+    }
+
+    /**
+     * Gets the state a transition leads to.
+     *
+     * @param stateOrdinal The ordinal of the state the transition belongs to
+     * @param transitionIndex The index of the transition within that state
+     * @return The ordinal of the state the transition leads to
+     */
+    int targetOf(int stateOrdinal, int transitionIndex) {
+        return targets[stateOrdinal][transitionIndex];
+    }
+
+    private boolean anyDirty(long[] mask) {
+        for (int w = 0; w < mask.length; w++) {
+            if ((mask[w] & dirtyEvents[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <World> boolean allTrue(Predicate<World>[] conditions, World world) {
+        for (int c = 0; c < conditions.length; c++) {
+            if (!conditions[c].test(world)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
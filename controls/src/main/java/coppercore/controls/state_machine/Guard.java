@@ -0,0 +1,81 @@
+package coppercore.controls.state_machine;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * A named condition that is shared by the transitions of a {@link StateMachine}, created with
+ * StateMachine.registerGuard.
+ *
+ * <p>A guard is evaluated at most once per call to the state machine's periodic method. The first
+ * time it is tested during a tick its condition is evaluated, and every later test in the same tick
+ * (by this or any other transition) returns the cached result. This makes it cheap to use the same
+ * condition, such as "has game piece" or "at setpoint", in many transitions.
+ *
+ * <p>Because the result is cached for the whole tick, a guard does not see changes that states make
+ * to the world after it was first tested in that tick, for example while run-to-completion mode
+ * passes through several states. A guard must only be used by the state machine it was registered
+ * on, or by the regions of a {@link ParallelState} registered on that state machine, and only from
+ * the thread that calls its periodic method. Regions share the cache of that state machine, so the
+ * guard is still evaluated at most once per tick for all of them.
+ *
+ * <p>Guards are Predicates, so they can be passed anywhere a condition is accepted. State.when and
+ * TransitionConditionBuilder.andWhen also accept a guard on its own and use its name as the
+ * description.
+ *
+ * @param <World> The type of the world in which the state machine lives.
+ */
+public final class Guard<World> implements Predicate<World> {
+
+    private final GuardCache cache;
+    private final int id;
+    private final String name;
+    private final Predicate<World> condition;
+
+    /**
+     * Constructs a new Guard. Used by StateMachine.registerGuard.
+     *
+     * @param cache The cache of the state machine the guard is registered on
+     * @param name The name of the guard
+     * @param condition The condition of the guard
+     */
+    Guard(GuardCache cache, String name, Predicate<World> condition) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Guard name cannot be null or empty");
+        }
+        this.condition = Objects.requireNonNull(condition, "Condition cannot be null");
+        this.cache = cache;
+        this.name = name;
+        this.id = cache.register();
+    }
+
+    /**
+     * Tests the guard, evaluating its condition only if it has not been evaluated yet this tick.
+     *
+     * @param world The current world state
+     * @return The result of the condition for this tick
+     */
+    @Override
+    public boolean test(World world) {
+        return cache.test(id, condition, world);
+    }
+
+    /**
+     * Gets the name of the guard.
+     *
+     * @return The name of the guard
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the name of the guard.
+     *
+     * @return The name of the guard
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
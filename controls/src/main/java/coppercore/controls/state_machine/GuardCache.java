@@ -0,0 +1,74 @@
+package coppercore.controls.state_machine;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Caches the results of the {@link Guard}s registered to a {@link StateMachine} for the current
+ * tick.
+ *
+ * <p>Each guard has an id. Whether a guard has been evaluated this tick, and its result, are stored
+ * as bits in two parallel bitsets, so checking or storing a result never boxes a value. Resetting
+ * the cache only clears the evaluated bitset.
+ */
+final class GuardCache {
+
+    private long[] evaluated = new long[1];
+    private long[] values = new long[1];
+    private int size = 0;
+
+    /**
+     * Reserves an id for a new guard.
+     *
+     * @return The id of the guard
+     */
+    int register() {
+        int id = size++;
+        if ((id >>> 6) >= evaluated.length) {
+            evaluated = Arrays.copyOf(evaluated, evaluated.length * 2);
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        return id;
+    }
+
+    /**
+     * Gets the cached result of a guard, evaluating its condition if it has not been evaluated
+     * since the last reset.
+     *
+     * @param id The id of the guard
+     * @param condition The condition of the guard
+     * @param world The current world state
+     * @return The result of the condition
+     */
+    <World> boolean test(int id, Predicate<World> condition, World world) {
+        int word = id >>> 6;
+        long bit = 1L << id;
+        if ((evaluated[word] & bit) != 0) {
+            return (values[word] & bit) != 0;
+        }
+        boolean value = condition.test(world);
+        evaluated[word] |= bit;
+        if (value) {
+            values[word] |= bit;
+        } else {
+            values[word] &= ~bit;
+        }
+        return value;
+    }
+
+    /** Forgets every cached result, so that each guard is evaluated again when next tested. */
+    void reset() {
+        if (size > 0) {
+            Arrays.fill(evaluated, 0L);
+        }
+    }
+
+    /**
+     * Gets the number of registered guards.
+     *
+     * @return The number of guards
+     */
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,146 @@
+package coppercore.controls.state_machine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A state made of orthogonal regions that are active at the same time, for example an arm and an
+ * intake that each have their own states but belong to the same superstructure.
+ *
+ * <p>Each region is a separate {@link StateMachine} over the same world. When the ParallelState is
+ * entered, every region is set to its initial state and uses the time source of the state machine
+ * the ParallelState belongs to. While it is active, each call to periodic ticks every region in the
+ * order the regions were added, running the region's periodic method and updating its transitions.
+ * Once the current state of a region has finished, only its transitions are updated. When it is
+ * exited, the active states of every region are exited.
+ *
+ * <p>The transitions of the ParallelState itself, such as a transition to a disabled state, are
+ * defined once and evaluated once per update by the state machine it is registered to instead of
+ * being copied onto the states of every region. Guards registered on that state machine may also be
+ * used by transitions inside the regions, and are then evaluated at most once per update for all
+ * regions together.
+ *
+ * <p>A ParallelState is finished once the current state of every region is finished, so
+ * whenFinished can be used to leave it once all regions are done.
+ *
+ * @param <World> The type of the world in which this state lives.
+ */
+public final class ParallelState<World> extends State<World> {
+
+    private final List<String> regionNames = new ArrayList<>();
+    private final List<StateMachine<World>> regions = new ArrayList<>();
+    private final List<State<World>> initialStates = new ArrayList<>();
+
+    /**
+     * Constructs a new ParallelState with the given name and no regions.
+     *
+     * @param name The name of the state
+     */
+    public ParallelState(String name) {
+        super(name);
+    }
+
+    /**
+     * Adds a region to this state. The region must be a state machine over the same world as the
+     * state machine this state is registered to, and must not be given a state or ticked directly.
+     *
+     * @param regionName The name of the region, used in graphviz output
+     * @param region The state machine of the region
+     * @param initialState The registered state of the region entered when this state is entered
+     * @return The region
+     * @throws IllegalArgumentException if the name is empty or already used by another region, or
+     *     if the initial state is not registered to the region
+     */
+    public StateMachine<World> addRegion(
+            String regionName, StateMachine<World> region, State<World> initialState) {
+        if (regionName == null || regionName.isEmpty()) {
+            throw new IllegalArgumentException("Region name cannot be null or empty");
+        }
+        Objects.requireNonNull(region, "Region cannot be null");
+        Objects.requireNonNull(initialState, "Initial state cannot be null");
+        if (regionNames.contains(regionName)) {
+            throw new IllegalArgumentException(
+                    "State " + name + " already has a region named " + regionName);
+        }
+        if (region.getStateByName(initialState.getName()) != initialState) {
+            throw new IllegalArgumentException(
+                    "Initial state " + initialState + " is not registered to region " + regionName);
+        }
+        regionNames.add(regionName);
+        regions.add(region);
+        initialStates.add(initialState);
+        return region;
+    }
+
+    /**
+     * Gets the number of regions of this state.
+     *
+     * @return The number of regions
+     */
+    public int getRegionCount() {
+        return regions.size();
+    }
+
+    /**
+     * Gets a region of this state.
+     *
+     * @param index The index of the region, in the order regions were added
+     * @return The state machine of the region
+     */
+    public StateMachine<World> getRegion(int index) {
+        return regions.get(index);
+    }
+
+    /**
+     * Gets the name of a region of this state.
+     *
+     * @param index The index of the region, in the order regions were added
+     * @return The name of the region
+     */
+    public String getRegionName(int index) {
+        return regionNames.get(index);
+    }
+
+    /**
+     * Gets the state a region enters when this state is entered.
+     *
+     * @param index The index of the region, in the order regions were added
+     * @return The initial state of the region
+     */
+    public State<World> getInitialState(int index) {
+        return initialStates.get(index);
+    }
+
+    @Override
+    protected void onEntry(StateMachine<World> stateMachine, World world) {
+        for (int i = 0; i < regions.size(); i++) {
+            regions.get(i).setTimeSource(stateMachine.getTimeSource());
+            regions.get(i).setState(initialStates.get(i));
+        }
+    }
+
+    @Override
+    protected void onExit(StateMachine<World> stateMachine, World world) {
+        for (int i = 0; i < regions.size(); i++) {
+            regions.get(i).exitAll();
+        }
+    }
+
+    @Override
+    protected void periodic(StateMachine<World> stateMachine, World world) {
+        boolean allFinished = !regions.isEmpty();
+        for (int i = 0; i < regions.size(); i++) {
+            StateMachine<World> region = regions.get(i);
+            if (region.getCurrentState().isFinished()) {
+                region.updateWithoutPeriodic();
+            } else {
+                region.periodic();
+            }
+            allFinished &= region.getCurrentState().isFinished();
+        }
+        if (allFinished) {
+            finish();
+        }
+    }
+}
@@ -3,8 +3,9 @@ package coppercore.controls.state_machine;
 import static edu.wpi.first.units.Units.Seconds;
 
 import edu.wpi.first.units.measure.Time;
-import edu.wpi.first.wpilibj.Timer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -28,6 +29,10 @@ import java.util.function.Supplier;
  * using the constructor that takes a name parameter. Otherwise, the simple name of the class is
  * used as the state's name. Currently there is no checking for duplicate state names.
  *
+ * <p>States can be nested inside a parent state using {@link StateMachine#registerState(State,
+ * State)}. While a substate is active, its parent is active too: the parent's transitions apply to
+ * every substate, and the parent's timeouts keep running while moving between its substates.
+ *
  * @param <World> The type of the world in which this state lives.
  */
 public abstract class State<World> {
@@ -41,8 +46,21 @@ public abstract class State<World> {
     /** Name of the state. Is used as identifier in State Machine. */
     protected final String name;
 
-    private Optional<Timer> timer = Optional.empty();
-    private double timeout;
+    /** Durations of the timeouts defined with whenTimeout, in seconds */
+    private double[] timeoutDurations = new double[0];
+
+    /** Whether each timeout has expired since the state was last entered */
+    private boolean[] timeoutExpired = new boolean[0];
+
+    /** The state this state is nested in, or null if it is a top-level state */
+    private State<World> parent = null;
+
+    /** The substates of this state, in registration order. The first is the initial substate. */
+    private final List<State<World>> children = new ArrayList<>();
+
+    /** The states from the top-level state down to this state, outermost first */
+    private List<State<World>> path = List.of(this);
+
     private Supplier<State<World>> requestedStateSupplier = () -> null;
 
     /**
@@ -121,12 +139,26 @@ public abstract class State<World> {
      * @return An optional containing the next state, or empty if no transition is taken
      */
     protected final Optional<State<World>> getNextState(World world) {
-        for (Transition transition : transitions) {
-            if (transition.whenCondition.test(world)) {
-                return Optional.of(transition.toState);
+        int transitionIndex = getNextTransitionIndex(world);
+        if (transitionIndex < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(transitions.get(transitionIndex).toState);
+    }
+
+    /**
+     * Determines which transition would be taken, like getNextState.
+     *
+     * @param world The current world state
+     * @return The index of the transition within getTransitions, or -1 if no transition is taken
+     */
+    final int getNextTransitionIndex(World world) {
+        for (int i = 0; i < transitions.size(); i++) {
+            if (transitions.get(i).whenCondition.test(world)) {
+                return i;
             }
         }
-        return Optional.empty();
+        return -1;
     }
 
     /**
@@ -138,7 +170,7 @@ public abstract class State<World> {
      */
     protected final void _onEntry(StateMachine<World> stateMachine, World world) {
         finished = false;
-        timer.ifPresent(t -> t.restart());
+        Arrays.fill(timeoutExpired, false);
         onEntry(stateMachine, world);
     }
 
@@ -234,6 +266,19 @@ public abstract class State<World> {
         Predicate<World> whenCondition;
         String description;
 
+        /**
+         * The individual conditions that make up whenCondition, in the order they were added. A
+         * compiled StateMachine evaluates these directly instead of the chained predicate.
+         */
+        List<Predicate<World>> conditions;
+
+        /**
+         * The events this transition's conditions depend on. If empty, the conditions are
+         * evaluated on every update. Otherwise a compiled StateMachine only re-evaluates them after
+         * one of these events has been fired.
+         */
+        final List<Object> dependencies;
+
         /**
          * Constructor for Transition.
          *
@@ -242,15 +287,71 @@ public abstract class State<World> {
          * @param description A description of the transition
          */
         Transition(State<World> toState, Predicate<World> whenCondition, String description) {
+            this(toState, whenCondition, List.of(whenCondition), description);
+        }
+
+        /**
+         * Constructor for Transition.
+         *
+         * @param toState The target state for the transition
+         * @param whenCondition The condition under which the transition occurs
+         * @param conditions The conditions that are combined with logical AND into whenCondition
+         * @param description A description of the transition
+         */
+        Transition(
+                State<World> toState,
+                Predicate<World> whenCondition,
+                List<Predicate<World>> conditions,
+                String description) {
+            this(toState, whenCondition, conditions, List.of(), description);
+        }
+
+        /**
+         * Constructor for Transition.
+         *
+         * @param toState The target state for the transition
+         * @param whenCondition The condition under which the transition occurs
+         * @param conditions The conditions that are combined with logical AND into whenCondition
+         * @param dependencies The events the conditions depend on, empty if not declared
+         * @param description A description of the transition
+         */
+        Transition(
+                State<World> toState,
+                Predicate<World> whenCondition,
+                List<Predicate<World>> conditions,
+                List<Object> dependencies,
+                String description) {
             this.toState = toState;
             this.whenCondition = whenCondition;
+            this.conditions = conditions;
+            this.dependencies = dependencies;
             this.description = description;
         }
+
+        /**
+         * Gets the state this transition leads to.
+         *
+         * @return The target state
+         */
+        public State<World> getTargetState() {
+            return toState;
+        }
+
+        /**
+         * Gets the description of this transition, as shown in graphviz output.
+         *
+         * @return The description
+         */
+        public String getDescription() {
+            return description;
+        }
     }
 
     /** A builder class for defining transition conditions and target states. */
     public class TransitionConditionBuilder {
         Predicate<World> condition;
+        final List<Predicate<World>> conditions = new ArrayList<>();
+        final List<Object> dependencies = new ArrayList<>();
         // Need to make this more descriptive
         String description = "";
 
@@ -264,6 +365,7 @@ public abstract class State<World> {
             Objects.requireNonNull(condition, "Condition cannot be null");
             Objects.requireNonNull(description, "Description cannot be null");
             this.condition = condition;
+            this.conditions.add(condition);
             this.description = description;
         }
 
@@ -278,6 +380,7 @@ public abstract class State<World> {
             Objects.requireNonNull(nextCondition, "Next condition cannot be null");
             Objects.requireNonNull(label, "Label cannot be null");
             this.condition = this.condition.and(nextCondition);
+            this.conditions.add(nextCondition);
             this.description += " && " + label;
             return this;
         }
@@ -293,6 +396,39 @@ public abstract class State<World> {
             return andWhen(world -> nextCondition.getAsBoolean(), label);
         }
 
+        /**
+         * Combines the current condition with a guard using logical AND, using the name of the
+         * guard as its label. The guard is evaluated at most once per tick, no matter how many
+         * transitions use it.
+         *
+         * @param guard The guard to combine
+         * @return The updated TransitionConditionBuilder
+         */
+        public TransitionConditionBuilder andWhen(Guard<World> guard) {
+            Objects.requireNonNull(guard, "Guard cannot be null");
+            return andWhen(guard, guard.getName());
+        }
+
+        /**
+         * Declares the events that this transition's conditions depend on. Once the state machine
+         * is compiled, the conditions are then only re-evaluated when the state is entered or
+         * after one of these events has been passed to {@link StateMachine#fire(Object)}, instead
+         * of on every update. Transitions that don't declare any events are evaluated on every
+         * update.
+         *
+         * <p>Events are compared using equals and hashCode, so enum constants work well.
+         *
+         * @param events The events the conditions depend on
+         * @return The updated TransitionConditionBuilder
+         */
+        public TransitionConditionBuilder dependsOn(Object... events) {
+            for (Object event : events) {
+                Objects.requireNonNull(event, "Event cannot be null");
+                this.dependencies.add(event);
+            }
+            return this;
+        }
+
         /**
          * Defines the target state for the transition.
          *
@@ -300,7 +436,13 @@ public abstract class State<World> {
          */
         public void transitionTo(State<World> toState) {
             Objects.requireNonNull(toState, "Target state cannot be null");
-            transitions.add(new Transition(toState, condition, description));
+            transitions.add(
+                    new Transition(
+                            toState,
+                            condition,
+                            List.copyOf(conditions),
+                            List.copyOf(dependencies),
+                            description));
         }
     }
 
@@ -326,6 +468,19 @@ public abstract class State<World> {
         return when(world -> condition.getAsBoolean(), description);
     }
 
+    /**
+     * Creates a transition condition builder with the given guard, using the name of the guard as
+     * the description. The guard is evaluated at most once per tick, no matter how many transitions
+     * use it.
+     *
+     * @param guard The guard for the transition
+     * @return The transition condition builder
+     */
+    public TransitionConditionBuilder when(Guard<World> guard) {
+        Objects.requireNonNull(guard, "Guard cannot be null");
+        return when(guard, guard.getName());
+    }
+
     /**
      * Creates a transition condition builder that triggers when the state is finished.
      *
@@ -345,26 +500,72 @@ public abstract class State<World> {
         return whenFinished("When " + this.name + " finished");
     }
 
-    private boolean hasTimedOut() {
-        return timer.map(t -> t.hasElapsed(timeout)).orElse(false);
+    /**
+     * Gets the number of timeouts defined with whenTimeout.
+     *
+     * @return The number of timeouts
+     */
+    final int getTimeoutCount() {
+        return timeoutDurations.length;
+    }
+
+    /**
+     * Gets the duration of a timeout.
+     *
+     * @param timeoutIndex The index of the timeout
+     * @return The duration of the timeout in seconds
+     */
+    final double getTimeoutDuration(int timeoutIndex) {
+        return timeoutDurations[timeoutIndex];
+    }
+
+    /**
+     * Marks a timeout as expired. Called by the state machine's timeout scheduler.
+     *
+     * @param timeoutIndex The index of the timeout
+     */
+    final void setTimeoutExpired(int timeoutIndex) {
+        timeoutExpired[timeoutIndex] = true;
+    }
+
+    /**
+     * Copies whether each timeout has expired into an array. Used by state machine snapshots.
+     *
+     * @param expired The array to copy into, of length getTimeoutCount()
+     */
+    final void saveTimeoutsExpired(boolean[] expired) {
+        System.arraycopy(timeoutExpired, 0, expired, 0, timeoutExpired.length);
+    }
+
+    /**
+     * Restores whether each timeout has expired from an array. Used by state machine snapshots.
+     *
+     * @param expired The array to copy from, of length getTimeoutCount()
+     */
+    final void restoreTimeoutsExpired(boolean[] expired) {
+        System.arraycopy(expired, 0, timeoutExpired, 0, timeoutExpired.length);
+    }
+
+    private boolean hasTimedOut(int timeoutIndex) {
+        return timeoutExpired[timeoutIndex];
     }
 
     /**
      * Creates a transition condition builder that triggers a transition upon a timeout.
      *
-     * <p>Each State may be, optionally, associated with exactly one transition that fires on
-     * timeout. The timeout is rearmed every time the state is entered.
+     * <p>A State may define any number of timeouts. Every timeout is rearmed each time the state is
+     * entered, and measured using the time source of the state machine the state belongs to.
      *
      * @param durationAfterInit timeout, duration starting when state is entered.
      * @return The transition condition builder
      */
     public TransitionConditionBuilder whenTimeout(Time durationAfterInit) {
-        if (timer.isPresent())
-            throw new UnsupportedOperationException(
-                    "only one timeout transition per state supported.");
-        timer = Optional.of(new Timer());
-        timeout = durationAfterInit.in(Seconds);
-        return when((world) -> hasTimedOut(), "timeout");
+        Objects.requireNonNull(durationAfterInit, "Timeout duration cannot be null");
+        final int timeoutIndex = timeoutDurations.length;
+        timeoutDurations = Arrays.copyOf(timeoutDurations, timeoutIndex + 1);
+        timeoutDurations[timeoutIndex] = durationAfterInit.in(Seconds);
+        timeoutExpired = Arrays.copyOf(timeoutExpired, timeoutIndex + 1);
+        return when((world) -> hasTimedOut(timeoutIndex), "timeout");
     }
 
     /**
@@ -391,6 +592,117 @@ public abstract class State<World> {
         whenRequestedTransitionTo(requestedState, "When " + requestedState.name + " requested");
     }
 
+    /**
+     * Nests this state inside a parent state. Called when the state is registered as a substate.
+     *
+     * @param parent The parent state
+     * @throws IllegalArgumentException if the parent is this state or one of its substates
+     * @throws IllegalStateException if this state is already nested in another state
+     */
+    final void setParent(State<World> parent) {
+        if (parent == this || contains(parent)) {
+            throw new IllegalArgumentException(
+                    "State " + name + " cannot be nested inside itself or one of its substates");
+        }
+        if (this.parent != null && this.parent != parent) {
+            throw new IllegalStateException(
+                    "State " + name + " is already a substate of " + this.parent.name);
+        }
+        if (this.parent == null) {
+            this.parent = parent;
+            parent.children.add(this);
+            updatePath();
+        }
+    }
+
+    private void updatePath() {
+        List<State<World>> newPath = new ArrayList<>(parent == null ? List.of() : parent.path);
+        newPath.add(this);
+        path = List.copyOf(newPath);
+        for (State<World> child : children) {
+            child.updatePath();
+        }
+    }
+
+    /**
+     * Gets the state this state is nested in.
+     *
+     * @return The parent state, or null if this is a top-level state
+     */
+    public final State<World> getParent() {
+        return parent;
+    }
+
+    /**
+     * Gets the substates nested in this state, in the order they were registered. The first
+     * substate is the one entered when this state is entered.
+     *
+     * @return An unmodifiable view of the substates
+     */
+    public final List<State<World>> getSubstates() {
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Checks whether any states are nested in this state.
+     *
+     * @return true if this state has substates, false otherwise
+     */
+    public final boolean hasSubstates() {
+        return !children.isEmpty();
+    }
+
+    /**
+     * Checks whether another state is nested in this state, directly or indirectly.
+     *
+     * @param other The other state
+     * @return true if other is a substate of this state, false otherwise (including for this state
+     *     itself)
+     */
+    public final boolean contains(State<World> other) {
+        int depth = path.size() - 1;
+        return other.path.size() > path.size() && other.path.get(depth) == this;
+    }
+
+    /**
+     * Gets the states from the top-level state down to this state.
+     *
+     * @return The path of this state, outermost first and ending with this state
+     */
+    final List<State<World>> getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the state that is actually entered when transitioning to this state, found by
+     * following initial substates until reaching a state without substates.
+     *
+     * @return The innermost initial substate, or this state if it has no substates
+     */
+    final State<World> getInitialLeaf() {
+        State<World> leaf = this;
+        while (!leaf.children.isEmpty()) {
+            leaf = leaf.children.get(0);
+        }
+        return leaf;
+    }
+
+    /**
+     * Gets the innermost state that strictly contains both this state and another state. A
+     * transition between the two exits and re-enters every state below this ancestor, so that
+     * transitioning from a state to itself or to one of its substates still exits and enters it.
+     *
+     * @param other The other state
+     * @return The common ancestor, or null if the states only share the top level
+     */
+    final State<World> getCommonAncestor(State<World> other) {
+        State<World> ancestor = parent;
+        while (ancestor != null && !ancestor.contains(other)) {
+            ancestor = ancestor.parent;
+        }
+        return ancestor;
+    }
+
     /**
      * Gets the list of transitions defined for this state.
      *
@@ -400,6 +712,25 @@ public abstract class State<World> {
         return transitions;
     }
 
+    /**
+     * Gets the number of transitions defined for this state.
+     *
+     * @return The number of transitions
+     */
+    public final int getTransitionCount() {
+        return transitions.size();
+    }
+
+    /**
+     * Gets a transition defined for this state.
+     *
+     * @param index The index of the transition, in the order transitions are checked
+     * @return The transition
+     */
+    public final Transition getTransition(int index) {
+        return transitions.get(index);
+    }
+
     /**
      * Gets the name of the state.
      *
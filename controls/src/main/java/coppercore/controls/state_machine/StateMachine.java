@@ -1,9 +1,22 @@
 package coppercore.controls.state_machine;
 
+import static edu.wpi.first.units.Units.Seconds;
+
+import edu.wpi.first.units.measure.Time;
+import edu.wpi.first.wpilibj.Timer;
 import java.io.PrintWriter;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 // Note: Some parts of the javadoc were written using Copilot
 
@@ -20,7 +33,44 @@ import java.util.Objects;
  * transitions and change the current state accordingly. The periodic method can be called to
  * execute any periodic actions defined in the current state.
  *
- * <p>It also does not support hierarchical states or parallel states.
+ * <p>Once all states are registered and all transitions are defined, the state machine can
+ * optionally be compiled using the compile method. A compiled state machine freezes every state's
+ * transitions into flat arrays indexed by state ordinal, so that updating it does not allocate.
+ *
+ * <p>Transitions may declare the events their conditions depend on. A compiled state machine only
+ * re-evaluates those transitions after one of their events is passed to fire, and keeps polling
+ * transitions that don't declare any events.
+ *
+ * <p>By default, at most one transition is taken per update. In run-to-completion mode, enabled
+ * using enableRunToCompletion, transitions are taken repeatedly within a single update until no
+ * transition condition is true, bounded by a maximum number of steps and a wall-time budget.
+ *
+ * <p>The timeouts of the current state (see State.whenTimeout) are tracked by a single deadline
+ * heap owned by the state machine, using a time source that can be replaced with setTimeSource. By
+ * default, the WPILib timestamp is used.
+ *
+ * <p>States can be requested from any thread using requestState. Requests are posted to a
+ * lock-free mailbox and taken once per update by the thread that calls periodic. Whether only the
+ * latest request or every request in order is kept is chosen with a {@link RequestPolicy}.
+ *
+ * <p>Conditions shared by many transitions can be registered as a {@link Guard} with
+ * registerGuard. A guard is evaluated at most once per call to periodic, no matter how many
+ * transitions use it.
+ *
+ * <p>The runtime state of the state machine can be saved into a {@link StateMachineSnapshot} and
+ * restored later, to fork many runs from the same point without replaying them from the start.
+ *
+ * <p>Timing and transition statistics can be collected and logged through AdvantageKit by calling
+ * enableInstrumentation, see {@link StateMachineInstrumentation}.
+ *
+ * <p>States can be nested by registering them with a parent state. The current state is then
+ * always a state without substates, and it and all of its ancestors are active: their transitions
+ * are evaluated outermost first, so a transition defined once on a parent applies to all of its
+ * substates and takes precedence over theirs, and their periodic methods are called outermost
+ * first. Transitioning to a state with substates enters its first registered substate. A
+ * transition exits the states from the current state up to, but not including, the innermost state
+ * containing both the state that defines the transition and its target, and then enters the states
+ * down to the new current state. Orthogonal regions are supported through {@link ParallelState}.
  *
  * <p>Warning: Currently the state machine does not check for duplicate state names.
  *
@@ -28,19 +78,84 @@ import java.util.Objects;
  */
 public class StateMachine<World> {
 
+    /** How requests made between two updates are combined. */
+    public enum RequestPolicy {
+        /**
+         * Only the most recent request is kept. Each request replaces the pending one, and
+         * requesting null cancels it. This is the default.
+         */
+        LATEST_WINS,
+        /**
+         * Every request is kept in the order it was made. One request is taken per update, and the
+         * remaining requests are left for the following updates. Null requests are ignored.
+         */
+        FIFO
+    }
+
+    /** Receives every change of the current state of a state machine. */
+    @FunctionalInterface
+    public interface TransitionListener<World> {
+        /**
+         * Called after the states left by a change of state have been exited, before the new
+         * states are entered.
+         *
+         * @param from The previous current state, or null if no state had been set
+         * @param to The new current state
+         * @param source The state that defines the transition that was taken, which is from or one
+         *     of its ancestors, or null if the state was set with setState
+         * @param transitionIndex The index of the transition within source, or -1 if the state was
+         *     set with setState
+         */
+        void onTransition(
+                State<World> from, State<World> to, State<World> source, int transitionIndex);
+    }
+
     private State<World> currentState;
     private State<World> requestedState;
+    private final StateRequestMailbox<World> requestMailbox;
     private final Map<String, State<World>> states;
     private final World world;
 
+    private CompiledTransitionTable<World> compiledTransitions = null;
+    private int currentOrdinal = CompiledTransitionTable.NO_TRANSITION;
+    private boolean stateJustEntered = true;
+
+    private final TimeoutScheduler<World> timeouts = new TimeoutScheduler<>();
+    private DoubleSupplier timeSource = Timer::getTimestamp;
+
+    private boolean runToCompletion = false;
+    private int maxStepsPerUpdate = 1;
+    private long updateBudgetNanos = Long.MAX_VALUE;
+    private int lastStepCount = 0;
+    private boolean lastUpdateCapped = false;
+
+    private StateMachineInstrumentation<World> instrumentation = null;
+    private TransitionListener<World> transitionListener = null;
+
+    private final GuardCache guardCache = new GuardCache();
+
+    private Function<World, Object> saveWorld = null;
+    private BiConsumer<World, Object> restoreWorld = null;
+
     /**
      * Constructs a new StateMachine.
      *
      * @param world - the world in which this state machine lives.
      */
     public StateMachine(World world) {
-        this.states = new HashMap<>();
+        this(world, RequestPolicy.LATEST_WINS);
+    }
+
+    /**
+     * Constructs a new StateMachine with the given request policy.
+     *
+     * @param world - the world in which this state machine lives.
+     * @param requestPolicy - how requests made between two updates are combined.
+     */
+    public StateMachine(World world, RequestPolicy requestPolicy) {
+        this.states = new LinkedHashMap<>();
         this.world = world;
+        this.requestMailbox = new StateRequestMailbox<>(requestPolicy);
     }
 
     /**
@@ -55,6 +170,60 @@ public class StateMachine<World> {
         return state;
     }
 
+    /**
+     * Registers a new state to the state machine, nested inside a parent state. The parent must
+     * already be registered, and substates should be registered before the state machine is given
+     * its initial state. The first substate registered for a parent is its initial substate.
+     *
+     * @param state The state to be registered
+     * @param parent The registered state to nest the state inside
+     * @return The registered state
+     * @throws IllegalArgumentException if the parent is not registered to this state machine
+     */
+    public <T extends State<World>> T registerState(T state, State<World> parent) {
+        Objects.requireNonNull(parent, "Parent state cannot be null");
+        if (states.get(parent.getName()) != parent) {
+            throw new IllegalArgumentException(
+                    "Parent state " + parent + " must be registered before its substates");
+        }
+        state.setParent(parent);
+        return registerState(state);
+    }
+
+    /**
+     * Registers a new guard, a named condition that is evaluated at most once per call to periodic
+     * and can be shared by any number of transitions of this state machine.
+     *
+     * @param name The name of the guard, used as its description in transitions
+     * @param condition The condition of the guard
+     * @return The guard
+     */
+    public Guard<World> registerGuard(String name, Predicate<World> condition) {
+        return new Guard<>(guardCache, name, condition);
+    }
+
+    /**
+     * Registers a new guard, a named condition that is evaluated at most once per call to periodic
+     * and can be shared by any number of transitions of this state machine.
+     *
+     * @param name The name of the guard, used as its description in transitions
+     * @param condition The condition of the guard
+     * @return The guard
+     */
+    public Guard<World> registerGuard(String name, BooleanSupplier condition) {
+        Objects.requireNonNull(condition, "Condition cannot be null");
+        return registerGuard(name, world -> condition.getAsBoolean());
+    }
+
+    /**
+     * Gets every state registered to the state machine, including substates, in registration order.
+     *
+     * @return An unmodifiable view of the registered states
+     */
+    public Collection<State<World>> getStates() {
+        return Collections.unmodifiableCollection(states.values());
+    }
+
     /**
      * Gets a state by its name.
      *
@@ -72,15 +241,347 @@ public class StateMachine<World> {
      * called. If the current state is not null, its onExit method will be called before changing
      * states.
      *
+     * <p>If newState has substates, its initial substate is entered as well. Setting the state
+     * behaves like a transition defined on the current state.
+     *
      * @param newState The new state
      */
     public void setState(State<World> newState) {
         Objects.requireNonNull(newState, "Can't set state to null");
-        if (currentState != null) {
-            currentState._onExit(this, world);
+        if (compiledTransitions != null) {
+            currentOrdinal = compiledTransitions.ordinalOf(newState.getInitialLeaf());
+        }
+        switchTo(currentState, newState, CompiledTransitionTable.NO_TRANSITION);
+    }
+
+    /**
+     * Takes a transition of a compiled state machine by ordinal. Behaves like switchTo, but skips
+     * looking up the ordinal of the new state.
+     *
+     * @param sourceOrdinal The ordinal of the state that defines the transition
+     * @param transitionIndex The index of the transition that was taken
+     */
+    private void setCompiledState(int sourceOrdinal, int transitionIndex) {
+        int targetOrdinal = compiledTransitions.targetOf(sourceOrdinal, transitionIndex);
+        currentOrdinal = compiledTransitions.initialLeafOf(targetOrdinal);
+        switchTo(
+                compiledTransitions.stateAt(sourceOrdinal),
+                compiledTransitions.stateAt(targetOrdinal),
+                transitionIndex);
+    }
+
+    /**
+     * Exits the active states that the transition leaves, innermost first, and enters the states
+     * down to the initial substate of the target, outermost first, restarting the timeouts of every
+     * state entered. The timeouts of states that stay active keep running.
+     *
+     * @param source The state that defines the transition, or the current state (possibly null) if
+     *     the state was set directly
+     * @param target The state to transition to
+     * @param transitionIndex The index of the transition that was taken within the source state, or
+     *     NO_TRANSITION if the state was set directly
+     */
+    private void switchTo(State<World> source, State<World> target, int transitionIndex) {
+        State<World> previousState = currentState;
+        State<World> commonAncestor = null;
+        if (previousState != null) {
+            commonAncestor = source.getCommonAncestor(target);
+            for (State<World> state = previousState;
+                    state != commonAncestor;
+                    state = state.getParent()) {
+                state._onExit(this, world);
+                if (commonAncestor != null && state.getTimeoutCount() > 0) {
+                    timeouts.cancelAll(state);
+                }
+            }
+        }
+        if (commonAncestor == null) {
+            timeouts.clear();
         }
+        State<World> newState = target.getInitialLeaf();
+        List<State<World>> path = newState.getPath();
+        int firstEntered = commonAncestor == null ? 0 : commonAncestor.getPath().size();
         currentState = newState;
-        currentState._onEntry(this, world);
+        stateJustEntered = true;
+        for (int level = firstEntered; level < path.size(); level++) {
+            if (path.get(level).getTimeoutCount() > 0) {
+                timeouts.scheduleAll(path.get(level), timeSource.getAsDouble());
+            }
+        }
+        if (instrumentation != null) {
+            instrumentation.recordTransition(
+                    source, newState, transitionIndex, timeSource.getAsDouble());
+        }
+        if (transitionListener != null) {
+            transitionListener.onTransition(
+                    previousState,
+                    newState,
+                    transitionIndex < 0 ? null : source,
+                    transitionIndex);
+        }
+        for (int level = firstEntered; level < path.size(); level++) {
+            path.get(level)._onEntry(this, world);
+        }
+    }
+
+    /**
+     * Exits every active state, innermost first, leaving the state machine without a current
+     * state. Used by {@link ParallelState} to stop its regions.
+     */
+    void exitAll() {
+        for (State<World> state = currentState; state != null; state = state.getParent()) {
+            state._onExit(this, world);
+        }
+        timeouts.clear();
+        currentState = null;
+    }
+
+    /**
+     * Sets the time source used to measure timeouts. The timeouts of the current state are
+     * restarted using the new time source, although timeouts that already expired stay expired.
+     *
+     * <p>This allows timeouts to be driven by simulated time, for example in tests.
+     *
+     * @param timestampSeconds A supplier of the current time in seconds
+     */
+    public void setTimeSource(DoubleSupplier timestampSeconds) {
+        Objects.requireNonNull(timestampSeconds, "Time source cannot be null");
+        this.timeSource = timestampSeconds;
+        timeouts.clear();
+        if (currentState != null) {
+            for (State<World> state : currentState.getPath()) {
+                if (state.getTimeoutCount() > 0) {
+                    timeouts.scheduleAll(state, timeSource.getAsDouble());
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the time source used to measure timeouts.
+     *
+     * @return A supplier of the current time in seconds
+     */
+    public DoubleSupplier getTimeSource() {
+        return timeSource;
+    }
+
+    /**
+     * Compiles the state machine. Every registered state's transitions are frozen into flat arrays
+     * indexed by state ordinal, and the conditions combined with andWhen are evaluated one by one
+     * instead of through chained predicates. After compiling, updateStates and periodic do not
+     * allocate any memory themselves.
+     *
+     * <p>This must be called after all states are registered and all transitions are defined.
+     * States registered or transitions defined afterwards are ignored until compile is called
+     * again. Transition order and behavior are the same as in an uncompiled state machine.
+     *
+     * @throws IllegalStateException if a transition leads to a state that is not registered
+     */
+    public void compile() {
+        compiledTransitions = new CompiledTransitionTable<>(states.values());
+        if (currentState != null) {
+            currentOrdinal = compiledTransitions.ordinalOf(currentState);
+        }
+        stateJustEntered = true;
+    }
+
+    /**
+     * Checks whether the state machine has been compiled.
+     *
+     * @return true if compile has been called, false otherwise
+     */
+    public boolean isCompiled() {
+        return compiledTransitions != null;
+    }
+
+    /**
+     * Enables instrumentation, which measures the time spent in each state, how often each
+     * transition is taken and how long each state's periodic method takes, and logs them through
+     * AdvantageKit under the given key at the end of every call to periodic. Any previously
+     * collected statistics are discarded.
+     *
+     * <p>This should be called after all states are registered and all transitions are defined.
+     * States registered or transitions defined afterwards are not tracked until
+     * enableInstrumentation is called again.
+     *
+     * @param logKey The key to log statistics under, for example "StateMachines/Shooter"
+     * @param historyLength The number of recent transitions to keep
+     * @return The instrumentation, which can also be queried directly
+     */
+    public StateMachineInstrumentation<World> enableInstrumentation(
+            String logKey, int historyLength) {
+        instrumentation =
+                new StateMachineInstrumentation<>(this, states.values(), logKey, historyLength);
+        instrumentation.start(currentState, timeSource.getAsDouble());
+        return instrumentation;
+    }
+
+    /** Disables instrumentation. This is the default. */
+    public void disableInstrumentation() {
+        instrumentation = null;
+    }
+
+    /**
+     * Gets the instrumentation of the state machine.
+     *
+     * @return The instrumentation, or null if instrumentation is not enabled
+     */
+    public StateMachineInstrumentation<World> getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Sets the hooks used to save and restore the world along with snapshots. The save hook should
+     * return a copy of every part of the world that the states and transitions depend on, including
+     * the simulated time if the time source reads it from the world, and the restore hook should
+     * copy it back into the world. Without hooks, snapshots do not cover the world.
+     *
+     * @param save Returns a copy of the world, called when a snapshot is saved
+     * @param restore Copies a saved copy back into the world, called when a snapshot is restored
+     */
+    @SuppressWarnings("unchecked")
+    public <S> void setWorldSnapshotHooks(Function<World, S> save, BiConsumer<World, S> restore) {
+        Objects.requireNonNull(save, "Save hook cannot be null");
+        Objects.requireNonNull(restore, "Restore hook cannot be null");
+        this.saveWorld = save::apply;
+        this.restoreWorld = (world, saved) -> restore.accept(world, (S) saved);
+    }
+
+    /**
+     * Creates an empty snapshot of this state machine, sized for the states registered so far.
+     * This should be called after all states are registered and all transitions are defined.
+     *
+     * @return A snapshot that can be passed to saveSnapshot and restoreSnapshot
+     */
+    public StateMachineSnapshot<World> createSnapshot() {
+        List<StateMachineSnapshot<World>> regionSnapshots = new ArrayList<>();
+        for (State<World> state : states.values()) {
+            if (state instanceof ParallelState<World> parallelState) {
+                for (int i = 0; i < parallelState.getRegionCount(); i++) {
+                    regionSnapshots.add(parallelState.getRegion(i).createSnapshot());
+                }
+            }
+        }
+        return new StateMachineSnapshot<>(this, List.copyOf(states.values()), regionSnapshots);
+    }
+
+    /**
+     * Saves the runtime state of this state machine, its regions and, if hooks are set, its world
+     * into a snapshot, replacing anything saved in it before. Apart from the world hooks, this does
+     * not allocate with the default LATEST_WINS policy. With the FIFO policy, copying the pending
+     * requests iterates a concurrent queue, which allocates an iterator.
+     *
+     * <p>This must be called from the same thread that calls periodic, between updates.
+     *
+     * @param snapshot A snapshot created by this state machine
+     * @throws IllegalArgumentException if the snapshot was created by another state machine
+     */
+    public void saveSnapshot(StateMachineSnapshot<World> snapshot) {
+        checkSnapshotOwner(snapshot);
+        snapshot.currentState = currentState;
+        snapshot.stateJustEntered = stateJustEntered;
+        for (int i = 0; i < snapshot.states.size(); i++) {
+            State<World> state = snapshot.states.get(i);
+            snapshot.finished[i] = state.finished;
+            if (snapshot.timeoutsExpired[i].length != state.getTimeoutCount()) {
+                snapshot.timeoutsExpired[i] = new boolean[state.getTimeoutCount()];
+            }
+            state.saveTimeoutsExpired(snapshot.timeoutsExpired[i]);
+        }
+        snapshot.timeouts.copyFrom(timeouts);
+        requestMailbox.copyPendingTo(snapshot.pendingRequests);
+        snapshot.compiledTransitions = compiledTransitions;
+        if (compiledTransitions != null) {
+            if (snapshot.dirtyEvents.length != compiledTransitions.dirtyWords()) {
+                snapshot.dirtyEvents = new long[compiledTransitions.dirtyWords()];
+            }
+            compiledTransitions.saveDirty(snapshot.dirtyEvents);
+        }
+        snapshot.worldState = saveWorld == null ? null : saveWorld.apply(world);
+        for (int i = 0; i < snapshot.regions.size(); i++) {
+            StateMachineSnapshot<World> region = snapshot.regions.get(i);
+            region.stateMachine.saveSnapshot(region);
+        }
+        snapshot.saved = true;
+    }
+
+    /**
+     * Restores the runtime state of this state machine, its regions and, if hooks are set, its
+     * world from a snapshot. The snapshot is left unchanged, so it can be restored any number of
+     * times. No onEntry or onExit methods are called. Apart from the world hooks, this does not
+     * allocate.
+     *
+     * <p>If instrumentation is enabled, it keeps its statistics and resumes measuring time in the
+     * restored state.
+     *
+     * <p>This must be called from the same thread that calls periodic, between updates.
+     *
+     * @param snapshot A snapshot created by this state machine and saved at least once
+     * @throws IllegalArgumentException if the snapshot was created by another state machine or has
+     *     not been saved
+     * @throws IllegalStateException if timeouts were defined since the snapshot was saved
+     */
+    public void restoreSnapshot(StateMachineSnapshot<World> snapshot) {
+        checkSnapshotOwner(snapshot);
+        if (!snapshot.saved) {
+            throw new IllegalArgumentException("Can't restore a snapshot that was never saved");
+        }
+        if (restoreWorld != null && snapshot.worldState != null) {
+            restoreWorld.accept(world, snapshot.worldState);
+        }
+        for (int i = 0; i < snapshot.states.size(); i++) {
+            State<World> state = snapshot.states.get(i);
+            if (snapshot.timeoutsExpired[i].length != state.getTimeoutCount()) {
+                throw new IllegalStateException(
+                        "Timeouts of " + state + " were defined after the snapshot was saved");
+            }
+            state.finished = snapshot.finished[i];
+            state.restoreTimeoutsExpired(snapshot.timeoutsExpired[i]);
+        }
+        currentState = snapshot.currentState;
+        stateJustEntered = snapshot.stateJustEntered;
+        timeouts.copyFrom(snapshot.timeouts);
+        requestMailbox.replacePending(snapshot.pendingRequests);
+        requestedState = null;
+        guardCache.reset();
+        if (compiledTransitions != null) {
+            currentOrdinal =
+                    currentState == null
+                            ? CompiledTransitionTable.NO_TRANSITION
+                            : compiledTransitions.ordinalOf(currentState);
+            if (snapshot.compiledTransitions == compiledTransitions) {
+                compiledTransitions.restoreDirty(snapshot.dirtyEvents);
+            } else {
+                // Compiled since the snapshot was saved, so re-evaluate every transition
+                compiledTransitions.clearDirty();
+                stateJustEntered = true;
+            }
+        }
+        for (int i = 0; i < snapshot.regions.size(); i++) {
+            StateMachineSnapshot<World> region = snapshot.regions.get(i);
+            region.stateMachine.restoreSnapshot(region);
+        }
+        if (instrumentation != null) {
+            instrumentation.start(currentState, timeSource.getAsDouble());
+        }
+    }
+
+    private void checkSnapshotOwner(StateMachineSnapshot<World> snapshot) {
+        Objects.requireNonNull(snapshot, "Snapshot cannot be null");
+        if (snapshot.stateMachine != this) {
+            throw new IllegalArgumentException("Snapshot was created by another state machine");
+        }
+    }
+
+    /**
+     * Sets a listener that is called on every change of the current state, whether caused by a
+     * transition or by setState. Only one listener can be set at a time.
+     *
+     * @param listener The listener, or null to remove the current listener
+     */
+    public void setTransitionListener(TransitionListener<World> listener) {
+        this.transitionListener = listener;
     }
 
     /**
@@ -92,12 +593,83 @@ public class StateMachine<World> {
         return currentState;
     }
 
+    /**
+     * Enables run-to-completion mode. In this mode, each update keeps taking transitions, calling
+     * onExit and onEntry for every state passed through, until no transition condition of the
+     * current state is true. The periodic method is only called for the state the machine settles
+     * in, on the next call to periodic.
+     *
+     * <p>An update stops early once maxSteps transitions have been taken or once it has run for
+     * longer than wallTimeBudget, whichever comes first. The budget is only checked after each
+     * transition, so at least one transition is always taken if one is available. Whether the last
+     * update stopped early can be checked with wasLastUpdateCapped.
+     *
+     * <p>A requested state is only considered for the first transition of an update.
+     *
+     * @param maxSteps The maximum number of transitions to take in a single update
+     * @param wallTimeBudget The maximum amount of real time to spend taking transitions in a single
+     *     update
+     */
+    public void enableRunToCompletion(int maxSteps, Time wallTimeBudget) {
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("maxSteps must be at least 1, got " + maxSteps);
+        }
+        Objects.requireNonNull(wallTimeBudget, "Wall time budget cannot be null");
+        this.runToCompletion = true;
+        this.maxStepsPerUpdate = maxSteps;
+        this.updateBudgetNanos = (long) (wallTimeBudget.in(Seconds) * 1e9);
+    }
+
+    /**
+     * Disables run-to-completion mode, so that at most one transition is taken per update. This is
+     * the default.
+     */
+    public void disableRunToCompletion() {
+        this.runToCompletion = false;
+        this.maxStepsPerUpdate = 1;
+        this.updateBudgetNanos = Long.MAX_VALUE;
+    }
+
+    /**
+     * Checks whether run-to-completion mode is enabled.
+     *
+     * @return true if run-to-completion mode is enabled, false otherwise
+     */
+    public boolean isRunToCompletion() {
+        return runToCompletion;
+    }
+
+    /**
+     * Gets the number of transitions taken during the last update.
+     *
+     * @return The number of transitions taken, 0 if the state did not change
+     */
+    public int getLastStepCount() {
+        return lastStepCount;
+    }
+
+    /**
+     * Checks whether the last update in run-to-completion mode stopped because it reached the
+     * maximum number of steps or ran out of its wall-time budget while another transition was still
+     * available, rather than because the state machine settled. This is always false when
+     * run-to-completion mode is disabled.
+     *
+     * @return true if the last update was cut short, false otherwise
+     */
+    public boolean wasLastUpdateCapped() {
+        return lastUpdateCapped;
+    }
+
     /**
      * Updates the state machine, transitioning to the next state if conditions are met. If the next
      * state is the same as the current state, onExit and onEntry will still be called. Raises an
      * exception if currentState is null.
      *
-     * <p>After processing transitions, the requested state is cleared.
+     * <p>In run-to-completion mode, transitions are taken until the state machine settles or the
+     * update is capped, see enableRunToCompletion.
+     *
+     * <p>Before processing transitions, the next request is taken from the request mailbox. After
+     * processing transitions, the requested state is cleared whether or not it was honored.
      */
     protected void updateStates() {
         Objects.requireNonNull(
@@ -105,16 +677,109 @@ public class StateMachine<World> {
                 "Can't call updateStates while the currentState is null, this is either a bug in"
                     + " the State Machine implementation or You forgot to give the state machine an"
                     + " initial state using setState");
-        currentState.getNextState(world).ifPresent(this::setState);
+        this.requestedState = requestMailbox.take();
+        lastStepCount = 0;
+        lastUpdateCapped = false;
+        if (!runToCompletion) {
+            if (takeTransition()) {
+                lastStepCount = 1;
+            }
+        } else {
+            long startNanos = System.nanoTime();
+            while (takeTransition()) {
+                lastStepCount++;
+                // A request is honored at most once per update
+                this.requestedState = null;
+                if (lastStepCount >= maxStepsPerUpdate
+                        || System.nanoTime() - startNanos >= updateBudgetNanos) {
+                    // Only capped if the cap actually stopped another transition
+                    lastUpdateCapped = hasPendingTransition();
+                    break;
+                }
+            }
+        }
+        if (compiledTransitions != null) {
+            compiledTransitions.clearDirty();
+        }
         // Clear requested state after processing
         this.requestedState = null;
     }
 
     /**
-     * Calls the periodic function of the current state. Raises an exception if currentState is
-     * null.
+     * Evaluates the transitions of the current state and its ancestors, outermost first, and takes
+     * the first one whose condition is true.
      *
-     * <p>Note: This method also calls updateStates after executing the periodic function.
+     * @return true if a transition was taken, false otherwise
+     */
+    private boolean takeTransition() {
+        if (!timeouts.isEmpty()) {
+            timeouts.expire(timeSource.getAsDouble());
+        }
+        if (compiledTransitions != null) {
+            int[] activeOrdinals = compiledTransitions.pathOf(currentOrdinal);
+            boolean justEntered = stateJustEntered;
+            stateJustEntered = false;
+            for (int level = 0; level < activeOrdinals.length; level++) {
+                int transitionIndex =
+                        compiledTransitions.nextTransitionIndex(
+                                activeOrdinals[level], world, justEntered);
+                if (transitionIndex != CompiledTransitionTable.NO_TRANSITION) {
+                    setCompiledState(activeOrdinals[level], transitionIndex);
+                    return true;
+                }
+            }
+            return false;
+        }
+        List<State<World>> activeStates = currentState.getPath();
+        for (int level = 0; level < activeStates.size(); level++) {
+            State<World> source = activeStates.get(level);
+            int transitionIndex = source.getNextTransitionIndex(world);
+            if (transitionIndex >= 0) {
+                State<World> target = source.getTransitions().get(transitionIndex).toState;
+                switchTo(source, target, transitionIndex);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether takeTransition would take a transition, without taking it.
+     *
+     * @return true if a transition of the current state or its ancestors is available
+     */
+    private boolean hasPendingTransition() {
+        if (!timeouts.isEmpty()) {
+            timeouts.expire(timeSource.getAsDouble());
+        }
+        if (compiledTransitions != null) {
+            int[] activeOrdinals = compiledTransitions.pathOf(currentOrdinal);
+            for (int level = 0; level < activeOrdinals.length; level++) {
+                if (compiledTransitions.nextTransitionIndex(
+                                activeOrdinals[level], world, stateJustEntered)
+                        != CompiledTransitionTable.NO_TRANSITION) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        List<State<World>> activeStates = currentState.getPath();
+        for (int level = 0; level < activeStates.size(); level++) {
+            if (activeStates.get(level).getNextTransitionIndex(world) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Calls the periodic function of the current state, after those of its ancestors. Raises an
+     * exception if currentState is null.
+     *
+     * <p>Note: This method also calls updateStates after executing the periodic function. If
+     * instrumentation is enabled, statistics are logged after updateStates.
+     *
+     * <p>The cached results of every guard are cleared before the periodic function is executed.
      */
     public void periodic() {
         Objects.requireNonNull(
@@ -122,32 +787,103 @@ public class StateMachine<World> {
                 "Can't call periodic while the currentState is null, this is either a bug in the"
                         + " State Machine implementation or You forgot to give the state machine an"
                         + " initial state using setState");
-        currentState._periodic(this, world);
+        guardCache.reset();
+        State<World> periodicState = currentState;
+        List<State<World>> activeStates = periodicState.getPath();
+        for (int level = 0; level < activeStates.size(); level++) {
+            if (currentState != periodicState) {
+                // A periodic method changed the state, so the remaining states were exited
+                break;
+            }
+            State<World> state = activeStates.get(level);
+            if (instrumentation == null) {
+                state._periodic(this, world);
+            } else {
+                long startNanos = System.nanoTime();
+                state._periodic(this, world);
+                instrumentation.recordPeriodic(state, System.nanoTime() - startNanos);
+            }
+        }
         updateStates();
+        if (instrumentation != null) {
+            instrumentation.log(timeSource.getAsDouble());
+        }
+    }
+
+    /**
+     * Updates the transitions of the state machine without running any periodic methods. Used by
+     * {@link ParallelState} to keep updating a region whose current state has finished.
+     */
+    void updateWithoutPeriodic() {
+        guardCache.reset();
+        updateStates();
+        if (instrumentation != null) {
+            instrumentation.log(timeSource.getAsDouble());
+        }
     }
 
     /**
-     * Requests a state change to the specified state.
+     * Requests a state change to the specified state. This may be called from any thread and never
+     * blocks.
      *
-     * <p>If multiple states are requested before the next updateStates call, the last requested
-     * state will take precedence and replace the current requested state. And if the requested
-     * state is null, no state change will occur.
+     * <p>With the default LATEST_WINS policy, if multiple states are requested before the next
+     * updateStates call, the last requested state will take precedence and replace the current
+     * requested state. And if the requested state is null, no state change will occur. With the
+     * FIFO policy, requests are considered one per updateStates call in the order they were made.
      *
      * <p>If the requested state is the same as the current state, onExit and onEntry will still be
      * called during the next updateStates call if the request is honored.
      *
-     * <p>The requested state will be cleared after the next updateStates call.
+     * <p>The requested state will be cleared after the updateStates call that considers it.
      *
      * @param state The requested state
      */
     public void requestState(State<World> state) {
-        requestedState = state;
+        requestMailbox.post(state);
+    }
+
+    /**
+     * Gets the policy used to combine requests made between two updates.
+     *
+     * @return The request policy
+     */
+    public RequestPolicy getRequestPolicy() {
+        return requestMailbox.getPolicy();
+    }
+
+    /** Discards all requests that have not been taken by an update yet. */
+    public void clearRequests() {
+        requestMailbox.clear();
+    }
+
+    /**
+     * Fires an event, marking every transition that declared a dependency on it (see {@link
+     * State.TransitionConditionBuilder#dependsOn(Object...)}) for re-evaluation on the next update.
+     * Events are cleared after every update, whether or not a transition was taken.
+     *
+     * <p>Events only have an effect once the state machine is compiled; an uncompiled state machine
+     * evaluates every transition on every update. Firing an event that no transition depends on
+     * does nothing.
+     *
+     * <p>This must be called from the same thread that calls periodic.
+     *
+     * @param event The event that occurred
+     */
+    public void fire(Object event) {
+        Objects.requireNonNull(event, "Event cannot be null");
+        if (compiledTransitions != null) {
+            compiledTransitions.markDirty(event);
+        }
     }
 
     // NOTE: Consider switching from a String to some other type for graph format
     /**
      * Write a state machine configuration in graphviz format with custom graph settings
      *
+     * <p>States with substates and parallel states are drawn as clusters containing their
+     * substates or regions. Transitions from or to such a state are drawn from or to the state
+     * entered first inside the cluster, clipped at the cluster's border.
+     *
      * @param pw The PrintWriter to write to
      * @param graphFormat The graph format settings
      */
@@ -158,30 +894,131 @@ public class StateMachine<World> {
         pw.println();
         pw.println(graphFormat);
         pw.println();
+        if (hasGraphvizClusters()) {
+            // Needed for edges to be clipped at cluster borders
+            pw.println("  compound=true;");
+            pw.println();
+        }
         pw.println("  // States");
         pw.println();
-        for (var state : states.entrySet()) {
-            var stateName = state.getKey();
-            pw.printf(
-                    "  %s %s;%n",
-                    stateName, currentState == state.getValue() ? "[shape=doublecircle]" : "");
+        for (var state : states.values()) {
+            if (state.getParent() == null) {
+                writeGraphvizState(pw, state, "  ");
+            }
         }
         pw.println();
         pw.println("  // Transitions");
         pw.println();
+        writeGraphvizTransitions(pw);
+        pw.println("}");
+    }
+
+    private boolean hasGraphvizClusters() {
+        for (var state : states.values()) {
+            if (isGraphvizCluster(state)) {
+                return true;
+            }
+            if (state instanceof ParallelState<World> parallelState) {
+                for (int i = 0; i < parallelState.getRegionCount(); i++) {
+                    if (parallelState.getRegion(i).hasGraphvizClusters()) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isGraphvizCluster(State<?> state) {
+        return state.hasSubstates()
+                || (state instanceof ParallelState<?> parallelState
+                        && parallelState.getRegionCount() > 0);
+    }
+
+    private static String graphvizClusterName(State<?> state) {
+        return "cluster_" + state.getName();
+    }
+
+    /**
+     * Gets the node that transitions from or to a state are drawn between.
+     *
+     * @param state The state
+     * @return The name of the state, or of the state entered first inside it if it is a cluster
+     */
+    private static <W> String graphvizNode(State<W> state) {
+        if (state.hasSubstates()) {
+            return graphvizNode(state.getInitialLeaf());
+        }
+        if (state instanceof ParallelState<W> parallelState && parallelState.getRegionCount() > 0) {
+            return graphvizNode(parallelState.getInitialState(0));
+        }
+        return state.getName();
+    }
+
+    private void writeGraphvizState(PrintWriter pw, State<World> state, String indent) {
+        if (state.hasSubstates()) {
+            pw.printf("%ssubgraph %s {%n", indent, graphvizClusterName(state));
+            pw.printf("%s  label=\"%s\";%n", indent, state.getName());
+            for (var substate : state.getSubstates()) {
+                writeGraphvizState(pw, substate, indent + "  ");
+            }
+            pw.printf("%s}%n", indent);
+        } else if (state instanceof ParallelState<World> parallelState
+                && parallelState.getRegionCount() > 0) {
+            pw.printf("%ssubgraph %s {%n", indent, graphvizClusterName(state));
+            pw.printf("%s  label=\"%s\";%n", indent, state.getName());
+            for (int i = 0; i < parallelState.getRegionCount(); i++) {
+                pw.printf(
+                        "%s  subgraph %s_%s {%n",
+                        indent,
+                        graphvizClusterName(state),
+                        parallelState.getRegionName(i));
+                pw.printf("%s    label=\"%s\";%n", indent, parallelState.getRegionName(i));
+                pw.printf("%s    style=dashed;%n", indent);
+                StateMachine<World> region = parallelState.getRegion(i);
+                for (var regionState : region.states.values()) {
+                    if (regionState.getParent() == null) {
+                        region.writeGraphvizState(pw, regionState, indent + "    ");
+                    }
+                }
+                pw.printf("%s  }%n", indent);
+            }
+            pw.printf("%s}%n", indent);
+        } else {
+            pw.printf(
+                    "%s%s %s;%n",
+                    indent, state.getName(), currentState == state ? "[shape=doublecircle]" : "");
+        }
+    }
+
+    private void writeGraphvizTransitions(PrintWriter pw) {
         for (var state : states.values()) {
-            var stateName = state.name;
             var transitions = state.getTransitions();
             for (var transition : transitions) {
                 var toState = transition.toState;
-                var toStateName = toState.name;
+                String clipping = "";
+                if (isGraphvizCluster(state) && state != toState && !state.contains(toState)) {
+                    clipping += ", ltail=" + graphvizClusterName(state);
+                }
+                if (isGraphvizCluster(toState) && state != toState && !toState.contains(state)) {
+                    clipping += ", lhead=" + graphvizClusterName(toState);
+                }
                 pw.printf(
-                        "  %s -> %s [label=\"%s\"];%n",
-                        stateName, toStateName, transition.description);
+                        "  %s -> %s [label=\"%s\"%s];%n",
+                        graphvizNode(state),
+                        graphvizNode(toState),
+                        transition.description,
+                        clipping);
             }
             pw.println();
         }
-        pw.println("}");
+        for (var state : states.values()) {
+            if (state instanceof ParallelState<World> parallelState) {
+                for (int i = 0; i < parallelState.getRegionCount(); i++) {
+                    parallelState.getRegion(i).writeGraphvizTransitions(pw);
+                }
+            }
+        }
     }
 
     /**
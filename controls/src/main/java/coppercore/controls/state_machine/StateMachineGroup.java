@@ -0,0 +1,196 @@
+package coppercore.controls.state_machine;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs many independent state machines together, one tick at a time.
+ *
+ * <p>Every call to periodic calls periodic on every state machine in the group, and only returns
+ * once all of them are done, so each tick acts as a barrier. In PARALLEL mode the state machines
+ * are split across the threads of a fork-join pool; in SEQUENTIAL mode they are run one after
+ * another on the calling thread, which is what should be used on the robot.
+ *
+ * <p>The state machines of a group must not share mutable state, since they may run at the same
+ * time. Anything that affects another state machine, such as requesting a state of a different
+ * state machine or writing to shared data, should be passed to defer instead. Deferred actions run
+ * on the calling thread after every state machine has finished its tick, ordered by the index of
+ * the state machine that deferred them and then by the order they were deferred in. This makes
+ * their order the same in both modes, no matter how the threads were scheduled.
+ */
+public class StateMachineGroup {
+
+    /** How the state machines of a group are run. */
+    public enum ExecutionMode {
+        /** Run state machines one after another on the thread that calls periodic. */
+        SEQUENTIAL,
+        /** Run state machines in parallel on a fork-join pool. */
+        PARALLEL
+    }
+
+    private final ExecutionMode mode;
+    private final ForkJoinPool pool;
+    private final int machinesPerTask;
+
+    private final List<StateMachine<?>> stateMachines = new ArrayList<>();
+    private final Map<StateMachine<?>, Integer> indices = new IdentityHashMap<>();
+    private final List<List<Runnable>> deferredActions = new ArrayList<>();
+
+    /**
+     * Constructs a new, empty group.
+     *
+     * @param mode How the state machines of the group are run. PARALLEL uses the common fork-join
+     *     pool.
+     */
+    public StateMachineGroup(ExecutionMode mode) {
+        this(mode, mode == ExecutionMode.PARALLEL ? ForkJoinPool.commonPool() : null, 1);
+    }
+
+    /**
+     * Constructs a new, empty group that runs its state machines in parallel on the given pool.
+     *
+     * @param pool The fork-join pool to run state machines on
+     * @param machinesPerTask How many state machines a single fork-join task runs. Larger values
+     *     reduce overhead when each state machine does very little work per tick.
+     */
+    public StateMachineGroup(ForkJoinPool pool, int machinesPerTask) {
+        this(
+                ExecutionMode.PARALLEL,
+                Objects.requireNonNull(pool, "Pool cannot be null"),
+                machinesPerTask);
+    }
+
+    private StateMachineGroup(ExecutionMode mode, ForkJoinPool pool, int machinesPerTask) {
+        if (machinesPerTask < 1) {
+            throw new IllegalArgumentException(
+                    "machinesPerTask must be at least 1, got " + machinesPerTask);
+        }
+        this.mode = Objects.requireNonNull(mode, "Execution mode cannot be null");
+        this.pool = pool;
+        this.machinesPerTask = machinesPerTask;
+    }
+
+    /**
+     * Adds a state machine to the group. State machines must not be added while periodic is
+     * running.
+     *
+     * @param stateMachine The state machine to add
+     * @return The index of the state machine within the group, which orders its deferred actions
+     * @throws IllegalArgumentException if the state machine is already part of the group
+     */
+    public int add(StateMachine<?> stateMachine) {
+        Objects.requireNonNull(stateMachine, "State machine cannot be null");
+        if (indices.containsKey(stateMachine)) {
+            throw new IllegalArgumentException("State machine was already added to this group");
+        }
+        int index = stateMachines.size();
+        stateMachines.add(stateMachine);
+        indices.put(stateMachine, index);
+        deferredActions.add(new ArrayList<>());
+        return index;
+    }
+
+    /**
+     * Gets the number of state machines in the group.
+     *
+     * @return The number of state machines
+     */
+    public int size() {
+        return stateMachines.size();
+    }
+
+    /**
+     * Gets the state machine with the given index.
+     *
+     * @param index The index returned by add
+     * @return The state machine
+     */
+    public StateMachine<?> get(int index) {
+        return stateMachines.get(index);
+    }
+
+    /**
+     * Gets how the state machines of the group are run.
+     *
+     * @return The execution mode
+     */
+    public ExecutionMode getExecutionMode() {
+        return mode;
+    }
+
+    /**
+     * Defers an action that affects something outside of the given state machine until every state
+     * machine in the group has finished the current tick. This may be called from a state of the
+     * given state machine while the group is running.
+     *
+     * @param source The state machine that the action comes from
+     * @param action The action to run after the tick
+     * @throws IllegalArgumentException if the state machine is not part of the group
+     */
+    public void defer(StateMachine<?> source, Runnable action) {
+        Objects.requireNonNull(action, "Action cannot be null");
+        Integer index = indices.get(source);
+        if (index == null) {
+            throw new IllegalArgumentException("State machine is not part of this group");
+        }
+        // Each list is only written by the thread running its state machine
+        deferredActions.get(index).add(action);
+    }
+
+    /**
+     * Calls periodic on every state machine in the group, waits for all of them to finish, then
+     * runs the actions they deferred.
+     */
+    public void periodic() {
+        if (mode == ExecutionMode.PARALLEL && stateMachines.size() > machinesPerTask) {
+            pool.invoke(new TickTask(0, stateMachines.size()));
+        } else {
+            tickRange(0, stateMachines.size());
+        }
+        runDeferredActions();
+    }
+
+    private void tickRange(int from, int to) {
+        for (int i = from; i < to; i++) {
+            stateMachines.get(i).periodic();
+        }
+    }
+
+    private void runDeferredActions() {
+        for (int i = 0; i < deferredActions.size(); i++) {
+            List<Runnable> actions = deferredActions.get(i);
+            for (int a = 0; a < actions.size(); a++) {
+                actions.get(a).run();
+            }
+            actions.clear();
+        }
+    }
+
+    /** Splits a range of state machines in half until it is small enough to run directly. */
+    private class TickTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        TickTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= machinesPerTask) {
+                tickRange(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new TickTask(from, middle), new TickTask(middle, to));
+        }
+    }
+}
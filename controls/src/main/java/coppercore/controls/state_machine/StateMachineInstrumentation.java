@@ -0,0 +1,443 @@
+package coppercore.controls.state_machine;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Opt-in timing and transition statistics for a {@link StateMachine}, enabled with
+ * StateMachine.enableInstrumentation.
+ *
+ * <p>For every state it keeps the total time spent in the state, the number of times the state was
+ * entered, how often each of its transitions was taken, and a histogram of how long its periodic
+ * method took. It also keeps a ring buffer of the most recent transitions with their timestamps and
+ * descriptions.
+ *
+ * <p>Time in state is measured with the state machine's time source, so it follows simulated time
+ * in tests. Periodic durations are always measured in real time with System.nanoTime.
+ *
+ * <p>Everything is exported through the AdvantageKit Logger under the log key given when the
+ * instrumentation was enabled, once per call to the state machine's periodic method:
+ *
+ * <ul>
+ *   <li>CurrentState, StateNames, TimeInStateSeconds, EntryCounts, PeriodicMaxSeconds and
+ *       PeriodicTotalSeconds, with one entry per state in registration order
+ *   <li>PeriodicHistogramBoundsMicros and PeriodicHistogram/[state], with one count per bucket
+ *   <li>TransitionDescriptions/[state] and TransitionCounts/[state], with one entry per transition
+ *       of the state in the order they were defined
+ *   <li>RecentTransitions/Timestamps, From, To and Descriptions, oldest first
+ * </ul>
+ *
+ * <p>All keys and arrays are allocated when the instrumentation is enabled, so recording and
+ * exporting do not allocate. Like compile, the instrumentation is a snapshot: states registered or
+ * transitions defined afterwards are not tracked until instrumentation is enabled again.
+ *
+ * <p>The AdvantageKit Logger is not thread-safe, so state machines run by a PARALLEL {@link
+ * StateMachineGroup} should not be instrumented.
+ *
+ * @param <World> The type of the world in which the state machine lives.
+ */
+public final class StateMachineInstrumentation<World> {
+
+    /** Description recorded for state changes made with setState rather than a transition. */
+    public static final String SET_STATE_DESCRIPTION = "setState";
+
+    /**
+     * Upper bounds of the periodic duration histogram buckets, in microseconds. The last bucket
+     * counts every duration above the last bound.
+     */
+    private static final double[] BUCKET_BOUNDS_MICROS = {
+        10, 50, 100, 250, 500, 1000, 2500, 5000, 10000
+    };
+
+    private static final int BUCKET_COUNT = BUCKET_BOUNDS_MICROS.length + 1;
+
+    private final StateMachine<World> stateMachine;
+    private final Map<State<World>, Integer> stateIndices = new IdentityHashMap<>();
+    private final String[] stateNames;
+
+    private final double[] timeInStateSeconds;
+    private final long[] entryCounts;
+    private final long[][] periodicHistograms;
+    private final double[] periodicMaxSeconds;
+    private final double[] periodicTotalSeconds;
+    private final long[][] transitionCounts;
+    private final String[][] transitionDescriptions;
+
+    private int currentIndex = -1;
+    private double currentEnteredAt = 0.0;
+
+    private final double[] historyTimestamps;
+    private final String[] historyFrom;
+    private final String[] historyTo;
+    private final String[] historyDescriptions;
+    private int historyNext = 0;
+    private int historySize = 0;
+
+    private final String currentStateKey;
+    private final String stateNamesKey;
+    private final String timeInStateKey;
+    private final String entryCountsKey;
+    private final String periodicMaxKey;
+    private final String periodicTotalKey;
+    private final String histogramBoundsKey;
+    private final String[] histogramKeys;
+    private final String[] transitionDescriptionKeys;
+    private final String[] transitionCountKeys;
+    private final String historyTimestampsKey;
+    private final String historyFromKey;
+    private final String historyToKey;
+    private final String historyDescriptionsKey;
+
+    private final double[] exportTimeInState;
+    private final double[] exportHistoryTimestamps;
+    private final String[] exportHistoryFrom;
+    private final String[] exportHistoryTo;
+    private final String[] exportHistoryDescriptions;
+
+    /**
+     * Creates instrumentation for the given states. Used by StateMachine.enableInstrumentation.
+     *
+     * @param stateMachine The state machine being instrumented
+     * @param states The states registered to the state machine, in registration order
+     * @param logKey The key under which statistics are logged
+     * @param historyLength The number of recent transitions to keep
+     */
+    StateMachineInstrumentation(
+            StateMachine<World> stateMachine,
+            Collection<State<World>> states,
+            String logKey,
+            int historyLength) {
+        if (logKey == null || logKey.isEmpty()) {
+            throw new IllegalArgumentException("Log key cannot be null or empty");
+        }
+        if (historyLength < 1) {
+            throw new IllegalArgumentException(
+                    "historyLength must be at least 1, got " + historyLength);
+        }
+        this.stateMachine = stateMachine;
+
+        int stateCount = states.size();
+        stateNames = new String[stateCount];
+        timeInStateSeconds = new double[stateCount];
+        entryCounts = new long[stateCount];
+        periodicHistograms = new long[stateCount][BUCKET_COUNT];
+        periodicMaxSeconds = new double[stateCount];
+        periodicTotalSeconds = new double[stateCount];
+        transitionCounts = new long[stateCount][];
+        transitionDescriptions = new String[stateCount][];
+        histogramKeys = new String[stateCount];
+        transitionDescriptionKeys = new String[stateCount];
+        transitionCountKeys = new String[stateCount];
+
+        int index = 0;
+        for (State<World> state : states) {
+            stateIndices.put(state, index);
+            stateNames[index] = state.getName();
+            List<State<World>.Transition> transitions = state.getTransitions();
+            transitionCounts[index] = new long[transitions.size()];
+            transitionDescriptions[index] = new String[transitions.size()];
+            for (int t = 0; t < transitions.size(); t++) {
+                transitionDescriptions[index][t] = transitions.get(t).description;
+            }
+            histogramKeys[index] = logKey + "/PeriodicHistogram/" + state.getName();
+            transitionDescriptionKeys[index] =
+                    logKey + "/TransitionDescriptions/" + state.getName();
+            transitionCountKeys[index] = logKey + "/TransitionCounts/" + state.getName();
+            index++;
+        }
+
+        historyTimestamps = new double[historyLength];
+        historyFrom = new String[historyLength];
+        historyTo = new String[historyLength];
+        historyDescriptions = new String[historyLength];
+
+        currentStateKey = logKey + "/CurrentState";
+        stateNamesKey = logKey + "/StateNames";
+        timeInStateKey = logKey + "/TimeInStateSeconds";
+        entryCountsKey = logKey + "/EntryCounts";
+        periodicMaxKey = logKey + "/PeriodicMaxSeconds";
+        periodicTotalKey = logKey + "/PeriodicTotalSeconds";
+        histogramBoundsKey = logKey + "/PeriodicHistogramBoundsMicros";
+        historyTimestampsKey = logKey + "/RecentTransitions/Timestamps";
+        historyFromKey = logKey + "/RecentTransitions/From";
+        historyToKey = logKey + "/RecentTransitions/To";
+        historyDescriptionsKey = logKey + "/RecentTransitions/Descriptions";
+
+        exportTimeInState = new double[stateCount];
+        exportHistoryTimestamps = new double[historyLength];
+        exportHistoryFrom = new String[historyLength];
+        exportHistoryTo = new String[historyLength];
+        exportHistoryDescriptions = new String[historyLength];
+        Arrays.fill(exportHistoryFrom, "");
+        Arrays.fill(exportHistoryTo, "");
+        Arrays.fill(exportHistoryDescriptions, "");
+    }
+
+    /**
+     * Starts measuring time in the state the state machine is in when instrumentation is enabled,
+     * without counting it as an entry.
+     *
+     * @param state The current state, or null if no state has been set yet
+     * @param now The current time in seconds
+     */
+    void start(State<World> state, double now) {
+        currentIndex = state == null ? -1 : indexOrUntracked(state);
+        currentEnteredAt = now;
+    }
+
+    /**
+     * Records a change of state.
+     *
+     * @param from The state that defines the transition taken, which is an ancestor of the exited
+     *     state for inherited transitions, or the exited state if the state was set with setState,
+     *     or null if this is the initial state
+     * @param to The state that was entered
+     * @param transitionIndex The index of the transition that was taken within from, or a negative
+     *     value if the state was set with setState
+     * @param now The current time in seconds
+     */
+    void recordTransition(State<World> from, State<World> to, int transitionIndex, double now) {
+        if (currentIndex >= 0) {
+            timeInStateSeconds[currentIndex] += now - currentEnteredAt;
+        }
+
+        String description = SET_STATE_DESCRIPTION;
+        int fromIndex = from == null ? -1 : indexOrUntracked(from);
+        if (fromIndex >= 0
+                && transitionIndex >= 0
+                && transitionIndex < transitionCounts[fromIndex].length) {
+            transitionCounts[fromIndex][transitionIndex]++;
+            description = transitionDescriptions[fromIndex][transitionIndex];
+        }
+
+        historyTimestamps[historyNext] = now;
+        historyFrom[historyNext] = from == null ? "" : from.getName();
+        historyTo[historyNext] = to.getName();
+        historyDescriptions[historyNext] = description;
+        historyNext = (historyNext + 1) % historyTimestamps.length;
+        if (historySize < historyTimestamps.length) {
+            historySize++;
+        }
+
+        currentIndex = indexOrUntracked(to);
+        currentEnteredAt = now;
+        if (currentIndex >= 0) {
+            entryCounts[currentIndex]++;
+        }
+    }
+
+    /**
+     * Records how long a call to a state's periodic method took.
+     *
+     * @param state The state whose periodic method was called
+     * @param durationNanos How long the call took, in nanoseconds
+     */
+    void recordPeriodic(State<World> state, long durationNanos) {
+        int index = indexOrUntracked(state);
+        if (index < 0) {
+            return;
+        }
+        double seconds = durationNanos * 1e-9;
+        periodicTotalSeconds[index] += seconds;
+        if (seconds > periodicMaxSeconds[index]) {
+            periodicMaxSeconds[index] = seconds;
+        }
+        double micros = durationNanos * 1e-3;
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[bucket]) {
+            bucket++;
+        }
+        periodicHistograms[index][bucket]++;
+    }
+
+    /**
+     * Exports every statistic through the AdvantageKit Logger. Called by the state machine at the
+     * end of each periodic call.
+     *
+     * @param now The current time in seconds
+     */
+    void log(double now) {
+        State<World> currentState = stateMachine.getCurrentState();
+        Logger.recordOutput(currentStateKey, currentState == null ? "" : currentState.getName());
+        Logger.recordOutput(stateNamesKey, stateNames);
+
+        System.arraycopy(timeInStateSeconds, 0, exportTimeInState, 0, exportTimeInState.length);
+        if (currentIndex >= 0) {
+            exportTimeInState[currentIndex] += now - currentEnteredAt;
+        }
+        Logger.recordOutput(timeInStateKey, exportTimeInState);
+        Logger.recordOutput(entryCountsKey, entryCounts);
+        Logger.recordOutput(periodicMaxKey, periodicMaxSeconds);
+        Logger.recordOutput(periodicTotalKey, periodicTotalSeconds);
+        Logger.recordOutput(histogramBoundsKey, BUCKET_BOUNDS_MICROS);
+        for (int i = 0; i < stateNames.length; i++) {
+            Logger.recordOutput(histogramKeys[i], periodicHistograms[i]);
+            Logger.recordOutput(transitionDescriptionKeys[i], transitionDescriptions[i]);
+            Logger.recordOutput(transitionCountKeys[i], transitionCounts[i]);
+        }
+
+        // Unroll the ring buffer so that the oldest transition comes first
+        int oldest = historySize < historyTimestamps.length ? 0 : historyNext;
+        for (int i = 0; i < historySize; i++) {
+            int slot = (oldest + i) % historyTimestamps.length;
+            exportHistoryTimestamps[i] = historyTimestamps[slot];
+            exportHistoryFrom[i] = historyFrom[slot];
+            exportHistoryTo[i] = historyTo[slot];
+            exportHistoryDescriptions[i] = historyDescriptions[slot];
+        }
+        Logger.recordOutput(historyTimestampsKey, exportHistoryTimestamps);
+        Logger.recordOutput(historyFromKey, exportHistoryFrom);
+        Logger.recordOutput(historyToKey, exportHistoryTo);
+        Logger.recordOutput(historyDescriptionsKey, exportHistoryDescriptions);
+    }
+
+    /**
+     * Gets the total time spent in a state, including the time spent in it so far if it is the
+     * current state.
+     *
+     * @param state The state
+     * @return The time spent in the state, in seconds
+     * @throws IllegalArgumentException if the state is not tracked
+     */
+    public double getTimeInStateSeconds(State<World> state) {
+        int index = indexOf(state);
+        double time = timeInStateSeconds[index];
+        if (index == currentIndex) {
+            time += stateMachine.getTimeSource().getAsDouble() - currentEnteredAt;
+        }
+        return time;
+    }
+
+    /**
+     * Gets the number of times a state was entered since instrumentation was enabled.
+     *
+     * @param state The state
+     * @return The number of times the state was entered
+     * @throws IllegalArgumentException if the state is not tracked
+     */
+    public long getEntryCount(State<World> state) {
+        return entryCounts[indexOf(state)];
+    }
+
+    /**
+     * Gets the number of times a transition was taken.
+     *
+     * @param state The state the transition belongs to
+     * @param transitionIndex The index of the transition, in the order transitions were defined
+     * @return The number of times the transition was taken
+     * @throws IllegalArgumentException if the state is not tracked
+     */
+    public long getTransitionCount(State<World> state, int transitionIndex) {
+        return transitionCounts[indexOf(state)][transitionIndex];
+    }
+
+    /**
+     * Gets the periodic duration histogram of a state.
+     *
+     * @param state The state
+     * @return A copy of the number of periodic calls in each bucket, see
+     *     getHistogramBoundsMicros
+     * @throws IllegalArgumentException if the state is not tracked
+     */
+    public long[] getPeriodicHistogram(State<World> state) {
+        return periodicHistograms[indexOf(state)].clone();
+    }
+
+    /**
+     * Gets the upper bounds of the periodic duration histogram buckets. There is one more bucket
+     * than there are bounds, which counts every duration above the last bound.
+     *
+     * @return A copy of the bucket bounds, in microseconds
+     */
+    public static double[] getHistogramBoundsMicros() {
+        return BUCKET_BOUNDS_MICROS.clone();
+    }
+
+    /**
+     * Gets the longest time a single call to a state's periodic method took.
+     *
+     * @param state The state
+     * @return The longest periodic duration, in seconds
+     * @throws IllegalArgumentException if the state is not tracked
+     */
+    public double getPeriodicMaxSeconds(State<World> state) {
+        return periodicMaxSeconds[indexOf(state)];
+    }
+
+    /**
+     * Gets the number of transitions currently kept in the ring buffer of recent transitions.
+     *
+     * @return The number of recent transitions, at most the history length
+     */
+    public int getRecentTransitionCount() {
+        return historySize;
+    }
+
+    /**
+     * Gets the description of a recent transition, or SET_STATE_DESCRIPTION if the state was set
+     * with setState.
+     *
+     * @param i The index of the transition, where 0 is the oldest one kept
+     * @return The description of the transition
+     */
+    public String getRecentTransitionDescription(int i) {
+        return historyDescriptions[historySlot(i)];
+    }
+
+    /**
+     * Gets the name of the state a recent transition left.
+     *
+     * @param i The index of the transition, where 0 is the oldest one kept
+     * @return The name of the state, or an empty string for the initial state
+     */
+    public String getRecentTransitionFrom(int i) {
+        return historyFrom[historySlot(i)];
+    }
+
+    /**
+     * Gets the name of the state a recent transition entered.
+     *
+     * @param i The index of the transition, where 0 is the oldest one kept
+     * @return The name of the state
+     */
+    public String getRecentTransitionTo(int i) {
+        return historyTo[historySlot(i)];
+    }
+
+    /**
+     * Gets the time at which a recent transition was taken.
+     *
+     * @param i The index of the transition, where 0 is the oldest one kept
+     * @return The time of the transition, in seconds
+     */
+    public double getRecentTransitionTimestamp(int i) {
+        return historyTimestamps[historySlot(i)];
+    }
+
+    private int historySlot(int i) {
+        if (i < 0 || i >= historySize) {
+            throw new IndexOutOfBoundsException(
+                    "Recent transition " + i + " out of bounds for " + historySize);
+        }
+        int oldest = historySize < historyTimestamps.length ? 0 : historyNext;
+        return (oldest + i) % historyTimestamps.length;
+    }
+
+    private int indexOrUntracked(State<World> state) {
+        Integer index = stateIndices.get(state);
+        return index == null ? -1 : index;
+    }
+
+    private int indexOf(State<World> state) {
+        Integer index = stateIndices.get(state);
+        if (index == null) {
+            throw new IllegalArgumentException(
+                    "State " + state + " was not registered when instrumentation was enabled");
+        }
+        return index;
+    }
+}
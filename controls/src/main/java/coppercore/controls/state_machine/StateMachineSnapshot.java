@@ -0,0 +1,76 @@
+package coppercore.controls.state_machine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A saved copy of the runtime state of a {@link StateMachine}, used to fork many runs from the same
+ * point, for example when simulating variations of an autonomous routine.
+ *
+ * <p>A snapshot covers the current state, the finished flags and expired timeouts of every state,
+ * the deadlines of the scheduled timeouts, the pending requested states, the events fired since the
+ * last update, the regions of every {@link ParallelState}, and the world through the hooks set with
+ * {@link StateMachine#setWorldSnapshotHooks}. It does not cover instrumentation statistics.
+ *
+ * <p>Snapshots are created with {@link StateMachine#createSnapshot()}, which sizes them for the
+ * states registered at that point, and can then be saved into and restored from any number of
+ * times without allocating, apart from whatever the world hooks allocate.
+ *
+ * @param <World> The type of the world in which the state machine lives.
+ */
+public final class StateMachineSnapshot<World> {
+
+    final StateMachine<World> stateMachine;
+    final List<State<World>> states;
+
+    boolean saved = false;
+    State<World> currentState;
+    boolean stateJustEntered;
+    final boolean[] finished;
+    final boolean[][] timeoutsExpired;
+    final TimeoutScheduler<World> timeouts = new TimeoutScheduler<>();
+    final List<State<World>> pendingRequests = new ArrayList<>();
+    CompiledTransitionTable<World> compiledTransitions;
+    long[] dirtyEvents = new long[0];
+    Object worldState;
+    final List<StateMachineSnapshot<World>> regions;
+
+    /**
+     * Constructs an empty snapshot for a state machine.
+     *
+     * @param stateMachine The state machine the snapshot belongs to
+     * @param states The states registered to the state machine, in registration order
+     * @param regions Empty snapshots of the regions of every parallel state, in registration order
+     */
+    StateMachineSnapshot(
+            StateMachine<World> stateMachine,
+            List<State<World>> states,
+            List<StateMachineSnapshot<World>> regions) {
+        this.stateMachine = stateMachine;
+        this.states = List.copyOf(states);
+        this.finished = new boolean[states.size()];
+        this.timeoutsExpired = new boolean[states.size()][];
+        for (int i = 0; i < states.size(); i++) {
+            timeoutsExpired[i] = new boolean[states.get(i).getTimeoutCount()];
+        }
+        this.regions = List.copyOf(regions);
+    }
+
+    /**
+     * Checks whether anything has been saved into this snapshot yet.
+     *
+     * @return true if saveSnapshot has been called with this snapshot, false otherwise
+     */
+    public boolean isSaved() {
+        return saved;
+    }
+
+    /**
+     * Gets the state that was current when the snapshot was saved.
+     *
+     * @return The saved current state, or null if the state machine had no current state
+     */
+    public State<World> getCurrentState() {
+        return currentState;
+    }
+}
@@ -0,0 +1,123 @@
+package coppercore.controls.state_machine;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock-free mailbox for state requests. Any number of threads may post requests, while only the
+ * thread that updates the state machine takes them.
+ *
+ * <p>Posting never blocks. How requests posted between two updates are combined depends on the
+ * {@link StateMachine.RequestPolicy}.
+ *
+ * @param <World> The type of the world in which the state machine lives.
+ */
+final class StateRequestMailbox<World> {
+
+    private final StateMachine.RequestPolicy policy;
+
+    /** The single pending request when using LATEST_WINS */
+    private final AtomicReference<State<World>> latest = new AtomicReference<>();
+
+    /** The pending requests, oldest first, when using FIFO */
+    private final ConcurrentLinkedQueue<State<World>> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructs a new, empty mailbox.
+     *
+     * @param policy How requests posted between two updates are combined
+     */
+    StateRequestMailbox(StateMachine.RequestPolicy policy) {
+        this.policy = Objects.requireNonNull(policy, "Request policy cannot be null");
+    }
+
+    /**
+     * Gets the policy of this mailbox.
+     *
+     * @return The policy
+     */
+    StateMachine.RequestPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Posts a request. Safe to call from any thread.
+     *
+     * <p>With LATEST_WINS, a null request cancels the pending request. With FIFO, null requests are
+     * ignored.
+     *
+     * @param state The requested state
+     */
+    void post(State<World> state) {
+        switch (policy) {
+            case LATEST_WINS:
+                latest.set(state);
+                break;
+            case FIFO:
+                if (state != null) {
+                    queue.offer(state);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Takes the next request out of the mailbox. Must only be called by the thread that updates
+     * the state machine.
+     *
+     * @return The next requested state, or null if there is none
+     */
+    State<World> take() {
+        switch (policy) {
+            case LATEST_WINS:
+                return latest.getAndSet(null);
+            case FIFO:
+                return queue.poll();
+            default:
+                throw new IllegalStateException("Unknown request policy " + policy);
+        }
+    }
+
+    /**
+     * Copies the pending requests, oldest first, into a list. Requests posted concurrently may or
+     * may not be included.
+     *
+     * @param pending The list to replace the contents of
+     */
+    void copyPendingTo(List<State<World>> pending) {
+        pending.clear();
+        switch (policy) {
+            case LATEST_WINS:
+                State<World> state = latest.get();
+                if (state != null) {
+                    pending.add(state);
+                }
+                break;
+            case FIFO:
+                for (State<World> request : queue) {
+                    pending.add(request);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Replaces the pending requests with the given requests, oldest first.
+     *
+     * @param pending The requests to post
+     */
+    void replacePending(List<State<World>> pending) {
+        clear();
+        for (int i = 0; i < pending.size(); i++) {
+            post(pending.get(i));
+        }
+    }
+
+    /** Discards all pending requests. */
+    void clear() {
+        latest.set(null);
+        queue.clear();
+    }
+}
@@ -0,0 +1,199 @@
+package coppercore.controls.state_machine;
+
+import java.util.Arrays;
+
+/**
+ * A deadline heap shared by all the timeouts of a {@link StateMachine}.
+ *
+ * <p>Each entry is a deadline in seconds together with the state and the index of the timeout it
+ * belongs to. Entries are kept in a binary min-heap stored in parallel primitive arrays, so
+ * checking whether anything has expired is a single comparison against the earliest deadline, and
+ * neither scheduling nor expiring boxes any values. The arrays grow as needed and are reused.
+ *
+ * @param <World> The type of the world in which the state machine lives.
+ */
+final class TimeoutScheduler<World> {
+
+    private double[] deadlines = new double[4];
+    private int[] timeoutIndices = new int[4];
+    private State<?>[] owners = new State<?>[4];
+    private int size = 0;
+
+    /**
+     * Schedules every timeout of a state, measured from the given time.
+     *
+     * @param state The state whose timeouts should be scheduled
+     * @param now The current time in seconds
+     */
+    void scheduleAll(State<World> state, double now) {
+        for (int i = 0; i < state.getTimeoutCount(); i++) {
+            schedule(now + state.getTimeoutDuration(i), state, i);
+        }
+    }
+
+    /**
+     * Schedules a single timeout.
+     *
+     * @param deadline The time, in seconds, at which the timeout expires
+     * @param owner The state the timeout belongs to
+     * @param timeoutIndex The index of the timeout within its state
+     */
+    void schedule(double deadline, State<World> owner, int timeoutIndex) {
+        if (size == deadlines.length) {
+            grow();
+        }
+        int i = size++;
+        // Sift up
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (deadlines[parent] <= deadline) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        deadlines[i] = deadline;
+        timeoutIndices[i] = timeoutIndex;
+        owners[i] = owner;
+    }
+
+    /**
+     * Marks every timeout whose deadline is at or before the given time as expired, and removes it
+     * from the heap.
+     *
+     * @param now The current time in seconds
+     */
+    @SuppressWarnings("unchecked")
+    void expire(double now) {
+        while (size > 0 && deadlines[0] <= now) {
+            ((State<World>) owners[0]).setTimeoutExpired(timeoutIndices[0]);
+            removeFirst();
+        }
+    }
+
+    /**
+     * Removes every scheduled timeout of a state.
+     *
+     * @param owner The state whose timeouts should be removed
+     */
+    void cancelAll(State<World> owner) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (owners[i] != owner) {
+                move(i, kept++);
+            }
+        }
+        for (int i = kept; i < size; i++) {
+            owners[i] = null;
+        }
+        size = kept;
+        // Restore the heap property bottom-up
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Replaces every scheduled timeout with those of another scheduler, reusing this scheduler's
+     * arrays when they are large enough.
+     *
+     * @param other The scheduler to copy
+     */
+    void copyFrom(TimeoutScheduler<World> other) {
+        if (deadlines.length < other.size) {
+            deadlines = new double[other.deadlines.length];
+            timeoutIndices = new int[other.deadlines.length];
+            owners = new State<?>[other.deadlines.length];
+        }
+        System.arraycopy(other.deadlines, 0, deadlines, 0, other.size);
+        System.arraycopy(other.timeoutIndices, 0, timeoutIndices, 0, other.size);
+        System.arraycopy(other.owners, 0, owners, 0, other.size);
+        for (int i = other.size; i < size; i++) {
+            owners[i] = null;
+        }
+        size = other.size;
+    }
+
+    /** Removes every scheduled timeout. */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            owners[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Checks whether any timeouts are scheduled.
+     *
+     * @return true if no timeouts are scheduled
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the number of scheduled timeouts.
+     *
+     * @return The number of scheduled timeouts
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the earliest deadline.
+     *
+     * @return The earliest deadline in seconds, or positive infinity if nothing is scheduled
+     */
+    double nextDeadline() {
+        return size > 0 ? deadlines[0] : Double.POSITIVE_INFINITY;
+    }
+
+    private void removeFirst() {
+        size--;
+        if (size == 0) {
+            owners[0] = null;
+            return;
+        }
+        // Move the last entry to the root and sift it down
+        move(size, 0);
+        owners[size] = null;
+        siftDown(0);
+    }
+
+    private void siftDown(int i) {
+        double deadline = deadlines[i];
+        int timeoutIndex = timeoutIndices[i];
+        State<?> owner = owners[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && deadlines[child + 1] < deadlines[child]) {
+                child++;
+            }
+            if (deadline <= deadlines[child]) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        deadlines[i] = deadline;
+        timeoutIndices[i] = timeoutIndex;
+        owners[i] = owner;
+    }
+
+    private void move(int from, int to) {
+        deadlines[to] = deadlines[from];
+        timeoutIndices[to] = timeoutIndices[from];
+        owners[to] = owners[from];
+    }
+
+    private void grow() {
+        int capacity = deadlines.length * 2;
+        deadlines = Arrays.copyOf(deadlines, capacity);
+        timeoutIndices = Arrays.copyOf(timeoutIndices, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+    }
+}
@@ -0,0 +1,43 @@
+package coppercore.controls.state_machine.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class as a declarative state machine definition. The {@link StateMachineProcessor}
+ * generates a specialized state machine class from it, in the same package, that stores its
+ * current state in an enum and calls the methods of the definition directly from switch
+ * statements.
+ *
+ * <p>The methods of the definition are tied to states with {@link Periodic}, {@link OnEntry},
+ * {@link OnExit} and {@link Transition}. Each method may take either no parameters or a single
+ * parameter that the world can be passed to.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateStateMachine {
+    /**
+     * Type of the world in which the state machine lives
+     *
+     * @return the world type
+     */
+    Class<?> world();
+
+    /**
+     * Names of the states, in the order they should be registered. Each name must be a valid Java
+     * identifier, since it becomes an enum constant.
+     *
+     * @return the state names
+     */
+    String[] states();
+
+    /**
+     * Simple name of the generated class. Defaults to the name of the definition followed by
+     * "StateMachine".
+     *
+     * @return the name of the generated class
+     */
+    String name() default "";
+}
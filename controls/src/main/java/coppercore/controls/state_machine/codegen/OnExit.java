@@ -0,0 +1,21 @@
+package coppercore.controls.state_machine.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the method that is called when the state machine exits a state. This matches
+ * State.onExit.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface OnExit {
+    /**
+     * Name of the state, as listed in {@link GenerateStateMachine#states()}
+     *
+     * @return the state name
+     */
+    String value();
+}
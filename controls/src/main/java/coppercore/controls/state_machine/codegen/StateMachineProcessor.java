@@ -0,0 +1,549 @@
+package coppercore.controls.state_machine.codegen;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Annotation processor that generates a state machine class for every class annotated with
+ * {@link GenerateStateMachine}.
+ *
+ * <p>The generated class keeps its current state in a nested State enum. Its periodic method calls
+ * the current state's {@link Periodic} method and then checks the current state's {@link
+ * Transition}s, each inside a switch over the current state, so every guard and action is a direct
+ * call to a method of the definition instead of a call through a Predicate or State object.
+ *
+ * <p>The generated class behaves like a {@link coppercore.controls.state_machine.StateMachine}
+ * built from the same states and transitions: setState calls onExit on the current state (if any)
+ * and onEntry on the new one, even if they are the same state; periodic calls the current state's
+ * periodic method before taking at most one transition; and writeGraphvizFile writes the same
+ * graph.
+ *
+ * <p>Consumers enable the processor by adding this library to their annotationProcessor
+ * configuration.
+ */
+@SupportedAnnotationTypes("coppercore.controls.state_machine.codegen.GenerateStateMachine")
+public class StateMachineProcessor extends AbstractProcessor {
+
+    /** The graph format used by StateMachine.writeGraphvizFile. */
+    private static final String DEFAULT_GRAPH_FORMAT =
+            "  node [\n"
+                    + "    shape=box,\n"
+                    + "    style=rounded\n"
+                    + "  ];\n"
+                    + "\n"
+                    + "  edge [\n"
+                    + "    fontsize=10\n"
+                    + "  ];\n";
+
+    /** A call to a method of the definition, as it appears in the generated source. */
+    private record Action(String call) {}
+
+    /** A transition read from a {@link Transition} annotation. */
+    private record Edge(String to, Action guard, String description) {}
+
+    /** Everything read from a definition that is needed to generate its state machine. */
+    private static class Model {
+        String packageName;
+        String generatedName;
+        String definitionType;
+        String worldType;
+        final List<String> states = new ArrayList<>();
+        final Map<String, Action> periodics = new HashMap<>();
+        final Map<String, Action> entries = new HashMap<>();
+        final Map<String, Action> exits = new HashMap<>();
+        final Map<String, List<Edge>> transitions = new LinkedHashMap<>();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(GenerateStateMachine.class)) {
+            Model model = buildModel(element);
+            if (model == null) {
+                continue;
+            }
+            String qualifiedName =
+                    model.packageName.isEmpty()
+                            ? model.generatedName
+                            : model.packageName + "." + model.generatedName;
+            try (PrintWriter out =
+                    new PrintWriter(
+                            processingEnv
+                                    .getFiler()
+                                    .createSourceFile(qualifiedName, element)
+                                    .openWriter())) {
+                writeStateMachine(out, model);
+            } catch (IOException e) {
+                error(element, "Could not write " + qualifiedName + ": " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads and validates a definition.
+     *
+     * @param element The element annotated with GenerateStateMachine
+     * @return The model of the definition, or null if it is invalid. Errors are reported through
+     *     the messager.
+     */
+    private Model buildModel(Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            error(element, "@GenerateStateMachine can only be applied to classes");
+            return null;
+        }
+        TypeElement definition = (TypeElement) element;
+        if (definition.getModifiers().contains(Modifier.PRIVATE)
+                || (definition.getNestingKind() == NestingKind.MEMBER
+                        && !definition.getModifiers().contains(Modifier.STATIC))) {
+            error(definition, "State machine definitions must be non-private top-level or static");
+            return null;
+        }
+
+        GenerateStateMachine annotation = definition.getAnnotation(GenerateStateMachine.class);
+        TypeMirror worldType;
+        try {
+            annotation.world();
+            throw new IllegalStateException("world() should not be readable during processing");
+        } catch (MirroredTypeException e) {
+            worldType = e.getTypeMirror();
+        }
+
+        Model model = new Model();
+        model.packageName =
+                processingEnv
+                        .getElementUtils()
+                        .getPackageOf(definition)
+                        .getQualifiedName()
+                        .toString();
+        model.generatedName =
+                annotation.name().isEmpty()
+                        ? definition.getSimpleName() + "StateMachine"
+                        : annotation.name();
+        model.definitionType = definition.getQualifiedName().toString();
+        model.worldType = worldType.toString();
+
+        boolean valid = true;
+        if (!SourceVersion.isName(model.generatedName)) {
+            error(definition, "\"" + model.generatedName + "\" is not a valid class name");
+            valid = false;
+        }
+        for (String state : annotation.states()) {
+            if (!SourceVersion.isName(state)) {
+                error(definition, "State name \"" + state + "\" is not a valid Java identifier");
+                valid = false;
+            } else if (model.states.contains(state)) {
+                error(definition, "State \"" + state + "\" is declared more than once");
+                valid = false;
+            } else {
+                model.states.add(state);
+                model.transitions.put(state, new ArrayList<>());
+            }
+        }
+        if (model.states.isEmpty()) {
+            error(definition, "A state machine definition must declare at least one state");
+            valid = false;
+        }
+
+        // Methods are returned in declaration order, which is the order transitions are checked in
+        for (ExecutableElement method : ElementFilter.methodsIn(definition.getEnclosedElements())) {
+            Periodic periodic = method.getAnnotation(Periodic.class);
+            OnEntry onEntry = method.getAnnotation(OnEntry.class);
+            OnExit onExit = method.getAnnotation(OnExit.class);
+            Transition[] transitions = method.getAnnotationsByType(Transition.class);
+            if (periodic == null && onEntry == null && onExit == null && transitions.length == 0) {
+                continue;
+            }
+
+            boolean isGuard = transitions.length > 0;
+            if (isGuard && (periodic != null || onEntry != null || onExit != null)) {
+                error(method, "A transition guard cannot also be a state action");
+                valid = false;
+                continue;
+            }
+            Action action = readMethod(method, worldType, model, isGuard);
+            if (action == null) {
+                valid = false;
+                continue;
+            }
+
+            if (periodic != null) {
+                valid &=
+                        addAction(
+                                model,
+                                model.periodics,
+                                periodic.value(),
+                                action,
+                                method,
+                                "@Periodic");
+            }
+            if (onEntry != null) {
+                valid &=
+                        addAction(
+                                model, model.entries, onEntry.value(), action, method, "@OnEntry");
+            }
+            if (onExit != null) {
+                valid &= addAction(model, model.exits, onExit.value(), action, method, "@OnExit");
+            }
+            for (Transition transition : transitions) {
+                if (!checkState(model, transition.from(), method)
+                        | !checkState(model, transition.to(), method)) {
+                    valid = false;
+                    continue;
+                }
+                String description =
+                        transition.description().isEmpty()
+                                ? method.getSimpleName().toString()
+                                : transition.description();
+                model.transitions
+                        .get(transition.from())
+                        .add(new Edge(transition.to(), action, description));
+            }
+        }
+        return valid ? model : null;
+    }
+
+    /**
+     * Checks that a method can be called from the generated class and builds the call to it.
+     *
+     * @return The call, or null if the method is invalid
+     */
+    private Action readMethod(
+            ExecutableElement method, TypeMirror worldType, Model model, boolean isGuard) {
+        if (method.getModifiers().contains(Modifier.PRIVATE)) {
+            error(method, "State machine methods cannot be private");
+            return null;
+        }
+        TypeKind expectedReturn = isGuard ? TypeKind.BOOLEAN : TypeKind.VOID;
+        if (method.getReturnType().getKind() != expectedReturn) {
+            error(
+                    method,
+                    (isGuard ? "Transition guards" : "State actions")
+                            + " must return "
+                            + (isGuard ? "boolean" : "void"));
+            return null;
+        }
+
+        String argument;
+        if (method.getParameters().isEmpty()) {
+            argument = "";
+        } else if (method.getParameters().size() == 1
+                && processingEnv
+                        .getTypeUtils()
+                        .isAssignable(worldType, method.getParameters().get(0).asType())) {
+            argument = "world";
+        } else {
+            error(
+                    method,
+                    "State machine methods must take no parameters or a single "
+                            + worldType
+                            + " parameter");
+            return null;
+        }
+
+        String receiver =
+                method.getModifiers().contains(Modifier.STATIC)
+                        ? model.definitionType
+                        : "definition";
+        return new Action(receiver + "." + method.getSimpleName() + "(" + argument + ")");
+    }
+
+    /**
+     * Writes the source of the generated state machine.
+     *
+     * @param out Where to write the source
+     * @param model The definition to generate the state machine from
+     */
+    private void writeStateMachine(PrintWriter out, Model model) {
+        if (!model.packageName.isEmpty()) {
+            out.println("package " + model.packageName + ";");
+            out.println();
+        }
+        out.println("import java.io.PrintWriter;");
+        out.println("import java.util.Objects;");
+        out.println("import javax.annotation.processing.Generated;");
+        out.println();
+        out.println("/**");
+        out.println(" * State machine generated from {@link " + model.definitionType + "}.");
+        out.println(" *");
+        out.println(
+                " * <p>Do not edit, changes will be overwritten when the definition is"
+                        + " compiled.");
+        out.println(" */");
+        out.println("@Generated(\"" + StateMachineProcessor.class.getName() + "\")");
+        out.println("public final class " + model.generatedName + " {");
+        out.println();
+        out.println("    /** The states of the state machine, in the order they were declared. */");
+        out.println("    public enum State {");
+        for (int i = 0; i < model.states.size(); i++) {
+            out.println(
+                    "        " + model.states.get(i) + (i < model.states.size() - 1 ? "," : ""));
+        }
+        out.println("    }");
+        out.println();
+        out.println("    private final " + model.definitionType + " definition;");
+        out.println("    private final " + model.worldType + " world;");
+        out.println("    private State currentState;");
+        out.println();
+        out.println("    /**");
+        out.println("     * Constructs a new state machine.");
+        out.println("     *");
+        out.println("     * @param definition - the definition whose methods are called.");
+        out.println("     * @param world - the world in which this state machine lives.");
+        out.println("     */");
+        out.println(
+                "    public "
+                        + model.generatedName
+                        + "("
+                        + model.definitionType
+                        + " definition, "
+                        + model.worldType
+                        + " world) {");
+        out.println(
+                "        this.definition = Objects.requireNonNull(definition, \"Definition"
+                        + " cannot be null\");");
+        out.println("        this.world = world;");
+        out.println("    }");
+        out.println();
+        out.println("    /**");
+        out.println("     * Gets the current state of the state machine.");
+        out.println("     *");
+        out.println("     * @return The current state, or null if no state has been set yet");
+        out.println("     */");
+        out.println("    public State getCurrentState() {");
+        out.println("        return currentState;");
+        out.println("    }");
+        out.println();
+        out.println("    /**");
+        out.println(
+                "     * Sets the current state of the state machine. If the current state is not"
+                        + " null, its onExit");
+        out.println(
+                "     * method is called first. The onEntry method of the new state is always"
+                        + " called, even if");
+        out.println("     * it is the current state.");
+        out.println("     *");
+        out.println("     * @param newState The new state");
+        out.println("     */");
+        out.println("    public void setState(State newState) {");
+        out.println("        Objects.requireNonNull(newState, \"Can't set state to null\");");
+        out.println("        if (currentState != null) {");
+        out.println("            onExit(currentState);");
+        out.println("        }");
+        out.println("        currentState = newState;");
+        out.println("        onEntry(newState);");
+        out.println("    }");
+        out.println();
+        out.println("    /**");
+        out.println(
+                "     * Calls the periodic method of the current state, then takes the first"
+                        + " transition of the");
+        out.println("     * current state whose guard is true, if any.");
+        out.println("     */");
+        out.println("    public void periodic() {");
+        out.println("        Objects.requireNonNull(");
+        out.println("                currentState,");
+        out.println(
+                "                \"Can't call periodic while the currentState is null, you forgot"
+                        + " to give the\"");
+        out.println(
+                "                        + \" state machine an initial state using setState\");");
+        writeActionSwitch(out, "currentState", model.periodics, model);
+        out.println("        updateStates();");
+        out.println("    }");
+        out.println();
+        out.println("    /**");
+        out.println(
+                "     * Takes the first transition of the current state whose guard is true, if"
+                        + " any.");
+        out.println("     */");
+        out.println("    public void updateStates() {");
+        out.println("        Objects.requireNonNull(");
+        out.println("                currentState,");
+        out.println(
+                "                \"Can't call updateStates while the currentState is null, you"
+                        + " forgot to give\"");
+        out.println(
+                "                        + \" the state machine an initial state using"
+                        + " setState\");");
+        out.println("        State nextState = nextState();");
+        out.println("        if (nextState != null) {");
+        out.println("            setState(nextState);");
+        out.println("        }");
+        out.println("    }");
+        out.println();
+        out.println("    private State nextState() {");
+        out.println("        switch (currentState) {");
+        for (Map.Entry<String, List<Edge>> entry : model.transitions.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            out.println("            case " + entry.getKey() + " -> {");
+            for (Edge edge : entry.getValue()) {
+                out.println("                if (" + edge.guard().call() + ") {");
+                out.println("                    return State." + edge.to() + ";");
+                out.println("                }");
+            }
+            out.println("            }");
+        }
+        out.println("            default -> {}");
+        out.println("        }");
+        out.println("        return null;");
+        out.println("    }");
+        out.println();
+        out.println("    private void onEntry(State state) {");
+        writeActionSwitch(out, "state", model.entries, model);
+        out.println("    }");
+        out.println();
+        out.println("    private void onExit(State state) {");
+        writeActionSwitch(out, "state", model.exits, model);
+        out.println("    }");
+        out.println();
+        out.println("    /**");
+        out.println(
+                "     * Write the state machine configuration in graphviz format with custom graph"
+                        + " settings");
+        out.println("     *");
+        out.println("     * @param pw The PrintWriter to write to");
+        out.println("     * @param graphFormat The graph format settings");
+        out.println("     */");
+        out.println(
+                "    public void writeGraphvizFileWithCustomGraphFormat(PrintWriter pw, String"
+                        + " graphFormat) {");
+        out.println("        pw.println(\"digraph {\");");
+        out.println("        pw.println();");
+        out.println("        pw.println(\"  // Graphviz Format settings\");");
+        out.println("        pw.println();");
+        out.println("        pw.println(graphFormat);");
+        out.println("        pw.println();");
+        out.println("        pw.println(\"  // States\");");
+        out.println("        pw.println();");
+        out.println("        for (State state : State.values()) {");
+        out.println("            pw.printf(");
+        out.println("                    \"  %s %s;%n\",");
+        out.println(
+                "                    state.name(), currentState == state ?"
+                        + " \"[shape=doublecircle]\" : \"\");");
+        out.println("        }");
+        out.println("        pw.println();");
+        out.println("        pw.println(\"  // Transitions\");");
+        out.println("        pw.println();");
+        for (Map.Entry<String, List<Edge>> entry : model.transitions.entrySet()) {
+            for (Edge edge : entry.getValue()) {
+                String line =
+                        "  " + entry.getKey() + " -> " + edge.to() + " [label=\""
+                                + edge.description() + "\"];";
+                out.println("        pw.println(" + javaString(line) + ");");
+            }
+            out.println("        pw.println();");
+        }
+        out.println("        pw.println(\"}\");");
+        out.println("    }");
+        out.println();
+        out.println("    /**");
+        out.println(
+                "     * Write the state machine configuration in graphviz format, using the same"
+                        + " default graph");
+        out.println("     * format as StateMachine.writeGraphvizFile.");
+        out.println("     *");
+        out.println("     * @param pw The PrintWriter to write to");
+        out.println("     */");
+        out.println("    public void writeGraphvizFile(PrintWriter pw) {");
+        out.println("        writeGraphvizFileWithCustomGraphFormat(");
+        out.println("                pw,");
+        out.println("                " + javaString(DEFAULT_GRAPH_FORMAT) + ");");
+        out.println("    }");
+        out.println("}");
+    }
+
+    private void writeActionSwitch(
+            PrintWriter out, String selector, Map<String, Action> actions, Model model) {
+        if (actions.isEmpty()) {
+            return;
+        }
+        out.println("        switch (" + selector + ") {");
+        for (String state : model.states) {
+            Action action = actions.get(state);
+            if (action != null) {
+                out.println("            case " + state + " -> " + action.call() + ";");
+            }
+        }
+        out.println("            default -> {}");
+        out.println("        }");
+    }
+
+    /**
+     * Quotes a string as a Java string literal.
+     *
+     * @param value The string to quote
+     * @return The string literal
+     */
+    private static String javaString(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> literal.append("\\\"");
+                case '\\' -> literal.append("\\\\");
+                case '\n' -> literal.append("\\n");
+                case '\r' -> literal.append("\\r");
+                case '\t' -> literal.append("\\t");
+                default -> literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private boolean addAction(
+            Model model,
+            Map<String, Action> actions,
+            String state,
+            Action action,
+            ExecutableElement method,
+            String annotationName) {
+        if (!checkState(model, state, method)) {
+            return false;
+        }
+        if (actions.putIfAbsent(state, action) != null) {
+            error(method, "State \"" + state + "\" already has a " + annotationName + " method");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean checkState(Model model, String state, Element element) {
+        if (!model.states.contains(state)) {
+            error(element, "Unknown state \"" + state + "\"");
+            return false;
+        }
+        return true;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
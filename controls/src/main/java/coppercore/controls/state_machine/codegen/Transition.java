@@ -0,0 +1,42 @@
+package coppercore.controls.state_machine.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method returning a boolean as the guard of a transition. The transition is taken when
+ * the state machine is in the from state and the method returns true, matching {@code
+ * from.when(guard, description).transitionTo(to)}.
+ *
+ * <p>A method may guard several transitions. The transitions of a state are checked in the order
+ * their methods are declared in the definition, and the first one whose guard is true is taken.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+@Repeatable(Transitions.class)
+public @interface Transition {
+    /**
+     * Name of the state the transition leaves
+     *
+     * @return the state name
+     */
+    String from();
+
+    /**
+     * Name of the state the transition enters
+     *
+     * @return the state name
+     */
+    String to();
+
+    /**
+     * Description of the transition, used as its label in Graphviz output. Defaults to the name of
+     * the guard method.
+     *
+     * @return the description
+     */
+    String description() default "";
+}
@@ -0,0 +1,18 @@
+package coppercore.controls.state_machine.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Container for a method that guards several {@link Transition}s. */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface Transitions {
+    /**
+     * The transitions guarded by the method
+     *
+     * @return the transitions
+     */
+    Transition[] value();
+}
@@ -0,0 +1,155 @@
+package coppercore.controls.test;
+
+import static edu.wpi.first.units.Units.Microseconds;
+import static edu.wpi.first.units.Units.Seconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import coppercore.controls.simulation.DiscreteEventSimulator;
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class DiscreteEventSimulatorTests {
+
+    @Test
+    public void eventsRunInTimeOrderThenScheduleOrder() {
+        DiscreteEventSimulator sim = new DiscreteEventSimulator();
+        List<String> log = new ArrayList<>();
+
+        sim.schedule(10, time -> log.add("b@" + time));
+        sim.schedule(5, time -> log.add("a@" + time));
+        for (int i = 0; i < 20; i++) {
+            final int index = i;
+            sim.schedule(10, time -> log.add("tie" + index));
+        }
+        sim.scheduleMutation(10, () -> log.add("c"));
+
+        assertEquals(23, sim.simulate(100));
+
+        List<String> expected = new ArrayList<>();
+        expected.add("a@5");
+        expected.add("b@10");
+        for (int i = 0; i < 20; i++) {
+            expected.add("tie" + i);
+        }
+        expected.add("c");
+        assertEquals(expected, log);
+        assertEquals(100, sim.getTime());
+        assertEquals(0, sim.getPendingEventCount());
+    }
+
+    @Test
+    public void periodicEventsAreRescheduled() {
+        DiscreteEventSimulator sim = new DiscreteEventSimulator();
+        List<Long> runs = new ArrayList<>();
+
+        sim.schedulePeriodic(0, 20, runs::add);
+        sim.simulate(100);
+
+        assertEquals(List.of(0L, 20L, 40L, 60L, 80L, 100L), runs);
+        assertEquals(100, sim.getTime());
+        assertEquals(120, sim.getNextEventTime());
+
+        // Events scheduled while simulating run in order with the periodic event
+        sim.schedule(130, time -> runs.add(-time));
+        sim.simulate(140);
+        assertEquals(List.of(0L, 20L, 40L, 60L, 80L, 100L, 120L, -130L, 140L), runs);
+    }
+
+    @Test
+    public void cannotScheduleInThePast() {
+        DiscreteEventSimulator sim = new DiscreteEventSimulator();
+        sim.schedule(50, time -> {});
+        sim.simulate(50);
+
+        assertThrows(IllegalArgumentException.class, () -> sim.schedule(49, time -> {}));
+        assertThrows(IllegalArgumentException.class, () -> sim.schedulePeriodic(60, 0, t -> {}));
+
+        sim.reset();
+        assertEquals(0, sim.getTime());
+        assertFalse(sim.step());
+    }
+
+    @Test
+    public void tickDurationScalesTime() {
+        DiscreteEventSimulator sim = new DiscreteEventSimulator(Microseconds.of(1));
+        assertEquals(20_000, sim.toTicks(Seconds.of(0.02)));
+
+        sim.schedule(1_500_000, time -> {});
+        sim.simulate(2_000_000);
+        assertEquals(2.0, sim.getTimeSeconds(), 1e-12);
+    }
+
+    public static class Robot {
+        public boolean go = false;
+    }
+
+    static class EmptyState extends State<Robot> {
+        EmptyState(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {}
+    }
+
+    @Test
+    public void stateMachineTimeoutsUseVirtualTime() {
+        State<Robot> waiting = new EmptyState("Waiting");
+        State<Robot> spinningUp = new EmptyState("SpinningUp");
+        State<Robot> timedOut = new EmptyState("TimedOut");
+
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+        List.of(waiting, spinningUp, timedOut).forEach(stateMachine::registerState);
+        waiting.when(w -> w.go, "go").transitionTo(spinningUp);
+        spinningUp.whenTimeout(Seconds.of(30)).transitionTo(timedOut);
+
+        DiscreteEventSimulator sim = new DiscreteEventSimulator();
+        sim.addStateMachine(stateMachine, 20);
+        stateMachine.setState(waiting);
+
+        sim.scheduleMutation(1000, () -> world.go = true);
+        // The transition is taken by the loop at 1000, after the mutation scheduled before it
+        sim.schedule(1010, time -> assertSame(spinningUp, stateMachine.getCurrentState()));
+        sim.schedule(30_990, time -> assertSame(spinningUp, stateMachine.getCurrentState()));
+        sim.schedule(31_010, time -> assertSame(timedOut, stateMachine.getCurrentState()));
+
+        // A 30 second timeout finishes without waiting 30 real seconds
+        long start = System.nanoTime();
+        sim.simulate(40_000);
+        long elapsedNanos = System.nanoTime() - start;
+        assertSame(timedOut, stateMachine.getCurrentState());
+        assertTrue(elapsedNanos < 5_000_000_000L);
+    }
+
+    @Test
+    public void manyScenariosCanReuseOneSimulator() {
+        DiscreteEventSimulator sim = new DiscreteEventSimulator();
+        int timeouts = 0;
+        for (int scenario = 0; scenario < 1000; scenario++) {
+            sim.reset();
+            State<Robot> waiting = new EmptyState("Waiting");
+            State<Robot> timedOut = new EmptyState("TimedOut");
+            StateMachine<Robot> stateMachine = new StateMachine<>(new Robot());
+            stateMachine.registerState(waiting);
+            stateMachine.registerState(timedOut);
+            waiting.whenTimeout(Seconds.of(0.001 * (scenario % 150))).transitionTo(timedOut);
+            sim.addStateMachine(stateMachine, 20);
+            stateMachine.setState(waiting);
+
+            // A 2:30 match
+            sim.simulate(150_000 - 1);
+            if (stateMachine.getCurrentState() == timedOut) {
+                timeouts++;
+            }
+        }
+        assertEquals(1000, timeouts);
+    }
+}
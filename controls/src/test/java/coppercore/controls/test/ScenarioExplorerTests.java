@@ -0,0 +1,133 @@
+package coppercore.controls.test;
+
+import static edu.wpi.first.units.Units.Seconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import coppercore.controls.simulation.ScenarioExplorer;
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Test exploring randomized scenarios of a state machine.
+ */
+public class ScenarioExplorerTests {
+
+    public static class Robot {
+        public boolean hasNote = false;
+        public boolean jammed = false;
+        public boolean blinking = false;
+    }
+
+    static class EmptyState extends State<Robot> {
+        EmptyState(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {}
+    }
+
+    /** Builds a state machine with a dead end, a cycle that never settles and a dead transition. */
+    static StateMachine<Robot> createTestStateMachine(Robot world) {
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+        State<Robot> idle = stateMachine.registerState(new EmptyState("Idle"));
+        State<Robot> holding = stateMachine.registerState(new EmptyState("Holding"));
+        State<Robot> jammed = stateMachine.registerState(new EmptyState("Jammed"));
+        State<Robot> blinkA = stateMachine.registerState(new EmptyState("BlinkA"));
+        State<Robot> blinkB = stateMachine.registerState(new EmptyState("BlinkB"));
+
+        idle.when(robot -> robot.hasNote, "hasNote").transitionTo(holding);
+        idle.when(robot -> robot.blinking, "blinking").transitionTo(blinkA);
+        idle.when(robot -> false, "never").transitionTo(jammed);
+        holding.when(robot -> robot.jammed, "jammed").transitionTo(jammed);
+        holding.when(robot -> !robot.hasNote, "shot").transitionTo(idle);
+        blinkA.whenTimeout(Seconds.of(0.1)).transitionTo(blinkB);
+        blinkB.whenTimeout(Seconds.of(0.1)).transitionTo(blinkA);
+        stateMachine.setState(idle);
+        return stateMachine;
+    }
+
+    static ScenarioExplorer<Robot> createExplorer() {
+        return new ScenarioExplorer<>(Robot::new, ScenarioExplorerTests::createTestStateMachine)
+                .addMutation("toggleNote", robot -> robot.hasNote = !robot.hasNote)
+                .addMutation("jam", robot -> robot.jammed = true)
+                .addMutation("blink", robot -> robot.blinking = true)
+                .setRequestableStates()
+                .setEventsPerScenario(8)
+                .setScenariosPerTask(16);
+    }
+
+    @Test
+    public void findsDeadEndsCyclesAndUncoveredTransitions() {
+        ScenarioExplorer.Report report = createExplorer().explore(500, 401);
+
+        assertEquals(500, report.getScenarioCount());
+        assertEquals(List.of("Jammed"), report.getStatesNeverExited());
+        assertEquals(List.of(), report.getStatesNeverEntered());
+        assertEquals(List.of("Idle -> Jammed [never]"), report.getUncoveredTransitions());
+        assertTrue(report.getTransitionCount("Holding", 0) > 0);
+        assertTrue(report.getTransitionCount("BlinkB", 0) > 0);
+        assertEquals(6.0 / 7.0, report.getTransitionCoverage(), 1e-9);
+
+        Map<List<String>, Long> cycles = report.getUnsettledCycles();
+        assertEquals(1, cycles.size());
+        long seed = cycles.get(List.of("BlinkA", "BlinkB"));
+
+        // The example seed reproduces the cycle on its own
+        ScenarioExplorer.Report replay = createExplorer().runScenario(seed);
+        assertEquals(1, replay.getScenarioCount());
+        assertEquals(Map.of(List.of("BlinkA", "BlinkB"), seed), replay.getUnsettledCycles());
+    }
+
+    @Test
+    public void resultsDoNotDependOnParallelism() {
+        ScenarioExplorer.Report parallel = createExplorer().explore(200, 7);
+        ScenarioExplorer.Report serial = createExplorer().explore(new ForkJoinPool(1), 200, 7);
+        assertEquals(serial.toString(), parallel.toString());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(
+                    serial.getTransitionCount("Idle", i), parallel.getTransitionCount("Idle", i));
+        }
+    }
+
+    @Test
+    public void reportsFailingSeeds() {
+        ScenarioExplorer<Robot> explorer =
+                new ScenarioExplorer<>(Robot::new, ScenarioExplorerTests::createTestStateMachine)
+                        .addMutation(
+                                "explode",
+                                robot -> {
+                                    throw new IllegalStateException("Exploded");
+                                })
+                        .setRequestableStates();
+        IllegalStateException exception =
+                assertThrows(IllegalStateException.class, () -> explorer.runScenario(12));
+        assertEquals("Scenario with seed 12 failed", exception.getMessage());
+
+        ScenarioExplorer<Robot> unknownState = createExplorer().setRequestableStates("Missing");
+        assertThrows(IllegalStateException.class, () -> unknownState.explore(4, 0));
+    }
+
+    @Test
+    public void rejectsExplorersWithNoEvents() {
+        ScenarioExplorer<Robot> explorer =
+                new ScenarioExplorer<>(Robot::new, ScenarioExplorerTests::createTestStateMachine)
+                        .setRequestableStates();
+        String message = "No mutations were added and requests are disabled";
+
+        assertEquals(
+                message,
+                assertThrows(IllegalStateException.class, () -> explorer.explore(4, 0))
+                        .getMessage());
+        assertEquals(
+                message,
+                assertThrows(IllegalStateException.class, () -> explorer.runScenario(0))
+                        .getMessage());
+    }
+}
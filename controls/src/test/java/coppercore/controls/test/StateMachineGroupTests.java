@@ -0,0 +1,141 @@
+package coppercore.controls.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import coppercore.controls.state_machine.StateMachineGroup;
+import coppercore.controls.state_machine.StateMachineGroup.ExecutionMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Test ticking many state machines together, in parallel and sequentially.
+ */
+public class StateMachineGroupTests {
+
+    public static class Robot {
+        public final int id;
+        public int ticks = 0;
+        public int threshold;
+
+        public Robot(int id, int threshold) {
+            this.id = id;
+            this.threshold = threshold;
+        }
+    }
+
+    static class CountingState extends State<Robot> {
+        CountingState(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {
+            world.ticks++;
+        }
+    }
+
+    static class Machine {
+        final Robot world;
+        final StateMachine<Robot> stateMachine;
+        final State<Robot> counting = new CountingState("Counting");
+        final State<Robot> done = new CountingState("Done");
+
+        Machine(int id) {
+            world = new Robot(id, 5 + id % 7);
+            stateMachine = new StateMachine<>(world);
+            stateMachine.registerState(counting);
+            stateMachine.registerState(done);
+            counting
+                    .when(robot -> robot.ticks >= robot.threshold, "threshold")
+                    .transitionTo(done);
+            stateMachine.setState(counting);
+        }
+    }
+
+    /** Runs a group where every machine defers a log entry each tick, and returns the log. */
+    List<String> runGroup(StateMachineGroup group, int machineCount, int ticks) {
+        List<Machine> machines = new ArrayList<>();
+        List<String> log = new ArrayList<>();
+        for (int i = 0; i < machineCount; i++) {
+            Machine machine = new Machine(i);
+            machines.add(machine);
+            assertEquals(i, group.add(machine.stateMachine));
+        }
+        for (Machine machine : machines) {
+            machine.done
+                    .when(
+                            robot -> {
+                                group.defer(
+                                        machine.stateMachine,
+                                        () -> log.add(robot.id + ":" + robot.ticks));
+                                return false;
+                            },
+                            "log")
+                    .transitionTo(machine.counting);
+        }
+
+        for (int tick = 0; tick < ticks; tick++) {
+            group.periodic();
+            log.add("tick " + tick);
+        }
+
+        for (Machine machine : machines) {
+            assertSame(machine.done, machine.stateMachine.getCurrentState());
+        }
+        return log;
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        List<String> sequential =
+                runGroup(new StateMachineGroup(ExecutionMode.SEQUENTIAL), 200, 20);
+        List<String> parallel = runGroup(new StateMachineGroup(ExecutionMode.PARALLEL), 200, 20);
+        assertEquals(sequential, parallel);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<String> chunked = runGroup(new StateMachineGroup(pool, 16), 200, 20);
+            assertEquals(sequential, chunked);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void deferredActionsRunInMachineOrderAfterTheTick() {
+        StateMachineGroup group = new StateMachineGroup(ExecutionMode.PARALLEL);
+        List<String> log = runGroup(group, 3, 12);
+
+        // Machine 0 reaches Done during tick 4, machine 1 during tick 5 and machine 2 during tick 6
+        assertEquals(
+                List.of(
+                        "tick 0", "tick 1", "tick 2", "tick 3", "tick 4", "0:6", "tick 5", "0:7",
+                        "1:7", "tick 6", "0:8", "1:8", "2:8", "tick 7", "0:9", "1:9", "2:9",
+                        "tick 8", "0:10", "1:10", "2:10", "tick 9", "0:11", "1:11", "2:11",
+                        "tick 10", "0:12", "1:12", "2:12", "tick 11"),
+                log);
+    }
+
+    @Test
+    public void rejectsDuplicateAndUnknownMachines() {
+        StateMachineGroup group = new StateMachineGroup(ExecutionMode.SEQUENTIAL);
+        Machine machine = new Machine(0);
+        group.add(machine.stateMachine);
+
+        assertThrows(IllegalArgumentException.class, () -> group.add(machine.stateMachine));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> group.defer(new Machine(1).stateMachine, () -> {}));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new StateMachineGroup(ForkJoinPool.commonPool(), 0));
+        assertEquals(1, group.size());
+        assertSame(machine.stateMachine, group.get(0));
+    }
+}
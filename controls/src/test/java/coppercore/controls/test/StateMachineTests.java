@@ -1,5 +1,6 @@
 package coppercore.controls.test;
 
+import coppercore.controls.simulation.DiscreteEventSimulator;
 import coppercore.controls.state_machine.State;
 import coppercore.controls.state_machine.StateMachine;
 import java.util.List;
@@ -64,19 +65,11 @@ public class StateMachineTests {
         return stateMachine;
     }
 
-    public static DES createRobotLoopDES(StateMachine<Robot> stateMachine) {
-        DES sim = new DES();
+    public static DiscreteEventSimulator createRobotLoopDES(StateMachine<Robot> stateMachine) {
+        DiscreteEventSimulator sim = new DiscreteEventSimulator();
 
         // Run robot loop every 20ms, that is, at 0, 20, 40, 60 and so on.
-        DES.Runnable robotLoop =
-                new DES.Runnable() {
-                    @Override
-                    public void run(int simulationTime) {
-                        stateMachine.periodic();
-                        sim.schedule(simulationTime + 20, this);
-                    }
-                };
-        sim.schedule(0, robotLoop);
+        sim.addStateMachine(stateMachine, 20);
 
         return sim;
     }
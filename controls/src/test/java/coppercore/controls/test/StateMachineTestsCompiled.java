@@ -0,0 +1,178 @@
+package coppercore.controls.test;
+
+import static coppercore.controls.test.StateMachineTests.Robot;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import coppercore.controls.simulation.DiscreteEventSimulator;
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import coppercore.controls.test.StateMachineTests.Robot;
+import java.lang.management.ManagementFactory;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests for compiled state machines.
+ */
+public class StateMachineTestsCompiled {
+
+    static State<Robot> createIdleState() {
+        return new State<Robot>("Idle") {
+            @Override
+            protected void periodic(StateMachine<Robot> stateMachine, Robot world) {
+                world.motorSpeed = 0;
+            }
+        };
+    }
+
+    static State<Robot> createIntakingState() {
+        return new State<Robot>("Intaking") {
+            @Override
+            protected void periodic(StateMachine<Robot> stateMachine, Robot world) {
+                world.motorSpeed = -100;
+                world.armPos = -1;
+                if (world.hasNote) {
+                    finish();
+                }
+            }
+        };
+    }
+
+    static State<Robot> createWarmingUpState(State<Robot> idleState) {
+        return new State<Robot>("WarmingUp") {
+            @Override
+            protected void periodic(StateMachine<Robot> stateMachine, Robot world) {
+                if (!world.hasNote) {
+                    stateMachine.requestState(idleState);
+                    return;
+                }
+                world.motorSpeed = 50;
+                world.armPos = 3;
+                finish();
+            }
+        };
+    }
+
+    static State<Robot> createShootingState() {
+        return new State<Robot>("Shooting") {
+            @Override
+            protected void periodic(StateMachine<Robot> stateMachine, Robot world) {
+                world.motorSpeed = 100;
+                if (!world.hasNote) {
+                    finish();
+                }
+            }
+        };
+    }
+
+    @Test
+    public void compiledStateMachineDESTransitionsTest() {
+        State<Robot> idleState = createIdleState();
+        State<Robot> intakingState = createIntakingState();
+        State<Robot> warmingUpState = createWarmingUpState(idleState);
+        State<Robot> shootingState = createShootingState();
+
+        Robot stateMachineWorld = new Robot();
+        StateMachine<Robot> stateMachine =
+                StateMachineTests.createTestStateMachine(
+                        stateMachineWorld, idleState, intakingState, warmingUpState, shootingState);
+        stateMachine.compile();
+        assertTrue(stateMachine.isCompiled());
+
+        DiscreteEventSimulator sim = StateMachineTests.createRobotLoopDES(stateMachine);
+
+        assertSame(idleState, stateMachine.getCurrentState());
+        final Function<State, DiscreteEventSimulator.Action> assertIn =
+                (state) ->
+                        _time ->
+                                assertSame(
+                                        state,
+                                        stateMachine.getCurrentState(),
+                                        "Incorrect State at time: " + _time);
+
+        new StateMachineTestsDES()
+                .runDESStateMachineTest(
+                        sim,
+                        assertIn,
+                        stateMachineWorld,
+                        idleState,
+                        intakingState,
+                        warmingUpState,
+                        shootingState);
+    }
+
+    @Test
+    public void compiledStateMachineRejectsUnregisteredStates() {
+        State<Robot> idleState = createIdleState();
+        State<Robot> intakingState = createIntakingState();
+
+        StateMachine<Robot> stateMachine = new StateMachine<>(new Robot());
+        stateMachine.registerState(idleState);
+        idleState.when(world -> world.shouldIntake, "should intake").transitionTo(intakingState);
+
+        // intakingState was never registered, so the transition can't be compiled
+        assertThrows(IllegalStateException.class, stateMachine::compile);
+
+        stateMachine.registerState(intakingState);
+        stateMachine.compile();
+
+        // States registered after compiling can't be used until compile is called again
+        State<Robot> shootingState = stateMachine.registerState(createShootingState());
+        assertThrows(IllegalArgumentException.class, () -> stateMachine.setState(shootingState));
+    }
+
+    @Test
+    public void compiledStateMachineDoesNotAllocate() {
+        State<Robot> idleState = createIdleState();
+        State<Robot> intakingState = createIntakingState();
+        State<Robot> warmingUpState = createWarmingUpState(idleState);
+        State<Robot> shootingState = createShootingState();
+
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine =
+                StateMachineTests.createTestStateMachine(
+                        world, idleState, intakingState, warmingUpState, shootingState);
+        stateMachine.compile();
+
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        // Warm up so that class loading and lambda linkage happen before measuring
+        cycleThroughStates(stateMachine, world, 10_000);
+
+        // The JIT can allocate a few bytes on this thread once while it recompiles the loop, so
+        // measure several rounds. Anything allocated per update would show up in every round.
+        long fewestBytesAllocated = Long.MAX_VALUE;
+        for (int round = 0; round < 10; round++) {
+            long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+            cycleThroughStates(stateMachine, world, 20_000);
+            long allocatedAfter = threadBean.getCurrentThreadAllocatedBytes();
+            fewestBytesAllocated = Math.min(fewestBytesAllocated, allocatedAfter - allocatedBefore);
+        }
+
+        assertEquals(
+                0, fewestBytesAllocated, "Compiled state machine allocated memory while updating");
+    }
+
+    /**
+     * Runs the state machine while changing the world so that every transition is taken.
+     *
+     * @param stateMachine the state machine to run
+     * @param world the world of the state machine
+     * @param iterations how many times to call periodic
+     */
+    private static void cycleThroughStates(
+            StateMachine<Robot> stateMachine, Robot world, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            int phase = i % 40;
+            world.shouldIntake = phase < 10;
+            world.hasNote = phase >= 5 && phase < 30;
+            world.shouldShoot = phase >= 15 && phase < 35;
+            stateMachine.periodic();
+        }
+    }
+}
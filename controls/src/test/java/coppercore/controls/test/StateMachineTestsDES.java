@@ -3,6 +3,7 @@ package coppercore.controls.test;
 import static coppercore.controls.test.StateMachineTests.Robot;
 import static org.junit.jupiter.api.Assertions.assertSame;
 
+import coppercore.controls.simulation.DiscreteEventSimulator;
 import coppercore.controls.state_machine.State;
 import coppercore.controls.state_machine.StateMachine;
 import coppercore.controls.test.StateMachineTests.Robot;
@@ -15,8 +16,8 @@ import org.junit.jupiter.api.Test;
 public class StateMachineTestsDES {
 
     public void runDESStateMachineTest(
-            DES sim,
-            Function<State, DES.Runnable> assertIn,
+            DiscreteEventSimulator sim,
+            Function<State, DiscreteEventSimulator.Action> assertIn,
             Robot stateMachineWorld,
             State<Robot> idleState,
             State<Robot> intakingState,
@@ -218,11 +219,11 @@ public class StateMachineTestsDES {
                 StateMachineTests.createTestStateMachine(
                         stateMachineWorld, idleState, intakingState, warmingUpState, shootingState);
 
-        DES sim = StateMachineTests.createRobotLoopDES(stateMachine);
+        DiscreteEventSimulator sim = StateMachineTests.createRobotLoopDES(stateMachine);
 
         // Testing
         assertSame(idleState, stateMachine.getCurrentState());
-        final Function<State, DES.Runnable> assertIn =
+        final Function<State, DiscreteEventSimulator.Action> assertIn =
                 (state) ->
                         _time ->
                                 assertSame(
@@ -255,11 +256,11 @@ public class StateMachineTestsDES {
                 StateMachineTests.createTestStateMachine(
                         stateMachineWorld, idleState, intakingState, warmingUpState, shootingState);
 
-        DES sim = StateMachineTests.createRobotLoopDES(stateMachine);
+        DiscreteEventSimulator sim = StateMachineTests.createRobotLoopDES(stateMachine);
 
         // Testing
         assertSame(idleState, stateMachine.getCurrentState());
-        final Function<State, DES.Runnable> assertIn =
+        final Function<State, DiscreteEventSimulator.Action> assertIn =
                 (state) ->
                         _time ->
                                 assertSame(
@@ -2,6 +2,7 @@ package coppercore.controls.test;
 
 import static org.junit.jupiter.api.Assertions.assertSame;
 
+import coppercore.controls.simulation.DiscreteEventSimulator;
 import coppercore.controls.state_machine.State;
 import coppercore.controls.state_machine.StateMachine;
 import java.util.function.BiFunction;
@@ -58,28 +59,20 @@ public class StateMachineTestsEasierTypes {
         Robot stateMachineWorld = new Robot();
         StateMachine<Robot> stateMachine = createTestStateMachine(stateMachineWorld);
 
-        DES sim = new DES();
+        DiscreteEventSimulator sim = new DiscreteEventSimulator();
 
         // Run robot loop every 20ms, that is, at 0, 20, 40, 60 and so on.
-        DES.Runnable robotLoop =
-                new DES.Runnable() {
-                    @Override
-                    public void run(int simulationTime) {
-                        stateMachine.periodic();
-                        sim.schedule(simulationTime + 20, this);
-                    }
-                };
-        sim.schedule(0, robotLoop);
+        sim.addStateMachine(stateMachine, 20);
         assertSame(easierState, stateMachine.getCurrentState());
 
-        final BiFunction<State, String, DES.Runnable> assertIn =
+        final BiFunction<State, String, DiscreteEventSimulator.Action> assertIn =
                 (state, msg) -> _time -> assertSame(state, stateMachine.getCurrentState(), msg);
 
         // Schedule checks
         sim.schedule(100, assertIn.apply(easierState, "Should still be in easierState at 100ms"));
 
         // Change external condition to true to trigger transition
-        sim.schedule(185, _time -> externalCondition = true);
+        sim.scheduleMutation(185, () -> externalCondition = true);
 
         // Check that we are still in easierState just before transition should occur
         sim.schedule(190, assertIn.apply(easierState, "Should still be in easierState at 190ms"));
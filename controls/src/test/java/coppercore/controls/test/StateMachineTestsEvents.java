@@ -0,0 +1,158 @@
+package coppercore.controls.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Test transitions that declare the events they depend on.
+ */
+public class StateMachineTestsEvents {
+
+    public enum Event {
+        PIECE_SENSOR,
+        ELEVATOR_ENCODER
+    }
+
+    public static class Robot {
+        public boolean hasPiece = false;
+        public boolean atSetpoint = false;
+        public boolean cancel = false;
+        public int pieceChecks = 0;
+        public int setpointChecks = 0;
+        public int cancelChecks = 0;
+
+        boolean checkPiece() {
+            pieceChecks++;
+            return hasPiece;
+        }
+
+        boolean checkSetpoint() {
+            setpointChecks++;
+            return atSetpoint;
+        }
+
+        boolean checkCancel() {
+            cancelChecks++;
+            return cancel;
+        }
+    }
+
+    static class EmptyState extends State<Robot> {
+        EmptyState(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {}
+    }
+
+    State<Robot> idleState = new EmptyState("Idle");
+    State<Robot> scoringState = new EmptyState("Scoring");
+    State<Robot> doneState = new EmptyState("Done");
+
+    StateMachine<Robot> createTestStateMachine(Robot world) {
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+        List.of(idleState, scoringState, doneState).forEach(stateMachine::registerState);
+
+        idleState
+                .when(Robot::checkPiece, "has piece")
+                .andWhen(Robot::checkSetpoint, "at setpoint")
+                .dependsOn(Event.PIECE_SENSOR, Event.ELEVATOR_ENCODER)
+                .transitionTo(scoringState);
+        // Not declared, so it is polled on every update
+        idleState.when(Robot::checkCancel, "cancel").transitionTo(doneState);
+        scoringState
+                .when(robot -> !robot.checkPiece(), "piece scored")
+                .dependsOn(Event.PIECE_SENSOR)
+                .transitionTo(doneState);
+
+        stateMachine.compile();
+        stateMachine.setState(idleState);
+        return stateMachine;
+    }
+
+    @Test
+    public void declaredTransitionsOnlyEvaluatedWhenDirty() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world);
+
+        // First update after entering evaluates everything
+        stateMachine.periodic();
+        assertEquals(1, world.pieceChecks);
+        assertEquals(1, world.cancelChecks);
+
+        // Nothing fired: only the undeclared transition is polled
+        for (int i = 0; i < 10; i++) {
+            stateMachine.periodic();
+        }
+        assertEquals(1, world.pieceChecks);
+        assertEquals(11, world.cancelChecks);
+
+        // World changes without firing an event are not seen by declared transitions
+        world.hasPiece = true;
+        world.atSetpoint = true;
+        stateMachine.periodic();
+        assertSame(idleState, stateMachine.getCurrentState());
+        assertEquals(1, world.pieceChecks);
+
+        // Firing an event that nothing depends on does nothing
+        stateMachine.fire("unrelated");
+        stateMachine.periodic();
+        assertSame(idleState, stateMachine.getCurrentState());
+
+        stateMachine.fire(Event.ELEVATOR_ENCODER);
+        stateMachine.periodic();
+        assertSame(scoringState, stateMachine.getCurrentState());
+        assertEquals(2, world.pieceChecks);
+        assertEquals(1, world.setpointChecks);
+
+        // Entering Scoring evaluates its transition once, then waits for the sensor
+        stateMachine.periodic();
+        assertEquals(3, world.pieceChecks);
+        world.hasPiece = false;
+        stateMachine.periodic();
+        assertSame(scoringState, stateMachine.getCurrentState());
+        assertEquals(3, world.pieceChecks);
+
+        stateMachine.fire(Event.PIECE_SENSOR);
+        stateMachine.periodic();
+        assertSame(doneState, stateMachine.getCurrentState());
+        assertEquals(4, world.pieceChecks);
+    }
+
+    @Test
+    public void eventsAreClearedAfterEachUpdate() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world);
+        stateMachine.periodic();
+
+        stateMachine.fire(Event.PIECE_SENSOR);
+        stateMachine.periodic();
+        assertEquals(2, world.pieceChecks);
+
+        stateMachine.periodic();
+        assertEquals(2, world.pieceChecks);
+    }
+
+    @Test
+    public void uncompiledStateMachinePollsEverything() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+        List.of(idleState, scoringState).forEach(stateMachine::registerState);
+        idleState
+                .when(Robot::checkPiece, "has piece")
+                .dependsOn(Event.PIECE_SENSOR)
+                .transitionTo(scoringState);
+        stateMachine.setState(idleState);
+
+        for (int i = 0; i < 5; i++) {
+            stateMachine.periodic();
+        }
+        assertEquals(5, world.pieceChecks);
+    }
+}
@@ -0,0 +1,253 @@
+package coppercore.controls.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import coppercore.controls.state_machine.codegen.GenerateStateMachine;
+import coppercore.controls.state_machine.codegen.OnEntry;
+import coppercore.controls.state_machine.codegen.OnExit;
+import coppercore.controls.state_machine.codegen.Periodic;
+import coppercore.controls.state_machine.codegen.StateMachineProcessor;
+import coppercore.controls.state_machine.codegen.Transition;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Test state machines generated by the StateMachineProcessor against equivalent StateMachines.
+ */
+public class StateMachineTestsGenerated {
+
+    public static class Robot {
+        public boolean wantsIntake = false;
+        public boolean hasNote = false;
+        public boolean wantsShoot = false;
+        public final List<String> trace = new ArrayList<>();
+    }
+
+    @GenerateStateMachine(
+            world = Robot.class,
+            states = {"Idle", "Intaking", "Shooting"})
+    public static class ShooterDefinition {
+        @Periodic("Idle")
+        void idle(Robot robot) {
+            robot.trace.add("Idle.periodic");
+        }
+
+        @Periodic("Intaking")
+        void intake(Robot robot) {
+            robot.trace.add("Intaking.periodic");
+        }
+
+        @OnEntry("Intaking")
+        void startIntake(Robot robot) {
+            robot.trace.add("Intaking.onEntry");
+        }
+
+        @OnExit("Intaking")
+        void stopIntake(Robot robot) {
+            robot.trace.add("Intaking.onExit");
+        }
+
+        @OnEntry("Shooting")
+        void startShooting(Robot robot) {
+            robot.trace.add("Shooting.onEntry");
+        }
+
+        @Transition(from = "Idle", to = "Intaking", description = "wants intake")
+        boolean wantsIntake(Robot robot) {
+            return robot.wantsIntake;
+        }
+
+        @Transition(from = "Intaking", to = "Idle", description = "got note")
+        @Transition(from = "Shooting", to = "Idle", description = "no note")
+        static boolean noteChanged(Robot robot) {
+            return robot.hasNote != robot.wantsShoot;
+        }
+
+        @Transition(from = "Idle", to = "Shooting")
+        boolean wantsShoot(Robot robot) {
+            return robot.wantsShoot && robot.hasNote;
+        }
+    }
+
+    static class TracingState extends State<Robot> {
+        private final boolean tracePeriodic;
+        private final boolean traceEntry;
+        private final boolean traceExit;
+
+        TracingState(String name, boolean tracePeriodic, boolean traceEntry, boolean traceExit) {
+            super(name);
+            this.tracePeriodic = tracePeriodic;
+            this.traceEntry = traceEntry;
+            this.traceExit = traceExit;
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {
+            if (tracePeriodic) {
+                world.trace.add(name + ".periodic");
+            }
+        }
+
+        @Override
+        protected void onEntry(StateMachine<Robot> stateMachine, Robot world) {
+            if (traceEntry) {
+                world.trace.add(name + ".onEntry");
+            }
+        }
+
+        @Override
+        protected void onExit(StateMachine<Robot> stateMachine, Robot world) {
+            if (traceExit) {
+                world.trace.add(name + ".onExit");
+            }
+        }
+    }
+
+    /** Builds the same state machine as ShooterDefinition using State objects and lambdas. */
+    static StateMachine<Robot> createEquivalentStateMachine(Robot world, List<State<Robot>> out) {
+        State<Robot> idle = new TracingState("Idle", true, false, false);
+        State<Robot> intaking = new TracingState("Intaking", true, true, true);
+        State<Robot> shooting = new TracingState("Shooting", false, true, false);
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+        stateMachine.registerState(idle);
+        stateMachine.registerState(intaking);
+        stateMachine.registerState(shooting);
+
+        idle.when(robot -> robot.wantsIntake, "wants intake").transitionTo(intaking);
+        intaking.when(robot -> robot.hasNote != robot.wantsShoot, "got note").transitionTo(idle);
+        shooting.when(robot -> robot.hasNote != robot.wantsShoot, "no note").transitionTo(idle);
+        idle.when(robot -> robot.wantsShoot && robot.hasNote, "wantsShoot").transitionTo(shooting);
+        out.addAll(List.of(idle, intaking, shooting));
+        return stateMachine;
+    }
+
+    static void setInputs(Robot world, int step) {
+        int phase = step % 12;
+        world.wantsIntake = phase >= 1 && phase < 3;
+        world.hasNote = phase >= 3 && phase < 9;
+        world.wantsShoot = phase >= 5 && phase < 10;
+    }
+
+    @Test
+    public void generatedMatchesStateMachine() {
+        Robot generatedWorld = new Robot();
+        ShooterDefinitionStateMachine generated =
+                new ShooterDefinitionStateMachine(new ShooterDefinition(), generatedWorld);
+
+        Robot world = new Robot();
+        List<State<Robot>> states = new ArrayList<>();
+        StateMachine<Robot> stateMachine = createEquivalentStateMachine(world, states);
+
+        assertThrows(NullPointerException.class, generated::periodic);
+
+        generated.setState(ShooterDefinitionStateMachine.State.Idle);
+        stateMachine.setState(states.get(0));
+        for (int step = 0; step < 60; step++) {
+            setInputs(generatedWorld, step);
+            setInputs(world, step);
+            generated.periodic();
+            stateMachine.periodic();
+            assertEquals(
+                    stateMachine.getCurrentState().getName(),
+                    generated.getCurrentState().name(),
+                    "State differs at step " + step);
+        }
+        assertEquals(world.trace, generatedWorld.trace);
+        assertTrue(generatedWorld.trace.contains("Shooting.onEntry"));
+        assertTrue(generatedWorld.trace.contains("Intaking.onExit"));
+
+        // Setting the current state again still exits and enters it
+        generated.setState(ShooterDefinitionStateMachine.State.Intaking);
+        generated.setState(ShooterDefinitionStateMachine.State.Intaking);
+        stateMachine.setState(states.get(1));
+        stateMachine.setState(states.get(1));
+        assertEquals(world.trace, generatedWorld.trace);
+
+        StringWriter generatedGraph = new StringWriter();
+        generated.writeGraphvizFile(new PrintWriter(generatedGraph));
+        StringWriter graph = new StringWriter();
+        stateMachine.writeGraphvizFile(new PrintWriter(graph));
+        assertEquals(graph.toString(), generatedGraph.toString());
+    }
+
+    static class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceFile(String className, String source) {
+            super(URI.create("string:///" + className + ".java"), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    @Test
+    public void invalidDefinitionsAreReported() {
+        String source =
+                """
+                import coppercore.controls.state_machine.codegen.*;
+
+                @GenerateStateMachine(world = String.class, states = {"A", "B", "A"})
+                class BadDefinition {
+                    @Periodic("C")
+                    void unknownState(String world) {}
+
+                    @Transition(from = "A", to = "B")
+                    int notBoolean(String world) {
+                        return 0;
+                    }
+
+                    @Transition(from = "B", to = "A")
+                    boolean wrongParameter(Integer world) {
+                        return true;
+                    }
+                }
+                """;
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean success =
+                compiler.getTask(
+                                null,
+                                null,
+                                diagnostics,
+                                List.of(
+                                        "-proc:only",
+                                        "-processor",
+                                        StateMachineProcessor.class.getName(),
+                                        "-classpath",
+                                        System.getProperty("java.class.path")),
+                                null,
+                                List.of(new SourceFile("BadDefinition", source)))
+                        .call();
+        assertFalse(success);
+
+        List<String> messages = new ArrayList<>();
+        diagnostics.getDiagnostics().forEach(d -> messages.add(d.getMessage(null)));
+        assertTrue(
+                messages.contains("State \"A\" is declared more than once"), messages.toString());
+        assertTrue(messages.contains("Unknown state \"C\""), messages.toString());
+        assertTrue(messages.contains("Transition guards must return boolean"), messages.toString());
+        assertTrue(
+                messages.contains(
+                        "State machine methods must take no parameters or a single"
+                                + " java.lang.String parameter"),
+                messages.toString());
+    }
+}
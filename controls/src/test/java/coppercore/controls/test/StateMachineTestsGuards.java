@@ -0,0 +1,172 @@
+package coppercore.controls.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import coppercore.controls.state_machine.Guard;
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Test guards shared between transitions and evaluated at most once per tick.
+ */
+public class StateMachineTestsGuards {
+
+    public static class Robot {
+        public boolean hasNote = false;
+        public boolean atSetpoint = false;
+        public boolean wantsShoot = false;
+        public boolean wantsAmp = false;
+        public boolean wantsPass = false;
+        public int hasNoteChecks = 0;
+        public int atSetpointChecks = 0;
+    }
+
+    static class EmptyState extends State<Robot> {
+        EmptyState(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {}
+    }
+
+    State<Robot> idleState = new EmptyState("Idle");
+    State<Robot> shootState = new EmptyState("Shoot");
+    State<Robot> ampState = new EmptyState("Amp");
+    State<Robot> passState = new EmptyState("Pass");
+
+    StateMachine<Robot> createTestStateMachine(Robot world) {
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+        List.of(idleState, shootState, ampState, passState).forEach(stateMachine::registerState);
+
+        Guard<Robot> hasNote =
+                stateMachine.registerGuard(
+                        "hasNote",
+                        robot -> {
+                            robot.hasNoteChecks++;
+                            return robot.hasNote;
+                        });
+        Guard<Robot> atSetpoint =
+                stateMachine.registerGuard(
+                        "atSetpoint",
+                        robot -> {
+                            robot.atSetpointChecks++;
+                            return robot.atSetpoint;
+                        });
+
+        idleState
+                .when(hasNote)
+                .andWhen(atSetpoint)
+                .andWhen(r -> r.wantsShoot, "wantsShoot")
+                .transitionTo(shootState);
+        idleState
+                .when(hasNote)
+                .andWhen(atSetpoint)
+                .andWhen(r -> r.wantsAmp, "wantsAmp")
+                .transitionTo(ampState);
+        idleState.when(r -> r.wantsPass, "wantsPass").andWhen(hasNote).transitionTo(passState);
+        for (State<Robot> state : List.of(shootState, ampState, passState)) {
+            state.when(hasNote.negate(), "no note").transitionTo(idleState);
+        }
+        stateMachine.setState(idleState);
+        return stateMachine;
+    }
+
+    void checkGuardsAreEvaluatedOncePerTick(boolean compiled) {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world);
+        if (compiled) {
+            stateMachine.compile();
+        }
+
+        // Every transition of Idle checks hasNote, but it is only evaluated once
+        world.wantsPass = true;
+        stateMachine.periodic();
+        assertSame(idleState, stateMachine.getCurrentState());
+        assertEquals(1, world.hasNoteChecks);
+        assertEquals(0, world.atSetpointChecks);
+
+        // The cache is cleared every tick
+        world.hasNote = true;
+        world.wantsPass = false;
+        stateMachine.periodic();
+        assertSame(idleState, stateMachine.getCurrentState());
+        assertEquals(2, world.hasNoteChecks);
+        assertEquals(1, world.atSetpointChecks);
+
+        world.atSetpoint = true;
+        world.wantsAmp = true;
+        stateMachine.periodic();
+        assertSame(ampState, stateMachine.getCurrentState());
+        assertEquals(3, world.hasNoteChecks);
+        assertEquals(2, world.atSetpointChecks);
+
+        world.hasNote = false;
+        stateMachine.periodic();
+        assertSame(idleState, stateMachine.getCurrentState());
+        assertEquals(4, world.hasNoteChecks);
+    }
+
+    @Test
+    public void guardsAreEvaluatedOncePerTick() {
+        checkGuardsAreEvaluatedOncePerTick(false);
+    }
+
+    @Test
+    public void compiledGuardsAreEvaluatedOncePerTick() {
+        checkGuardsAreEvaluatedOncePerTick(true);
+    }
+
+    @Test
+    public void guardNamesDescribeTransitions() {
+        StateMachine<Robot> stateMachine = createTestStateMachine(new Robot());
+        StringWriter graph = new StringWriter();
+        stateMachine.writeGraphvizFile(new PrintWriter(graph));
+        assertTrue(graph.toString().contains("[label=\"hasNote && atSetpoint && wantsShoot\"]"));
+        assertTrue(graph.toString().contains("[label=\"wantsPass && hasNote\"]"));
+
+        assertThrows(
+                IllegalArgumentException.class, () -> stateMachine.registerGuard("", r -> true));
+    }
+
+    @Test
+    public void manyGuardsCanBeRegistered() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world);
+        List<Guard<Robot>> guards = new ArrayList<>();
+        int[] checks = new int[200];
+        for (int i = 0; i < checks.length; i++) {
+            final int index = i;
+            guards.add(
+                    stateMachine.registerGuard(
+                            "guard" + i,
+                            robot -> {
+                                checks[index]++;
+                                return index % 3 == 0;
+                            }));
+        }
+
+        for (int tick = 0; tick < 3; tick++) {
+            stateMachine.periodic();
+            for (int repeat = 0; repeat < 2; repeat++) {
+                for (int i = 0; i < guards.size(); i++) {
+                    assertEquals(i % 3 == 0, guards.get(i).test(world));
+                }
+            }
+        }
+        for (int i = 0; i < checks.length; i++) {
+            assertEquals(3, checks[i], "Guard " + i);
+        }
+        assertEquals("guard7", guards.get(7).getName());
+        assertFalse(guards.get(7).test(world));
+    }
+}
@@ -0,0 +1,431 @@
+package coppercore.controls.test;
+
+import static edu.wpi.first.units.Units.Seconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import coppercore.controls.state_machine.Guard;
+import coppercore.controls.state_machine.ParallelState;
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Test nested states and parallel states with orthogonal regions.
+ */
+public class StateMachineTestsHierarchy {
+
+    public static class Robot {
+        public double time = 0.0;
+        public boolean enabled = true;
+        public boolean wantsIntake = false;
+        public boolean hasNote = false;
+        public boolean armDone = false;
+        public boolean intakeDone = false;
+        public int enabledChecks = 0;
+        public final List<String> trace = new ArrayList<>();
+    }
+
+    static class TracingState extends State<Robot> {
+        TracingState(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {
+            world.trace.add(name + ".periodic");
+        }
+
+        @Override
+        protected void onEntry(StateMachine<Robot> stateMachine, Robot world) {
+            world.trace.add(name + ".onEntry");
+        }
+
+        @Override
+        protected void onExit(StateMachine<Robot> stateMachine, Robot world) {
+            world.trace.add(name + ".onExit");
+        }
+    }
+
+    State<Robot> disabledState = new TracingState("Disabled");
+    State<Robot> enabledState = new TracingState("Enabled");
+    State<Robot> idleState = new TracingState("Idle");
+    State<Robot> intakeState = new TracingState("Intake");
+    State<Robot> holdingState = new TracingState("Holding");
+
+    StateMachine<Robot> createTestStateMachine(Robot world) {
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+        stateMachine.registerState(disabledState);
+        stateMachine.registerState(enabledState);
+        stateMachine.registerState(idleState, enabledState);
+        stateMachine.registerState(intakeState, enabledState);
+        stateMachine.registerState(holdingState, enabledState);
+
+        // Defined once on the parent instead of on every substate
+        enabledState.when(robot -> !robot.enabled, "disabled").transitionTo(disabledState);
+        disabledState.when(robot -> robot.enabled, "enabled").transitionTo(enabledState);
+        idleState.when(robot -> robot.wantsIntake, "wantsIntake").transitionTo(intakeState);
+        intakeState.when(robot -> robot.hasNote, "hasNote").transitionTo(holdingState);
+        // Never taken while disabled, since the parent's transitions take precedence
+        holdingState.when(robot -> !robot.enabled, "shadowed").transitionTo(idleState);
+        holdingState.when(robot -> !robot.hasNote, "shot").transitionTo(enabledState);
+        stateMachine.setTimeSource(() -> world.time);
+        return stateMachine;
+    }
+
+    void checkNestedStates(boolean compiled) {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world);
+        if (compiled) {
+            stateMachine.compile();
+        }
+
+        stateMachine.setState(enabledState);
+        assertSame(idleState, stateMachine.getCurrentState());
+        assertEquals(List.of("Enabled.onEntry", "Idle.onEntry"), world.trace);
+
+        world.trace.clear();
+        world.wantsIntake = true;
+        stateMachine.periodic();
+        assertSame(intakeState, stateMachine.getCurrentState());
+        assertEquals(
+                List.of("Enabled.periodic", "Idle.periodic", "Idle.onExit", "Intake.onEntry"),
+                world.trace);
+
+        world.hasNote = true;
+        stateMachine.periodic();
+        assertSame(holdingState, stateMachine.getCurrentState());
+
+        world.trace.clear();
+        world.enabled = false;
+        stateMachine.periodic();
+        assertSame(disabledState, stateMachine.getCurrentState());
+        assertEquals(
+                List.of(
+                        "Enabled.periodic",
+                        "Holding.periodic",
+                        "Holding.onExit",
+                        "Enabled.onExit",
+                        "Disabled.onEntry"),
+                world.trace);
+
+        world.trace.clear();
+        world.enabled = true;
+        world.wantsIntake = false;
+        stateMachine.periodic();
+        assertSame(idleState, stateMachine.getCurrentState());
+        assertEquals(
+                List.of("Disabled.periodic", "Disabled.onExit", "Enabled.onEntry", "Idle.onEntry"),
+                world.trace);
+
+        // A transition from a substate to its parent exits and re-enters the parent
+        stateMachine.setState(holdingState);
+        world.trace.clear();
+        world.hasNote = false;
+        stateMachine.periodic();
+        assertSame(idleState, stateMachine.getCurrentState());
+        assertEquals(
+                List.of(
+                        "Enabled.periodic",
+                        "Holding.periodic",
+                        "Holding.onExit",
+                        "Enabled.onExit",
+                        "Enabled.onEntry",
+                        "Idle.onEntry"),
+                world.trace);
+    }
+
+    @Test
+    public void nestedStatesInheritTransitions() {
+        checkNestedStates(false);
+    }
+
+    @Test
+    public void compiledNestedStatesInheritTransitions() {
+        checkNestedStates(true);
+    }
+
+    @Test
+    public void parentTimeoutKeepsRunningAcrossSubstates() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world);
+        enabledState.whenTimeout(Seconds.of(1.0)).transitionTo(disabledState);
+        stateMachine.setState(enabledState);
+
+        world.wantsIntake = true;
+        world.time = 0.5;
+        stateMachine.periodic();
+        assertSame(intakeState, stateMachine.getCurrentState());
+
+        world.time = 0.99;
+        stateMachine.periodic();
+        assertSame(intakeState, stateMachine.getCurrentState());
+
+        world.time = 1.0;
+        stateMachine.periodic();
+        assertSame(disabledState, stateMachine.getCurrentState());
+    }
+
+    @Test
+    public void substatesMustHaveRegisteredParents() {
+        StateMachine<Robot> stateMachine = new StateMachine<>(new Robot());
+        State<Robot> parent = new TracingState("Parent");
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> stateMachine.registerState(new TracingState("Child"), parent));
+
+        stateMachine.registerState(parent);
+        State<Robot> child = stateMachine.registerState(new TracingState("Child"), parent);
+        assertSame(parent, child.getParent());
+        assertTrue(parent.contains(child));
+        assertFalse(child.contains(parent));
+        assertThrows(
+                IllegalArgumentException.class, () -> stateMachine.registerState(parent, child));
+    }
+
+    static class RegionState extends TracingState {
+        private final boolean finishes;
+
+        RegionState(String name, boolean finishes) {
+            super(name);
+            this.finishes = finishes;
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {
+            super.periodic(stateMachine, world);
+            if (finishes) {
+                finish();
+            }
+        }
+    }
+
+    @Test
+    public void parallelStateTicksRegionsTogether() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+        State<Robot> disabled = stateMachine.registerState(new TracingState("Disabled"));
+        State<Robot> done = stateMachine.registerState(new TracingState("Done"));
+        ParallelState<Robot> scoring = stateMachine.registerState(new ParallelState<>("Scoring"));
+        Guard<Robot> enabled =
+                stateMachine.registerGuard(
+                        "enabled",
+                        robot -> {
+                            robot.enabledChecks++;
+                            return robot.enabled;
+                        });
+
+        StateMachine<Robot> arm = new StateMachine<>(world);
+        State<Robot> armMoving = arm.registerState(new RegionState("ArmMoving", false));
+        State<Robot> armAtGoal = arm.registerState(new RegionState("ArmAtGoal", true));
+        armMoving.when(enabled).andWhen(robot -> robot.armDone, "armDone").transitionTo(armAtGoal);
+        scoring.addRegion("Arm", arm, armMoving);
+
+        StateMachine<Robot> intake = new StateMachine<>(world);
+        State<Robot> feeding = intake.registerState(new RegionState("Feeding", false));
+        State<Robot> fed = intake.registerState(new RegionState("Fed", true));
+        feeding.when(enabled).andWhen(robot -> robot.intakeDone, "intakeDone").transitionTo(fed);
+        scoring.addRegion("Intake", intake, feeding);
+
+        scoring.when(enabled.negate(), "disabled").transitionTo(disabled);
+        scoring.whenFinished().transitionTo(done);
+        disabled.when(enabled).transitionTo(scoring);
+        assertThrows(
+                IllegalArgumentException.class, () -> scoring.addRegion("Arm", arm, armMoving));
+
+        stateMachine.setState(scoring);
+        assertSame(armMoving, arm.getCurrentState());
+        assertSame(feeding, intake.getCurrentState());
+        assertEquals(List.of("ArmMoving.onEntry", "Feeding.onEntry"), world.trace);
+
+        // The guard is shared by both regions and the parallel state itself
+        world.trace.clear();
+        world.armDone = true;
+        stateMachine.periodic();
+        assertEquals(1, world.enabledChecks);
+        assertSame(scoring, stateMachine.getCurrentState());
+        assertSame(armAtGoal, arm.getCurrentState());
+        assertSame(feeding, intake.getCurrentState());
+        assertEquals(
+                List.of(
+                        "ArmMoving.periodic",
+                        "ArmMoving.onExit",
+                        "ArmAtGoal.onEntry",
+                        "Feeding.periodic"),
+                world.trace);
+
+        // Leaving the parallel state exits every region
+        world.trace.clear();
+        world.enabled = false;
+        stateMachine.periodic();
+        assertEquals(2, world.enabledChecks);
+        assertSame(disabled, stateMachine.getCurrentState());
+        assertNull(arm.getCurrentState());
+        assertNull(intake.getCurrentState());
+        assertEquals(
+                List.of(
+                        "ArmAtGoal.periodic",
+                        "Feeding.periodic",
+                        "ArmAtGoal.onExit",
+                        "Feeding.onExit",
+                        "Disabled.onEntry"),
+                world.trace);
+
+        // The parallel state finishes once every region has finished
+        world.enabled = true;
+        world.intakeDone = true;
+        stateMachine.periodic();
+        assertSame(scoring, stateMachine.getCurrentState());
+        stateMachine.periodic();
+        assertSame(scoring, stateMachine.getCurrentState());
+        stateMachine.periodic();
+        assertSame(done, stateMachine.getCurrentState());
+    }
+
+    @Test
+    public void parentGuardsAreEvaluatedOncePerTickForAllRegions() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+        State<Robot> disabled = stateMachine.registerState(new TracingState("Disabled"));
+        ParallelState<Robot> scoring = stateMachine.registerState(new ParallelState<>("Scoring"));
+        Guard<Robot> enabled =
+                stateMachine.registerGuard(
+                        "enabled",
+                        robot -> {
+                            robot.enabledChecks++;
+                            return robot.enabled;
+                        });
+        scoring.when(enabled.negate(), "disabled").transitionTo(disabled);
+
+        StateMachine<Robot> arm = new StateMachine<>(world);
+        State<Robot> armMoving = arm.registerState(new RegionState("ArmMoving", false));
+        State<Robot> armAtGoal = arm.registerState(new RegionState("ArmAtGoal", false));
+        armMoving.when(enabled).andWhen(robot -> robot.armDone, "armDone").transitionTo(armAtGoal);
+        scoring.addRegion("Arm", arm, armMoving);
+
+        StateMachine<Robot> intake = new StateMachine<>(world);
+        State<Robot> feeding = intake.registerState(new RegionState("Feeding", false));
+        State<Robot> fed = intake.registerState(new RegionState("Fed", false));
+        feeding.when(enabled).andWhen(robot -> robot.intakeDone, "intakeDone").transitionTo(fed);
+        scoring.addRegion("Intake", intake, feeding);
+
+        stateMachine.setState(scoring);
+        world.armDone = true;
+        world.intakeDone = true;
+        stateMachine.periodic();
+        assertEquals(1, world.enabledChecks);
+        assertSame(armAtGoal, arm.getCurrentState());
+        assertSame(fed, intake.getCurrentState());
+
+        // The cached result is cleared on every tick of the parent state machine
+        stateMachine.periodic();
+        assertEquals(2, world.enabledChecks);
+        world.enabled = false;
+        stateMachine.periodic();
+        assertEquals(3, world.enabledChecks);
+        assertSame(disabled, stateMachine.getCurrentState());
+    }
+
+    @Test
+    public void finishedRegionsAreNotTicked() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+        State<Robot> done = stateMachine.registerState(new TracingState("Done"));
+        ParallelState<Robot> scoring = stateMachine.registerState(new ParallelState<>("Scoring"));
+        scoring.whenFinished().transitionTo(done);
+
+        StateMachine<Robot> arm = new StateMachine<>(world);
+        State<Robot> armMoving = arm.registerState(new RegionState("ArmMoving", false));
+        State<Robot> armAtGoal = arm.registerState(new RegionState("ArmAtGoal", true));
+        armMoving.when(robot -> robot.armDone, "armDone").transitionTo(armAtGoal);
+        scoring.addRegion("Arm", arm, armMoving);
+
+        StateMachine<Robot> intake = new StateMachine<>(world);
+        State<Robot> feeding = intake.registerState(new RegionState("Feeding", false));
+        State<Robot> fed = intake.registerState(new RegionState("Fed", true));
+        feeding.when(robot -> robot.intakeDone, "intakeDone").transitionTo(fed);
+        scoring.addRegion("Intake", intake, feeding);
+
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream originalErr = System.err;
+        System.setErr(new PrintStream(errors, true));
+        try {
+            stateMachine.setState(scoring);
+            world.armDone = true;
+            stateMachine.periodic();
+            stateMachine.periodic();
+
+            // The arm region has finished, so only the intake region is ticked
+            world.trace.clear();
+            stateMachine.periodic();
+            stateMachine.periodic();
+            assertSame(scoring, stateMachine.getCurrentState());
+            assertEquals(List.of("Feeding.periodic", "Feeding.periodic"), world.trace);
+
+            world.trace.clear();
+            world.intakeDone = true;
+            stateMachine.periodic();
+            stateMachine.periodic();
+            assertSame(done, stateMachine.getCurrentState());
+            assertEquals(
+                    List.of(
+                            "Feeding.periodic",
+                            "Feeding.onExit",
+                            "Fed.onEntry",
+                            "Fed.periodic",
+                            "ArmAtGoal.onExit",
+                            "Fed.onExit",
+                            "Done.onEntry"),
+                    world.trace);
+        } finally {
+            System.setErr(originalErr);
+        }
+        assertEquals("", errors.toString());
+    }
+
+    @Test
+    public void graphvizDrawsNestingAsClusters() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world);
+        ParallelState<Robot> scoring = stateMachine.registerState(new ParallelState<>("Scoring"));
+        StateMachine<Robot> arm = new StateMachine<>(world);
+        State<Robot> armMoving = arm.registerState(new TracingState("ArmMoving"));
+        scoring.addRegion("Arm", arm, armMoving);
+        scoring.when(robot -> !robot.enabled, "disabled").transitionTo(disabledState);
+        stateMachine.setState(enabledState);
+
+        StringWriter graph = new StringWriter();
+        stateMachine.writeGraphvizFile(new PrintWriter(graph));
+        String output = graph.toString();
+        assertTrue(output.contains("  compound=true;"));
+        assertTrue(
+                output.contains(
+                        "  subgraph cluster_Enabled {\n"
+                                + "    label=\"Enabled\";\n"
+                                + "    Idle [shape=doublecircle];\n"));
+        assertTrue(output.contains("  subgraph cluster_Scoring {\n"));
+        assertTrue(output.contains("    subgraph cluster_Scoring_Arm {\n"));
+        assertTrue(output.contains("      ArmMoving ;\n"));
+        assertTrue(
+                output.contains(
+                        "  Idle -> Disabled [label=\"disabled\", ltail=cluster_Enabled];"));
+        assertTrue(
+                output.contains(
+                        "  Disabled -> Idle [label=\"enabled\", lhead=cluster_Enabled];"));
+        assertTrue(
+                output.contains(
+                        "  ArmMoving -> Disabled [label=\"disabled\", ltail=cluster_Scoring];"));
+        // Transitions into an enclosing cluster are not clipped
+        assertTrue(output.contains("  Holding -> Idle [label=\"shot\"];"));
+    }
+}
@@ -0,0 +1,187 @@
+package coppercore.controls.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import coppercore.controls.state_machine.StateMachineInstrumentation;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Test the timing and transition statistics collected by state machine instrumentation.
+ */
+public class StateMachineTestsInstrumentation {
+
+    public static class Robot {
+        public double time = 0.0;
+        public boolean shoot = false;
+        public boolean hasNote = false;
+    }
+
+    static class EmptyState extends State<Robot> {
+        EmptyState(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {}
+    }
+
+    State<Robot> idleState = new EmptyState("Idle");
+    State<Robot> shootingState = new EmptyState("Shooting");
+    State<Robot> unregisteredState = new EmptyState("Unregistered");
+
+    StateMachine<Robot> createTestStateMachine(Robot world) {
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+        stateMachine.registerState(idleState);
+        stateMachine.registerState(shootingState);
+        idleState.when(robot -> robot.shoot, "shoot").transitionTo(shootingState);
+        idleState.when(robot -> robot.hasNote, "hasNote").transitionTo(shootingState);
+        shootingState.when(robot -> !robot.shoot && !robot.hasNote, "done").transitionTo(idleState);
+        stateMachine.setTimeSource(() -> world.time);
+        stateMachine.setState(idleState);
+        return stateMachine;
+    }
+
+    /** Runs the robot loop for the given number of 20 ms loops. */
+    static void runLoops(StateMachine<Robot> stateMachine, Robot world, int loops) {
+        for (int i = 0; i < loops; i++) {
+            world.time += 0.02;
+            stateMachine.periodic();
+        }
+    }
+
+    void checkStatistics(boolean compiled) {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world);
+        if (compiled) {
+            stateMachine.compile();
+        }
+        assertNull(stateMachine.getInstrumentation());
+        StateMachineInstrumentation<Robot> instrumentation =
+                stateMachine.enableInstrumentation("StateMachines/Test", 8);
+        assertSame(instrumentation, stateMachine.getInstrumentation());
+
+        runLoops(stateMachine, world, 50);
+        world.shoot = true;
+        runLoops(stateMachine, world, 25);
+        world.shoot = false;
+        runLoops(stateMachine, world, 50);
+        world.hasNote = true;
+        runLoops(stateMachine, world, 25);
+        world.hasNote = false;
+        runLoops(stateMachine, world, 50);
+
+        // Idle was entered before instrumentation was enabled, so only the two returns count
+        assertEquals(2, instrumentation.getEntryCount(idleState));
+        assertEquals(2, instrumentation.getEntryCount(shootingState));
+        assertEquals(1, instrumentation.getTransitionCount(idleState, 0));
+        assertEquals(1, instrumentation.getTransitionCount(idleState, 1));
+        assertEquals(2, instrumentation.getTransitionCount(shootingState, 0));
+        assertEquals(3.0, instrumentation.getTimeInStateSeconds(idleState), 1e-9);
+        assertEquals(1.0, instrumentation.getTimeInStateSeconds(shootingState), 1e-9);
+
+        assertEquals(4, instrumentation.getRecentTransitionCount());
+        assertEquals("shoot", instrumentation.getRecentTransitionDescription(0));
+        assertEquals("Idle", instrumentation.getRecentTransitionFrom(0));
+        assertEquals("Shooting", instrumentation.getRecentTransitionTo(0));
+        assertEquals(1.02, instrumentation.getRecentTransitionTimestamp(0), 1e-9);
+        assertEquals("done", instrumentation.getRecentTransitionDescription(1));
+        assertEquals("hasNote", instrumentation.getRecentTransitionDescription(2));
+        assertEquals("done", instrumentation.getRecentTransitionDescription(3));
+
+        long periodicCalls = Arrays.stream(instrumentation.getPeriodicHistogram(idleState)).sum();
+        periodicCalls += Arrays.stream(instrumentation.getPeriodicHistogram(shootingState)).sum();
+        assertEquals(200, periodicCalls);
+        assertEquals(
+                StateMachineInstrumentation.getHistogramBoundsMicros().length + 1,
+                instrumentation.getPeriodicHistogram(idleState).length);
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> instrumentation.getEntryCount(unregisteredState));
+
+        stateMachine.disableInstrumentation();
+        assertNull(stateMachine.getInstrumentation());
+    }
+
+    @Test
+    public void collectsStatistics() {
+        checkStatistics(false);
+    }
+
+    @Test
+    public void compiledCollectsSameStatistics() {
+        checkStatistics(true);
+    }
+
+    @Test
+    public void recentTransitionsKeepOnlyTheLatest() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world);
+        StateMachineInstrumentation<Robot> instrumentation =
+                stateMachine.enableInstrumentation("StateMachines/Test", 3);
+
+        stateMachine.setState(shootingState);
+        for (int i = 0; i < 10; i++) {
+            world.shoot = i % 2 == 0;
+            runLoops(stateMachine, world, 1);
+        }
+
+        assertEquals(3, instrumentation.getRecentTransitionCount());
+        assertEquals("Shooting", instrumentation.getRecentTransitionFrom(0));
+        assertEquals("Idle", instrumentation.getRecentTransitionFrom(1));
+        assertEquals("Shooting", instrumentation.getRecentTransitionFrom(2));
+        assertEquals(0.16, instrumentation.getRecentTransitionTimestamp(0), 1e-9);
+        assertEquals(0.2, instrumentation.getRecentTransitionTimestamp(2), 1e-9);
+        assertThrows(
+                IndexOutOfBoundsException.class,
+                () -> instrumentation.getRecentTransitionDescription(3));
+
+        // setState is recorded without counting a transition
+        stateMachine.setState(shootingState);
+        assertEquals(
+                StateMachineInstrumentation.SET_STATE_DESCRIPTION,
+                instrumentation.getRecentTransitionDescription(2));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> stateMachine.enableInstrumentation("StateMachines/Test", 0));
+    }
+
+    @Test
+    public void instrumentedCompiledStateMachineDoesNotAllocate() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world);
+        stateMachine.compile();
+        stateMachine.enableInstrumentation("StateMachines/Test", 16);
+
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        cycle(stateMachine, world, 10_000);
+
+        // See StateMachineTestsCompiled for why several rounds are measured
+        long fewestBytesAllocated = Long.MAX_VALUE;
+        for (int round = 0; round < 10; round++) {
+            long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+            cycle(stateMachine, world, 20_000);
+            long allocatedAfter = threadBean.getCurrentThreadAllocatedBytes();
+            fewestBytesAllocated = Math.min(fewestBytesAllocated, allocatedAfter - allocatedBefore);
+        }
+
+        assertEquals(0, fewestBytesAllocated, "Instrumentation allocated memory while updating");
+    }
+
+    private static void cycle(StateMachine<Robot> stateMachine, Robot world, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            world.shoot = i % 20 < 10;
+            runLoops(stateMachine, world, 1);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package coppercore.controls.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import coppercore.controls.state_machine.StateMachine.RequestPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Test the request mailbox policies, including requests made from other threads.
+ */
+public class StateMachineTestsRequests {
+
+    public static class Robot {
+        public int entries = 0;
+    }
+
+    static class CountingState extends State<Robot> {
+        CountingState(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void onEntry(StateMachine<Robot> stateMachine, Robot world) {
+            world.entries++;
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {}
+    }
+
+    State<Robot> idleState = new CountingState("Idle");
+    State<Robot> intakeState = new CountingState("Intake");
+    State<Robot> scoreState = new CountingState("Score");
+
+    StateMachine<Robot> createTestStateMachine(Robot world, RequestPolicy policy) {
+        StateMachine<Robot> stateMachine = new StateMachine<>(world, policy);
+        List<State<Robot>> allStates = List.of(idleState, intakeState, scoreState);
+        allStates.forEach(stateMachine::registerState);
+        for (State<Robot> from : allStates) {
+            for (State<Robot> to : allStates) {
+                from.whenRequestedTransitionTo(to);
+            }
+        }
+        stateMachine.setState(idleState);
+        world.entries = 0;
+        return stateMachine;
+    }
+
+    @Test
+    public void latestWinsKeepsOnlyLastRequest() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world, RequestPolicy.LATEST_WINS);
+        assertSame(RequestPolicy.LATEST_WINS, stateMachine.getRequestPolicy());
+
+        stateMachine.requestState(intakeState);
+        stateMachine.requestState(scoreState);
+        stateMachine.periodic();
+        assertSame(scoreState, stateMachine.getCurrentState());
+        assertEquals(1, world.entries);
+
+        // Requests are cleared once considered
+        stateMachine.periodic();
+        assertEquals(1, world.entries);
+
+        // Requesting null cancels the pending request
+        stateMachine.requestState(idleState);
+        stateMachine.requestState(null);
+        stateMachine.periodic();
+        assertSame(scoreState, stateMachine.getCurrentState());
+    }
+
+    @Test
+    public void fifoConsidersOneRequestPerUpdate() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world, RequestPolicy.FIFO);
+
+        stateMachine.requestState(intakeState);
+        stateMachine.requestState(null);
+        stateMachine.requestState(scoreState);
+        stateMachine.requestState(idleState);
+
+        stateMachine.periodic();
+        assertSame(intakeState, stateMachine.getCurrentState());
+        stateMachine.periodic();
+        assertSame(scoreState, stateMachine.getCurrentState());
+        stateMachine.periodic();
+        assertSame(idleState, stateMachine.getCurrentState());
+        stateMachine.periodic();
+        assertSame(idleState, stateMachine.getCurrentState());
+        assertEquals(3, world.entries);
+
+        stateMachine.requestState(intakeState);
+        stateMachine.clearRequests();
+        stateMachine.periodic();
+        assertSame(idleState, stateMachine.getCurrentState());
+    }
+
+    @Test
+    public void fifoRequestsFromManyThreadsAreAllDelivered() throws InterruptedException {
+        final int producerCount = 4;
+        final int requestsPerProducer = 2_000;
+
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world, RequestPolicy.FIFO);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < producerCount; p++) {
+            Thread producer =
+                    new Thread(
+                            () -> {
+                                try {
+                                    start.await();
+                                } catch (InterruptedException e) {
+                                    return;
+                                }
+                                for (int i = 0; i < requestsPerProducer; i++) {
+                                    stateMachine.requestState(
+                                            i % 2 == 0 ? intakeState : scoreState);
+                                }
+                            });
+            producer.start();
+            producers.add(producer);
+        }
+
+        start.countDown();
+
+        // The robot loop keeps running while the producers post requests
+        final int expectedEntries = producerCount * requestsPerProducer;
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (world.entries < expectedEntries && System.nanoTime() < deadline) {
+            stateMachine.periodic();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertEquals(expectedEntries, world.entries);
+
+        // Nothing is left over
+        stateMachine.periodic();
+        assertEquals(expectedEntries, world.entries);
+        assertTrue(
+                stateMachine.getCurrentState() == intakeState
+                        || stateMachine.getCurrentState() == scoreState);
+    }
+}
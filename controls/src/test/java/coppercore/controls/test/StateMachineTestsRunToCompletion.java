@@ -0,0 +1,180 @@
+package coppercore.controls.test;
+
+import static edu.wpi.first.units.Units.Seconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Test run-to-completion mode, which takes several transitions in a single update.
+ */
+public class StateMachineTestsRunToCompletion {
+
+    public static class Robot {
+        public boolean shouldIntake = false;
+        public boolean hasPiece = false;
+        public boolean indexed = false;
+        public List<String> log = new ArrayList<>();
+    }
+
+    static class LoggingState extends State<Robot> {
+        LoggingState(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void onEntry(StateMachine<Robot> stateMachine, Robot world) {
+            world.log.add("enter " + name);
+        }
+
+        @Override
+        protected void onExit(StateMachine<Robot> stateMachine, Robot world) {
+            world.log.add("exit " + name);
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {
+            world.log.add("periodic " + name);
+        }
+    }
+
+    State<Robot> idleState = new LoggingState("Idle");
+    State<Robot> intakingState = new LoggingState("Intaking");
+    State<Robot> indexingState = new LoggingState("Indexing");
+    State<Robot> readyState = new LoggingState("Ready");
+
+    StateMachine<Robot> createTestStateMachine(Robot world, boolean compile) {
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+
+        List.of(idleState, intakingState, indexingState, readyState)
+                .forEach(stateMachine::registerState);
+
+        idleState.when(w -> w.shouldIntake, "should intake").transitionTo(intakingState);
+        intakingState.when(w -> w.hasPiece, "has piece").transitionTo(indexingState);
+        indexingState.when(w -> w.indexed, "indexed").transitionTo(readyState);
+        readyState.when(w -> !w.hasPiece, "no piece").transitionTo(idleState);
+
+        if (compile) {
+            stateMachine.compile();
+        }
+        stateMachine.setState(idleState);
+        return stateMachine;
+    }
+
+    @Test
+    public void runToCompletionChainsTransitions() {
+        for (boolean compile : new boolean[] {false, true}) {
+            Robot world = new Robot();
+            StateMachine<Robot> stateMachine = createTestStateMachine(world, compile);
+            stateMachine.enableRunToCompletion(10, Seconds.of(1));
+            assertTrue(stateMachine.isRunToCompletion());
+
+            world.shouldIntake = true;
+            world.hasPiece = true;
+            world.indexed = true;
+            world.log.clear();
+
+            stateMachine.periodic();
+
+            assertSame(readyState, stateMachine.getCurrentState());
+            assertEquals(3, stateMachine.getLastStepCount());
+            assertFalse(stateMachine.wasLastUpdateCapped());
+            assertEquals(
+                    List.of(
+                            "periodic Idle",
+                            "exit Idle",
+                            "enter Intaking",
+                            "exit Intaking",
+                            "enter Indexing",
+                            "exit Indexing",
+                            "enter Ready"),
+                    world.log);
+
+            // Nothing changed, so the machine stays settled
+            stateMachine.periodic();
+            assertSame(readyState, stateMachine.getCurrentState());
+            assertEquals(0, stateMachine.getLastStepCount());
+        }
+    }
+
+    @Test
+    public void runToCompletionStopsAtMaxSteps() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world, true);
+        stateMachine.enableRunToCompletion(2, Seconds.of(1));
+
+        world.shouldIntake = true;
+        world.hasPiece = true;
+        world.indexed = true;
+
+        stateMachine.periodic();
+        assertSame(indexingState, stateMachine.getCurrentState());
+        assertEquals(2, stateMachine.getLastStepCount());
+        assertTrue(stateMachine.wasLastUpdateCapped());
+
+        stateMachine.periodic();
+        assertSame(readyState, stateMachine.getCurrentState());
+        assertEquals(1, stateMachine.getLastStepCount());
+        assertFalse(stateMachine.wasLastUpdateCapped());
+    }
+
+    @Test
+    public void runToCompletionSettlingAtMaxStepsIsNotCapped() {
+        for (boolean compile : new boolean[] {false, true}) {
+            Robot world = new Robot();
+            StateMachine<Robot> stateMachine = createTestStateMachine(world, compile);
+            stateMachine.enableRunToCompletion(3, Seconds.of(1));
+
+            world.shouldIntake = true;
+            world.hasPiece = true;
+            world.indexed = true;
+
+            stateMachine.periodic();
+            assertSame(readyState, stateMachine.getCurrentState());
+            assertEquals(3, stateMachine.getLastStepCount());
+            assertFalse(stateMachine.wasLastUpdateCapped());
+        }
+    }
+
+    @Test
+    public void runToCompletionBoundsCycles() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world, false);
+        stateMachine.enableRunToCompletion(7, Seconds.of(1));
+
+        // Every condition in the cycle Idle -> Intaking -> Indexing -> Ready -> Idle is true
+        world.shouldIntake = true;
+        world.hasPiece = true;
+        world.indexed = true;
+        readyState.when(w -> true, "always").transitionTo(idleState);
+
+        stateMachine.periodic();
+        assertEquals(7, stateMachine.getLastStepCount());
+        assertTrue(stateMachine.wasLastUpdateCapped());
+        assertSame(readyState, stateMachine.getCurrentState());
+    }
+
+    @Test
+    public void runToCompletionDisabledTakesOneStep() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = createTestStateMachine(world, false);
+        stateMachine.enableRunToCompletion(10, Seconds.of(1));
+        stateMachine.disableRunToCompletion();
+
+        world.shouldIntake = true;
+        world.hasPiece = true;
+        world.indexed = true;
+
+        stateMachine.periodic();
+        assertSame(intakingState, stateMachine.getCurrentState());
+        assertEquals(1, stateMachine.getLastStepCount());
+        assertFalse(stateMachine.wasLastUpdateCapped());
+    }
+}
@@ -0,0 +1,215 @@
+package coppercore.controls.test;
+
+import static edu.wpi.first.units.Units.Seconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import coppercore.controls.state_machine.ParallelState;
+import coppercore.controls.state_machine.State;
+import coppercore.controls.state_machine.StateMachine;
+import coppercore.controls.state_machine.StateMachineSnapshot;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Test saving and restoring the runtime state of state machines.
+ */
+public class StateMachineTestsSnapshot {
+
+    public static class Robot {
+        public double time = 0.0;
+        public boolean hasNote = false;
+        public boolean holdShot = false;
+        public int shots = 0;
+
+        Robot copy() {
+            Robot copy = new Robot();
+            copy.time = time;
+            copy.hasNote = hasNote;
+            copy.holdShot = holdShot;
+            copy.shots = shots;
+            return copy;
+        }
+
+        void restore(Robot saved) {
+            time = saved.time;
+            hasNote = saved.hasNote;
+            holdShot = saved.holdShot;
+            shots = saved.shots;
+        }
+    }
+
+    static class EmptyState extends State<Robot> {
+        EmptyState(String name) {
+            super(name);
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {}
+    }
+
+    /** Shoots and finishes on the first periodic call. */
+    static class ShootState extends State<Robot> {
+        ShootState() {
+            super("Shoot");
+        }
+
+        @Override
+        protected void periodic(StateMachine<Robot> stateMachine, Robot world) {
+            if (!isFinished()) {
+                world.shots++;
+                world.hasNote = false;
+                finish();
+            }
+        }
+    }
+
+    State<Robot> idleState = new EmptyState("Idle");
+    State<Robot> spinUpState = new EmptyState("SpinUp");
+    State<Robot> shootState = new ShootState();
+    State<Robot> ejectState = new EmptyState("Eject");
+
+    StateMachine<Robot> createTestStateMachine(Robot world, StateMachine.RequestPolicy policy) {
+        StateMachine<Robot> stateMachine = new StateMachine<>(world, policy);
+        stateMachine.registerState(idleState);
+        stateMachine.registerState(spinUpState);
+        stateMachine.registerState(shootState);
+        stateMachine.registerState(ejectState);
+        idleState.when(robot -> robot.hasNote, "hasNote").transitionTo(spinUpState);
+        spinUpState.whenRequestedTransitionTo(ejectState);
+        spinUpState.whenTimeout(Seconds.of(1.0)).transitionTo(shootState);
+        shootState
+                .whenFinished()
+                .andWhen(robot -> !robot.holdShot, "released")
+                .transitionTo(idleState);
+        ejectState.whenTimeout(Seconds.of(0.1)).transitionTo(idleState);
+        stateMachine.setTimeSource(() -> world.time);
+        stateMachine.setWorldSnapshotHooks(Robot::copy, Robot::restore);
+        stateMachine.setState(idleState);
+        return stateMachine;
+    }
+
+    /** Runs 20 ms loops, recording the current state after each one. */
+    static List<String> run(StateMachine<Robot> stateMachine, Robot world, int loops) {
+        List<String> trace = new ArrayList<>();
+        for (int i = 0; i < loops; i++) {
+            world.time += 0.02;
+            stateMachine.periodic();
+            trace.add(stateMachine.getCurrentState().getName() + "@" + world.shots);
+        }
+        return trace;
+    }
+
+    void checkRestoredRunsMatch(boolean compiled) {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine =
+                createTestStateMachine(world, StateMachine.RequestPolicy.FIFO);
+        if (compiled) {
+            stateMachine.compile();
+        }
+        StateMachineSnapshot<Robot> snapshot = stateMachine.createSnapshot();
+        assertFalse(snapshot.isSaved());
+        assertThrows(IllegalArgumentException.class, () -> stateMachine.restoreSnapshot(snapshot));
+
+        // Fork in the middle of spinning up, with the shooter still to finish and two requests
+        // still pending
+        world.hasNote = true;
+        run(stateMachine, world, 20);
+        assertSame(spinUpState, stateMachine.getCurrentState());
+        stateMachine.requestState(ejectState);
+        stateMachine.requestState(ejectState);
+        stateMachine.saveSnapshot(snapshot);
+        assertTrue(snapshot.isSaved());
+        assertSame(spinUpState, snapshot.getCurrentState());
+
+        List<String> expected = run(stateMachine, world, 100);
+        assertTrue(expected.contains("Shoot@0"));
+        assertTrue(expected.contains("Idle@1"));
+        assertTrue(expected.contains("Eject@0"));
+        for (int fork = 0; fork < 3; fork++) {
+            stateMachine.restoreSnapshot(snapshot);
+            assertEquals(0, world.shots);
+            assertEquals(0.4, world.time, 1e-9);
+            assertEquals(expected, run(stateMachine, world, 100));
+        }
+    }
+
+    @Test
+    public void restoredRunsMatch() {
+        checkRestoredRunsMatch(false);
+    }
+
+    @Test
+    public void compiledRestoredRunsMatch() {
+        checkRestoredRunsMatch(true);
+    }
+
+    @Test
+    public void restoresFinishedFlagsAndDeadlines() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine =
+                createTestStateMachine(world, StateMachine.RequestPolicy.LATEST_WINS);
+        StateMachineSnapshot<Robot> snapshot = stateMachine.createSnapshot();
+
+        world.hasNote = true;
+        world.holdShot = true;
+        while (world.shots == 0) {
+            run(stateMachine, world, 1);
+        }
+        assertSame(shootState, stateMachine.getCurrentState());
+        stateMachine.saveSnapshot(snapshot);
+
+        world.holdShot = false;
+        run(stateMachine, world, 1);
+        assertSame(idleState, stateMachine.getCurrentState());
+
+        // Shoot is restored as finished, so it is left without shooting again
+        stateMachine.restoreSnapshot(snapshot);
+        assertSame(shootState, stateMachine.getCurrentState());
+        assertTrue(world.holdShot);
+        world.holdShot = false;
+        run(stateMachine, world, 1);
+        assertSame(idleState, stateMachine.getCurrentState());
+        assertEquals(1, world.shots);
+
+        // Restoring brings back deadlines that passed but were not processed yet
+        stateMachine.setState(spinUpState);
+        world.time += 2.0;
+        stateMachine.saveSnapshot(snapshot);
+        stateMachine.setState(idleState);
+        stateMachine.restoreSnapshot(snapshot);
+        stateMachine.periodic();
+        assertSame(shootState, stateMachine.getCurrentState());
+    }
+
+    @Test
+    public void restoresRegions() {
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+        State<Robot> idle = stateMachine.registerState(new EmptyState("Idle"));
+        ParallelState<Robot> scoring = stateMachine.registerState(new ParallelState<>("Scoring"));
+        StateMachine<Robot> arm = new StateMachine<>(world);
+        State<Robot> armDown = arm.registerState(new EmptyState("ArmDown"));
+        State<Robot> armUp = arm.registerState(new EmptyState("ArmUp"));
+        armDown.when(robot -> robot.hasNote, "hasNote").transitionTo(armUp);
+        scoring.addRegion("Arm", arm, armDown);
+        idle.when(robot -> robot.hasNote, "hasNote").transitionTo(scoring);
+        stateMachine.setState(scoring);
+        StateMachineSnapshot<Robot> snapshot = stateMachine.createSnapshot();
+        stateMachine.saveSnapshot(snapshot);
+
+        world.hasNote = true;
+        stateMachine.periodic();
+        assertSame(armUp, arm.getCurrentState());
+        stateMachine.restoreSnapshot(snapshot);
+        assertSame(armDown, arm.getCurrentState());
+
+        StateMachineSnapshot<Robot> otherSnapshot = arm.createSnapshot();
+        assertThrows(
+                IllegalArgumentException.class, () -> stateMachine.saveSnapshot(otherSnapshot));
+    }
+}
@@ -1,9 +1,10 @@
 package coppercore.controls.test;
 
 import static edu.wpi.first.units.Units.Seconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
-import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import coppercore.controls.simulation.DiscreteEventSimulator;
 import coppercore.controls.state_machine.State;
 import coppercore.controls.state_machine.StateMachine;
 import edu.wpi.first.hal.HAL;
@@ -29,13 +30,8 @@ public class StateMachineTestsTimeout {
         // Defining Transitions
         waitingState.whenTimeout(Seconds.of(TIMEOUT_SECONDS)).transitionTo(timedoutState);
 
-        // Adding a second timeout to a state is not supported and should throw
-        assertThrows(
-                UnsupportedOperationException.class,
-                () ->
-                        waitingState
-                                .whenTimeout(Seconds.of(TIMEOUT_SECONDS))
-                                .transitionTo(timedoutState));
+        // A second, later timeout on the same state never fires, since the first one leaves it
+        waitingState.whenTimeout(Seconds.of(2 * TIMEOUT_SECONDS)).transitionTo(waitingState);
 
         stateMachine.setState(waitingState);
         return stateMachine;
@@ -58,22 +54,20 @@ public class StateMachineTestsTimeout {
         Robot stateMachineWorld = new Robot();
         StateMachine<Robot> stateMachine = createTestStateMachine(stateMachineWorld);
 
-        DES sim = new DES();
+        DiscreteEventSimulator sim = new DiscreteEventSimulator();
 
-        // Run robot loop every 20ms, that is, at 0, 20, 40, 60 and so on.
-        DES.Runnable robotLoop =
-                new DES.Runnable() {
-                    @Override
-                    public void run(int simulationTime) {
-                        stateMachine.periodic();
-                        sim.schedule(simulationTime + 20, this);
-                        SimHooks.stepTiming(0.02);
-                    }
-                };
-        sim.schedule(0, robotLoop);
+        // Run robot loop every 20ms, that is, at 0, 20, 40, 60 and so on. This uses the default
+        // WPILib time source, stepped along with the simulation.
+        sim.schedulePeriodic(
+                0,
+                20,
+                simulationTime -> {
+                    stateMachine.periodic();
+                    SimHooks.stepTiming(0.02);
+                });
 
         assertSame(waitingState, stateMachine.getCurrentState());
-        final BiFunction<State, String, DES.Runnable> assertIn =
+        final BiFunction<State, String, DiscreteEventSimulator.Action> assertIn =
                 (state, msg) -> _time -> assertSame(state, stateMachine.getCurrentState(), msg);
 
         sim.schedule(5, assertIn.apply(waitingState, "in waiting 1"));
@@ -93,7 +87,103 @@ public class StateMachineTestsTimeout {
         sim.simulate(10000);
     }
 
-    public static class Robot {}
+    @Test
+    public void StateMachineMultipleTimeoutsWithInjectedClock() {
+        State<Robot> armedState =
+                new State<Robot>("Armed") {
+                    @Override
+                    protected void periodic(StateMachine<Robot> stateMachine, Robot world) {}
+                };
+        State<Robot> warningState =
+                new State<Robot>("Warning") {
+                    @Override
+                    protected void periodic(StateMachine<Robot> stateMachine, Robot world) {}
+                };
+        State<Robot> abortState =
+                new State<Robot>("Abort") {
+                    @Override
+                    protected void periodic(StateMachine<Robot> stateMachine, Robot world) {}
+                };
+
+        Robot world = new Robot();
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+        List.of(armedState, warningState, abortState).forEach(stateMachine::registerState);
+
+        // Defined out of order: the earliest deadline wins, not the first transition
+        armedState.whenTimeout(Seconds.of(1.5)).transitionTo(abortState);
+        armedState.whenTimeout(Seconds.of(0.5)).transitionTo(warningState);
+        warningState.whenTimeout(Seconds.of(0.25)).transitionTo(armedState);
+        warningState.when(w -> w.abort, "abort").transitionTo(abortState);
+
+        // Time only moves when the test says so, no sleeping required
+        double[] now = {0.0};
+        stateMachine.setTimeSource(() -> now[0]);
+        stateMachine.setState(armedState);
+
+        now[0] = 0.49;
+        stateMachine.periodic();
+        assertSame(armedState, stateMachine.getCurrentState());
+
+        now[0] = 0.5;
+        stateMachine.periodic();
+        assertSame(warningState, stateMachine.getCurrentState());
+
+        // Re-entering Armed rearms both of its timeouts
+        now[0] = 0.75;
+        stateMachine.periodic();
+        assertSame(armedState, stateMachine.getCurrentState());
+
+        now[0] = 1.24;
+        stateMachine.periodic();
+        assertSame(armedState, stateMachine.getCurrentState());
+
+        now[0] = 1.25;
+        stateMachine.periodic();
+        assertSame(warningState, stateMachine.getCurrentState());
+
+        world.abort = true;
+        now[0] = 1.3;
+        stateMachine.periodic();
+        assertSame(abortState, stateMachine.getCurrentState());
+    }
+
+    @Test
+    public void StateMachineCompiledTimeoutsWithInjectedClock() {
+        // Fresh states, so transitions added by other tests to the shared ones don't leak in
+        State<Robot> idleState =
+                new State<Robot>("Idle") {
+                    @Override
+                    protected void periodic(StateMachine<Robot> stateMachine, Robot world) {}
+                };
+        State<Robot> expiredState =
+                new State<Robot>("Expired") {
+                    @Override
+                    protected void periodic(StateMachine<Robot> stateMachine, Robot world) {}
+                };
+
+        Robot world = new Robot();
+        double[] now = {10.0};
+
+        StateMachine<Robot> stateMachine = new StateMachine<>(world);
+        List.of(idleState, expiredState).forEach(stateMachine::registerState);
+        idleState.whenTimeout(Seconds.of(TIMEOUT_SECONDS)).transitionTo(expiredState);
+        stateMachine.compile();
+        stateMachine.setTimeSource(() -> now[0]);
+        stateMachine.setState(idleState);
+
+        int updates = 0;
+        while (stateMachine.getCurrentState() == idleState) {
+            now[0] += 0.02;
+            stateMachine.periodic();
+            updates++;
+        }
+        assertSame(expiredState, stateMachine.getCurrentState());
+        assertEquals(TIMEOUT_SECONDS * 50, updates, 1);
+    }
+
+    public static class Robot {
+        public boolean abort = false;
+    }
 
     static final State<Robot> waitingState =
             new State<Robot>("Waiting") {
@@ -0,0 +1,117 @@
+package coppercore.geometry.benchmark;
+
+import coppercore.geometry.ConvexNGon;
+import coppercore.geometry.ConvexPolygon;
+import coppercore.geometry.Point;
+import coppercore.geometry.Polygon;
+import coppercore.geometry.Triangle;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to check which samples of a trajectory are inside a zone, one Point
+ * at a time or with the batch containsPoints check over arrays of coordinates.
+ *
+ * <p>Results are per point. The scalarPoints case creates a Point for every sample, like code
+ * written against the original API, while scalarCoordinates only measures the cost of the check.
+ * The concave 64-gon is a star, which a Polygon splits into triangles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ContainsPointsBenchmark {
+
+    static final int POINT_COUNT = 4096;
+
+    @Param({"triangle", "hexagon", "64-gon", "concave 64-gon"})
+    public String shape;
+
+    private ConvexPolygon polygon;
+    private final double[] xs = new double[POINT_COUNT];
+    private final double[] ys = new double[POINT_COUNT];
+    private final boolean[] result = new boolean[POINT_COUNT];
+
+    @Setup
+    public void setUp() {
+        switch (shape) {
+            case "triangle":
+                polygon = new Triangle(new Point(1, 1), new Point(9, 2), new Point(4, 7));
+                break;
+            case "hexagon":
+                polygon = regularPolygon(6);
+                break;
+            case "concave 64-gon":
+                polygon = star(64);
+                break;
+            default:
+                polygon = regularPolygon(64);
+                break;
+        }
+        SplittableRandom random = new SplittableRandom(401);
+        for (int i = 0; i < POINT_COUNT; i++) {
+            xs[i] = random.nextDouble(10.0);
+            ys[i] = random.nextDouble(8.0);
+        }
+    }
+
+    private static ConvexPolygon regularPolygon(int vertices) {
+        double[] vertexXs = new double[vertices];
+        double[] vertexYs = new double[vertices];
+        for (int i = 0; i < vertices; i++) {
+            vertexXs[i] = 5.0 + 3.5 * Math.cos(2 * Math.PI * i / vertices);
+            vertexYs[i] = 4.0 + 3.5 * Math.sin(2 * Math.PI * i / vertices);
+        }
+        return new ConvexNGon(vertexXs, vertexYs);
+    }
+
+    private static ConvexPolygon star(int vertices) {
+        double[] vertexXs = new double[vertices];
+        double[] vertexYs = new double[vertices];
+        for (int i = 0; i < vertices; i++) {
+            double radius = i % 2 == 0 ? 3.5 : 2.0;
+            vertexXs[i] = 5.0 + radius * Math.cos(2 * Math.PI * i / vertices);
+            vertexYs[i] = 4.0 + radius * Math.sin(2 * Math.PI * i / vertices);
+        }
+        return new Polygon(vertexXs, vertexYs);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINT_COUNT)
+    public boolean[] scalarPoints() {
+        for (int i = 0; i < POINT_COUNT; i++) {
+            result[i] = polygon.containsPoint(new Point(xs[i], ys[i]));
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINT_COUNT)
+    public boolean[] scalarCoordinates() {
+        for (int i = 0; i < POINT_COUNT; i++) {
+            result[i] = polygon.containsPoint(xs[i], ys[i]);
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINT_COUNT)
+    public boolean[] batch() {
+        polygon.containsPoints(xs, ys, result);
+        return result;
+    }
+}
@@ -0,0 +1,86 @@
+package coppercore.geometry.benchmark;
+
+import coppercore.geometry.ConvexNGon;
+import coppercore.geometry.SignedDistanceField;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to find the distance from a robot position to the nearest obstacle,
+ * using a SignedDistanceField or an exact check against every obstacle.
+ *
+ * <p>The obstacles are random hexagons spread over a 17 m by 8 m field, and the field has 5 cm
+ * cells.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DistanceFieldBenchmark {
+
+    static final double FIELD_LENGTH = 17.0;
+    static final double FIELD_WIDTH = 8.0;
+    static final double CELL_SIZE = 0.05;
+    static final int POINT_COUNT = 1024;
+
+    @Param({"10", "100"})
+    public int obstacleCount;
+
+    private SignedDistanceField field;
+    private ConvexNGon[] obstacles;
+    private final double[] xs = new double[POINT_COUNT];
+    private final double[] ys = new double[POINT_COUNT];
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(401);
+        double radius = Math.sqrt(FIELD_LENGTH * FIELD_WIDTH / (obstacleCount * Math.PI)) / 2;
+        obstacles = new ConvexNGon[obstacleCount];
+        for (int obstacle = 0; obstacle < obstacleCount; obstacle++) {
+            double centerX = random.nextDouble(FIELD_LENGTH);
+            double centerY = random.nextDouble(FIELD_WIDTH);
+            double[] vertexXs = new double[6];
+            double[] vertexYs = new double[6];
+            for (int i = 0; i < 6; i++) {
+                vertexXs[i] = centerX + radius * Math.cos(i * Math.PI / 3);
+                vertexYs[i] = centerY + radius * Math.sin(i * Math.PI / 3);
+            }
+            obstacles[obstacle] = new ConvexNGon(vertexXs, vertexYs);
+        }
+        field = new SignedDistanceField(0, 0, FIELD_LENGTH, FIELD_WIDTH, CELL_SIZE, obstacles);
+        for (int i = 0; i < POINT_COUNT; i++) {
+            xs[i] = random.nextDouble(FIELD_LENGTH);
+            ys[i] = random.nextDouble(FIELD_WIDTH);
+        }
+    }
+
+    @Benchmark
+    public double distanceField() {
+        int point = next++ & (POINT_COUNT - 1);
+        return field.getDistance(xs[point], ys[point]);
+    }
+
+    @Benchmark
+    public double exact() {
+        int point = next++ & (POINT_COUNT - 1);
+        double best = Double.POSITIVE_INFINITY;
+        for (ConvexNGon obstacle : obstacles) {
+            best = Math.min(best, obstacle.getSignedDistance(xs[point], ys[point]));
+        }
+        return best;
+    }
+}
@@ -0,0 +1,93 @@
+package coppercore.geometry.benchmark;
+
+import coppercore.geometry.ConvexNGon;
+import coppercore.geometry.FieldFinder;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to find every zone containing a robot position, using the grid of a
+ * FieldFinder or a linear scan over one FieldFinder per zone.
+ *
+ * <p>The zones are random hexagons spread over a 17 m by 8 m field, sized so that a point is in
+ * about one zone on average whatever the number of zones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FieldFinderBenchmark {
+
+    static final double FIELD_LENGTH = 17.0;
+    static final double FIELD_WIDTH = 8.0;
+    static final int POINT_COUNT = 1024;
+
+    @Param({"10", "100", "1000"})
+    public int zoneCount;
+
+    private FieldFinder grid;
+    private FieldFinder[] finders;
+    private final double[] xs = new double[POINT_COUNT];
+    private final double[] ys = new double[POINT_COUNT];
+    private final BitSet result = new BitSet();
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(401);
+        double radius = Math.sqrt(FIELD_LENGTH * FIELD_WIDTH / (zoneCount * Math.PI));
+        grid = new FieldFinder();
+        finders = new FieldFinder[zoneCount];
+        for (int zone = 0; zone < zoneCount; zone++) {
+            double centerX = random.nextDouble(FIELD_LENGTH);
+            double centerY = random.nextDouble(FIELD_WIDTH);
+            double[] vertexXs = new double[6];
+            double[] vertexYs = new double[6];
+            for (int i = 0; i < 6; i++) {
+                vertexXs[i] = centerX + radius * Math.cos(i * Math.PI / 3);
+                vertexYs[i] = centerY + radius * Math.sin(i * Math.PI / 3);
+            }
+            ConvexNGon hexagon = new ConvexNGon(vertexXs, vertexYs);
+            grid.addZone("Zone" + zone, hexagon);
+            finders[zone] = new FieldFinder(hexagon);
+        }
+        grid.buildIndex();
+        for (int i = 0; i < POINT_COUNT; i++) {
+            xs[i] = random.nextDouble(FIELD_LENGTH);
+            ys[i] = random.nextDouble(FIELD_WIDTH);
+        }
+    }
+
+    @Benchmark
+    public BitSet grid() {
+        int point = next++ & (POINT_COUNT - 1);
+        grid.findZones(xs[point], ys[point], result);
+        return result;
+    }
+
+    @Benchmark
+    public BitSet linearScan() {
+        int point = next++ & (POINT_COUNT - 1);
+        result.clear();
+        for (int zone = 0; zone < finders.length; zone++) {
+            if (finders[zone].polygon.containsPoint(xs[point], ys[point])) {
+                result.set(zone);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,103 @@
+package coppercore.geometry.benchmark;
+
+import coppercore.geometry.ConvexNGon;
+import coppercore.geometry.FieldFinder;
+import coppercore.geometry.RobotFootprint;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to find every obstacle that a robot footprint hits while moving for
+ * one loop, using the grid of a FieldFinder or a swept check against every obstacle.
+ *
+ * <p>The obstacles are random hexagons spread over a 17 m by 8 m field, and each move goes about
+ * 10 cm and turns up to a quarter of a radian, like one 20 ms loop of a fast robot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FootprintBenchmark {
+
+    static final double FIELD_LENGTH = 17.0;
+    static final double FIELD_WIDTH = 8.0;
+    static final int MOVE_COUNT = 1024;
+
+    @Param({"10", "100", "1000"})
+    public int obstacleCount;
+
+    private final RobotFootprint footprint = new RobotFootprint(0.8, 0.7);
+    private FieldFinder grid;
+    private ConvexNGon[] obstacles;
+    private final Pose2d[] starts = new Pose2d[MOVE_COUNT];
+    private final Pose2d[] ends = new Pose2d[MOVE_COUNT];
+    private final BitSet result = new BitSet();
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(401);
+        double radius = Math.sqrt(FIELD_LENGTH * FIELD_WIDTH / (obstacleCount * Math.PI)) / 2;
+        grid = new FieldFinder();
+        obstacles = new ConvexNGon[obstacleCount];
+        for (int obstacle = 0; obstacle < obstacleCount; obstacle++) {
+            double centerX = random.nextDouble(FIELD_LENGTH);
+            double centerY = random.nextDouble(FIELD_WIDTH);
+            double[] vertexXs = new double[6];
+            double[] vertexYs = new double[6];
+            for (int i = 0; i < 6; i++) {
+                vertexXs[i] = centerX + radius * Math.cos(i * Math.PI / 3);
+                vertexYs[i] = centerY + radius * Math.sin(i * Math.PI / 3);
+            }
+            obstacles[obstacle] = new ConvexNGon(vertexXs, vertexYs);
+            grid.addZone("Obstacle" + obstacle, obstacles[obstacle]);
+        }
+        grid.buildIndex();
+        for (int i = 0; i < MOVE_COUNT; i++) {
+            double x = random.nextDouble(FIELD_LENGTH);
+            double y = random.nextDouble(FIELD_WIDTH);
+            double heading = random.nextDouble(-Math.PI, Math.PI);
+            starts[i] = new Pose2d(x, y, new Rotation2d(heading));
+            ends[i] =
+                    new Pose2d(
+                            x + 0.1 * Math.cos(heading),
+                            y + 0.1 * Math.sin(heading),
+                            new Rotation2d(heading + random.nextDouble(-0.25, 0.25)));
+        }
+    }
+
+    @Benchmark
+    public BitSet grid() {
+        int move = next++ & (MOVE_COUNT - 1);
+        grid.findCollisions(footprint, starts[move], ends[move], result);
+        return result;
+    }
+
+    @Benchmark
+    public BitSet linearScan() {
+        int move = next++ & (MOVE_COUNT - 1);
+        result.clear();
+        for (int obstacle = 0; obstacle < obstacles.length; obstacle++) {
+            if (footprint.intersectsSwept(starts[move], ends[move], obstacles[obstacle])) {
+                result.set(obstacle);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,280 @@
+package coppercore.geometry;
+
+import java.util.Arrays;
+
+/**
+ * This class extends ConvexPolygon to work on convex polygons with any number of vertices. The
+ * vertices are stored in arrays of doubles, and checking if a point is inside the polygon takes a
+ * binary search over the triangles fanning out from the first vertex, so that each check takes
+ * O(log n) time and doesn't create any objects. Points on the edges of the polygon count as
+ * contained.
+ */
+public class ConvexNGon extends ConvexPolygon {
+    /** The most vertices for which containsPoints checks every point against every edge */
+    public static final int EDGE_BY_EDGE_VERTICES = 16;
+
+    private final double[] xs;
+    private final double[] ys;
+    private final double area;
+    private final double tolerance;
+    private final double minX, minY, maxX, maxY;
+
+    // The unit outward normal of the edge from vertex i to vertex i + 1, and the distance of that
+    // edge from the origin along the normal, used for separating axis tests
+    final double[] normalXs;
+    final double[] normalYs;
+    final double[] edgeOffsets;
+
+    /**
+     * This constructs the polygon from its vertices, in order around the polygon. The vertices can
+     * go clockwise or counterclockwise. A vertex that is the same as the one before it is dropped,
+     * since it doesn't add an edge. The arrays are copied, so changing them afterwards doesn't
+     * change the polygon.
+     *
+     * @param xs the x-values of the vertices
+     * @param ys the y-values of the vertices
+     * @throws IllegalArgumentException if there are fewer than three vertices, the arrays have
+     *     different lengths, a coordinate isn't finite, or the vertices don't make a convex polygon
+     *     with a nonzero area
+     */
+    public ConvexNGon(double[] xs, double[] ys) {
+        PolygonVertices vertices = new PolygonVertices(xs, ys);
+        this.xs = vertices.xs;
+        this.ys = vertices.ys;
+        this.area = vertices.area;
+        this.tolerance = vertices.tolerance;
+        this.minX = vertices.minX;
+        this.minY = vertices.minY;
+        this.maxX = vertices.maxX;
+        this.maxY = vertices.maxY;
+        int n = this.xs.length;
+
+        for (int i = 0; i < n; i++) {
+            int next = (i + 1) % n;
+            int after = (i + 2) % n;
+            // Every corner has to turn left, and the vertices have to go around vertex 0 only once
+            if (cross(i, this.xs[after], this.ys[after], next) < -tolerance
+                    || (after > 1 && cross(0, this.xs[after], this.ys[after], next) < -tolerance)) {
+                throw new IllegalArgumentException("The polygon isn't convex at vertex " + next);
+            }
+        }
+
+        this.normalXs = new double[n];
+        this.normalYs = new double[n];
+        this.edgeOffsets = new double[n];
+        for (int i = 0; i < n; i++) {
+            int next = (i + 1) % n;
+            double edgeX = this.xs[next] - this.xs[i];
+            double edgeY = this.ys[next] - this.ys[i];
+            double length = Math.hypot(edgeX, edgeY);
+            normalXs[i] = edgeY / length;
+            normalYs[i] = -edgeX / length;
+            edgeOffsets[i] = normalXs[i] * this.xs[i] + normalYs[i] * this.ys[i];
+        }
+    }
+
+    /**
+     * This constructs the polygon from its vertices, in order around the polygon.
+     *
+     * @param vertices the vertices of the polygon, going clockwise or counterclockwise
+     * @throws IllegalArgumentException if there are fewer than three vertices or the vertices
+     *     don't make a convex polygon with a nonzero area
+     */
+    public ConvexNGon(Point... vertices) {
+        this(PolygonVertices.xsOf(vertices), PolygonVertices.ysOf(vertices));
+    }
+
+    /**
+     * This gives the cross product of the vector from vertex i to vertex j and the vector from
+     * vertex i to the point (x, y), which is positive if the point is to the left of the line going
+     * from vertex i through vertex j.
+     */
+    private double cross(int i, double x, double y, int j) {
+        return (xs[j] - xs[i]) * (y - ys[i]) - (ys[j] - ys[i]) * (x - xs[i]);
+    }
+
+    /**
+     * This gets the number of vertices of the polygon, not counting repeated vertices.
+     *
+     * @return the number of vertices
+     */
+    public int getVertexCount() {
+        return xs.length;
+    }
+
+    /**
+     * This gets the x-value of a vertex. The vertices are stored counterclockwise, starting from
+     * the first vertex given to the constructor.
+     *
+     * @param index the index of the vertex
+     * @return the x-value of the vertex
+     */
+    public double getVertexX(int index) {
+        return xs[index];
+    }
+
+    /**
+     * This gets the y-value of a vertex. The vertices are stored counterclockwise, starting from
+     * the first vertex given to the constructor.
+     *
+     * @param index the index of the vertex
+     * @return the y-value of the vertex
+     */
+    public double getVertexY(int index) {
+        return ys[index];
+    }
+
+    /**
+     * This gets the area of the polygon
+     *
+     * @return returns the area of the polygon
+     */
+    public double getArea() {
+        return area;
+    }
+
+    @Override
+    public double getMinX() {
+        return minX;
+    }
+
+    @Override
+    public double getMinY() {
+        return minY;
+    }
+
+    @Override
+    public double getMaxX() {
+        return maxX;
+    }
+
+    @Override
+    public double getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * This checks if the polygon contains a point. Points on the edges of the polygon count as
+     * contained.
+     *
+     * @param point the point that we are checking to contain
+     * @return whether or not the polygon contains that point
+     */
+    public boolean containsPoint(Point point) {
+        return containsPoint(point.getX(), point.getY());
+    }
+
+    /**
+     * This checks if the polygon contains a point given by its coordinates, without creating any
+     * objects. Points on the edges of the polygon count as contained.
+     *
+     * @param x the x-value of the point that we are checking to contain
+     * @param y the y-value of the point that we are checking to contain
+     * @return whether or not the polygon contains that point
+     */
+    @Override
+    public boolean containsPoint(double x, double y) {
+        if (x < minX || x > maxX || y < minY || y > maxY) {
+            return false;
+        }
+        int last = xs.length - 1;
+        // The point has to be between the first and last edges of the fan around vertex 0
+        if (cross(0, x, y, 1) < -tolerance || cross(0, x, y, last) > tolerance) {
+            return false;
+        }
+        // Find the triangle (0, low, low + 1) of the fan whose wedge contains the point
+        int low = 1;
+        int high = last;
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (cross(0, x, y, middle) >= 0) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return cross(low, x, y, low + 1) >= -tolerance;
+    }
+
+    /**
+     * This checks which of many points the polygon contains. For polygons with up to
+     * EDGE_BY_EDGE_VERTICES vertices, all of the points are checked against one edge, then the
+     * next, in short loops without branches, which is faster than a binary search for each point.
+     * Larger polygons use the binary search of containsPoint for each point instead.
+     *
+     * @param xs the x-values of the points
+     * @param ys the y-values of the points
+     * @param result set to whether or not the polygon contains each point, for the first xs.length
+     *     entries
+     * @throws IllegalArgumentException if ys and result are shorter than xs
+     */
+    @Override
+    public void containsPoints(double[] xs, double[] ys, boolean[] result) {
+        if (this.xs.length > EDGE_BY_EDGE_VERTICES) {
+            super.containsPoints(xs, ys, result);
+            return;
+        }
+        checkBatch(xs, ys, result);
+        int count = xs.length;
+        Arrays.fill(result, 0, count, true);
+        for (int edge = 0; edge < this.xs.length; edge++) {
+            int next = edge + 1 == this.xs.length ? 0 : edge + 1;
+            double startX = this.xs[edge];
+            double startY = this.ys[edge];
+            double edgeX = this.xs[next] - startX;
+            double edgeY = this.ys[next] - startY;
+            for (int i = 0; i < count; i++) {
+                result[i] &= edgeX * (ys[i] - startY) - edgeY * (xs[i] - startX) >= -tolerance;
+            }
+        }
+    }
+
+    /**
+     * This finds the signed distance from a point to the edges of the polygon, which is negative
+     * inside the polygon and positive outside it, without creating any objects.
+     *
+     * @param x the x-value of the point
+     * @param y the y-value of the point
+     * @return the distance from the point to the nearest edge, negated if the point is inside
+     */
+    public double getSignedDistance(double x, double y) {
+        int n = xs.length;
+        // Inside, the nearest edge is the one whose line the point is closest to
+        double farthest = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            farthest = Math.max(farthest, normalXs[i] * x + normalYs[i] * y - edgeOffsets[i]);
+        }
+        if (farthest <= 0) {
+            return farthest;
+        }
+        // Outside, the nearest point can be a vertex, so find the distance to each edge segment
+        double nearestSquared = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            int next = i + 1 == n ? 0 : i + 1;
+            double edgeX = xs[next] - xs[i];
+            double edgeY = ys[next] - ys[i];
+            double toX = x - xs[i];
+            double toY = y - ys[i];
+            double lengthSquared = edgeX * edgeX + edgeY * edgeY;
+            double t =
+                    lengthSquared > 0
+                            ? Math.max(0, Math.min(1, (toX * edgeX + toY * edgeY) / lengthSquared))
+                            : 0;
+            double dx = toX - t * edgeX;
+            double dy = toY - t * edgeY;
+            nearestSquared = Math.min(nearestSquared, dx * dx + dy * dy);
+        }
+        return Math.sqrt(nearestSquared);
+    }
+
+    /**
+     * This function checks if a point is colliding with the polygon, which means it is either
+     * inside the polygon or on one of its edges.
+     *
+     * @param point the point that we are checking for
+     * @return whether or not the point is inside the polygon or on any of its edges
+     */
+    public boolean isPointColliding(Point point) {
+        return containsPoint(point.getX(), point.getY());
+    }
+}
@@ -4,6 +4,10 @@ package coppercore.geometry;
  * This class allows us to be able to get the area of a given convex polygon. It tells us if a given
  * point is inside that polygon and checks to see if a given point is on one of the edges of the
  * polygon.
+ *
+ * <p>It is also the base class of every shape in this package, so that any shape can be used as a
+ * zone in FieldFinder. Nothing here relies on the shape being convex, and Polygon is the one
+ * subclass that can be concave.
  */
 public abstract class ConvexPolygon {
     /**
@@ -21,6 +25,58 @@ public abstract class ConvexPolygon {
      */
     public abstract boolean containsPoint(Point p);
 
+    /**
+     * This checks if a point given by its coordinates is inside the boundaries of the convex
+     * polygon. Subclasses should override this to avoid creating a Point for every check.
+     *
+     * @param x the x-value of the point that we are checking
+     * @param y the y-value of the point that we are checking
+     * @return a boolean for whether or not the convex polygon contains the point
+     */
+    public boolean containsPoint(double x, double y) {
+        return containsPoint(new Point(x, y));
+    }
+
+    /**
+     * This checks which of many points are inside the boundaries of the convex polygon. The
+     * points are given as separate arrays of x-values and y-values, so that checking a whole
+     * trajectory doesn't create a Point for every sample. Subclasses should override this with a
+     * loop that the JIT compiler can vectorize.
+     *
+     * @param xs the x-values of the points
+     * @param ys the y-values of the points
+     * @param result set to whether or not the convex polygon contains each point, for the first
+     *     xs.length entries
+     * @throws IllegalArgumentException if ys and result are shorter than xs
+     */
+    public void containsPoints(double[] xs, double[] ys, boolean[] result) {
+        checkBatch(xs, ys, result);
+        for (int i = 0; i < xs.length; i++) {
+            result[i] = containsPoint(xs[i], ys[i]);
+        }
+    }
+
+    /**
+     * This checks that the arrays given to a batch check are long enough.
+     *
+     * @param xs the x-values of the points
+     * @param ys the y-values of the points
+     * @param result the array that the results will be written to
+     * @throws IllegalArgumentException if ys and result are shorter than xs
+     */
+    static void checkBatch(double[] xs, double[] ys, boolean[] result) {
+        if (ys.length < xs.length || result.length < xs.length) {
+            throw new IllegalArgumentException(
+                    "Got "
+                            + xs.length
+                            + " x-values, "
+                            + ys.length
+                            + " y-values and room for "
+                            + result.length
+                            + " results");
+        }
+    }
+
     /**
      * This checks if a point is on one of the edges of the convex polygon
      *
@@ -28,4 +84,42 @@ public abstract class ConvexPolygon {
      * @return a boolean for whether or not the point is on one of the sides of the convex polygon
      */
     public abstract boolean isPointColliding(Point p);
+
+    /**
+     * This gets the smallest x-value of any point in the convex polygon. Subclasses that don't
+     * override the bounds are treated as covering the whole plane by spatial indexes such as
+     * FieldFinder.
+     *
+     * @return the smallest x-value, or negative infinity if the bounds aren't known
+     */
+    public double getMinX() {
+        return Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * This gets the smallest y-value of any point in the convex polygon.
+     *
+     * @return the smallest y-value, or negative infinity if the bounds aren't known
+     */
+    public double getMinY() {
+        return Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * This gets the largest x-value of any point in the convex polygon.
+     *
+     * @return the largest x-value, or positive infinity if the bounds aren't known
+     */
+    public double getMaxX() {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * This gets the largest y-value of any point in the convex polygon.
+     *
+     * @return the largest y-value, or positive infinity if the bounds aren't known
+     */
+    public double getMaxY() {
+        return Double.POSITIVE_INFINITY;
+    }
 }
@@ -1,12 +1,48 @@
 package coppercore.geometry;
 
+import edu.wpi.first.math.geometry.Pose2d;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * This checks if a point(which could be a robot) is in a defined polygon(which could be a field)
+ *
+ * <p>It can also hold many named zones, such as scoring areas and no-drive areas, and find every
+ * zone that contains a point. The zones are put into a uniform grid the first time they are
+ * queried, so each query only checks the zones whose bounds overlap the grid cell of the point,
+ * and writes its result into a reusable BitSet indexed by zone number without creating objects.
  */
 public class FieldFinder {
     /** This is a public variable polygon */
     public ConvexPolygon polygon;
 
+    private final List<String> zoneNames = new ArrayList<>();
+    private final List<ConvexPolygon> zones = new ArrayList<>();
+    private final Map<String, Integer> zoneIndices = new HashMap<>();
+
+    // The grid, rebuilt when zones are added. The zones overlapping cell c are
+    // cellZones[cellStarts[c]] to cellZones[cellStarts[c + 1] - 1].
+    private boolean indexBuilt = false;
+    private ConvexPolygon[] zoneArray = new ConvexPolygon[0];
+    private double gridMinX, gridMinY, gridMaxX, gridMaxY, cellsPerUnitX, cellsPerUnitY;
+    private int columns, rows;
+    private int[] cellStarts = new int[1];
+    private int[] cellZones = new int[0];
+    // Zones without known bounds, which are checked for every point
+    private int[] unboundedZones = new int[0];
+    // The convex pieces of each zone used for collision checks, which are empty for zones whose
+    // vertices aren't known
+    private ConvexNGon[][] collisionShapes = new ConvexNGon[0][];
+    // The query each zone was last checked by, so zones in several cells are only checked once
+    private int[] checkedBy = new int[0];
+    private int collisionQuery = 0;
+
+    /** This creates a field finder without a polygon, to be used with zones */
+    public FieldFinder() {}
+
     /**
      * This creates the convex polygon
      *
@@ -34,4 +70,400 @@ public class FieldFinder {
     public boolean isRobotInShape(Point p) {
         return this.polygon.containsPoint(p);
     }
+
+    /**
+     * This checks which of many points are in the convex polygon, such as the samples of a
+     * trajectory.
+     *
+     * @param xs the x-values of the points
+     * @param ys the y-values of the points
+     * @param result set to whether or not the polygon contains each point, for the first xs.length
+     *     entries
+     */
+    public void isRobotInShape(double[] xs, double[] ys, boolean[] result) {
+        this.polygon.containsPoints(xs, ys, result);
+    }
+
+    /**
+     * This adds a named zone to the field.
+     *
+     * @param name the name of the zone, which has to be unique
+     * @param zone the shape of the zone
+     * @return the number of the zone, which is its index in the results of findZones
+     * @throws IllegalArgumentException if there is already a zone with the same name
+     */
+    public int addZone(String name, ConvexPolygon zone) {
+        if (name == null || zone == null) {
+            throw new IllegalArgumentException("Zone name and shape cannot be null");
+        }
+        if (zoneIndices.containsKey(name)) {
+            throw new IllegalArgumentException("There is already a zone named " + name);
+        }
+        int index = zones.size();
+        zoneNames.add(name);
+        zones.add(zone);
+        zoneIndices.put(name, index);
+        indexBuilt = false;
+        return index;
+    }
+
+    /**
+     * This gets the number of zones.
+     *
+     * @return the number of zones
+     */
+    public int getZoneCount() {
+        return zones.size();
+    }
+
+    /**
+     * This gets the name of a zone.
+     *
+     * @param index the number of the zone
+     * @return the name of the zone
+     */
+    public String getZoneName(int index) {
+        return zoneNames.get(index);
+    }
+
+    /**
+     * This gets the shape of a zone.
+     *
+     * @param index the number of the zone
+     * @return the shape of the zone
+     */
+    public ConvexPolygon getZone(int index) {
+        return zones.get(index);
+    }
+
+    /**
+     * This gets the number of a zone from its name.
+     *
+     * @param name the name of the zone
+     * @return the number of the zone, or -1 if there is no zone with that name
+     */
+    public int getZoneIndex(String name) {
+        Integer index = zoneIndices.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * This finds every zone that contains a point. The result is cleared first, then the bit of
+     * every zone containing the point is set. Reusing the same BitSet for every query means no
+     * objects are created.
+     *
+     * @param x the x-value of the point, which could be a robot
+     * @param y the y-value of the point
+     * @param result the BitSet to write the numbers of the zones containing the point to
+     * @return the number of zones containing the point
+     */
+    public int findZones(double x, double y, BitSet result) {
+        if (!indexBuilt) {
+            buildIndex();
+        }
+        result.clear();
+        int found = 0;
+        for (int zone : unboundedZones) {
+            if (zoneArray[zone].containsPoint(x, y)) {
+                result.set(zone);
+                found++;
+            }
+        }
+        if (!(x >= gridMinX && x <= gridMaxX && y >= gridMinY && y <= gridMaxY)) {
+            return found;
+        }
+        int column = Math.min(columns - 1, (int) ((x - gridMinX) * cellsPerUnitX));
+        int row = Math.min(rows - 1, (int) ((y - gridMinY) * cellsPerUnitY));
+        int cell = row * columns + column;
+        for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+            int zone = cellZones[i];
+            if (zoneArray[zone].containsPoint(x, y)) {
+                result.set(zone);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * This finds every zone that contains a point.
+     *
+     * @param p a point that could be a robot
+     * @param result the BitSet to write the numbers of the zones containing the point to
+     * @return the number of zones containing the point
+     */
+    public int findZones(Point p, BitSet result) {
+        return findZones(p.getX(), p.getY(), result);
+    }
+
+    /**
+     * This checks if a point is in a zone.
+     *
+     * @param name the name of the zone
+     * @param x the x-value of the point
+     * @param y the y-value of the point
+     * @return whether or not the zone contains the point
+     * @throws IllegalArgumentException if there is no zone with that name
+     */
+    public boolean isInZone(String name, double x, double y) {
+        int index = getZoneIndex(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("There is no zone named " + name);
+        }
+        return zones.get(index).containsPoint(x, y);
+    }
+
+    /**
+     * This checks which of many points are in a zone, using the batch check of its shape.
+     *
+     * @param name the name of the zone
+     * @param xs the x-values of the points
+     * @param ys the y-values of the points
+     * @param result set to whether or not the zone contains each point, for the first xs.length
+     *     entries
+     * @throws IllegalArgumentException if there is no zone with that name
+     */
+    public void isInZone(String name, double[] xs, double[] ys, boolean[] result) {
+        int index = getZoneIndex(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("There is no zone named " + name);
+        }
+        zones.get(index).containsPoints(xs, ys, result);
+    }
+
+    /**
+     * This finds every zone that contains each of many points, such as the samples of a
+     * trajectory. Each point is looked up in the grid like findZones does for a single point.
+     *
+     * @param xs the x-values of the points
+     * @param ys the y-values of the points
+     * @param results the BitSets to write the numbers of the zones containing each point to, one
+     *     for each of the first xs.length points
+     * @return the number of points that are in at least one zone
+     * @throws IllegalArgumentException if ys and results are shorter than xs
+     */
+    public int findZones(double[] xs, double[] ys, BitSet[] results) {
+        if (ys.length < xs.length || results.length < xs.length) {
+            throw new IllegalArgumentException(
+                    "Got "
+                            + xs.length
+                            + " x-values, "
+                            + ys.length
+                            + " y-values and "
+                            + results.length
+                            + " results");
+        }
+        int pointsInZones = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (findZones(xs[i], ys[i], results[i]) > 0) {
+                pointsInZones++;
+            }
+        }
+        return pointsInZones;
+    }
+
+    /**
+     * This finds every zone that the footprint of a robot hits at a pose, such as the walls and
+     * structures of the field.
+     *
+     * @param footprint the footprint of the robot
+     * @param pose the pose of the robot
+     * @param result the BitSet to write the numbers of the zones that are hit to
+     * @return the number of zones that are hit
+     */
+    public int findCollisions(RobotFootprint footprint, Pose2d pose, BitSet result) {
+        return findCollisions(footprint, pose, pose, result);
+    }
+
+    /**
+     * This finds every zone that the footprint of a robot hits while moving from one pose to
+     * another, using RobotFootprint.intersectsSwept. Only the zones in the grid cells under the
+     * bounding box of the move are checked. Zones are checked if they are a ConvexNGon, a Triangle
+     * with a nonzero area or a Polygon, which is checked one triangle at a time. Other shapes are
+     * skipped since their vertices aren't known. Since this keeps track of which zones it already
+     * checked, it shouldn't be called from several threads at once.
+     *
+     * @param footprint the footprint of the robot
+     * @param start the pose of the robot at the start of the move
+     * @param end the pose of the robot at the end of the move
+     * @param result the BitSet to write the numbers of the zones that are hit to
+     * @return the number of zones that are hit
+     */
+    public int findCollisions(RobotFootprint footprint, Pose2d start, Pose2d end, BitSet result) {
+        if (!indexBuilt) {
+            buildIndex();
+        }
+        result.clear();
+        if (columns == 0) {
+            return 0;
+        }
+        double reach = footprint.getHalfDiagonal();
+        double minX = Math.min(start.getX(), end.getX()) - reach;
+        double maxX = Math.max(start.getX(), end.getX()) + reach;
+        double minY = Math.min(start.getY(), end.getY()) - reach;
+        double maxY = Math.max(start.getY(), end.getY()) + reach;
+        if (maxX < gridMinX || minX > gridMaxX || maxY < gridMinY || minY > gridMaxY) {
+            return 0;
+        }
+        int firstColumn = clamp((minX - gridMinX) * cellsPerUnitX, columns);
+        int lastColumn = clamp((maxX - gridMinX) * cellsPerUnitX, columns);
+        int firstRow = clamp((minY - gridMinY) * cellsPerUnitY, rows);
+        int lastRow = clamp((maxY - gridMinY) * cellsPerUnitY, rows);
+
+        footprint.prepareSweep(start, end);
+        collisionQuery++;
+        int found = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int cell = row * columns + column;
+                for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                    int zone = cellZones[i];
+                    if (checkedBy[zone] == collisionQuery) {
+                        continue;
+                    }
+                    checkedBy[zone] = collisionQuery;
+                    ConvexNGon[] shapes = collisionShapes[zone];
+                    for (int piece = 0; piece < shapes.length; piece++) {
+                        if (footprint.sweepIntersects(shapes[piece])) {
+                            result.set(zone);
+                            found++;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private static ConvexNGon[] toCollisionShapes(ConvexPolygon zone) {
+        if (zone instanceof ConvexNGon) {
+            return new ConvexNGon[] {(ConvexNGon) zone};
+        }
+        List<ConvexNGon> shapes = new ArrayList<>();
+        if (zone instanceof Triangle) {
+            addCollisionShape((Triangle) zone, shapes);
+        } else if (zone instanceof Polygon) {
+            // A Polygon can be concave, so each of its triangles is checked on its own
+            Polygon polygon = (Polygon) zone;
+            for (int t = 0; t < polygon.getTriangleCount(); t++) {
+                addCollisionShape(polygon.getTriangle(t), shapes);
+            }
+        }
+        return shapes.toArray(new ConvexNGon[0]);
+    }
+
+    private static void addCollisionShape(Triangle triangle, List<ConvexNGon> shapes) {
+        try {
+            shapes.add(
+                    new ConvexNGon(
+                            triangle.getPoint1(), triangle.getPoint2(), triangle.getPoint3()));
+        } catch (IllegalArgumentException e) {
+            // A ConvexNGon needs a nonzero area, so flat triangles are skipped
+        }
+    }
+
+    /**
+     * This builds the grid used by findZones. It is called automatically by the first query after
+     * zones are added, but can be called at startup so that the first query isn't slower.
+     */
+    public void buildIndex() {
+        int count = zones.size();
+        zoneArray = zones.toArray(new ConvexPolygon[0]);
+        collisionShapes = new ConvexNGon[count][];
+        for (int zone = 0; zone < count; zone++) {
+            collisionShapes[zone] = toCollisionShapes(zoneArray[zone]);
+        }
+        checkedBy = new int[count];
+        collisionQuery = 0;
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        int unbounded = 0;
+        for (ConvexPolygon zone : zoneArray) {
+            if (isBounded(zone)) {
+                minX = Math.min(minX, zone.getMinX());
+                minY = Math.min(minY, zone.getMinY());
+                maxX = Math.max(maxX, zone.getMaxX());
+                maxY = Math.max(maxY, zone.getMaxY());
+            } else {
+                unbounded++;
+            }
+        }
+        unboundedZones = new int[unbounded];
+        unbounded = 0;
+        for (int zone = 0; zone < count; zone++) {
+            if (!isBounded(zoneArray[zone])) {
+                unboundedZones[unbounded++] = zone;
+            }
+        }
+
+        int bounded = count - unbounded;
+        gridMinX = minX;
+        gridMinY = minY;
+        gridMaxX = maxX;
+        gridMaxY = maxY;
+        if (bounded == 0) {
+            columns = 0;
+            rows = 0;
+            cellStarts = new int[1];
+            cellZones = new int[0];
+            indexBuilt = true;
+            return;
+        }
+        // Aim for about one zone per cell, with cells as square as the bounds allow
+        double width = Math.max(maxX - minX, 1e-9);
+        double height = Math.max(maxY - minY, 1e-9);
+        double cellSize = Math.sqrt(width * height / bounded);
+        columns = (int) Math.min(1024, Math.max(1, Math.ceil(width / cellSize)));
+        rows = (int) Math.min(1024, Math.max(1, Math.ceil(height / cellSize)));
+        cellsPerUnitX = columns / width;
+        cellsPerUnitY = rows / height;
+
+        // Count the zones of each cell, then fill them in
+        int[] counts = new int[columns * rows + 1];
+        for (int pass = 0; pass < 2; pass++) {
+            for (int zone = 0; zone < count; zone++) {
+                ConvexPolygon shape = zoneArray[zone];
+                if (!isBounded(shape)) {
+                    continue;
+                }
+                int firstColumn = clamp((shape.getMinX() - minX) * cellsPerUnitX, columns);
+                int lastColumn = clamp((shape.getMaxX() - minX) * cellsPerUnitX, columns);
+                int firstRow = clamp((shape.getMinY() - minY) * cellsPerUnitY, rows);
+                int lastRow = clamp((shape.getMaxY() - minY) * cellsPerUnitY, rows);
+                for (int row = firstRow; row <= lastRow; row++) {
+                    for (int column = firstColumn; column <= lastColumn; column++) {
+                        int cell = row * columns + column;
+                        if (pass == 0) {
+                            counts[cell + 1]++;
+                        } else {
+                            cellZones[counts[cell]++] = zone;
+                        }
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int cell = 0; cell < columns * rows; cell++) {
+                    counts[cell + 1] += counts[cell];
+                }
+                cellStarts = counts.clone();
+                cellZones = new int[counts[columns * rows]];
+            }
+        }
+        indexBuilt = true;
+    }
+
+    private static boolean isBounded(ConvexPolygon zone) {
+        return Double.isFinite(zone.getMinX())
+                && Double.isFinite(zone.getMinY())
+                && Double.isFinite(zone.getMaxX())
+                && Double.isFinite(zone.getMaxY());
+    }
+
+    private static int clamp(double cell, int cells) {
+        return (int) Math.max(0, Math.min(cells - 1, Math.floor(cell)));
+    }
 }
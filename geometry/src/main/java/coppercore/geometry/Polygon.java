@@ -0,0 +1,426 @@
+package coppercore.geometry;
+
+/**
+ * This class works on simple polygons that don't have to be convex, such as field regions that
+ * wrap around a structure. Like every shape it extends ConvexPolygon, so that it can be used
+ * anywhere a shape can, such as a zone in FieldFinder.
+ *
+ * <p>The polygon is split into triangles once when it is constructed, by ear clipping, and the
+ * corners of the triangles are packed into one array of doubles. The triangles are put into a
+ * small uniform grid over the bounds of the polygon, so checking if a point is inside only checks
+ * the bounds, then the few triangles overlapping the grid cell of the point, without creating any
+ * objects. Points on the edges of the polygon count as contained.
+ */
+public class Polygon extends ConvexPolygon {
+    private final double[] xs;
+    private final double[] ys;
+    private final double area;
+    private final double tolerance;
+    private final double minX, minY, maxX, maxY;
+
+    // The corners of triangle t are (triangles[6t], triangles[6t + 1]) to (triangles[6t + 4],
+    // triangles[6t + 5]), counterclockwise
+    private final double[] triangles;
+    private final int triangleCount;
+
+    // The triangles overlapping cell c are cellTriangles[cellStarts[c]] to
+    // cellTriangles[cellStarts[c + 1] - 1]
+    private final int columns, rows;
+    private final double cellsPerUnitX, cellsPerUnitY;
+    private final int[] cellStarts;
+    private final int[] cellTriangles;
+
+    /**
+     * This constructs the polygon from its vertices, in order around the polygon. The vertices can
+     * go clockwise or counterclockwise. A vertex that is the same as the one before it is dropped,
+     * since it doesn't add an edge. The arrays are copied, so changing them afterwards doesn't
+     * change the polygon.
+     *
+     * @param xs the x-values of the vertices
+     * @param ys the y-values of the vertices
+     * @throws IllegalArgumentException if there are fewer than three vertices, the arrays have
+     *     different lengths, a coordinate isn't finite, the polygon has no area, or its edges
+     *     cross or touch each other
+     */
+    public Polygon(double[] xs, double[] ys) {
+        PolygonVertices vertices = new PolygonVertices(xs, ys);
+        this.xs = vertices.xs;
+        this.ys = vertices.ys;
+        this.area = vertices.area;
+        this.tolerance = vertices.tolerance;
+        this.minX = vertices.minX;
+        this.minY = vertices.minY;
+        this.maxX = vertices.maxX;
+        this.maxY = vertices.maxY;
+        int n = this.xs.length;
+        double width = maxX - minX;
+        double height = maxY - minY;
+        checkEdgesDontCross();
+
+        this.triangles = new double[6 * (n - 2)];
+        this.triangleCount = triangulate();
+
+        // Aim for about one triangle per cell, with cells as square as the bounds allow
+        double cellSize = Math.sqrt(Math.max(width, 1e-9) * Math.max(height, 1e-9) / triangleCount);
+        this.columns = (int) Math.min(64, Math.max(1, Math.ceil(width / cellSize)));
+        this.rows = (int) Math.min(64, Math.max(1, Math.ceil(height / cellSize)));
+        this.cellsPerUnitX = columns / Math.max(width, 1e-9);
+        this.cellsPerUnitY = rows / Math.max(height, 1e-9);
+
+        // Count the triangles of each cell, then fill them in
+        int[] counts = new int[columns * rows + 1];
+        int[] cellStarts = counts;
+        int[] cellTriangles = new int[0];
+        for (int pass = 0; pass < 2; pass++) {
+            for (int t = 0; t < triangleCount; t++) {
+                int first = 6 * t;
+                double triangleMinX =
+                        min(triangles[first], triangles[first + 2], triangles[first + 4]);
+                double triangleMaxX =
+                        max(triangles[first], triangles[first + 2], triangles[first + 4]);
+                double triangleMinY =
+                        min(triangles[first + 1], triangles[first + 3], triangles[first + 5]);
+                double triangleMaxY =
+                        max(triangles[first + 1], triangles[first + 3], triangles[first + 5]);
+                int firstColumn = clamp((triangleMinX - minX) * cellsPerUnitX, columns);
+                int lastColumn = clamp((triangleMaxX - minX) * cellsPerUnitX, columns);
+                int firstRow = clamp((triangleMinY - minY) * cellsPerUnitY, rows);
+                int lastRow = clamp((triangleMaxY - minY) * cellsPerUnitY, rows);
+                for (int row = firstRow; row <= lastRow; row++) {
+                    for (int column = firstColumn; column <= lastColumn; column++) {
+                        int cell = row * columns + column;
+                        if (pass == 0) {
+                            counts[cell + 1]++;
+                        } else {
+                            cellTriangles[counts[cell]++] = t;
+                        }
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int cell = 0; cell < columns * rows; cell++) {
+                    counts[cell + 1] += counts[cell];
+                }
+                cellStarts = counts.clone();
+                cellTriangles = new int[counts[columns * rows]];
+            }
+        }
+        this.cellStarts = cellStarts;
+        this.cellTriangles = cellTriangles;
+    }
+
+    /**
+     * This constructs the polygon from its vertices, in order around the polygon.
+     *
+     * @param vertices the vertices of the polygon, going clockwise or counterclockwise
+     * @throws IllegalArgumentException if there are fewer than three vertices, the polygon has no
+     *     area, or its edges cross or touch each other
+     */
+    public Polygon(Point... vertices) {
+        this(PolygonVertices.xsOf(vertices), PolygonVertices.ysOf(vertices));
+    }
+
+    private static double min(double a, double b, double c) {
+        return Math.min(a, Math.min(b, c));
+    }
+
+    private static double max(double a, double b, double c) {
+        return Math.max(a, Math.max(b, c));
+    }
+
+    private static int clamp(double cell, int cells) {
+        return (int) Math.max(0, Math.min(cells - 1, Math.floor(cell)));
+    }
+
+    /**
+     * This checks every pair of edges that don't share a vertex, and throws if any of them cross or
+     * touch, since ear clipping can give wrong triangles for a polygon that isn't simple. This
+     * takes O(n^2) time, but only once, when the polygon is constructed.
+     *
+     * @throws IllegalArgumentException if two edges cross or touch
+     */
+    private void checkEdgesDontCross() {
+        int n = xs.length;
+        for (int i = 0; i < n; i++) {
+            int iNext = (i + 1) % n;
+            // Skip the edges next to edge i, which share a vertex with it
+            for (int j = i + 2; j < n; j++) {
+                int jNext = (j + 1) % n;
+                if (jNext == i) {
+                    continue;
+                }
+                if (edgesTouch(i, iNext, j, jNext)) {
+                    throw new IllegalArgumentException("The polygon's edges cross each other");
+                }
+            }
+        }
+    }
+
+    /** This checks if the edge from vertex a to b and the edge from vertex c to d share a point. */
+    private boolean edgesTouch(int a, int b, int c, int d) {
+        double turnC = Math.signum(cross(a, b, c));
+        double turnD = Math.signum(cross(a, b, d));
+        double turnA = Math.signum(cross(c, d, a));
+        double turnB = Math.signum(cross(c, d, b));
+        if (turnC * turnD < 0 && turnA * turnB < 0) {
+            return true;
+        }
+        return (turnC == 0 && isBetween(a, b, c))
+                || (turnD == 0 && isBetween(a, b, d))
+                || (turnA == 0 && isBetween(c, d, a))
+                || (turnB == 0 && isBetween(c, d, b));
+    }
+
+    /** This checks if vertex c, which is on the line through vertices a and b, is between them. */
+    private boolean isBetween(int a, int b, int c) {
+        return xs[c] >= Math.min(xs[a], xs[b])
+                && xs[c] <= Math.max(xs[a], xs[b])
+                && ys[c] >= Math.min(ys[a], ys[b])
+                && ys[c] <= Math.max(ys[a], ys[b]);
+    }
+
+    /**
+     * This splits the polygon into triangles by ear clipping: a corner whose triangle with its two
+     * neighbors turns left and has no other vertex inside is cut off, until only one triangle is
+     * left. Corners on a straight line are dropped first, without making triangles, so a polygon
+     * with n vertices, k of them on straight lines, is split into n - 2 - k triangles.
+     *
+     * @return the number of triangles
+     * @throws IllegalArgumentException if no corner can be cut off, which means the edges cross
+     */
+    private int triangulate() {
+        int n = xs.length;
+        int[] previous = new int[n];
+        int[] next = new int[n];
+        for (int i = 0; i < n; i++) {
+            previous[i] = (i + n - 1) % n;
+            next[i] = (i + 1) % n;
+        }
+        int remaining = n;
+        int vertex = 0;
+        // The number of corners checked since one was last cut off
+        int checked = 0;
+        // Drop the straight corners first, so that cutting off an ear next to one can't turn it
+        // into a corner that needs a triangle of its own
+        while (remaining > 3 && checked <= remaining) {
+            int before = previous[vertex];
+            int after = next[vertex];
+            if (Math.abs(cross(before, vertex, after)) <= tolerance) {
+                next[before] = after;
+                previous[after] = before;
+                remaining--;
+                checked = 0;
+                // The corner before this one may have become straight
+                vertex = before;
+                continue;
+            }
+            vertex = after;
+            checked++;
+        }
+        int count = 0;
+        checked = 0;
+        while (remaining > 3) {
+            int before = previous[vertex];
+            int after = next[vertex];
+            double turn = cross(before, vertex, after);
+            boolean straight = Math.abs(turn) <= tolerance;
+            if (straight || (turn > 0 && isEar(before, vertex, after, next))) {
+                if (!straight) {
+                    addTriangle(count++, before, vertex, after);
+                }
+                next[before] = after;
+                previous[after] = before;
+                remaining--;
+                checked = 0;
+                vertex = after;
+                continue;
+            }
+            vertex = after;
+            if (++checked > remaining) {
+                throw new IllegalArgumentException("The polygon's edges cross each other");
+            }
+        }
+        int before = previous[vertex];
+        int after = next[vertex];
+        if (cross(before, vertex, after) > tolerance) {
+            addTriangle(count++, before, vertex, after);
+        }
+        if (count == 0) {
+            throw new IllegalArgumentException("The polygon has no area");
+        }
+        return count;
+    }
+
+    /** This checks that no other remaining vertex is inside or on the triangle (a, b, c). */
+    private boolean isEar(int a, int b, int c, int[] next) {
+        for (int i = next[c]; i != a; i = next[i]) {
+            if ((xs[i] == xs[a] && ys[i] == ys[a])
+                    || (xs[i] == xs[b] && ys[i] == ys[b])
+                    || (xs[i] == xs[c] && ys[i] == ys[c])) {
+                continue;
+            }
+            if (Triangle.containsPoint(xs[a], ys[a], xs[b], ys[b], xs[c], ys[c], xs[i], ys[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addTriangle(int index, int a, int b, int c) {
+        int first = 6 * index;
+        triangles[first] = xs[a];
+        triangles[first + 1] = ys[a];
+        triangles[first + 2] = xs[b];
+        triangles[first + 3] = ys[b];
+        triangles[first + 4] = xs[c];
+        triangles[first + 5] = ys[c];
+    }
+
+    /** This gives the cross product of the edges from vertex a to b and from vertex b to c. */
+    private double cross(int a, int b, int c) {
+        return (xs[b] - xs[a]) * (ys[c] - ys[b]) - (ys[b] - ys[a]) * (xs[c] - xs[b]);
+    }
+
+    /**
+     * This gets the number of vertices of the polygon, not counting repeated vertices.
+     *
+     * @return the number of vertices
+     */
+    public int getVertexCount() {
+        return xs.length;
+    }
+
+    /**
+     * This gets the x-value of a vertex. The vertices are stored counterclockwise, starting from
+     * the first vertex given to the constructor.
+     *
+     * @param index the index of the vertex
+     * @return the x-value of the vertex
+     */
+    public double getVertexX(int index) {
+        return xs[index];
+    }
+
+    /**
+     * This gets the y-value of a vertex. The vertices are stored counterclockwise, starting from
+     * the first vertex given to the constructor.
+     *
+     * @param index the index of the vertex
+     * @return the y-value of the vertex
+     */
+    public double getVertexY(int index) {
+        return ys[index];
+    }
+
+    /**
+     * This gets the number of triangles that the polygon was split into.
+     *
+     * @return the number of triangles
+     */
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    /**
+     * This gets one of the triangles that the polygon was split into, as a new Triangle.
+     *
+     * @param index the index of the triangle
+     * @return the triangle, with its corners counterclockwise
+     */
+    public Triangle getTriangle(int index) {
+        if (index < 0 || index >= triangleCount) {
+            throw new IndexOutOfBoundsException(
+                    "Triangle " + index + " out of " + triangleCount + " triangles");
+        }
+        int first = 6 * index;
+        return new Triangle(
+                new Point(triangles[first], triangles[first + 1]),
+                new Point(triangles[first + 2], triangles[first + 3]),
+                new Point(triangles[first + 4], triangles[first + 5]));
+    }
+
+    /**
+     * This gets the area of the polygon
+     *
+     * @return returns the area of the polygon
+     */
+    public double getArea() {
+        return area;
+    }
+
+    @Override
+    public double getMinX() {
+        return minX;
+    }
+
+    @Override
+    public double getMinY() {
+        return minY;
+    }
+
+    @Override
+    public double getMaxX() {
+        return maxX;
+    }
+
+    @Override
+    public double getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * This checks if the polygon contains a point. Points on the edges of the polygon count as
+     * contained.
+     *
+     * @param point the point that we are checking to contain
+     * @return whether or not the polygon contains that point
+     */
+    public boolean containsPoint(Point point) {
+        return containsPoint(point.getX(), point.getY());
+    }
+
+    /**
+     * This checks if the polygon contains a point given by its coordinates, without creating any
+     * objects. Only the triangles overlapping the grid cell of the point are checked. Points on
+     * the edges of the polygon count as contained.
+     *
+     * @param x the x-value of the point that we are checking to contain
+     * @param y the y-value of the point that we are checking to contain
+     * @return whether or not the polygon contains that point
+     */
+    @Override
+    public boolean containsPoint(double x, double y) {
+        if (!(x >= minX && x <= maxX && y >= minY && y <= maxY)) {
+            return false;
+        }
+        int column = Math.min(columns - 1, (int) ((x - minX) * cellsPerUnitX));
+        int row = Math.min(rows - 1, (int) ((y - minY) * cellsPerUnitY));
+        int cell = row * columns + column;
+        for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+            int first = 6 * cellTriangles[i];
+            if (Triangle.containsPoint(
+                    triangles[first],
+                    triangles[first + 1],
+                    triangles[first + 2],
+                    triangles[first + 3],
+                    triangles[first + 4],
+                    triangles[first + 5],
+                    x,
+                    y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This function checks if a point is colliding with the polygon, which means it is either
+     * inside the polygon or on one of its edges.
+     *
+     * @param point the point that we are checking for
+     * @return whether or not the point is inside the polygon or on any of its edges
+     */
+    public boolean isPointColliding(Point point) {
+        return containsPoint(point.getX(), point.getY());
+    }
+}
@@ -0,0 +1,124 @@
+package coppercore.geometry;
+
+/**
+ * This class checks and stores the vertices of a polygon for ConvexNGon and Polygon, so that both
+ * treat their vertices the same way. The vertices are copied, a vertex that is the same as the one
+ * before it is dropped, and the rest are stored counterclockwise, starting from the first vertex
+ * given, along with the area, bounds and containment tolerance of the polygon.
+ */
+final class PolygonVertices {
+    final double[] xs;
+    final double[] ys;
+    final double area;
+    final double tolerance;
+    final double minX, minY, maxX, maxY;
+
+    /**
+     * This checks the vertices of a polygon, in order around the polygon.
+     *
+     * @param xs the x-values of the vertices
+     * @param ys the y-values of the vertices
+     * @throws IllegalArgumentException if there are fewer than three vertices, the arrays have
+     *     different lengths, a coordinate isn't finite, or the polygon has no area
+     */
+    PolygonVertices(double[] xs, double[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException(
+                    "Got " + xs.length + " x-values but " + ys.length + " y-values");
+        }
+        if (xs.length < 3) {
+            throw new IllegalArgumentException("A polygon needs at least 3 vertices");
+        }
+        for (int i = 0; i < xs.length; i++) {
+            if (!Double.isFinite(xs[i]) || !Double.isFinite(ys[i])) {
+                throw new IllegalArgumentException("Vertex " + i + " isn't finite");
+            }
+        }
+        int n = 0;
+        for (int i = 0; i < xs.length; i++) {
+            if (!isRepeat(xs, ys, i)) {
+                n++;
+            }
+        }
+        if (n < 3) {
+            throw new IllegalArgumentException("The polygon has no area");
+        }
+        this.xs = new double[n];
+        this.ys = new double[n];
+        for (int i = 0, kept = 0; kept < n; i++) {
+            if (!isRepeat(xs, ys, i)) {
+                this.xs[kept] = xs[i];
+                this.ys[kept] = ys[i];
+                kept++;
+            }
+        }
+
+        double twiceArea = 0;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            int next = (i + 1) % n;
+            twiceArea += this.xs[i] * this.ys[next] - this.xs[next] * this.ys[i];
+            minX = Math.min(minX, this.xs[i]);
+            minY = Math.min(minY, this.ys[i]);
+            maxX = Math.max(maxX, this.xs[i]);
+            maxY = Math.max(maxY, this.ys[i]);
+        }
+        double width = maxX - minX;
+        double height = maxY - minY;
+        this.tolerance = Triangle.TOLERANCE * (width * width + height * height);
+        if (Math.abs(twiceArea) <= tolerance) {
+            throw new IllegalArgumentException("The polygon has no area");
+        }
+        // Store the vertices counterclockwise, so that the inside is to the left of every edge,
+        // keeping the first vertex first
+        if (twiceArea < 0) {
+            reverseAfterFirst(this.xs);
+            reverseAfterFirst(this.ys);
+        }
+        this.area = 0.5 * Math.abs(twiceArea);
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * This checks if vertex i is the same as the vertex before it, or the last vertex is the same
+     * as the first, so that the first vertex is always kept.
+     */
+    private static boolean isRepeat(double[] xs, double[] ys, int i) {
+        if (i == 0) {
+            return false;
+        }
+        int last = xs.length - 1;
+        return (xs[i] == xs[i - 1] && ys[i] == ys[i - 1])
+                || (i == last && xs[i] == xs[0] && ys[i] == ys[0]);
+    }
+
+    private static void reverseAfterFirst(double[] values) {
+        for (int i = 1, j = values.length - 1; i < j; i++, j--) {
+            double swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+    }
+
+    static double[] xsOf(Point[] vertices) {
+        double[] xs = new double[vertices.length];
+        for (int i = 0; i < vertices.length; i++) {
+            xs[i] = vertices[i].getX();
+        }
+        return xs;
+    }
+
+    static double[] ysOf(Point[] vertices) {
+        double[] ys = new double[vertices.length];
+        for (int i = 0; i < vertices.length; i++) {
+            ys[i] = vertices[i].getY();
+        }
+        return ys;
+    }
+}
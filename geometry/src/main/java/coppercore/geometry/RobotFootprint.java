@@ -0,0 +1,378 @@
+package coppercore.geometry;
+
+import edu.wpi.first.math.geometry.Pose2d;
+
+/**
+ * This class checks if the rectangular footprint of a robot hits a convex polygon, such as a wall
+ * or a field structure, either at one pose or while moving from one pose to another.
+ *
+ * <p>The checks use the separating axis theorem: two convex shapes don't touch if and only if
+ * there is a line, parallel to one of their edges, that they are on opposite sides of. The edge
+ * normals of each ConvexNGon are worked out once when it is constructed, so each check only takes
+ * a few projections and doesn't create any objects. Shapes that only touch count as hitting.
+ *
+ * <p>A footprint keeps scratch arrays for swept checks, so each thread should use its own.
+ */
+public class RobotFootprint {
+    /** The most rotation in one step of a swept check, in radians */
+    public static final double MAX_STEP_ROTATION = 0.1;
+
+    private final double length;
+    private final double width;
+    private final double halfLength;
+    private final double halfWidth;
+    private final double halfDiagonal;
+
+    /** The most steps a swept check can be split into, which is enough to turn half a circle */
+    private static final int MAX_STEPS = (int) Math.ceil(Math.PI / MAX_STEP_ROTATION);
+
+    // Corners of the footprint at both ends of a step, and their convex hull
+    private final double[] cornerXs = new double[8];
+    private final double[] cornerYs = new double[8];
+    private final int[] order = new int[8];
+    private final int[] hull = new int[16];
+
+    // The prepared sweep: for each step, the up to 8 vertices of its hull, the unit outward normal
+    // of each hull edge with its offset grown by the margin, and the bounding box of the hull
+    private int sweepSteps = 0;
+    private double sweepMargin = 0;
+    private final int[] hullSizes = new int[MAX_STEPS];
+    private final double[] hullXs = new double[MAX_STEPS * 8];
+    private final double[] hullYs = new double[MAX_STEPS * 8];
+    private final double[] hullNormalXs = new double[MAX_STEPS * 8];
+    private final double[] hullNormalYs = new double[MAX_STEPS * 8];
+    private final double[] hullOffsets = new double[MAX_STEPS * 8];
+    private final double[] hullBounds = new double[MAX_STEPS * 4];
+
+    /**
+     * This constructs a footprint centered on the robot's pose.
+     *
+     * @param length the length of the robot along its x-axis, which points forward, in meters
+     * @param width the width of the robot along its y-axis, in meters
+     * @throws IllegalArgumentException if the length or width isn't positive
+     */
+    public RobotFootprint(double length, double width) {
+        if (!(length > 0) || !(width > 0)) {
+            throw new IllegalArgumentException(
+                    "Footprint size must be positive, got " + length + " by " + width);
+        }
+        this.length = length;
+        this.width = width;
+        this.halfLength = length / 2;
+        this.halfWidth = width / 2;
+        this.halfDiagonal = Math.hypot(halfLength, halfWidth);
+    }
+
+    /**
+     * This gets the length of the footprint.
+     *
+     * @return the length along the robot's x-axis, in meters
+     */
+    public double getLength() {
+        return length;
+    }
+
+    /**
+     * This gets the width of the footprint.
+     *
+     * @return the width along the robot's y-axis, in meters
+     */
+    public double getWidth() {
+        return width;
+    }
+
+    /**
+     * This gets the distance from the center of the footprint to its corners, which is how far the
+     * footprint can reach from the robot's position in any direction.
+     *
+     * @return half of the diagonal of the footprint, in meters
+     */
+    public double getHalfDiagonal() {
+        return halfDiagonal;
+    }
+
+    /**
+     * This checks if the footprint hits an obstacle with the robot at a pose.
+     *
+     * @param pose the pose of the robot
+     * @param obstacle the obstacle to check against
+     * @return whether or not the footprint and the obstacle overlap or touch
+     */
+    public boolean intersects(Pose2d pose, ConvexNGon obstacle) {
+        double centerX = pose.getX();
+        double centerY = pose.getY();
+        double cos = pose.getRotation().getCos();
+        double sin = pose.getRotation().getSin();
+
+        // Broadphase: the footprint fits in a circle around its center
+        if (centerX + halfDiagonal < obstacle.getMinX()
+                || centerX - halfDiagonal > obstacle.getMaxX()
+                || centerY + halfDiagonal < obstacle.getMinY()
+                || centerY - halfDiagonal > obstacle.getMaxY()) {
+            return false;
+        }
+
+        // The edge normals of the obstacle
+        for (int i = 0; i < obstacle.getVertexCount(); i++) {
+            double normalX = obstacle.normalXs[i];
+            double normalY = obstacle.normalYs[i];
+            double radius =
+                    halfLength * Math.abs(normalX * cos + normalY * sin)
+                            + halfWidth * Math.abs(normalY * cos - normalX * sin);
+            if (normalX * centerX + normalY * centerY - radius > obstacle.edgeOffsets[i]) {
+                return false;
+            }
+        }
+
+        // The two axes of the footprint
+        return !separatesAlong(obstacle, cos, sin, centerX, centerY, halfLength)
+                && !separatesAlong(obstacle, -sin, cos, centerX, centerY, halfWidth);
+    }
+
+    private static boolean separatesAlong(
+            ConvexNGon obstacle,
+            double axisX,
+            double axisY,
+            double centerX,
+            double centerY,
+            double halfExtent) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < obstacle.getVertexCount(); i++) {
+            double projection = axisX * obstacle.getVertexX(i) + axisY * obstacle.getVertexY(i);
+            min = Math.min(min, projection);
+            max = Math.max(max, projection);
+        }
+        double center = axisX * centerX + axisY * centerY;
+        return min > center + halfExtent || max < center - halfExtent;
+    }
+
+    /**
+     * This checks if the footprint hits an obstacle at any point while the robot moves from one
+     * pose to another, moving in a straight line and turning at a constant rate the shorter way
+     * around.
+     *
+     * <p>The area swept by the footprint is covered by the convex hull of the footprint at both
+     * ends of the move. Since the corners of a turning robot move along arcs rather than straight
+     * lines, moves that turn more than MAX_STEP_ROTATION are split into steps, and each hull is
+     * grown by the most an arc can bulge past its chord. This makes the check conservative: it
+     * never misses a hit, but can report one for an obstacle within about a millimeter of the
+     * swept area of a footprint under a meter across.
+     *
+     * @param start the pose of the robot at the start of the move
+     * @param end the pose of the robot at the end of the move
+     * @param obstacle the obstacle to check against
+     * @return whether or not the footprint touches the obstacle during the move
+     */
+    public boolean intersectsSwept(Pose2d start, Pose2d end, ConvexNGon obstacle) {
+        prepareSweep(start, end);
+        return sweepIntersects(obstacle);
+    }
+
+    /**
+     * This works out the hulls of each step of a move, so that they can be checked against many
+     * obstacles with sweepIntersects.
+     *
+     * @param start the pose of the robot at the start of the move
+     * @param end the pose of the robot at the end of the move
+     */
+    void prepareSweep(Pose2d start, Pose2d end) {
+        double startX = start.getX();
+        double startY = start.getY();
+        double endX = end.getX();
+        double endY = end.getY();
+        double startCos = start.getRotation().getCos();
+        double startSin = start.getRotation().getSin();
+        double endCos = end.getRotation().getCos();
+        double endSin = end.getRotation().getSin();
+        double rotation =
+                Math.atan2(
+                        endSin * startCos - endCos * startSin,
+                        endCos * startCos + endSin * startSin);
+
+        int steps = Math.max(1, (int) Math.ceil(Math.abs(rotation) / MAX_STEP_ROTATION));
+        double startAngle = Math.atan2(startSin, startCos);
+        sweepSteps = steps;
+        sweepMargin = halfDiagonal * (1 - Math.cos(rotation / steps / 2));
+        setCorners(4, startX, startY, startCos, startSin);
+        for (int step = 0; step < steps; step++) {
+            System.arraycopy(cornerXs, 4, cornerXs, 0, 4);
+            System.arraycopy(cornerYs, 4, cornerYs, 0, 4);
+            if (step == steps - 1) {
+                setCorners(4, endX, endY, endCos, endSin);
+            } else {
+                double t = (double) (step + 1) / steps;
+                double angle = startAngle + rotation * t;
+                setCorners(
+                        4,
+                        startX + (endX - startX) * t,
+                        startY + (endY - startY) * t,
+                        Math.cos(angle),
+                        Math.sin(angle));
+            }
+            storeHull(step);
+        }
+    }
+
+    /**
+     * This checks if any step of the move prepared with prepareSweep hits an obstacle.
+     *
+     * @param obstacle the obstacle to check against
+     * @return whether or not the footprint touches the obstacle during the move
+     */
+    boolean sweepIntersects(ConvexNGon obstacle) {
+        for (int step = 0; step < sweepSteps; step++) {
+            if (hullIntersects(step, obstacle)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void setCorners(int first, double x, double y, double cos, double sin) {
+        double forwardX = halfLength * cos;
+        double forwardY = halfLength * sin;
+        double leftX = -halfWidth * sin;
+        double leftY = halfWidth * cos;
+        cornerXs[first] = x + forwardX + leftX;
+        cornerYs[first] = y + forwardY + leftY;
+        cornerXs[first + 1] = x - forwardX + leftX;
+        cornerYs[first + 1] = y - forwardY + leftY;
+        cornerXs[first + 2] = x - forwardX - leftX;
+        cornerYs[first + 2] = y - forwardY - leftY;
+        cornerXs[first + 3] = x + forwardX - leftX;
+        cornerYs[first + 3] = y + forwardY - leftY;
+    }
+
+    /**
+     * This stores the convex hull of the eight corners as a step of the sweep, grown by the margin
+     * of the sweep, along with its edge normals and bounding box.
+     */
+    private void storeHull(int step) {
+        int size = buildHull();
+        int first = step * 8;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int h = 0; h < size; h++) {
+            double x = cornerXs[hull[h]];
+            double y = cornerYs[hull[h]];
+            hullXs[first + h] = x;
+            hullYs[first + h] = y;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        // The hull is counterclockwise, so the outward normals point to the right of each edge
+        for (int h = 0; h < size; h++) {
+            int next = h + 1 == size ? 0 : h + 1;
+            double edgeX = hullXs[first + next] - hullXs[first + h];
+            double edgeY = hullYs[first + next] - hullYs[first + h];
+            double edgeLength = Math.hypot(edgeX, edgeY);
+            double normalX = edgeLength > 0 ? edgeY / edgeLength : 0;
+            double normalY = edgeLength > 0 ? -edgeX / edgeLength : 0;
+            hullNormalXs[first + h] = normalX;
+            hullNormalYs[first + h] = normalY;
+            hullOffsets[first + h] =
+                    normalX * hullXs[first + h] + normalY * hullYs[first + h] + sweepMargin;
+        }
+        hullSizes[step] = size;
+        hullBounds[step * 4] = minX - sweepMargin;
+        hullBounds[step * 4 + 1] = minY - sweepMargin;
+        hullBounds[step * 4 + 2] = maxX + sweepMargin;
+        hullBounds[step * 4 + 3] = maxY + sweepMargin;
+    }
+
+    /** This checks if the hull of a step of the sweep, grown by its margin, hits the obstacle. */
+    private boolean hullIntersects(int step, ConvexNGon obstacle) {
+        if (hullBounds[step * 4 + 2] < obstacle.getMinX()
+                || hullBounds[step * 4] > obstacle.getMaxX()
+                || hullBounds[step * 4 + 3] < obstacle.getMinY()
+                || hullBounds[step * 4 + 1] > obstacle.getMaxY()) {
+            return false;
+        }
+        int first = step * 8;
+        int size = hullSizes[step];
+
+        // The edge normals of the obstacle
+        for (int i = 0; i < obstacle.getVertexCount(); i++) {
+            double normalX = obstacle.normalXs[i];
+            double normalY = obstacle.normalYs[i];
+            double min = Double.POSITIVE_INFINITY;
+            for (int h = first; h < first + size; h++) {
+                min = Math.min(min, normalX * hullXs[h] + normalY * hullYs[h]);
+            }
+            if (min - sweepMargin > obstacle.edgeOffsets[i]) {
+                return false;
+            }
+        }
+
+        // The edge normals of the hull
+        for (int h = first; h < first + size; h++) {
+            double normalX = hullNormalXs[h];
+            double normalY = hullNormalYs[h];
+            double min = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < obstacle.getVertexCount(); i++) {
+                min =
+                        Math.min(
+                                min,
+                                normalX * obstacle.getVertexX(i)
+                                        + normalY * obstacle.getVertexY(i));
+            }
+            if (min > hullOffsets[h]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This finds the convex hull of the eight corners with the monotone chain algorithm, storing
+     * the indices of its vertices counterclockwise in hull.
+     *
+     * @return the number of vertices of the hull
+     */
+    private int buildHull() {
+        // Insertion sort by x, then y, which is quick for eight points
+        for (int i = 0; i < 8; i++) {
+            int point = i;
+            int j = i;
+            while (j > 0 && isBefore(point, order[j - 1])) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = point;
+        }
+
+        int size = 0;
+        // Lower hull, left to right
+        for (int i = 0; i < 8; i++) {
+            while (size >= 2 && turn(hull[size - 2], hull[size - 1], order[i]) <= 0) {
+                size--;
+            }
+            hull[size++] = order[i];
+        }
+        // Upper hull, right to left
+        int lowerSize = size + 1;
+        for (int i = 6; i >= 0; i--) {
+            while (size >= lowerSize && turn(hull[size - 2], hull[size - 1], order[i]) <= 0) {
+                size--;
+            }
+            hull[size++] = order[i];
+        }
+        // The last point is the same as the first
+        return Math.max(1, size - 1);
+    }
+
+    private boolean isBefore(int a, int b) {
+        return cornerXs[a] < cornerXs[b]
+                || (cornerXs[a] == cornerXs[b] && cornerYs[a] < cornerYs[b]);
+    }
+
+    private double turn(int a, int b, int c) {
+        return (cornerXs[b] - cornerXs[a]) * (cornerYs[c] - cornerYs[a])
+                - (cornerYs[b] - cornerYs[a]) * (cornerXs[c] - cornerXs[a]);
+    }
+}
@@ -0,0 +1,354 @@
+package coppercore.geometry;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * This class bakes a set of obstacles into a grid of signed distances, so that the distance from
+ * a point to the nearest obstacle, and the direction away from it, can be looked up in constant
+ * time. Distances are positive outside every obstacle and negative inside one.
+ *
+ * <p>The distance at each node of the grid is worked out exactly when the field is built, and
+ * queries blend the four nodes around a point. Blending is least accurate close to an edge, where
+ * the nearest obstacle changes, so points within a cell diagonal of an edge are checked exactly
+ * against the obstacles nearest to those four nodes instead. This keeps queries constant time
+ * however many obstacles there are, and neither kind of query creates any objects. An obstacle
+ * smaller than a cell can be missed by that check if another obstacle is nearer to every node
+ * around it, so the cell size should be smaller than the obstacles.
+ *
+ * <p>Where obstacles overlap, the distance inside them is the distance out of the obstacle the
+ * point is deepest in, which can be less than the distance out of all of them.
+ *
+ * <p>Building a field checks every node against every obstacle, which can take a while on a
+ * roboRIO, so a field can be written to a compact binary file with write and loaded again at boot
+ * with read.
+ */
+public class SignedDistanceField {
+    // Identifies files written by write, followed by the version of the format
+    private static final int MAGIC = 0x53444631;
+    private static final int VERSION = 1;
+    // Limits on the counts read by read, far above any real field, so that a corrupt count fails
+    // with an IOException instead of allocating a huge array
+    private static final int MAX_OBSTACLES = 1 << 16;
+    private static final int MAX_VERTICES = 1 << 16;
+
+    private final ConvexNGon[] obstacles;
+    private final double minX, minY, cellSize;
+    private final int columns, rows;
+    // The distance at each node, row by row, with columns + 1 nodes in each of rows + 1 rows
+    private final float[] distances;
+    // The index of the obstacle nearest to each node
+    private final int[] nearest;
+    private final double exactBand;
+
+    /**
+     * This builds a field over a rectangle, with the distance to each obstacle worked out at every
+     * node of the grid. The rectangle is grown to a whole number of cells.
+     *
+     * @param minX the smallest x-value of the grid
+     * @param minY the smallest y-value of the grid
+     * @param maxX the largest x-value of the grid
+     * @param maxY the largest y-value of the grid
+     * @param cellSize the distance between nodes of the grid
+     * @param obstacles the obstacles to find distances to
+     * @throws IllegalArgumentException if the bounds aren't finite, are empty, the cell size isn't
+     *     positive, or there are no obstacles
+     */
+    public SignedDistanceField(
+            double minX,
+            double minY,
+            double maxX,
+            double maxY,
+            double cellSize,
+            ConvexNGon... obstacles) {
+        if (!Double.isFinite(minX)
+                || !Double.isFinite(minY)
+                || !Double.isFinite(maxX)
+                || !Double.isFinite(maxY)
+                || !(maxX > minX)
+                || !(maxY > minY)) {
+            throw new IllegalArgumentException(
+                    "Invalid bounds (" + minX + ", " + minY + ") to (" + maxX + ", " + maxY + ")");
+        }
+        if (!(cellSize > 0) || !Double.isFinite(cellSize)) {
+            throw new IllegalArgumentException("Cell size must be positive, got " + cellSize);
+        }
+        if (obstacles.length == 0) {
+            throw new IllegalArgumentException("A distance field needs at least one obstacle");
+        }
+        this.obstacles = obstacles.clone();
+        this.minX = minX;
+        this.minY = minY;
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int) Math.ceil((maxX - minX) / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil((maxY - minY) / cellSize));
+        this.distances = new float[(columns + 1) * (rows + 1)];
+        this.nearest = new int[(columns + 1) * (rows + 1)];
+        this.exactBand = cellSize * Math.sqrt(2);
+
+        for (int row = 0; row <= rows; row++) {
+            double y = minY + row * cellSize;
+            for (int column = 0; column <= columns; column++) {
+                double x = minX + column * cellSize;
+                double best = Double.POSITIVE_INFINITY;
+                int bestObstacle = 0;
+                for (int i = 0; i < this.obstacles.length; i++) {
+                    double distance = this.obstacles[i].getSignedDistance(x, y);
+                    if (distance < best) {
+                        best = distance;
+                        bestObstacle = i;
+                    }
+                }
+                int node = row * (columns + 1) + column;
+                distances[node] = (float) best;
+                nearest[node] = bestObstacle;
+            }
+        }
+    }
+
+    private SignedDistanceField(
+            ConvexNGon[] obstacles,
+            double minX,
+            double minY,
+            double cellSize,
+            int columns,
+            int rows,
+            float[] distances,
+            int[] nearest) {
+        this.obstacles = obstacles;
+        this.minX = minX;
+        this.minY = minY;
+        this.cellSize = cellSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.distances = distances;
+        this.nearest = nearest;
+        this.exactBand = cellSize * Math.sqrt(2);
+    }
+
+    /**
+     * This gets the smallest x-value of the grid.
+     *
+     * @return the smallest x-value of the grid
+     */
+    public double getMinX() {
+        return minX;
+    }
+
+    /**
+     * This gets the smallest y-value of the grid.
+     *
+     * @return the smallest y-value of the grid
+     */
+    public double getMinY() {
+        return minY;
+    }
+
+    /**
+     * This gets the largest x-value of the grid, which is grown past the one given to the
+     * constructor to a whole number of cells.
+     *
+     * @return the largest x-value of the grid
+     */
+    public double getMaxX() {
+        return minX + columns * cellSize;
+    }
+
+    /**
+     * This gets the largest y-value of the grid, which is grown past the one given to the
+     * constructor to a whole number of cells.
+     *
+     * @return the largest y-value of the grid
+     */
+    public double getMaxY() {
+        return minY + rows * cellSize;
+    }
+
+    /**
+     * This gets the distance between nodes of the grid.
+     *
+     * @return the size of each cell
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * This finds the signed distance from a point to the nearest obstacle. Points outside the grid
+     * are checked exactly against every obstacle, which is slower.
+     *
+     * @param x the x-value of the point
+     * @param y the y-value of the point
+     * @return the distance to the nearest obstacle, or how deep the point is in an obstacle as a
+     *     negative number
+     */
+    public double getDistance(double x, double y) {
+        double cellX = (x - minX) / cellSize;
+        double cellY = (y - minY) / cellSize;
+        if (!(cellX >= 0 && cellX <= columns && cellY >= 0 && cellY <= rows)) {
+            double best = Double.POSITIVE_INFINITY;
+            for (ConvexNGon obstacle : obstacles) {
+                best = Math.min(best, obstacle.getSignedDistance(x, y));
+            }
+            return best;
+        }
+        int column = Math.min(columns - 1, (int) cellX);
+        int row = Math.min(rows - 1, (int) cellY);
+        double fractionX = cellX - column;
+        double fractionY = cellY - row;
+        int node = row * (columns + 1) + column;
+        int above = node + columns + 1;
+        double bottom = distances[node] + (distances[node + 1] - distances[node]) * fractionX;
+        double top = distances[above] + (distances[above + 1] - distances[above]) * fractionX;
+        double blended = bottom + (top - bottom) * fractionY;
+        if (Math.abs(blended) > exactBand) {
+            return blended;
+        }
+
+        // Close to an edge, so check the obstacles nearest to the corners of the cell exactly
+        double best = obstacles[nearest[node]].getSignedDistance(x, y);
+        if (nearest[node + 1] != nearest[node]) {
+            best = Math.min(best, obstacles[nearest[node + 1]].getSignedDistance(x, y));
+        }
+        if (nearest[above] != nearest[node] && nearest[above] != nearest[node + 1]) {
+            best = Math.min(best, obstacles[nearest[above]].getSignedDistance(x, y));
+        }
+        if (nearest[above + 1] != nearest[node]
+                && nearest[above + 1] != nearest[node + 1]
+                && nearest[above + 1] != nearest[above]) {
+            best = Math.min(best, obstacles[nearest[above + 1]].getSignedDistance(x, y));
+        }
+        return best;
+    }
+
+    /**
+     * This finds the gradient of the distance at a point, which points away from the nearest
+     * obstacle and has a length of about one, from the slopes of the grid cell around the point.
+     * Points outside the grid use the cell at the nearest edge of the grid.
+     *
+     * @param x the x-value of the point
+     * @param y the y-value of the point
+     * @param result set to the x and y parts of the gradient, in its first two entries
+     */
+    public void getGradient(double x, double y, double[] result) {
+        double cellX = Math.max(0, Math.min(columns, (x - minX) / cellSize));
+        double cellY = Math.max(0, Math.min(rows, (y - minY) / cellSize));
+        int column = Math.min(columns - 1, (int) cellX);
+        int row = Math.min(rows - 1, (int) cellY);
+        double fractionX = cellX - column;
+        double fractionY = cellY - row;
+        int node = row * (columns + 1) + column;
+        int above = node + columns + 1;
+        double bottomSlope = distances[node + 1] - distances[node];
+        double topSlope = distances[above + 1] - distances[above];
+        double leftSlope = distances[above] - distances[node];
+        double rightSlope = distances[above + 1] - distances[node + 1];
+        result[0] = (bottomSlope + (topSlope - bottomSlope) * fractionY) / cellSize;
+        result[1] = (leftSlope + (rightSlope - leftSlope) * fractionX) / cellSize;
+    }
+
+    /**
+     * This writes the field to a stream in a compact binary format, including its obstacles, so
+     * that it can be loaded with read without being built again. The stream isn't closed.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream can't be written to
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeDouble(minX);
+        data.writeDouble(minY);
+        data.writeDouble(cellSize);
+        data.writeInt(columns);
+        data.writeInt(rows);
+        data.writeInt(obstacles.length);
+        for (ConvexNGon obstacle : obstacles) {
+            data.writeInt(obstacle.getVertexCount());
+            for (int i = 0; i < obstacle.getVertexCount(); i++) {
+                data.writeDouble(obstacle.getVertexX(i));
+                data.writeDouble(obstacle.getVertexY(i));
+            }
+        }
+        for (float distance : distances) {
+            data.writeFloat(distance);
+        }
+        for (int obstacle : nearest) {
+            data.writeInt(obstacle);
+        }
+        data.flush();
+    }
+
+    /**
+     * This reads a field written by write. The stream isn't closed.
+     *
+     * @param in the stream to read from
+     * @return the field that was written to the stream
+     * @throws IOException if the stream can't be read from or doesn't hold a valid field
+     */
+    public static SignedDistanceField read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a signed distance field");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported signed distance field version " + version);
+        }
+        double minX = data.readDouble();
+        double minY = data.readDouble();
+        double cellSize = data.readDouble();
+        int columns = data.readInt();
+        int rows = data.readInt();
+        int obstacleCount = data.readInt();
+        if (!Double.isFinite(minX)
+                || !Double.isFinite(minY)
+                || !(cellSize > 0)
+                || !Double.isFinite(cellSize)
+                || columns < 1
+                || rows < 1
+                || ((long) columns + 1) * ((long) rows + 1) > Integer.MAX_VALUE
+                || obstacleCount < 1
+                || obstacleCount > MAX_OBSTACLES) {
+            throw new IOException("Invalid signed distance field header");
+        }
+
+        ConvexNGon[] obstacles = new ConvexNGon[obstacleCount];
+        for (int i = 0; i < obstacleCount; i++) {
+            int vertexCount = data.readInt();
+            if (vertexCount < 3 || vertexCount > MAX_VERTICES) {
+                throw new IOException("Obstacle " + i + " has " + vertexCount + " vertices");
+            }
+            double[] xs = new double[vertexCount];
+            double[] ys = new double[vertexCount];
+            for (int v = 0; v < vertexCount; v++) {
+                xs[v] = data.readDouble();
+                ys[v] = data.readDouble();
+            }
+            try {
+                obstacles[i] = new ConvexNGon(xs, ys);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Obstacle " + i + " is invalid", e);
+            }
+        }
+
+        int nodes = (columns + 1) * (rows + 1);
+        float[] distances = new float[nodes];
+        for (int node = 0; node < nodes; node++) {
+            distances[node] = data.readFloat();
+        }
+        int[] nearest = new int[nodes];
+        for (int node = 0; node < nodes; node++) {
+            nearest[node] = data.readInt();
+            if (nearest[node] < 0 || nearest[node] >= obstacleCount) {
+                throw new IOException("Node " + node + " has an invalid nearest obstacle");
+            }
+        }
+        return new SignedDistanceField(
+                obstacles, minX, minY, cellSize, columns, rows, distances, nearest);
+    }
+}
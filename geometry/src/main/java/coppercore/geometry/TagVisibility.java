@@ -0,0 +1,230 @@
+package coppercore.geometry;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Quaternion;
+import edu.wpi.first.math.geometry.Transform3d;
+import java.util.List;
+
+/**
+ * This class finds which AprilTags a camera could see from a robot pose, so that simulation and
+ * aiming code can skip tags that are behind the camera, outside its field of view, too far away,
+ * or turned too far away from it, without running a full vision simulation.
+ *
+ * <p>The position of each tag and the direction its face points are worked out once from the field
+ * layout, and the camera's rotation on the robot is stored as the three axes of the camera, so each
+ * check only takes a few dot products and doesn't create any objects. Tags that are blocked by
+ * field structures aren't culled, so this is meant as a cheap first pass before a real check.
+ * Since each query stores where the camera is, each thread should use its own.
+ *
+ * <p>Like WPILib, the camera looks along its x-axis, with its y-axis to the left and its z-axis up,
+ * and each tag faces along the x-axis of its pose.
+ */
+public class TagVisibility {
+    private final int[] ids;
+    // The centers of the tags and the unit vectors their faces point along
+    private final double[] tagXs, tagYs, tagZs;
+    private final double[] normalXs, normalYs, normalZs;
+
+    private final double tanHalfHorizontalFov;
+    private final double tanHalfVerticalFov;
+    private final double minDistance;
+    private final double maxDistance;
+    private final double minFacingCos;
+
+    // The camera's position and axes relative to the robot
+    private double cameraX, cameraY, cameraZ;
+    private double forwardX, forwardY, forwardZ;
+    private double leftX, leftY, leftZ;
+    private double upX, upY, upZ;
+
+    // The camera's position and the x and y parts of its axes on the field, from the last query
+    private double fieldX, fieldY;
+    private double fieldForwardX, fieldForwardY, fieldLeftX, fieldLeftY, fieldUpX, fieldUpY;
+
+    /**
+     * This creates a visibility check for one camera.
+     *
+     * @param layout the layout of the tags on the field
+     * @param robotToCamera the transform from the robot to the camera
+     * @param horizontalFov the full horizontal field of view of the camera, in radians
+     * @param verticalFov the full vertical field of view of the camera, in radians
+     * @param minDistance the closest a tag can be to the camera to be seen, in meters
+     * @param maxDistance the farthest a tag can be from the camera to be seen, in meters
+     * @param maxFacingAngle the largest angle between the direction a tag faces and the direction
+     *     from the tag to the camera at which the tag can be seen, in radians
+     * @throws IllegalArgumentException if a field of view isn't between 0 and pi, the distances
+     *     aren't in order, or the facing angle isn't between 0 and pi / 2
+     */
+    public TagVisibility(
+            AprilTagFieldLayout layout,
+            Transform3d robotToCamera,
+            double horizontalFov,
+            double verticalFov,
+            double minDistance,
+            double maxDistance,
+            double maxFacingAngle) {
+        if (!(horizontalFov > 0 && horizontalFov < Math.PI)
+                || !(verticalFov > 0 && verticalFov < Math.PI)) {
+            throw new IllegalArgumentException(
+                    "Field of view must be between 0 and pi, got "
+                            + horizontalFov
+                            + " by "
+                            + verticalFov);
+        }
+        if (!(minDistance >= 0 && maxDistance >= minDistance)) {
+            throw new IllegalArgumentException(
+                    "Invalid distance range " + minDistance + " to " + maxDistance);
+        }
+        if (!(maxFacingAngle >= 0 && maxFacingAngle <= Math.PI / 2)) {
+            throw new IllegalArgumentException(
+                    "Facing angle must be between 0 and pi / 2, got " + maxFacingAngle);
+        }
+        this.tanHalfHorizontalFov = Math.tan(horizontalFov / 2);
+        this.tanHalfVerticalFov = Math.tan(verticalFov / 2);
+        this.minDistance = minDistance;
+        this.maxDistance = maxDistance;
+        this.minFacingCos = Math.cos(maxFacingAngle);
+
+        List<AprilTag> tags = layout.getTags();
+        int count = tags.size();
+        ids = new int[count];
+        tagXs = new double[count];
+        tagYs = new double[count];
+        tagZs = new double[count];
+        normalXs = new double[count];
+        normalYs = new double[count];
+        normalZs = new double[count];
+        for (int i = 0; i < count; i++) {
+            AprilTag tag = tags.get(i);
+            ids[i] = tag.ID;
+            tagXs[i] = tag.pose.getX();
+            tagYs[i] = tag.pose.getY();
+            tagZs[i] = tag.pose.getZ();
+            // The x-axis of the tag's rotation, from its quaternion
+            Quaternion q = tag.pose.getRotation().getQuaternion();
+            double w = q.getW();
+            double x = q.getX();
+            double y = q.getY();
+            double z = q.getZ();
+            normalXs[i] = 1 - 2 * (y * y + z * z);
+            normalYs[i] = 2 * (x * y + w * z);
+            normalZs[i] = 2 * (x * z - w * y);
+        }
+        setRobotToCamera(robotToCamera);
+    }
+
+    /**
+     * This changes where the camera is on the robot, for cameras that move, such as ones on a
+     * turret.
+     *
+     * @param robotToCamera the transform from the robot to the camera
+     */
+    public void setRobotToCamera(Transform3d robotToCamera) {
+        cameraX = robotToCamera.getX();
+        cameraY = robotToCamera.getY();
+        cameraZ = robotToCamera.getZ();
+        Quaternion q = robotToCamera.getRotation().getQuaternion();
+        double w = q.getW();
+        double x = q.getX();
+        double y = q.getY();
+        double z = q.getZ();
+        forwardX = 1 - 2 * (y * y + z * z);
+        forwardY = 2 * (x * y + w * z);
+        forwardZ = 2 * (x * z - w * y);
+        leftX = 2 * (x * y - w * z);
+        leftY = 1 - 2 * (x * x + z * z);
+        leftZ = 2 * (y * z + w * x);
+        upX = 2 * (x * z + w * y);
+        upY = 2 * (y * z - w * x);
+        upZ = 1 - 2 * (x * x + y * y);
+    }
+
+    /**
+     * This gets the number of tags in the layout.
+     *
+     * @return the number of tags
+     */
+    public int getTagCount() {
+        return ids.length;
+    }
+
+    /**
+     * This finds the IDs of the tags that the camera could see with the robot at a pose, in the
+     * order they are in the layout.
+     *
+     * @param robotPose the pose of the robot on the field
+     * @param visibleIds the array to write the IDs of the visible tags to, which should have room
+     *     for getTagCount() IDs
+     * @return the number of visible tags
+     */
+    public int findVisibleTags(Pose2d robotPose, int[] visibleIds) {
+        placeCamera(robotPose);
+        int found = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (canSee(i)) {
+                visibleIds[found++] = ids[i];
+            }
+        }
+        return found;
+    }
+
+    /**
+     * This checks if the camera could see a tag with the robot at a pose.
+     *
+     * @param robotPose the pose of the robot on the field
+     * @param id the ID of the tag
+     * @return whether or not the tag could be seen, which is false if it isn't in the layout
+     */
+    public boolean isVisible(Pose2d robotPose, int id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                placeCamera(robotPose);
+                return canSee(i);
+            }
+        }
+        return false;
+    }
+
+    /** This works out where the camera is and which way its axes point on the field. */
+    private void placeCamera(Pose2d robotPose) {
+        double cos = robotPose.getRotation().getCos();
+        double sin = robotPose.getRotation().getSin();
+        // Turning by the robot's heading only changes x and y
+        fieldX = robotPose.getX() + cameraX * cos - cameraY * sin;
+        fieldY = robotPose.getY() + cameraX * sin + cameraY * cos;
+        fieldForwardX = forwardX * cos - forwardY * sin;
+        fieldForwardY = forwardX * sin + forwardY * cos;
+        fieldLeftX = leftX * cos - leftY * sin;
+        fieldLeftY = leftX * sin + leftY * cos;
+        fieldUpX = upX * cos - upY * sin;
+        fieldUpY = upX * sin + upY * cos;
+    }
+
+    /** This checks if the camera, where placeCamera last put it, could see the tag at index i. */
+    private boolean canSee(int i) {
+        double toTagX = tagXs[i] - fieldX;
+        double toTagY = tagYs[i] - fieldY;
+        double toTagZ = tagZs[i] - cameraZ;
+        double distanceSquared = toTagX * toTagX + toTagY * toTagY + toTagZ * toTagZ;
+        if (distanceSquared < minDistance * minDistance
+                || distanceSquared > maxDistance * maxDistance) {
+            return false;
+        }
+        // The tag has to face the camera closely enough
+        double facing = -(toTagX * normalXs[i] + toTagY * normalYs[i] + toTagZ * normalZs[i]);
+        if (facing <= 0 || facing * facing < minFacingCos * minFacingCos * distanceSquared) {
+            return false;
+        }
+        // The tag has to be in front of the camera and inside its field of view
+        double forward = toTagX * fieldForwardX + toTagY * fieldForwardY + toTagZ * forwardZ;
+        if (forward <= 0) {
+            return false;
+        }
+        double left = toTagX * fieldLeftX + toTagY * fieldLeftY + toTagZ * leftZ;
+        double up = toTagX * fieldUpX + toTagY * fieldUpY + toTagZ * upZ;
+        return Math.abs(left) <= forward * tanHalfHorizontalFov
+                && Math.abs(up) <= forward * tanHalfVerticalFov;
+    }
+}
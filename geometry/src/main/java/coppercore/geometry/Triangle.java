@@ -7,6 +7,9 @@ package coppercore.geometry;
  * it is on.
  */
 public class Triangle extends ConvexPolygon {
+    /** Tolerance of containment checks, relative to the squared size of the triangle */
+    static final double TOLERANCE = 1e-12;
+
     private Point p1, p2, p3;
 
     /**
@@ -62,39 +65,151 @@ public class Triangle extends ConvexPolygon {
                                 + p3.getX() * (p1.getY() - p2.getY()));
     }
 
+    @Override
+    public double getMinX() {
+        return Math.min(p1.getX(), Math.min(p2.getX(), p3.getX()));
+    }
+
+    @Override
+    public double getMinY() {
+        return Math.min(p1.getY(), Math.min(p2.getY(), p3.getY()));
+    }
+
+    @Override
+    public double getMaxX() {
+        return Math.max(p1.getX(), Math.max(p2.getX(), p3.getX()));
+    }
+
+    @Override
+    public double getMaxY() {
+        return Math.max(p1.getY(), Math.max(p2.getY(), p3.getY()));
+    }
+
     /**
-     * This checks if the triangle is containing a point
+     * This checks if the triangle is containing a point. Points on the edges of the triangle count
+     * as contained.
      *
      * @param point the point that we are checking to contain
      * @return whether or not the triangle contains that point
      */
     public boolean containsPoint(Point point) {
-        Triangle t1 = new Triangle(point, this.getPoint2(), this.getPoint3());
-        Triangle t2 = new Triangle(this.getPoint1(), point, this.getPoint3());
-        Triangle t3 = new Triangle(this.getPoint1(), this.getPoint2(), point);
-
-        double area = this.getArea();
+        return containsPoint(point.getX(), point.getY());
+    }
 
-        double sumOfT = t1.getArea() + t2.getArea() + t3.getArea();
+    /**
+     * This checks if the triangle is containing a point given by its coordinates, without creating
+     * any objects. Points on the edges of the triangle count as contained.
+     *
+     * @param x the x-value of the point that we are checking to contain
+     * @param y the y-value of the point that we are checking to contain
+     * @return whether or not the triangle contains that point
+     */
+    @Override
+    public boolean containsPoint(double x, double y) {
+        return containsPoint(
+                p1.getX(), p1.getY(), p2.getX(), p2.getY(), p3.getX(), p3.getY(), x, y);
+    }
 
-        return Math.abs(sumOfT - area) < 0.05;
+    /**
+     * This checks which of many points the triangle contains, using the same test as
+     * containsPoint. Everything that doesn't depend on the point is worked out once before the
+     * loop, so each point only takes a few multiplications.
+     *
+     * @param xs the x-values of the points
+     * @param ys the y-values of the points
+     * @param result set to whether or not the triangle contains each point, for the first
+     *     xs.length entries
+     * @throws IllegalArgumentException if ys and result are shorter than xs
+     */
+    @Override
+    public void containsPoints(double[] xs, double[] ys, boolean[] result) {
+        checkBatch(xs, ys, result);
+        double ax = p1.getX();
+        double ay = p1.getY();
+        double bx = p2.getX();
+        double by = p2.getY();
+        double cx = p3.getX();
+        double cy = p3.getY();
+        double abx = bx - ax;
+        double aby = by - ay;
+        double acx = cx - ax;
+        double acy = cy - ay;
+        double tolerance = TOLERANCE * (abx * abx + aby * aby + acx * acx + acy * acy);
+        double twiceArea = abx * acy - aby * acx;
+        if (Math.abs(twiceArea) <= tolerance) {
+            super.containsPoints(xs, ys, result);
+            return;
+        }
+        // Flipping the signs of the cross products makes the inside positive either way
+        double sign = twiceArea > 0 ? 1.0 : -1.0;
+        double bcx = cx - bx;
+        double bcy = cy - by;
+        double cax = ax - cx;
+        double cay = ay - cy;
+        for (int i = 0; i < xs.length; i++) {
+            double x = xs[i];
+            double y = ys[i];
+            result[i] =
+                    sign * (abx * (y - ay) - aby * (x - ax)) >= -tolerance
+                            && sign * (bcx * (y - by) - bcy * (x - bx)) >= -tolerance
+                            && sign * (cax * (y - cy) - cay * (x - cx)) >= -tolerance;
+        }
     }
 
     /**
-     * This function checks if a point is colliding with the triangle
+     * This function checks if a point is colliding with the triangle, which means it is either
+     * inside the triangle or on one of its edges.
      *
      * @param point the point that we are checking for
-     * @return whether or not the point is on any of the lines of the triangle and which line it is
-     *     on
+     * @return whether or not the point is inside the triangle or on any of its lines
      */
     public boolean isPointColliding(Point point) {
-        Line line1 = new Line(this.getPoint1(), this.getPoint2());
-        Line line2 = new Line(this.getPoint2(), this.getPoint3());
-        Line line3 = new Line(this.getPoint3(), this.getPoint1());
-
-        return this.containsPoint(point)
-                || line1.isPointOnLine(point)
-                || line2.isPointOnLine(point)
-                || line3.isPointOnLine(point);
+        return containsPoint(point.getX(), point.getY());
+    }
+
+    /**
+     * This checks if the triangle abc contains the point (x, y), including its edges. It checks
+     * which side of each edge the point is on using cross products, so that no objects are created
+     * and no square roots are taken. A small tolerance relative to the size of the triangle lets
+     * points on the edges count despite rounding errors. If the triangle has no area, only points
+     * on its edges are contained.
+     *
+     * @param ax the x-value of the first corner
+     * @param ay the y-value of the first corner
+     * @param bx the x-value of the second corner
+     * @param by the y-value of the second corner
+     * @param cx the x-value of the third corner
+     * @param cy the y-value of the third corner
+     * @param x the x-value of the point that we are checking
+     * @param y the y-value of the point that we are checking
+     * @return whether or not the triangle contains the point
+     */
+    static boolean containsPoint(
+            double ax, double ay, double bx, double by, double cx, double cy, double x, double y) {
+        double abx = bx - ax;
+        double aby = by - ay;
+        double acx = cx - ax;
+        double acy = cy - ay;
+        double tolerance = TOLERANCE * (abx * abx + aby * aby + acx * acx + acy * acy);
+
+        // Each cross product is positive if the point is to the left of the edge
+        double d1 = abx * (y - ay) - aby * (x - ax);
+        double d2 = (cx - bx) * (y - by) - (cy - by) * (x - bx);
+        double d3 = (ax - cx) * (y - cy) - (ay - cy) * (x - cx);
+        double twiceArea = abx * acy - aby * acx;
+
+        if (twiceArea > tolerance) {
+            return d1 >= -tolerance && d2 >= -tolerance && d3 >= -tolerance;
+        } else if (twiceArea < -tolerance) {
+            return d1 <= tolerance && d2 <= tolerance && d3 <= tolerance;
+        }
+        // All three corners are on one line, so the point has to be on that line between them
+        return Math.abs(d1) <= tolerance
+                && Math.abs(d2) <= tolerance
+                && Math.abs(d3) <= tolerance
+                && x >= Math.min(ax, Math.min(bx, cx))
+                && x <= Math.max(ax, Math.max(bx, cx))
+                && y >= Math.min(ay, Math.min(by, cy))
+                && y <= Math.max(ay, Math.max(by, cy));
     }
 }
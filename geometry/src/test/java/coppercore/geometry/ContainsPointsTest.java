@@ -0,0 +1,112 @@
+package coppercore.geometry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ContainsPointsTest {
+    private static ConvexNGon regular(int n, double radius) {
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            double angle = 0.2 + 2 * Math.PI * i / n;
+            xs[i] = radius * Math.cos(angle);
+            ys[i] = radius * Math.sin(angle);
+        }
+        return new ConvexNGon(xs, ys);
+    }
+
+    /** This makes random points around the shape, along with its vertices and edge midpoints. */
+    private static double[][] points(ConvexNGon shape, Random random) {
+        int n = shape.getVertexCount();
+        int count = 2000 + 2 * n;
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        for (int i = 0; i < n; i++) {
+            int next = (i + 1) % n;
+            xs[i] = shape.getVertexX(i);
+            ys[i] = shape.getVertexY(i);
+            xs[n + i] = (shape.getVertexX(i) + shape.getVertexX(next)) / 2;
+            ys[n + i] = (shape.getVertexY(i) + shape.getVertexY(next)) / 2;
+        }
+        for (int i = 2 * n; i < count; i++) {
+            xs[i] = -2.5 + random.nextDouble() * 5;
+            ys[i] = -2.5 + random.nextDouble() * 5;
+        }
+        return new double[][] {xs, ys};
+    }
+
+    private static void assertBatchMatchesSinglePoints(ConvexPolygon shape, double[][] points) {
+        double[] xs = points[0];
+        double[] ys = points[1];
+        // A longer result array, to check that only the first xs.length entries are written
+        boolean[] result = new boolean[xs.length + 3];
+        result[xs.length + 1] = true;
+        shape.containsPoints(xs, ys, result);
+        for (int i = 0; i < xs.length; i++) {
+            assertEquals(shape.containsPoint(xs[i], ys[i]), result[i], "point " + i);
+        }
+        assertFalse(result[xs.length]);
+        assertTrue(result[xs.length + 1]);
+    }
+
+    @Test
+    void edgeByEdgeBatchMatchesContainsPoint() {
+        Random random = new Random(401);
+        for (int n = 3; n <= ConvexNGon.EDGE_BY_EDGE_VERTICES; n++) {
+            ConvexNGon shape = regular(n, 2.0);
+            assertBatchMatchesSinglePoints(shape, points(shape, random));
+        }
+    }
+
+    @Test
+    void largePolygonBatchMatchesContainsPoint() {
+        Random random = new Random(7);
+        for (int n : new int[] {ConvexNGon.EDGE_BY_EDGE_VERTICES + 1, 64, 500}) {
+            ConvexNGon shape = regular(n, 2.0);
+            assertBatchMatchesSinglePoints(shape, points(shape, random));
+        }
+    }
+
+    @Test
+    void otherShapesBatchMatchesContainsPoint() {
+        Random random = new Random(11);
+        ConvexNGon square = regular(4, 2.0);
+        double[][] points = points(square, random);
+        Triangle triangle = new Triangle(new Point(-2, -1), new Point(2, -1.5), new Point(0.3, 2));
+        Triangle flat = new Triangle(new Point(-2, -2), new Point(0, 0), new Point(2, 2));
+        Polygon notch =
+                new Polygon(
+                        new double[] {-2, 2, 2, 0.5, 0.5, -2}, new double[] {-2, -2, 2, 2, 0, 0});
+
+        assertBatchMatchesSinglePoints(triangle, points);
+        assertBatchMatchesSinglePoints(flat, points);
+        assertBatchMatchesSinglePoints(notch, points);
+    }
+
+    @Test
+    void emptyBatchesDoNothing() {
+        boolean[] result = {true};
+        regular(5, 1.0).containsPoints(new double[0], new double[0], result);
+        assertTrue(result[0]);
+    }
+
+    @Test
+    void shortArraysAreRejected() {
+        ConvexPolygon[] shapes = {
+            regular(5, 1.0),
+            regular(40, 1.0),
+            new Triangle(new Point(0, 0), new Point(1, 0), new Point(0, 1))
+        };
+        for (ConvexPolygon shape : shapes) {
+            assertThrows(
+                    IllegalArgumentException.class,
+                    () -> shape.containsPoints(new double[3], new double[2], new boolean[3]));
+            assertThrows(
+                    IllegalArgumentException.class,
+                    () -> shape.containsPoints(new double[3], new double[3], new boolean[2]));
+            shape.containsPoints(new double[3], new double[4], new boolean[5]);
+        }
+    }
+}
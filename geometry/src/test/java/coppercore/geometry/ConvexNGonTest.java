@@ -0,0 +1,152 @@
+package coppercore.geometry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ConvexNGonTest {
+    /** This makes a regular polygon, turned by an angle so that its edges aren't axis aligned. */
+    private static ConvexNGon regular(int n, double radius, double turn, boolean clockwise) {
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            double angle = turn + (clockwise ? -1 : 1) * 2 * Math.PI * i / n;
+            xs[i] = 1.5 + radius * Math.cos(angle);
+            ys[i] = -0.5 + radius * Math.sin(angle);
+        }
+        return new ConvexNGon(xs, ys);
+    }
+
+    /** This checks a point against every edge, as the containment check did before. */
+    private static boolean containsByEveryEdge(ConvexNGon polygon, double x, double y) {
+        int n = polygon.getVertexCount();
+        for (int i = 0; i < n; i++) {
+            int next = (i + 1) % n;
+            double edgeX = polygon.getVertexX(next) - polygon.getVertexX(i);
+            double edgeY = polygon.getVertexY(next) - polygon.getVertexY(i);
+            if (edgeX * (y - polygon.getVertexY(i)) - edgeY * (x - polygon.getVertexX(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    void verticesAndEdgeMidpointsAreContained() {
+        ConvexNGon hexagon = regular(6, 2.3, 0.3, false);
+
+        for (int i = 0; i < 6; i++) {
+            int next = (i + 1) % 6;
+            double x = hexagon.getVertexX(i);
+            double y = hexagon.getVertexY(i);
+            assertTrue(hexagon.containsPoint(x, y));
+            assertTrue(hexagon.isPointColliding(new Point(x, y)));
+            double midX = (x + hexagon.getVertexX(next)) / 2;
+            double midY = (y + hexagon.getVertexY(next)) / 2;
+            assertTrue(hexagon.containsPoint(midX, midY));
+            assertTrue(hexagon.containsPoint(new Point(midX, midY)));
+            // Just past the edge, away from the center
+            assertFalse(
+                    hexagon.containsPoint(
+                            1.5 + (midX - 1.5) * 1.001, -0.5 + (midY + 0.5) * 1.001));
+        }
+    }
+
+    @Test
+    void bothWindingsGiveTheSameResults() {
+        ConvexNGon counterclockwise = regular(7, 2.0, 0.1, false);
+        ConvexNGon clockwise = regular(7, 2.0, 0.1, true);
+        Random random = new Random(401);
+
+        assertEquals(counterclockwise.getArea(), clockwise.getArea(), 1e-12);
+        for (int i = 0; i < 10000; i++) {
+            double x = -1 + random.nextDouble() * 5;
+            double y = -3 + random.nextDouble() * 5;
+            boolean contained = counterclockwise.containsPoint(x, y);
+            assertEquals(contained, clockwise.containsPoint(x, y));
+            assertEquals(contained, counterclockwise.isPointColliding(new Point(x, y)));
+        }
+    }
+
+    @Test
+    void manyVerticesMatchCheckingEveryEdge() {
+        ConvexNGon polygon = regular(200, 3.0, 0.7, true);
+        Random random = new Random(7);
+
+        for (int i = 0; i < 100000; i++) {
+            double x = -2 + random.nextDouble() * 7;
+            double y = -4 + random.nextDouble() * 7;
+            assertEquals(containsByEveryEdge(polygon, x, y), polygon.containsPoint(x, y));
+        }
+    }
+
+    @Test
+    void signedDistanceIsNegativeInside() {
+        ConvexNGon square = new ConvexNGon(new double[] {0, 2, 2, 0}, new double[] {0, 0, 2, 2});
+
+        assertEquals(-1.0, square.getSignedDistance(1, 1), 1e-12);
+        assertEquals(-0.5, square.getSignedDistance(0.5, 1), 1e-12);
+        assertEquals(0.0, square.getSignedDistance(2, 1), 1e-12);
+        assertEquals(1.0, square.getSignedDistance(3, 1), 1e-12);
+        assertEquals(Math.sqrt(2), square.getSignedDistance(3, 3), 1e-12);
+    }
+
+    @Test
+    void repeatedVerticesAreDropped() {
+        // The corner at (2, 0) is given twice, and the last vertex closes the loop to the first
+        ConvexNGon square =
+                new ConvexNGon(new double[] {0, 2, 2, 2, 0, 0}, new double[] {0, 0, 0, 2, 2, 0});
+
+        assertEquals(4, square.getVertexCount());
+        assertEquals(4.0, square.getArea(), 1e-12);
+        assertEquals(0.0, square.getVertexX(0));
+        assertEquals(0.0, square.getVertexY(0));
+        assertEquals(-1.0, square.getSignedDistance(1, 1), 1e-12);
+        assertEquals(-0.25, square.getSignedDistance(1.75, 1), 1e-12);
+        assertEquals(1.0, square.getSignedDistance(3, 1), 1e-12);
+        assertTrue(square.containsPoint(2, 0));
+        assertFalse(square.containsPoint(2.1, 0));
+
+        SignedDistanceField field = new SignedDistanceField(-1, -1, 3, 3, 0.25, square);
+        assertEquals(-1.0, field.getDistance(1, 1), 1e-6);
+        assertEquals(-0.5, field.getDistance(1.5, 1.2), 1e-6);
+    }
+
+    @Test
+    void concavePolygonsAreRejected() {
+        // An arrowhead, whose corner at (1, 1) turns the wrong way
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new ConvexNGon(new double[] {0, 2, 1, 2}, new double[] {0, 0, 1, 2}));
+    }
+
+    @Test
+    void starsThatWrapTwiceAreRejected() {
+        // Every corner of a pentagram turns the same way, but it goes around its center twice
+        double[] xs = new double[5];
+        double[] ys = new double[5];
+        for (int i = 0; i < 5; i++) {
+            double angle = 2 * Math.PI * (2 * i) / 5;
+            xs[i] = Math.cos(angle);
+            ys[i] = Math.sin(angle);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ConvexNGon(xs, ys));
+    }
+
+    @Test
+    void polygonsWithNoAreaAreRejected() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new ConvexNGon(new double[] {0, 1, 2}, new double[] {0, 1, 2}));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new ConvexNGon(new double[] {0, 1, 1, 0}, new double[] {0, 0, 0, 0}));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new ConvexNGon(new double[] {0, 1}, new double[] {0, 1}));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new ConvexNGon(new double[] {0, 1, 1, 0}, new double[] {0, 1, 1, 0}));
+    }
+}
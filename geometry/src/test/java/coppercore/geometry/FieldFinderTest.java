@@ -0,0 +1,242 @@
+package coppercore.geometry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class FieldFinderTest {
+    /** A zone without bounds, which the grid has to check for every point. */
+    private static class HalfPlane extends ConvexPolygon {
+        @Override
+        public double getArea() {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public boolean containsPoint(Point p) {
+            return p.getX() + p.getY() <= 3;
+        }
+
+        @Override
+        public boolean isPointColliding(Point p) {
+            return containsPoint(p);
+        }
+    }
+
+    private static ConvexNGon box(double minX, double minY, double maxX, double maxY) {
+        return new ConvexNGon(
+                new double[] {minX, maxX, maxX, minX}, new double[] {minY, minY, maxY, maxY});
+    }
+
+    /**
+     * This fills a field with 100 overlapping zones inside the square from (0, 0) to (10, 10),
+     * which makes a grid of 10 by 10 cells with borders at whole numbers.
+     */
+    private static FieldFinder field(Random random) {
+        FieldFinder finder = new FieldFinder();
+        finder.addZone("field", box(0, 0, 10, 10));
+        for (int i = 1; i < 100; i++) {
+            double x = random.nextInt(9) + random.nextDouble();
+            double y = random.nextInt(9) + random.nextDouble();
+            double size = 0.2 + random.nextDouble() * 3;
+            ConvexPolygon zone;
+            switch (i % 3) {
+                case 0:
+                    zone = box(x, y, Math.min(10, x + size), Math.min(10, y + size / 2));
+                    break;
+                case 1:
+                    zone =
+                            new Triangle(
+                                    new Point(x, y),
+                                    new Point(Math.min(10, x + size), y),
+                                    new Point(x, Math.min(10, y + size)));
+                    break;
+                default:
+                    // Whole-number corners, so that edges lie on cell borders
+                    double minX = Math.floor(x);
+                    double minY = Math.floor(y);
+                    zone = box(minX, minY, Math.min(10, minX + 2), Math.min(10, minY + 1));
+                    break;
+            }
+            finder.addZone("zone " + i, zone);
+        }
+        return finder;
+    }
+
+    private static BitSet linearScan(FieldFinder finder, double x, double y) {
+        BitSet result = new BitSet();
+        for (int zone = 0; zone < finder.getZoneCount(); zone++) {
+            if (finder.getZone(zone).containsPoint(x, y)) {
+                result.set(zone);
+            }
+        }
+        return result;
+    }
+
+    private static List<ConvexNGon> collisionShapes(ConvexPolygon zone) {
+        List<Triangle> triangles = new ArrayList<>();
+        if (zone instanceof Triangle) {
+            triangles.add((Triangle) zone);
+        } else if (zone instanceof Polygon) {
+            Polygon polygon = (Polygon) zone;
+            for (int t = 0; t < polygon.getTriangleCount(); t++) {
+                triangles.add(polygon.getTriangle(t));
+            }
+        } else if (zone instanceof ConvexNGon) {
+            return List.of((ConvexNGon) zone);
+        }
+        List<ConvexNGon> shapes = new ArrayList<>();
+        for (Triangle triangle : triangles) {
+            shapes.add(
+                    new ConvexNGon(
+                            triangle.getPoint1(), triangle.getPoint2(), triangle.getPoint3()));
+        }
+        return shapes;
+    }
+
+    /** A U-shaped zone around the square from (4, 4) to (6, 6), open to the top. */
+    private static Polygon notch() {
+        return new Polygon(
+                new double[] {3, 7, 7, 6, 6, 4, 4, 3}, new double[] {3, 3, 7, 7, 4, 4, 7, 7});
+    }
+
+    private static List<double[]> testPoints(Random random) {
+        List<double[]> points = new ArrayList<>();
+        // Cell borders and corners, including the edges of the grid
+        for (int x = 0; x <= 10; x++) {
+            for (int y = 0; y <= 10; y++) {
+                points.add(new double[] {x, y});
+                points.add(new double[] {x, y + 0.5});
+                points.add(new double[] {x + 0.5, y});
+            }
+        }
+        // Outside the grid
+        points.add(new double[] {-0.001, 5});
+        points.add(new double[] {10.001, 5});
+        points.add(new double[] {5, -3});
+        points.add(new double[] {-20, -20});
+        for (int i = 0; i < 5000; i++) {
+            points.add(new double[] {-1 + random.nextDouble() * 12, -1 + random.nextDouble() * 12});
+        }
+        return points;
+    }
+
+    @Test
+    void findZonesMatchesCheckingEveryZone() {
+        Random random = new Random(401);
+        FieldFinder finder = field(random);
+        finder.addZone("half plane", new HalfPlane());
+        BitSet result = new BitSet();
+
+        for (double[] point : testPoints(random)) {
+            BitSet expected = linearScan(finder, point[0], point[1]);
+            int found = finder.findZones(point[0], point[1], result);
+            assertEquals(expected, result, "at (" + point[0] + ", " + point[1] + ")");
+            assertEquals(expected.cardinality(), found);
+        }
+    }
+
+    @Test
+    void batchFindZonesMatchesSinglePoints() {
+        Random random = new Random(7);
+        FieldFinder finder = field(random);
+        List<double[]> points = testPoints(random);
+        double[] xs = new double[points.size()];
+        double[] ys = new double[points.size()];
+        BitSet[] results = new BitSet[points.size()];
+        int inZones = 0;
+        for (int i = 0; i < points.size(); i++) {
+            xs[i] = points.get(i)[0];
+            ys[i] = points.get(i)[1];
+            results[i] = new BitSet();
+            if (!linearScan(finder, xs[i], ys[i]).isEmpty()) {
+                inZones++;
+            }
+        }
+
+        assertEquals(inZones, finder.findZones(xs, ys, results));
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(linearScan(finder, xs[i], ys[i]), results[i]);
+        }
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> finder.findZones(xs, new double[1], results));
+    }
+
+    @Test
+    void zonesAddedAfterAQueryAreFound() {
+        FieldFinder finder = new FieldFinder();
+        BitSet result = new BitSet();
+        assertEquals(0, finder.findZones(1, 1, result));
+
+        finder.addZone("a", box(0, 0, 2, 2));
+        assertEquals(1, finder.findZones(1, 1, result));
+        assertEquals(0, finder.findZones(5, 5, result));
+
+        // The grid grows to cover the new zone
+        int b = finder.addZone("b", box(4, 4, 6, 6));
+        assertEquals(1, finder.findZones(5, 5, result));
+        assertTrue(result.get(b));
+        assertEquals(b, finder.getZoneIndex("b"));
+        assertThrows(IllegalArgumentException.class, () -> finder.addZone("a", box(0, 0, 1, 1)));
+    }
+
+    @Test
+    void findCollisionsMatchesCheckingEveryZone() {
+        Random random = new Random(11);
+        FieldFinder finder = field(random);
+        finder.addZone("half plane", new HalfPlane());
+        finder.addZone("notch", notch());
+        RobotFootprint footprint = new RobotFootprint(0.7, 0.5);
+        RobotFootprint reference = new RobotFootprint(0.7, 0.5);
+        BitSet result = new BitSet();
+
+        for (int i = 0; i < 500; i++) {
+            Pose2d start =
+                    new Pose2d(
+                            -1 + random.nextDouble() * 12,
+                            -1 + random.nextDouble() * 12,
+                            new Rotation2d(random.nextDouble() * 2 * Math.PI));
+            Pose2d end =
+                    new Pose2d(
+                            start.getX() + random.nextDouble() * 2 - 1,
+                            start.getY() + random.nextDouble() * 2 - 1,
+                            new Rotation2d(random.nextDouble() * 2 * Math.PI));
+            BitSet expected = new BitSet();
+            for (int zone = 0; zone < finder.getZoneCount(); zone++) {
+                for (ConvexNGon shape : collisionShapes(finder.getZone(zone))) {
+                    if (reference.intersectsSwept(start, end, shape)) {
+                        expected.set(zone);
+                    }
+                }
+            }
+            int found = finder.findCollisions(footprint, start, end, result);
+            assertEquals(expected, result);
+            assertEquals(expected.cardinality(), found);
+        }
+    }
+
+    @Test
+    void findCollisionsChecksConcavePolygons() {
+        FieldFinder finder = new FieldFinder();
+        int notch = finder.addZone("notch", notch());
+        RobotFootprint footprint = new RobotFootprint(1, 1);
+        BitSet result = new BitSet();
+
+        // Inside the notch, the bounds of the polygon are hit but not the polygon itself
+        Pose2d inNotch = new Pose2d(5, 5.5, new Rotation2d(0));
+        assertEquals(0, finder.findCollisions(footprint, inNotch, result));
+        Pose2d onLeftSide = new Pose2d(3.5, 5, new Rotation2d(0));
+        assertEquals(1, finder.findCollisions(footprint, onLeftSide, result));
+        assertTrue(result.get(notch));
+        Pose2d belowNotch = new Pose2d(5, 3.5, new Rotation2d(0));
+        assertEquals(1, finder.findCollisions(footprint, inNotch, belowNotch, result));
+        assertTrue(result.get(notch));
+    }
+}
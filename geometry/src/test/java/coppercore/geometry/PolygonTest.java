@@ -0,0 +1,197 @@
+package coppercore.geometry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PolygonTest {
+    // A U shape with a notch from (1, 1) to (2, 3)
+    private static final double[] U_XS = {0, 3, 3, 2, 2, 1, 1, 0};
+    private static final double[] U_YS = {0, 0, 3, 3, 1, 1, 3, 3};
+
+    private static double[] reversed(double[] values) {
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[values.length - 1 - i];
+        }
+        return result;
+    }
+
+    /** This counts how many edges a ray going right from the point crosses. */
+    private static boolean containsByCrossings(double[] xs, double[] ys, double x, double y) {
+        boolean inside = false;
+        for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+            if ((ys[i] > y) != (ys[j] > y)
+                    && x < xs[j] + (y - ys[j]) * (xs[i] - xs[j]) / (ys[i] - ys[j])) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private static double triangleArea(Polygon polygon) {
+        double area = 0;
+        for (int i = 0; i < polygon.getTriangleCount(); i++) {
+            area += polygon.getTriangle(i).getArea();
+        }
+        return area;
+    }
+
+    @Test
+    void notchesOfLShapesAreOutside() {
+        Polygon l =
+                new Polygon(new double[] {0, 2, 2, 1, 1, 0}, new double[] {0, 0, 1, 1, 2, 2});
+
+        assertFalse(l.containsPoint(1.5, 1.5));
+        assertFalse(l.containsPoint(1.01, 1.01));
+        assertFalse(l.containsPoint(new Point(1.9, 1.9)));
+        assertTrue(l.containsPoint(0.5, 1.5));
+        assertTrue(l.containsPoint(1.5, 0.5));
+        // The edges of the notch and the corner inside it are on the polygon
+        assertTrue(l.containsPoint(1, 1));
+        assertTrue(l.containsPoint(1, 1.5));
+        assertTrue(l.containsPoint(1.5, 1));
+        assertTrue(l.isPointColliding(new Point(1, 2)));
+        assertTrue(l.containsPoint(2, 0.5));
+        assertFalse(l.containsPoint(2.01, 0.5));
+        assertEquals(4, l.getTriangleCount());
+        assertEquals(3, l.getArea(), 1e-12);
+    }
+
+    @Test
+    void notchesOfUShapesAreOutside() {
+        Polygon u = new Polygon(U_XS, U_YS);
+
+        assertFalse(u.containsPoint(1.5, 2));
+        assertFalse(u.containsPoint(1.5, 1.01));
+        assertFalse(u.containsPoint(1.5, 3));
+        assertTrue(u.containsPoint(1.5, 0.5));
+        assertTrue(u.containsPoint(0.5, 2.5));
+        assertTrue(u.containsPoint(2.5, 2.5));
+        assertTrue(u.containsPoint(1.5, 1));
+        assertTrue(u.containsPoint(1, 2));
+        assertTrue(u.containsPoint(2, 2));
+        assertTrue(u.containsPoint(0, 1.5));
+        assertTrue(u.containsPoint(3, 3));
+    }
+
+    @Test
+    void clockwiseVerticesGiveTheSameResults() {
+        Polygon counterclockwise = new Polygon(U_XS, U_YS);
+        Polygon clockwise = new Polygon(reversed(U_XS), reversed(U_YS));
+
+        assertEquals(counterclockwise.getArea(), clockwise.getArea(), 1e-12);
+        assertEquals(counterclockwise.getTriangleCount(), clockwise.getTriangleCount());
+        // Vertex 0 is the first vertex given, which is the last vertex of the U
+        assertEquals(0, clockwise.getVertexX(0));
+        assertEquals(3, clockwise.getVertexY(0));
+        for (double x = -0.25; x <= 3.25; x += 0.125) {
+            for (double y = -0.25; y <= 3.25; y += 0.125) {
+                assertEquals(
+                        counterclockwise.containsPoint(x, y),
+                        clockwise.containsPoint(x, y),
+                        "(" + x + ", " + y + ")");
+            }
+        }
+    }
+
+    @Test
+    void collinearVerticesDontMakeTriangles() {
+        // A square with extra vertices in the middle of two of its edges
+        Polygon square =
+                new Polygon(new double[] {0, 1, 2, 2, 2, 0}, new double[] {0, 0, 0, 1, 2, 2});
+
+        assertEquals(6, square.getVertexCount());
+        assertEquals(6 - 2 - 2, square.getTriangleCount());
+        assertEquals(4, square.getArea(), 1e-12);
+        assertEquals(4, triangleArea(square), 1e-12);
+        assertTrue(square.containsPoint(1, 0));
+        assertTrue(square.containsPoint(1.9, 1.9));
+        assertFalse(square.containsPoint(1, 2.01));
+
+        assertEquals(U_XS.length - 2, new Polygon(U_XS, U_YS).getTriangleCount());
+    }
+
+    @Test
+    void repeatedVerticesAreDropped() {
+        Polygon l =
+                new Polygon(
+                        new double[] {0, 2, 2, 2, 1, 1, 0, 0},
+                        new double[] {0, 0, 0, 1, 1, 2, 2, 0});
+
+        assertEquals(6, l.getVertexCount());
+        assertEquals(4, l.getTriangleCount());
+        assertEquals(3, l.getArea(), 1e-12);
+    }
+
+    @Test
+    void crossingEdgesAreRejected() {
+        // A bowtie
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new Polygon(new double[] {0, 2, 2, 0}, new double[] {0, 2, 0, 2}));
+        // A pentagram, which goes around its center twice
+        double[] xs = new double[5];
+        double[] ys = new double[5];
+        for (int i = 0; i < 5; i++) {
+            xs[i] = Math.cos(4 * Math.PI * i / 5);
+            ys[i] = Math.sin(4 * Math.PI * i / 5);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new Polygon(xs, ys));
+        // Two squares that touch at one corner
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        new Polygon(
+                                new double[] {0, 1, 1, 2, 2, 1, 1, 0},
+                                new double[] {0, 0, 1, 1, 2, 2, 1, 1}));
+    }
+
+    @Test
+    void invalidVerticesAreRejected() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new Polygon(new double[] {0, 1}, new double[] {0, 1}));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new Polygon(new double[] {0, 1, 2}, new double[] {0, 1}));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new Polygon(new double[] {0, 1, 2}, new double[] {0, 1, 2}));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new Polygon(new double[] {0, 1, Double.NaN}, new double[] {0, 0, 1}));
+    }
+
+    @Test
+    void starShapesMatchCountingCrossings() {
+        Random random = new Random(401);
+        for (int shape = 0; shape < 20; shape++) {
+            int n = 5 + random.nextInt(40);
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            double twiceArea = 0;
+            for (int i = 0; i < n; i++) {
+                double angle = 2 * Math.PI * (i + 0.8 * random.nextDouble()) / n;
+                double radius = 0.3 + random.nextDouble();
+                xs[i] = radius * Math.cos(angle);
+                ys[i] = radius * Math.sin(angle);
+            }
+            for (int i = 0; i < n; i++) {
+                int next = (i + 1) % n;
+                twiceArea += xs[i] * ys[next] - xs[next] * ys[i];
+            }
+            Polygon star = new Polygon(xs, ys);
+
+            assertEquals(n - 2, star.getTriangleCount());
+            assertEquals(twiceArea / 2, star.getArea(), 1e-12);
+            assertEquals(star.getArea(), triangleArea(star), 1e-9);
+            for (int i = 0; i < 500; i++) {
+                double x = 2.8 * random.nextDouble() - 1.4;
+                double y = 2.8 * random.nextDouble() - 1.4;
+                assertEquals(containsByCrossings(xs, ys, x, y), star.containsPoint(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package coppercore.geometry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import org.junit.jupiter.api.Test;
+
+class RobotFootprintTest {
+    private static ConvexNGon box(double minX, double minY, double maxX, double maxY) {
+        return new ConvexNGon(
+                new double[] {minX, maxX, maxX, minX}, new double[] {minY, minY, maxY, maxY});
+    }
+
+    private static Pose2d pose(double x, double y, double radians) {
+        return new Pose2d(x, y, new Rotation2d(radians));
+    }
+
+    @Test
+    void separatedFootprintsDontIntersect() {
+        RobotFootprint footprint = new RobotFootprint(1.0, 1.0);
+
+        assertFalse(footprint.intersects(pose(0, 0, 0), box(0.51, -0.5, 1.5, 0.5)));
+        assertFalse(footprint.intersects(pose(0, 0, 0), box(-0.2, 0.51, 0.2, 1.0)));
+    }
+
+    @Test
+    void touchingFootprintsIntersect() {
+        RobotFootprint footprint = new RobotFootprint(1.0, 1.0);
+
+        assertTrue(footprint.intersects(pose(0, 0, 0), box(0.5, -0.5, 1.5, 0.5)));
+        assertTrue(footprint.intersects(pose(0, 0, 0), box(0.5, 0.5, 1.0, 1.0)));
+        assertTrue(footprint.intersects(pose(0, 0, 0), box(-0.1, -0.1, 0.1, 0.1)));
+    }
+
+    @Test
+    void rotatedFootprintsReachTheirCorners() {
+        RobotFootprint footprint = new RobotFootprint(1.0, 1.0);
+        ConvexNGon sliver = box(0.6, -0.05, 1.6, 0.05);
+
+        assertFalse(footprint.intersects(pose(0, 0, 0), sliver));
+        assertTrue(footprint.intersects(pose(0, 0, Math.PI / 4), sliver));
+    }
+
+    @Test
+    void rotatedFootprintsAreSeparatedByTheirOwnAxes() {
+        RobotFootprint footprint = new RobotFootprint(1.0, 1.0);
+        // Inside the bounding box of the turned footprint, but past its edge
+        ConvexNGon corner = box(0.45, 0.45, 0.55, 0.55);
+
+        assertTrue(footprint.intersects(pose(0, 0, 0), corner));
+        assertFalse(footprint.intersects(pose(0, 0, Math.PI / 4), corner));
+    }
+
+    @Test
+    void sweepsHitThinObstaclesBetweenPoses() {
+        RobotFootprint footprint = new RobotFootprint(0.8, 0.6);
+        ConvexNGon wall = box(2.0, -1.0, 2.01, 1.0);
+        Pose2d start = pose(0, 0, 0);
+        Pose2d end = pose(4, 0, 0.5);
+
+        assertFalse(footprint.intersects(start, wall));
+        assertFalse(footprint.intersects(end, wall));
+        assertTrue(footprint.intersectsSwept(start, end, wall));
+        assertFalse(footprint.intersectsSwept(pose(0, 2, 0), pose(4, 2, 0.5), wall));
+    }
+
+    @Test
+    void turningInPlaceCoversTheArcsOfTheCorners() {
+        RobotFootprint footprint = new RobotFootprint(2.0, 0.2);
+        Pose2d start = pose(0, 0, -0.05);
+        Pose2d end = pose(0, 0, 0.05);
+        double cornerRadius = Math.hypot(1.0, 0.1);
+        double cornerAngle = Math.atan2(0.1, 1.0);
+        // The corner is farthest in its own direction halfway through the turn, which is past
+        // the line between where it starts and ends, by a little over a millimeter
+        double chordDistance = cornerRadius * Math.cos(0.05);
+        double insideArc = (chordDistance + cornerRadius) / 2;
+        ConvexNGon insideObstacle =
+                box(
+                        insideArc * Math.cos(cornerAngle),
+                        insideArc * Math.sin(cornerAngle),
+                        1.5,
+                        0.5);
+        double outsideArc = cornerRadius + 0.001;
+        ConvexNGon outsideObstacle =
+                box(
+                        outsideArc * Math.cos(cornerAngle),
+                        outsideArc * Math.sin(cornerAngle),
+                        1.5,
+                        0.5);
+
+        assertFalse(footprint.intersects(start, insideObstacle));
+        assertFalse(footprint.intersects(end, insideObstacle));
+        assertTrue(footprint.intersects(pose(0, 0, 0), insideObstacle));
+        assertTrue(footprint.intersectsSwept(start, end, insideObstacle));
+        assertFalse(footprint.intersectsSwept(start, end, outsideObstacle));
+    }
+
+    @Test
+    void longTurnsAreSplitIntoSteps() {
+        RobotFootprint footprint = new RobotFootprint(2.0, 0.2);
+        // Straight up, which the footprint only reaches halfway through the turn
+        ConvexNGon above = box(-0.05, 0.9, 0.05, 1.2);
+
+        assertFalse(footprint.intersects(pose(0, 0, 0), above));
+        assertFalse(footprint.intersects(pose(0, 0, Math.PI), above));
+        assertTrue(footprint.intersectsSwept(pose(0, 0, 0), pose(0, 0, Math.PI - 0.01), above));
+    }
+
+    @Test
+    void invalidSizesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new RobotFootprint(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RobotFootprint(1, Double.NaN));
+    }
+}
@@ -0,0 +1,167 @@
+package coppercore.geometry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class SignedDistanceFieldTest {
+    private static final ConvexNGon SQUARE =
+            new ConvexNGon(new double[] {0, 1, 1, 0}, new double[] {0, 0, 1, 1});
+    private static final ConvexNGon TRIANGLE =
+            new ConvexNGon(new double[] {2, 3, 2.5}, new double[] {0.2, 0.2, 1.4});
+
+    private static SignedDistanceField field() {
+        return new SignedDistanceField(-2, -2, 4, 3, 0.1, SQUARE, TRIANGLE);
+    }
+
+    private static double exactDistance(double x, double y) {
+        return Math.min(SQUARE.getSignedDistance(x, y), TRIANGLE.getSignedDistance(x, y));
+    }
+
+    private static byte[] written(SignedDistanceField field) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        field.write(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void pointsNearEdgesAreCheckedExactly() {
+        SignedDistanceField field = field();
+
+        // Within a cell diagonal of an edge, outside, inside, and past a corner
+        for (double[] point :
+                new double[][] {{1.05, 0.37}, {0.95, 0.5}, {1.04, 1.06}, {2.5, 0.15}, {2.9, 0.3}}) {
+            assertEquals(exactDistance(point[0], point[1]), field.getDistance(point[0], point[1]));
+        }
+    }
+
+    @Test
+    void pointsFarFromEdgesAreBlended() {
+        SignedDistanceField field = field();
+        Random random = new Random(401);
+
+        // The distance changes by at most one unit per unit moved, so blending the corners of a
+        // cell is never off by more than half a cell diagonal
+        for (int i = 0; i < 10000; i++) {
+            double x = -2 + random.nextDouble() * 6;
+            double y = -2 + random.nextDouble() * 5;
+            assertEquals(exactDistance(x, y), field.getDistance(x, y), 0.05 * Math.sqrt(2));
+        }
+        assertEquals(1.5, field.getDistance(-1.5, 0.5), 1e-6);
+    }
+
+    @Test
+    void distanceIsNegativeInsideObstacles() {
+        SignedDistanceField field = field();
+
+        assertEquals(-0.5, field.getDistance(0.5, 0.5), 1e-6);
+        assertEquals(-0.3, field.getDistance(0.3, 0.6), 1e-6);
+        assertTrue(field.getDistance(2.5, 0.5) < 0);
+    }
+
+    @Test
+    void pointsOutsideTheGridAreCheckedExactly() {
+        SignedDistanceField field = field();
+
+        assertEquals(exactDistance(10, 0.5), field.getDistance(10, 0.5));
+        assertEquals(exactDistance(-7, -9), field.getDistance(-7, -9));
+        assertEquals(exactDistance(0.5, 10), field.getDistance(0.5, 10));
+    }
+
+    @Test
+    void gradientPointsAwayFromTheNearestObstacle() {
+        SignedDistanceField field = field();
+        double[] gradient = new double[2];
+
+        field.getGradient(0.5, 2.5, gradient);
+        assertEquals(0.0, gradient[0], 1e-3);
+        assertEquals(1.0, gradient[1], 1e-3);
+
+        field.getGradient(-1.5, 0.5, gradient);
+        assertEquals(-1.0, gradient[0], 1e-3);
+        assertEquals(0.0, gradient[1], 1e-3);
+
+        field.getGradient(-1.55, -1.55, gradient);
+        assertEquals(-Math.sqrt(0.5), gradient[0], 0.01);
+        assertEquals(-Math.sqrt(0.5), gradient[1], 0.01);
+
+        // Inside, the distance grows toward the nearest edge
+        field.getGradient(0.15, 0.55, gradient);
+        assertEquals(-1.0, gradient[0], 1e-3);
+        assertEquals(0.0, gradient[1], 1e-3);
+    }
+
+    @Test
+    void writtenFieldsReadBackTheSame() throws IOException {
+        SignedDistanceField field = field();
+        SignedDistanceField read =
+                SignedDistanceField.read(new ByteArrayInputStream(written(field)));
+        Random random = new Random(7);
+
+        assertEquals(field.getMinX(), read.getMinX());
+        assertEquals(field.getMinY(), read.getMinY());
+        assertEquals(field.getMaxX(), read.getMaxX());
+        assertEquals(field.getMaxY(), read.getMaxY());
+        assertEquals(field.getCellSize(), read.getCellSize());
+        for (int i = 0; i < 10000; i++) {
+            double x = -3 + random.nextDouble() * 8;
+            double y = -3 + random.nextDouble() * 7;
+            assertEquals(field.getDistance(x, y), read.getDistance(x, y));
+        }
+    }
+
+    @Test
+    void readRejectsInvalidFiles() throws IOException {
+        byte[] valid = written(field());
+
+        byte[] badMagic = valid.clone();
+        ByteBuffer.wrap(badMagic).putInt(0, 0x12345678);
+        assertThrows(
+                IOException.class,
+                () -> SignedDistanceField.read(new ByteArrayInputStream(badMagic)));
+
+        byte[] badVersion = valid.clone();
+        ByteBuffer.wrap(badVersion).putInt(4, 99);
+        assertThrows(
+                IOException.class,
+                () -> SignedDistanceField.read(new ByteArrayInputStream(badVersion)));
+
+        // The nearest obstacle of the last node is the last int, and there are only 2 obstacles
+        byte[] badNearest = valid.clone();
+        ByteBuffer.wrap(badNearest).putInt(badNearest.length - 4, 2);
+        assertThrows(
+                IOException.class,
+                () -> SignedDistanceField.read(new ByteArrayInputStream(badNearest)));
+
+        // The node count of (columns + 1) * (rows + 1) overflows an int
+        byte[] tooManyNodes = valid.clone();
+        ByteBuffer.wrap(tooManyNodes).putInt(32, Integer.MAX_VALUE).putInt(36, 1);
+        assertThrows(
+                IOException.class,
+                () -> SignedDistanceField.read(new ByteArrayInputStream(tooManyNodes)));
+
+        // Huge counts are rejected before anything is allocated for them
+        byte[] tooManyObstacles = valid.clone();
+        ByteBuffer.wrap(tooManyObstacles).putInt(40, Integer.MAX_VALUE);
+        assertThrows(
+                IOException.class,
+                () -> SignedDistanceField.read(new ByteArrayInputStream(tooManyObstacles)));
+
+        byte[] tooManyVertices = valid.clone();
+        ByteBuffer.wrap(tooManyVertices).putInt(44, Integer.MAX_VALUE);
+        assertThrows(
+                IOException.class,
+                () -> SignedDistanceField.read(new ByteArrayInputStream(tooManyVertices)));
+
+        byte[] truncated = Arrays.copyOf(valid, valid.length - 1);
+        assertThrows(
+                IOException.class,
+                () -> SignedDistanceField.read(new ByteArrayInputStream(truncated)));
+    }
+}
@@ -0,0 +1,225 @@
+package coppercore.geometry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TagVisibilityTest {
+    private static final double HORIZONTAL_FOV = Math.toRadians(70);
+    private static final double VERTICAL_FOV = Math.toRadians(50);
+    private static final double CAMERA_HEIGHT = 0.5;
+    private static final Pose2d ORIGIN = new Pose2d(0, 0, new Rotation2d(0));
+
+    /** This makes a tag that faces along a heading, without tipping up or down. */
+    private static AprilTag tag(int id, double x, double y, double z, double yaw) {
+        return new AprilTag(id, new Pose3d(x, y, z, new Rotation3d(0, 0, yaw)));
+    }
+
+    /** This makes a camera at the center of the robot, looking forward, with a small layout. */
+    private static TagVisibility camera(AprilTag... tags) {
+        return new TagVisibility(
+                new AprilTagFieldLayout(List.of(tags), 16.5, 8.2),
+                new Transform3d(0, 0, CAMERA_HEIGHT, new Rotation3d(0, 0, 0)),
+                HORIZONTAL_FOV,
+                VERTICAL_FOV,
+                0.5,
+                6.0,
+                Math.toRadians(60));
+    }
+
+    @Test
+    void tagsAheadAreVisible() {
+        TagVisibility visibility = camera(tag(1, 4, 0, CAMERA_HEIGHT, Math.PI));
+        int[] visibleIds = new int[visibility.getTagCount()];
+
+        assertTrue(visibility.isVisible(ORIGIN, 1));
+        assertEquals(1, visibility.findVisibleTags(ORIGIN, visibleIds));
+        assertEquals(1, visibleIds[0]);
+        assertFalse(visibility.isVisible(ORIGIN, 2));
+    }
+
+    @Test
+    void tagsBehindAreCulled() {
+        // The tag faces the camera, but the camera faces away from it
+        TagVisibility visibility = camera(tag(1, -4, 0, CAMERA_HEIGHT, 0));
+
+        assertFalse(visibility.isVisible(ORIGIN, 1));
+        assertTrue(visibility.isVisible(new Pose2d(0, 0, new Rotation2d(Math.PI)), 1));
+    }
+
+    @Test
+    void tagsOutsideTheHorizontalFovAreCulled() {
+        double inside = 4 * Math.tan(HORIZONTAL_FOV / 2 - 0.01);
+        double outside = 4 * Math.tan(HORIZONTAL_FOV / 2 + 0.01);
+        TagVisibility visibility =
+                camera(
+                        tag(1, 4, inside, CAMERA_HEIGHT, Math.PI),
+                        tag(2, 4, -inside, CAMERA_HEIGHT, Math.PI),
+                        tag(3, 4, outside, CAMERA_HEIGHT, Math.PI),
+                        tag(4, 4, -outside, CAMERA_HEIGHT, Math.PI));
+        int[] visibleIds = new int[visibility.getTagCount()];
+
+        assertEquals(2, visibility.findVisibleTags(ORIGIN, visibleIds));
+        assertEquals(1, visibleIds[0]);
+        assertEquals(2, visibleIds[1]);
+    }
+
+    @Test
+    void tagsOutsideTheVerticalFovAreCulled() {
+        double inside = 4 * Math.tan(VERTICAL_FOV / 2 - 0.01);
+        double outside = 4 * Math.tan(VERTICAL_FOV / 2 + 0.01);
+        TagVisibility visibility =
+                camera(
+                        tag(1, 4, 0, CAMERA_HEIGHT + inside, Math.PI),
+                        tag(2, 4, 0, CAMERA_HEIGHT - inside, Math.PI),
+                        tag(3, 4, 0, CAMERA_HEIGHT + outside, Math.PI),
+                        tag(4, 4, 0, CAMERA_HEIGHT - outside, Math.PI));
+        int[] visibleIds = new int[visibility.getTagCount()];
+
+        assertEquals(2, visibility.findVisibleTags(ORIGIN, visibleIds));
+        assertEquals(1, visibleIds[0]);
+        assertEquals(2, visibleIds[1]);
+    }
+
+    @Test
+    void tagsTooCloseOrTooFarAreCulled() {
+        TagVisibility visibility =
+                camera(
+                        tag(1, 0.45, 0, CAMERA_HEIGHT, Math.PI),
+                        tag(2, 0.55, 0, CAMERA_HEIGHT, Math.PI),
+                        tag(3, 5.95, 0, CAMERA_HEIGHT, Math.PI),
+                        tag(4, 6.05, 0, CAMERA_HEIGHT, Math.PI));
+
+        assertFalse(visibility.isVisible(ORIGIN, 1));
+        assertTrue(visibility.isVisible(ORIGIN, 2));
+        assertTrue(visibility.isVisible(ORIGIN, 3));
+        assertFalse(visibility.isVisible(ORIGIN, 4));
+    }
+
+    @Test
+    void tagsFacingAwayAreCulled() {
+        TagVisibility visibility =
+                camera(
+                        tag(1, 4, 0, CAMERA_HEIGHT, 0),
+                        tag(2, 4, 0, CAMERA_HEIGHT, Math.PI + Math.toRadians(50)),
+                        tag(3, 4, 0, CAMERA_HEIGHT, Math.PI - Math.toRadians(70)),
+                        tag(4, 4, 0, CAMERA_HEIGHT, Math.PI / 2));
+
+        assertFalse(visibility.isVisible(ORIGIN, 1));
+        assertTrue(visibility.isVisible(ORIGIN, 2));
+        assertFalse(visibility.isVisible(ORIGIN, 3));
+        assertFalse(visibility.isVisible(ORIGIN, 4));
+    }
+
+    @Test
+    void theCameraMovesWithTheRobot() {
+        // The camera is 0.3 m in front of the robot, which faces up the field
+        TagVisibility visibility =
+                new TagVisibility(
+                        new AprilTagFieldLayout(
+                                List.of(tag(1, 2, 5, CAMERA_HEIGHT, -Math.PI / 2)), 16.5, 8.2),
+                        new Transform3d(0.3, 0, CAMERA_HEIGHT, new Rotation3d(0, 0, 0)),
+                        HORIZONTAL_FOV,
+                        VERTICAL_FOV,
+                        0.5,
+                        6.0,
+                        Math.toRadians(60));
+        Pose2d facingTheTag = new Pose2d(2, 1, new Rotation2d(Math.PI / 2));
+
+        assertTrue(visibility.isVisible(facingTheTag, 1));
+        assertFalse(visibility.isVisible(new Pose2d(2, 1, new Rotation2d(0)), 1));
+        // 5.8 m from the robot, but only 5.5 m from the camera
+        assertTrue(visibility.isVisible(new Pose2d(2, -0.8, new Rotation2d(Math.PI / 2)), 1));
+        assertFalse(visibility.isVisible(new Pose2d(2, -0.8, new Rotation2d(-Math.PI / 2)), 1));
+    }
+
+    @Test
+    void pitchedAndYawedCamerasMatchRotation3d() {
+        Rotation3d cameraRotation = new Rotation3d(0.2, -0.3, 0.8);
+        double cameraX = 0.2;
+        double cameraY = -0.1;
+        double tanH = Math.tan(HORIZONTAL_FOV / 2);
+        double tanV = Math.tan(VERTICAL_FOV / 2);
+        // Directions from the camera, in its own frame, just inside and just outside its view
+        double[][] directions = {
+            {1, 0, 0},
+            {1, 0.98 * tanH, 0.98 * tanV},
+            {1, -0.98 * tanH, -0.98 * tanV},
+            {1, 1.02 * tanH, 0},
+            {1, -1.02 * tanH, 0},
+            {1, 0, 1.02 * tanV},
+            {1, 0, -1.02 * tanV},
+        };
+        boolean[] expected = {true, true, true, false, false, false, false};
+        AprilTag[] tags = new AprilTag[directions.length + 1];
+        for (int i = 0; i < directions.length; i++) {
+            double[] direction = directions[i];
+            Translation3d onField =
+                    new Translation3d(direction[0], direction[1], direction[2])
+                            .rotateBy(cameraRotation);
+            double length =
+                    Math.sqrt(
+                            onField.getX() * onField.getX()
+                                    + onField.getY() * onField.getY()
+                                    + onField.getZ() * onField.getZ());
+            double scale = 3 / length;
+            // Each tag faces back toward the camera across the floor
+            tags[i] =
+                    tag(
+                            i,
+                            cameraX + scale * onField.getX(),
+                            cameraY + scale * onField.getY(),
+                            CAMERA_HEIGHT + scale * onField.getZ(),
+                            Math.atan2(-onField.getY(), -onField.getX()));
+        }
+        // Straight ahead of the robot, which the yawed camera doesn't look toward
+        tags[directions.length] = tag(directions.length, 3, 0, CAMERA_HEIGHT, Math.PI);
+        TagVisibility visibility =
+                new TagVisibility(
+                        new AprilTagFieldLayout(List.of(tags), 16.5, 8.2),
+                        new Transform3d(cameraX, cameraY, CAMERA_HEIGHT, cameraRotation),
+                        HORIZONTAL_FOV,
+                        VERTICAL_FOV,
+                        0.5,
+                        6.0,
+                        Math.PI / 2);
+
+        for (int i = 0; i < directions.length; i++) {
+            assertEquals(expected[i], visibility.isVisible(ORIGIN, i), "tag " + i);
+        }
+        assertFalse(visibility.isVisible(ORIGIN, directions.length));
+
+        // Turning the camera back to face forward makes the tag ahead visible again
+        visibility.setRobotToCamera(
+                new Transform3d(cameraX, cameraY, CAMERA_HEIGHT, new Rotation3d(0, 0, 0)));
+        assertTrue(visibility.isVisible(ORIGIN, directions.length));
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        AprilTagFieldLayout layout = new AprilTagFieldLayout(List.of(), 16.5, 8.2);
+        Transform3d robotToCamera = new Transform3d(0, 0, 0, new Rotation3d(0, 0, 0));
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new TagVisibility(layout, robotToCamera, Math.PI, 1, 0, 1, 1));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new TagVisibility(layout, robotToCamera, 1, 0, 0, 1, 1));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new TagVisibility(layout, robotToCamera, 1, 1, 2, 1, 1));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new TagVisibility(layout, robotToCamera, 1, 1, 0, 1, 2));
+    }
+}
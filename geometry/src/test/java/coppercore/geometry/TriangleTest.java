@@ -0,0 +1,54 @@
+package coppercore.geometry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TriangleTest {
+    private static final Point A = new Point(0.1, 0.2);
+    private static final Point B = new Point(3.7, 0.9);
+    private static final Point C = new Point(1.3, 2.9);
+
+    private static Point midpoint(Point p, Point q) {
+        return new Point((p.getX() + q.getX()) / 2, (p.getY() + q.getY()) / 2);
+    }
+
+    @Test
+    void verticesAndEdgeMidpointsAreContained() {
+        Triangle triangle = new Triangle(A, B, C);
+
+        for (Point point : new Point[] {A, B, C, midpoint(A, B), midpoint(B, C), midpoint(C, A)}) {
+            assertTrue(triangle.containsPoint(point));
+            assertTrue(triangle.isPointColliding(point));
+        }
+        assertFalse(triangle.containsPoint(new Point(0.0, 0.0)));
+        assertFalse(triangle.containsPoint(new Point(2.5, 2.5)));
+    }
+
+    @Test
+    void bothWindingsGiveTheSameResults() {
+        Triangle counterclockwise = new Triangle(A, B, C);
+        Triangle clockwise = new Triangle(A, C, B);
+        Random random = new Random(401);
+
+        for (int i = 0; i < 10000; i++) {
+            double x = random.nextDouble() * 4;
+            double y = random.nextDouble() * 3;
+            boolean contained = counterclockwise.containsPoint(x, y);
+            assertEquals(contained, clockwise.containsPoint(x, y));
+            assertEquals(contained, counterclockwise.isPointColliding(new Point(x, y)));
+        }
+    }
+
+    @Test
+    void flatTrianglesOnlyContainTheirSegment() {
+        Triangle flat = new Triangle(new Point(0, 0), new Point(1, 1), new Point(2, 2));
+
+        assertEquals(0.0, flat.getArea());
+        assertTrue(flat.containsPoint(1.5, 1.5));
+        assertTrue(flat.containsPoint(0, 0));
+        assertFalse(flat.containsPoint(1.5, 1.4));
+        assertFalse(flat.containsPoint(2.5, 2.5));
+    }
+}
@@ -0,0 +1,135 @@
+package coppercore.math.benchmark;
+
+import coppercore.math.InterpolateDouble;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long a lookup in an InterpolateDouble takes, compared with the HashMap and linear
+ * scan it used to be built on.
+ *
+ * <p>The random cases look up keys anywhere in the table, while the coherent cases drift slowly
+ * through it like the distance to a target during a match, so most lookups land in the same
+ * segment as the last one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InterpolateDoubleBenchmark {
+
+    static final int QUERY_COUNT = 1024;
+
+    @Param({"10", "50", "200"})
+    public int size;
+
+    private InterpolateDouble table;
+    private HashMapTable hashMapTable;
+    private final double[] randomKeys = new double[QUERY_COUNT];
+    private final double[] coherentKeys = new double[QUERY_COUNT];
+    private int next = 0;
+
+    @Setup
+    public void setUp() {
+        HashMap<Double, Double> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(i * 0.1, Math.sqrt(i) * 100);
+        }
+        table = new InterpolateDouble(map, 0, 10000);
+        hashMapTable = new HashMapTable(map, 0, 10000);
+
+        SplittableRandom random = new SplittableRandom(401);
+        double maxKey = (size - 1) * 0.1;
+        double key = maxKey / 2;
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            randomKeys[i] = random.nextDouble(maxKey);
+            key = Math.max(0, Math.min(maxKey, key + random.nextDouble(-0.02, 0.02)));
+            coherentKeys[i] = key;
+        }
+    }
+
+    @Benchmark
+    public double sortedArraysRandom() {
+        return table.getValue(randomKeys[next++ & (QUERY_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public double sortedArraysCoherent() {
+        return table.getValue(coherentKeys[next++ & (QUERY_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public double hashMapRandom() {
+        return hashMapTable.getValue(randomKeys[next++ & (QUERY_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public double hashMapCoherent() {
+        return hashMapTable.getValue(coherentKeys[next++ & (QUERY_COUNT - 1)]);
+    }
+
+    /** The lookup InterpolateDouble used before it stored its table in sorted arrays. */
+    static class HashMapTable {
+        private final HashMap<Double, Double> map;
+        private final ArrayList<Double> sortedKeys;
+        private final double minValue;
+        private final double maxValue;
+        private final double minKey;
+        private final double maxKey;
+
+        HashMapTable(HashMap<Double, Double> map, double minValue, double maxValue) {
+            this.map = map;
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+            sortedKeys = new ArrayList<>(map.keySet());
+            Collections.sort(sortedKeys);
+            minKey = sortedKeys.get(0);
+            maxKey = sortedKeys.get(sortedKeys.size() - 1);
+        }
+
+        double getValue(double key) {
+            if (map.containsKey(key)) {
+                return map.get(key);
+            }
+            if (key < minKey) {
+                return map.get(minKey);
+            } else if (key > maxKey) {
+                return map.get(maxKey);
+            }
+            double lowerKey = 0;
+            double upperKey = 0;
+            for (double k : sortedKeys) {
+                if (k < key) {
+                    lowerKey = k;
+                } else {
+                    upperKey = k;
+                    break;
+                }
+            }
+            double lowerValue = map.get(lowerKey);
+            double upperValue = map.get(upperKey);
+            if (upperKey == lowerKey) {
+                upperKey += 0.01;
+            }
+            double t = (key - lowerKey) / (upperKey - lowerKey);
+            double result = lowerValue * (1.0 - t) + t * upperValue;
+            return Math.max(minValue, Math.min(maxValue, result));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package coppercore.math;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is used for sharing data between threads in a cache and determining whether or not
+ * it is stale using readcount-based expiration. Each value written can be read maxReads times in
+ * total, by all threads together; the reads are counted atomically, so no read is lost or counted
+ * twice, and a read that races with a write is counted against the value it returns.
+ *
+ * @param <Type> the type of the value to cache
+ */
+public class ConcurrentCachedDataRead<Type> extends ConcurrentCachedDataValue<Type> {
+    private static final long READS_MASK = 0xFFFFFFFFL;
+
+    // The low bits of the generation of the current value in the high half, and the number of
+    // times it has been read in the low half, so that both change together
+    private final AtomicLong reads = new AtomicLong();
+    private final int maxReads;
+
+    /**
+     * This is a constructor for the readCount-based expiration of the Cached Data.
+     *
+     * @param maxReads the maximum amount of reads we can take before the cache is stale
+     */
+    public ConcurrentCachedDataRead(int maxReads) {
+        this.maxReads = maxReads;
+    }
+
+    /**
+     * This method gets how many more times the current value can be read before it is stale.
+     *
+     * @return the number of reads left, or 0 if the cache is stale
+     */
+    public int getReadsLeft() {
+        return Math.max(0, maxReads - (int) (reads.get() & READS_MASK));
+    }
+
+    /**
+     * This method counts a read of the value from the given write, unless the value has already
+     * been read maxReads times or a newer value has been written.
+     */
+    @Override
+    protected boolean isStale(double timestampSeconds, long generation) {
+        long tag = generation << 32;
+        while (true) {
+            long current = reads.get();
+            if ((current & ~READS_MASK) != tag) {
+                // A newer value was written, which read() will try instead
+                return true;
+            }
+            if ((current & READS_MASK) >= maxReads) {
+                return true;
+            }
+            if (reads.compareAndSet(current, current + 1)) {
+                return false;
+            }
+        }
+    }
+
+    /** This method resets the expiration tracking value (readCount) for the new value. */
+    @Override
+    protected void reset(long generation) {
+        reads.set(generation << 32);
+    }
+}
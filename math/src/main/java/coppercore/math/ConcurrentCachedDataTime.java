@@ -0,0 +1,44 @@
+package coppercore.math;
+
+import edu.wpi.first.math.MathSharedStore;
+
+/**
+ * This class is used for sharing data between threads in a cache and determining whether or not
+ * it is stale using time-based expiration. The age of the value is measured from the time it was
+ * taken, which can be given when it is written, so a sample that arrives late also goes stale
+ * sooner.
+ *
+ * @param <Type> the type of the value to cache
+ */
+public class ConcurrentCachedDataTime<Type> extends ConcurrentCachedDataValue<Type> {
+
+    /** The amount of time it takes a cache to be stale in seconds */
+    private final double staleTimeSeconds;
+
+    /**
+     * This is a constructor for the Time-based expiration of the Cached Data.
+     *
+     * @param staleTimeSeconds the amount of time it takes a cache to be stale in seconds
+     */
+    public ConcurrentCachedDataTime(double staleTimeSeconds) {
+        this.staleTimeSeconds = staleTimeSeconds;
+    }
+
+    /**
+     * This method checks if the cached value is stale based on time, without reading it.
+     *
+     * @return true if the cache is stale, false if not
+     */
+    public boolean isStale() {
+        return isStale(getTimestamp(), 0);
+    }
+
+    @Override
+    protected boolean isStale(double timestampSeconds, long generation) {
+        return MathSharedStore.getTimestamp() - timestampSeconds >= staleTimeSeconds;
+    }
+
+    /** The timestamp is written with the value, so there is nothing else to reset. */
+    @Override
+    protected void reset(long generation) {}
+}
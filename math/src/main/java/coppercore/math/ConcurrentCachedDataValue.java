@@ -0,0 +1,148 @@
+package coppercore.math;
+
+import edu.wpi.first.math.MathSharedStore;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * This class is used for holding a cached value that is written by one thread and read by others,
+ * such as a vision or odometry sample published from a background thread and read in the main
+ * loop. Subclasses implement specific expiration policies, like CachedDataValue.
+ *
+ * <p>The value and the time it was taken are kept under a sequence lock. A write makes the sequence
+ * number odd, stores both fields and makes it even again; a read copies both fields and tries again
+ * if the sequence number was odd or changed while it was copying. This way a read always sees a
+ * value with its own timestamp, never half of one write and half of another, and readers never
+ * block or create any objects. Writes are serialized with a lock, so more than one thread can
+ * write, but the cache is meant for a single writer.
+ *
+ * @param <Type> the type of the value to cache, which should not be changed after it is written
+ */
+public abstract class ConcurrentCachedDataValue<Type> {
+    private static final VarHandle SEQUENCE;
+
+    static {
+        try {
+            SEQUENCE =
+                    MethodHandles.lookup()
+                            .findVarHandle(ConcurrentCachedDataValue.class, "sequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Odd while a write is in progress; half of it is the number of writes so far
+    @SuppressWarnings("unused")
+    private long sequence = 0;
+
+    private Type value = null;
+    private double timestampSeconds = 0.0;
+
+    /**
+     * Write a new data value (a cache entry) taken now and reset expiration policy.
+     *
+     * @param data the new value to write to the cache, which is ignored if it is null
+     */
+    public void write(Type data) {
+        write(data, MathSharedStore.getTimestamp());
+    }
+
+    /**
+     * Write a new data value (a cache entry) taken at the given time and reset expiration policy.
+     * This is useful for samples that were taken before they were written, such as a vision
+     * result that already has a latency.
+     *
+     * @param data the new value to write to the cache, which is ignored if it is null
+     * @param timestampSeconds the time the value was taken, on the same clock as
+     *     MathSharedStore.getTimestamp()
+     */
+    public synchronized void write(Type data, double timestampSeconds) {
+        if (data == null) {
+            return;
+        }
+        // Only writers change the sequence number, and they hold the lock
+        long start = (long) SEQUENCE.getOpaque(this);
+        SEQUENCE.setOpaque(this, start + 1);
+        VarHandle.storeStoreFence();
+        this.value = data;
+        this.timestampSeconds = timestampSeconds;
+        reset((start >>> 1) + 1);
+        SEQUENCE.setRelease(this, start + 2);
+    }
+
+    /**
+     * Returns cached value. This can be called from any thread.
+     *
+     * @return returns the cached value or null if nothing has been written or the value is stale.
+     */
+    public Type read() {
+        while (true) {
+            long start = beginRead();
+            if (start == 0) {
+                return null;
+            }
+            Type data = value;
+            double timestamp = timestampSeconds;
+            if (!endRead(start)) {
+                continue;
+            }
+            if (!isStale(timestamp, start >>> 1)) {
+                return data;
+            }
+            // A stale value may have been replaced while checking it, so try the new one instead
+            if ((long) SEQUENCE.getAcquire(this) == start) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Returns the time the cached value was taken, whether or not it is stale. This can be called
+     * from any thread.
+     *
+     * @return the timestamp of the value in seconds, or 0 if nothing has been written
+     */
+    public double getTimestamp() {
+        while (true) {
+            long start = beginRead();
+            double timestamp = timestampSeconds;
+            if (endRead(start)) {
+                return timestamp;
+            }
+        }
+    }
+
+    /** This waits for any write in progress to finish and returns the sequence number. */
+    private long beginRead() {
+        long start = (long) SEQUENCE.getAcquire(this);
+        while ((start & 1) != 0) {
+            Thread.onSpinWait();
+            start = (long) SEQUENCE.getAcquire(this);
+        }
+        return start;
+    }
+
+    /** This checks that no write happened since beginRead returned the sequence number. */
+    private boolean endRead(long start) {
+        VarHandle.loadLoadFence();
+        return (long) SEQUENCE.getOpaque(this) == start;
+    }
+
+    /**
+     * This method checks if the cache is stale. It is called once for each read, so it can count
+     * reads, and may be called from more than one thread at once.
+     *
+     * @param timestampSeconds the time the value being read was taken
+     * @param generation the number of the write that stored the value being read, starting at 1
+     * @return true if the cache is stale, false if not
+     */
+    protected abstract boolean isStale(double timestampSeconds, long generation);
+
+    /**
+     * Reset expiration policy for a new value. This is called while the value is being written, so
+     * readers can't see the new value until it returns.
+     *
+     * @param generation the number of the write that is storing the new value, starting at 1
+     */
+    protected abstract void reset(long generation);
+}
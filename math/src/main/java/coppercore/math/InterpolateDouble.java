@@ -1,102 +1,102 @@
 package coppercore.math;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
- * This class makes a hashmap of point and connects it to a bunch of keys. Then it sorts the keys,
- * gets the extrema and returns the interpolate double of the given keys. If the key is not in the
- * map, then it finds the interpolate double with the closet key. It then checks for edge cases.
+ * This class interpolates between the points of a lookup table, such as shooter speeds at
+ * different distances. The keys are sorted once when the table is made and stored with their
+ * values in parallel arrays of doubles. A lookup finds the segment between two keys with a binary
+ * search and doesn't create any objects. Since lookups are usually close to the one before, the
+ * segment of the last lookup is checked first.
+ *
+ * <p>Keys below the smallest key or above the largest key give the value of that key. Keys in the
+ * table give their value exactly. Other results are clamped between minValue and maxValue.
+ *
+ * <p>The remembered segment is only a hint, so sharing a table between threads is safe.
  */
 public class InterpolateDouble {
-    private HashMap<Double, Double> map;
-    private ArrayList<Double> sortedKeys;
+    private final double[] keys;
+    private final double[] values;
 
     private final double minValue;
     private final double maxValue;
 
-    private final double minKey;
-    private final double maxKey;
+    // Finds segments in keys, remembering the segment of the last lookup
+    private final SortedKeys table;
 
     /**
-     * This makes a HashMap called map, and it adds the minimum possible value and a maximum
-     * possible value
+     * This makes a table from the points in a map, with no limits on the interpolated values
+     * beyond the smallest positive double and the largest double.
      *
-     * @param map the HashMap that we are using
+     * @param map the points of the table, from keys to values
      */
     public InterpolateDouble(HashMap<Double, Double> map) {
         this(map, Double.MIN_VALUE, Double.MAX_VALUE);
     }
 
     /**
-     * This defines the variables in a way that they are able to be used and then adds all of the
-     * values to the HashMap and sorts them
+     * This makes a table from the points in a map, sorting the keys.
      *
-     * @param map the HashMap that we are using
-     * @param minValue the minimum value
-     * @param maxValue the maximum value
+     * @param map the points of the table, from keys to values
+     * @param minValue the smallest value an interpolated result can be
+     * @param maxValue the largest value an interpolated result can be
+     * @throws RuntimeException if the map is empty
      */
     public InterpolateDouble(HashMap<Double, Double> map, double minValue, double maxValue) {
-        this.map = map;
-        this.minValue = minValue;
-        this.maxValue = maxValue;
+        this(SortedKeys.sortedKeys(map), map, minValue, maxValue);
+    }
 
-        sortedKeys = new ArrayList<Double>();
-        for (Double k : map.keySet()) {
-            sortedKeys.add(k);
-        }
-        Collections.sort(sortedKeys);
+    private InterpolateDouble(
+            double[] keys, Map<Double, Double> map, double minValue, double maxValue) {
+        this(keys, SortedKeys.valuesOf(keys, map), minValue, maxValue);
+    }
 
-        // Get lowest and highest keys of the HashMap
-        if (sortedKeys.size() > 0) {
-            minKey = sortedKeys.get(0);
-            maxKey = sortedKeys.get(sortedKeys.size() - 1);
-        } else {
-            throw new RuntimeException("Empty HashMap passed to InterpolateDouble");
+    /**
+     * This makes a table from parallel arrays of keys and values. The arrays are copied, so
+     * changing them afterwards doesn't change the table.
+     *
+     * @param keys the keys of the table, in increasing order
+     * @param values the value at each key
+     * @param minValue the smallest value an interpolated result can be
+     * @param maxValue the largest value an interpolated result can be
+     * @throws RuntimeException if the table is empty
+     * @throws IllegalArgumentException if the arrays have different lengths, or the keys aren't
+     *     strictly increasing
+     */
+    public InterpolateDouble(double[] keys, double[] values, double minValue, double maxValue) {
+        if (keys.length == 0) {
+            throw new RuntimeException("Empty table passed to InterpolateDouble");
         }
+        this.table = new SortedKeys(keys, values.length);
+        this.keys = table.keys;
+        this.values = values.clone();
+        this.minValue = minValue;
+        this.maxValue = maxValue;
     }
 
     /**
-     * Returns the interpolated value for the given key. If the key is not in the map, it will
-     * return the value for the closest key.
+     * Returns the interpolated value for the given key. If the key is outside of the table, it
+     * will return the value for the closest key.
      *
      * @param key The key to interpolate
      * @return The interpolated value
      */
     public double getValue(double key) {
-        if (map.containsKey(key)) {
-            return map.get(key);
-        }
-
-        // Ensure that key is within the bounds of the HashMap
-        if (key < minKey) {
-            return map.get(minKey);
-        } else if (key > maxKey) {
-            return map.get(maxKey);
+        int last = keys.length - 1;
+        // Ensure that key is within the bounds of the table
+        if (key <= keys[0]) {
+            return values[0];
+        } else if (key >= keys[last]) {
+            return values[last];
         }
 
-        double lowerKey = 0;
-        double upperKey = 0;
-        for (double k : sortedKeys) {
-            if (k < key) {
-                lowerKey = k;
-            } else {
-                upperKey = k;
-                break;
-            }
+        int segment = table.findSegment(key);
+        if (key == keys[segment]) {
+            return values[segment];
         }
-
-        double lowerValue = map.get(lowerKey);
-        double upperValue = map.get(upperKey);
-
-        // Edge case if keys equal each other
-        if (upperKey == lowerKey) {
-            upperKey += 0.01;
-        }
-
-        double t = (key - lowerKey) / (upperKey - lowerKey);
-        double result = lowerValue * (1.0 - t) + t * upperValue;
+        double t = (key - keys[segment]) / (keys[segment + 1] - keys[segment]);
+        double result = values[segment] * (1.0 - t) + t * values[segment + 1];
         if (result < minValue) {
             return minValue;
         } else if (result > maxValue) {
@@ -0,0 +1,268 @@
+package coppercore.math;
+
+/**
+ * This class interpolates in a table of values over a grid of one, two or three inputs, such as
+ * flywheel speeds for different distances and robot velocities. Each input has its own sorted
+ * axis of keys, and the values are stored in one array in row-major order, so the last axis
+ * changes fastest. A lookup finds the cell on each axis with a binary search, then blends the
+ * values at the corners of the cell linearly, bilinearly or trilinearly, without creating any
+ * objects.
+ *
+ * <p>Inputs below the smallest key or above the largest key of an axis are clamped to that key,
+ * like InterpolateDouble does for its table. A table can be shared between threads.
+ */
+public class InterpolateGrid {
+    private final double[][] axes;
+    // The reciprocal of the width of each cell along each axis
+    private final double[][] inverseWidths;
+    private final double[] values;
+
+    /**
+     * This makes a table over a grid. The arrays are copied, so changing them afterwards doesn't
+     * change the table.
+     *
+     * @param axes the keys of each axis, in increasing order, with one to three axes of at least
+     *     two keys each
+     * @param values the values at each point of the grid in row-major order, so for two axes the
+     *     value at keys (axes[0][i], axes[1][j]) is values[i * axes[1].length + j]
+     * @throws IllegalArgumentException if there aren't one to three axes, an axis has fewer than
+     *     two keys or keys that aren't strictly increasing, or the number of values doesn't match
+     *     the size of the grid
+     */
+    public InterpolateGrid(double[][] axes, double[] values) {
+        if (axes.length < 1 || axes.length > 3) {
+            throw new IllegalArgumentException(
+                    "A grid needs 1 to 3 axes, got " + axes.length + " axes");
+        }
+        int size = 1;
+        this.axes = new double[axes.length][];
+        this.inverseWidths = new double[axes.length][];
+        for (int axis = 0; axis < axes.length; axis++) {
+            double[] keys = axes[axis];
+            if (keys.length < 2) {
+                throw new IllegalArgumentException("Axis " + axis + " needs at least 2 keys");
+            }
+            this.inverseWidths[axis] = new double[keys.length - 1];
+            for (int i = 1; i < keys.length; i++) {
+                if (!(keys[i] > keys[i - 1])) {
+                    throw new IllegalArgumentException(
+                            "Keys must be strictly increasing, but key "
+                                    + i
+                                    + " of axis "
+                                    + axis
+                                    + " is "
+                                    + keys[i]);
+                }
+                this.inverseWidths[axis][i - 1] = 1.0 / (keys[i] - keys[i - 1]);
+            }
+            this.axes[axis] = keys.clone();
+            size *= keys.length;
+        }
+        if (values.length != size) {
+            throw new IllegalArgumentException(
+                    "A grid of " + size + " points needs as many values, got " + values.length);
+        }
+        this.values = values.clone();
+    }
+
+    /**
+     * This gets the number of inputs of the table.
+     *
+     * @return the number of axes, from one to three
+     */
+    public int getDimensions() {
+        return axes.length;
+    }
+
+    /**
+     * This finds the cell i of an axis with keys[i] <= key <= keys[i + 1], using the first or last
+     * cell for keys outside the axis.
+     */
+    private static int findCell(double[] keys, double key) {
+        int low = 0;
+        int high = keys.length - 1;
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] <= key) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /** This finds how far a key is across cell i of an axis, from 0 to 1. */
+    private double fraction(int axis, int cell, double key) {
+        double t = (key - axes[axis][cell]) * inverseWidths[axis][cell];
+        return t <= 0 ? 0 : t >= 1 ? 1 : t;
+    }
+
+    private void checkDimensions(int dimensions) {
+        if (axes.length != dimensions) {
+            throw new IllegalArgumentException(
+                    "Table has " + axes.length + " inputs, but got " + dimensions);
+        }
+    }
+
+    /**
+     * This interpolates a table with one input.
+     *
+     * @param x the input
+     * @return the interpolated value
+     * @throws IllegalArgumentException if the table doesn't have one input
+     */
+    public double getValue(double x) {
+        checkDimensions(1);
+        return value1(x);
+    }
+
+    /**
+     * This interpolates a table with two inputs, bilinearly.
+     *
+     * @param x the first input
+     * @param y the second input
+     * @return the interpolated value
+     * @throws IllegalArgumentException if the table doesn't have two inputs
+     */
+    public double getValue(double x, double y) {
+        checkDimensions(2);
+        return value2(x, y);
+    }
+
+    /**
+     * This interpolates a table with three inputs, trilinearly.
+     *
+     * @param x the first input
+     * @param y the second input
+     * @param z the third input
+     * @return the interpolated value
+     * @throws IllegalArgumentException if the table doesn't have three inputs
+     */
+    public double getValue(double x, double y, double z) {
+        checkDimensions(3);
+        return value3(x, y, z);
+    }
+
+    /**
+     * This interpolates the table at a point given as an array, with one entry for each input.
+     *
+     * @param point the inputs
+     * @return the interpolated value
+     * @throws IllegalArgumentException if the point doesn't have one entry for each input
+     */
+    public double getValue(double[] point) {
+        checkDimensions(point.length);
+        switch (point.length) {
+            case 1:
+                return value1(point[0]);
+            case 2:
+                return value2(point[0], point[1]);
+            default:
+                return value3(point[0], point[1], point[2]);
+        }
+    }
+
+    /**
+     * This interpolates a table with one input at many inputs.
+     *
+     * @param xs the inputs
+     * @param result set to the interpolated value at each input, for the first xs.length entries
+     * @throws IllegalArgumentException if the table doesn't have one input, or result is shorter
+     *     than xs
+     */
+    public void getValues(double[] xs, double[] result) {
+        checkDimensions(1);
+        checkBatch(xs.length, result.length, xs.length);
+        for (int i = 0; i < xs.length; i++) {
+            result[i] = value1(xs[i]);
+        }
+    }
+
+    /**
+     * This interpolates a table with two inputs at many points.
+     *
+     * @param xs the first input of each point
+     * @param ys the second input of each point
+     * @param result set to the interpolated value at each point, for the first xs.length entries
+     * @throws IllegalArgumentException if the table doesn't have two inputs, or ys or result is
+     *     shorter than xs
+     */
+    public void getValues(double[] xs, double[] ys, double[] result) {
+        checkDimensions(2);
+        checkBatch(xs.length, result.length, ys.length);
+        for (int i = 0; i < xs.length; i++) {
+            result[i] = value2(xs[i], ys[i]);
+        }
+    }
+
+    /**
+     * This interpolates a table with three inputs at many points.
+     *
+     * @param xs the first input of each point
+     * @param ys the second input of each point
+     * @param zs the third input of each point
+     * @param result set to the interpolated value at each point, for the first xs.length entries
+     * @throws IllegalArgumentException if the table doesn't have three inputs, or ys, zs or result
+     *     is shorter than xs
+     */
+    public void getValues(double[] xs, double[] ys, double[] zs, double[] result) {
+        checkDimensions(3);
+        checkBatch(xs.length, result.length, Math.min(ys.length, zs.length));
+        for (int i = 0; i < xs.length; i++) {
+            result[i] = value3(xs[i], ys[i], zs[i]);
+        }
+    }
+
+    private static void checkBatch(int count, int resultLength, int inputLength) {
+        if (resultLength < count || inputLength < count) {
+            throw new IllegalArgumentException(
+                    "Got "
+                            + count
+                            + " points, but only "
+                            + Math.min(resultLength, inputLength)
+                            + " entries in the other arrays");
+        }
+    }
+
+    private double value1(double x) {
+        int i = findCell(axes[0], x);
+        double tx = fraction(0, i, x);
+        return values[i] + (values[i + 1] - values[i]) * tx;
+    }
+
+    private double value2(double x, double y) {
+        int i = findCell(axes[0], x);
+        int j = findCell(axes[1], y);
+        double tx = fraction(0, i, x);
+        double ty = fraction(1, j, y);
+        int stride = axes[1].length;
+        int v00 = i * stride + j;
+        int v10 = v00 + stride;
+        double low = values[v00] + (values[v00 + 1] - values[v00]) * ty;
+        double high = values[v10] + (values[v10 + 1] - values[v10]) * ty;
+        return low + (high - low) * tx;
+    }
+
+    private double value3(double x, double y, double z) {
+        int i = findCell(axes[0], x);
+        int j = findCell(axes[1], y);
+        int k = findCell(axes[2], z);
+        double tx = fraction(0, i, x);
+        double ty = fraction(1, j, y);
+        double tz = fraction(2, k, z);
+        int strideZ = axes[2].length;
+        int strideY = axes[1].length * strideZ;
+        int v000 = i * strideY + j * strideZ + k;
+        int v010 = v000 + strideZ;
+        int v100 = v000 + strideY;
+        int v110 = v100 + strideZ;
+        double c00 = values[v000] + (values[v000 + 1] - values[v000]) * tz;
+        double c01 = values[v010] + (values[v010 + 1] - values[v010]) * tz;
+        double c10 = values[v100] + (values[v100 + 1] - values[v100]) * tz;
+        double c11 = values[v110] + (values[v110 + 1] - values[v110]) * tz;
+        double low = c00 + (c01 - c00) * ty;
+        double high = c10 + (c11 - c10) * ty;
+        return low + (high - low) * tx;
+    }
+}
@@ -0,0 +1,201 @@
+package coppercore.math;
+
+import java.util.HashMap;
+
+/**
+ * This class interpolates between the points of a lookup table with a smooth curve instead of
+ * straight lines, so that setpoints taken from it don't jump in slope at each point. It uses a
+ * monotone cubic spline: between two points the curve never goes above or below both of them, so
+ * it doesn't overshoot the way an ordinary cubic spline can.
+ *
+ * <p>The slope at each point is worked out once when the table is made with the Fritsch-Butland
+ * variant of the Fritsch-Carlson method, and each segment is stored as the four coefficients of a
+ * cubic in parallel arrays of doubles. A lookup finds the segment with a binary search, checking
+ * the segment of the last lookup first, and evaluates the cubic with Horner's rule without
+ * creating any objects. The slope of the curve can be looked up the same way, such as for a
+ * feedforward.
+ *
+ * <p>Like InterpolateDouble, keys below the smallest key or above the largest key give the value of
+ * that key, and other results are clamped between minValue and maxValue. The remembered segment is
+ * only a hint, so sharing a table between threads is safe.
+ */
+public class InterpolateSpline {
+    private final double[] keys;
+    // The value at keys[i] + t is a[i] + t * (b[i] + t * (c[i] + t * d[i]))
+    private final double[] a;
+    private final double[] b;
+    private final double[] c;
+    private final double[] d;
+
+    private final double minValue;
+    private final double maxValue;
+
+    // Finds segments in keys, remembering the segment of the last lookup
+    private final SortedKeys table;
+
+    /**
+     * This makes a table from the points in a map, with no limits on the interpolated values.
+     *
+     * @param map the points of the table, from keys to values
+     * @throws IllegalArgumentException if the map is empty
+     */
+    public InterpolateSpline(HashMap<Double, Double> map) {
+        this(map, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * This makes a table from the points in a map.
+     *
+     * @param map the points of the table, from keys to values
+     * @param minValue the smallest value an interpolated result can be
+     * @param maxValue the largest value an interpolated result can be
+     * @throws IllegalArgumentException if the map is empty
+     */
+    public InterpolateSpline(HashMap<Double, Double> map, double minValue, double maxValue) {
+        this(SortedKeys.sortedKeys(map), map, minValue, maxValue);
+    }
+
+    private InterpolateSpline(
+            double[] keys, HashMap<Double, Double> map, double minValue, double maxValue) {
+        this(keys, SortedKeys.valuesOf(keys, map), minValue, maxValue);
+    }
+
+    /**
+     * This makes a table from parallel arrays of keys and values. The arrays are copied, so
+     * changing them afterwards doesn't change the table.
+     *
+     * @param keys the keys of the table, in increasing order
+     * @param values the value at each key
+     * @param minValue the smallest value an interpolated result can be
+     * @param maxValue the largest value an interpolated result can be
+     * @throws IllegalArgumentException if the table is empty, the arrays have different lengths,
+     *     or the keys aren't strictly increasing
+     */
+    public InterpolateSpline(double[] keys, double[] values, double minValue, double maxValue) {
+        if (keys.length == 0) {
+            throw new IllegalArgumentException("Empty table passed to InterpolateSpline");
+        }
+        this.table = new SortedKeys(keys, values.length);
+        int n = keys.length;
+        this.keys = table.keys;
+        this.a = values.clone();
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+
+        int segments = Math.max(0, n - 1);
+        double[] widths = new double[segments];
+        double[] secants = new double[segments];
+        for (int i = 0; i < segments; i++) {
+            widths[i] = keys[i + 1] - keys[i];
+            secants[i] = (values[i + 1] - values[i]) / widths[i];
+        }
+
+        // The slope at each point. Inside the table it is a weighted harmonic mean of the secants
+        // on each side, or zero at a peak or valley, which keeps each segment monotone.
+        double[] slopes = new double[n];
+        if (segments > 0) {
+            slopes[0] = secants[0];
+            slopes[n - 1] = secants[segments - 1];
+        }
+        for (int i = 1; i < n - 1; i++) {
+            double before = secants[i - 1];
+            double after = secants[i];
+            if (before * after <= 0) {
+                slopes[i] = 0;
+            } else {
+                double widthBefore = widths[i - 1];
+                double widthAfter = widths[i];
+                slopes[i] =
+                        3
+                                * (widthBefore + widthAfter)
+                                / ((2 * widthAfter + widthBefore) / before
+                                        + (widthAfter + 2 * widthBefore) / after);
+            }
+        }
+        // With more than one segment, the ends use a three-point estimate instead of the secant
+        if (segments > 1) {
+            slopes[0] = endSlope(widths[0], widths[1], secants[0], secants[1]);
+            slopes[n - 1] =
+                    endSlope(
+                            widths[segments - 1],
+                            widths[segments - 2],
+                            secants[segments - 1],
+                            secants[segments - 2]);
+        }
+
+        this.b = new double[segments];
+        this.c = new double[segments];
+        this.d = new double[segments];
+        for (int i = 0; i < segments; i++) {
+            double width = widths[i];
+            b[i] = slopes[i];
+            c[i] = (3 * secants[i] - 2 * slopes[i] - slopes[i + 1]) / width;
+            d[i] = (slopes[i] + slopes[i + 1] - 2 * secants[i]) / (width * width);
+        }
+    }
+
+    /**
+     * This finds the slope at an end of the table from the two segments next to it, using a
+     * three-point estimate that is limited so that the end segment stays monotone.
+     */
+    private static double endSlope(
+            double width, double nextWidth, double secant, double nextSecant) {
+        double slope =
+                ((2 * width + nextWidth) * secant - width * nextSecant) / (width + nextWidth);
+        if (Math.signum(slope) != Math.signum(secant)) {
+            return 0;
+        }
+        if (Math.signum(secant) != Math.signum(nextSecant)
+                && Math.abs(slope) > 3 * Math.abs(secant)) {
+            return 3 * secant;
+        }
+        return slope;
+    }
+
+    /**
+     * Returns the interpolated value for the given key. If the key is outside of the table, it
+     * will return the value for the closest key.
+     *
+     * @param key The key to interpolate
+     * @return The interpolated value
+     */
+    public double getValue(double key) {
+        int last = keys.length - 1;
+        if (key <= keys[0]) {
+            return a[0];
+        } else if (key >= keys[last]) {
+            return a[last];
+        }
+        int segment = table.findSegment(key);
+        double t = key - keys[segment];
+        double result = a[segment] + t * (b[segment] + t * (c[segment] + t * d[segment]));
+        if (result < minValue) {
+            return minValue;
+        } else if (result > maxValue) {
+            return maxValue;
+        } else {
+            return result;
+        }
+    }
+
+    /**
+     * Returns the slope of the curve at the given key, in units of value per unit of key. The
+     * slope is zero outside of the table and wherever the value is clamped to minValue or
+     * maxValue, since the value doesn't change there.
+     *
+     * @param key The key to find the slope at
+     * @return The slope of the interpolated value
+     */
+    public double getDerivative(double key) {
+        if (!(key > keys[0] && key < keys[keys.length - 1])) {
+            return 0;
+        }
+        int segment = table.findSegment(key);
+        double t = key - keys[segment];
+        double value = a[segment] + t * (b[segment] + t * (c[segment] + t * d[segment]));
+        if (value < minValue || value > maxValue) {
+            return 0;
+        }
+        return b[segment] + t * (2 * c[segment] + t * 3 * d[segment]);
+    }
+}
@@ -0,0 +1,99 @@
+package coppercore.math;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * This class holds the sorted keys of a lookup table for InterpolateDouble and InterpolateSpline,
+ * and finds the segment between two keys that a key falls in. Since lookups are usually close to
+ * the one before, the segment of the last lookup and the ones next to it are checked before doing
+ * a binary search. The remembered segment is only a hint, so sharing a table between threads is
+ * safe.
+ */
+final class SortedKeys {
+    final double[] keys;
+
+    // The segment of the last lookup inside the table
+    private int lastSegment = 0;
+
+    /**
+     * This checks and copies the keys of a table, so changing them afterwards doesn't change it.
+     *
+     * @param keys the keys of the table, in increasing order
+     * @param valueCount the number of values in the table
+     * @throws IllegalArgumentException if there isn't one value for each key, or the keys aren't
+     *     strictly increasing
+     */
+    SortedKeys(double[] keys, int valueCount) {
+        if (keys.length != valueCount) {
+            throw new IllegalArgumentException(
+                    "Got " + keys.length + " keys but " + valueCount + " values");
+        }
+        for (int i = 1; i < keys.length; i++) {
+            if (!(keys[i] > keys[i - 1])) {
+                throw new IllegalArgumentException(
+                        "Keys must be strictly increasing, but key " + i + " is " + keys[i]);
+            }
+        }
+        this.keys = keys.clone();
+    }
+
+    /** This gets the keys of a map in increasing order. */
+    static double[] sortedKeys(Map<Double, Double> map) {
+        double[] keys = new double[map.size()];
+        int i = 0;
+        for (Double key : map.keySet()) {
+            keys[i++] = key;
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /** This gets the value in a map of each of the keys. */
+    static double[] valuesOf(double[] keys, Map<Double, Double> map) {
+        double[] values = new double[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = map.get(keys[i]);
+        }
+        return values;
+    }
+
+    /**
+     * This finds the segment i with keys[i] <= key < keys[i + 1], for a key inside the table. The
+     * segment of the last lookup and the ones next to it are checked before searching.
+     *
+     * @param key a key greater than the first key and less than the last key
+     * @return the index of the key at the start of the segment
+     */
+    int findSegment(double key) {
+        int hint = lastSegment;
+        if (hint >= keys.length - 1) {
+            hint = 0;
+        }
+        if (key >= keys[hint]) {
+            if (key < keys[hint + 1]) {
+                return hint;
+            }
+            if (hint + 2 < keys.length && key < keys[hint + 2]) {
+                lastSegment = hint + 1;
+                return hint + 1;
+            }
+        } else if (hint > 0 && key >= keys[hint - 1]) {
+            lastSegment = hint - 1;
+            return hint - 1;
+        }
+
+        int low = 0;
+        int high = keys.length - 1;
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] <= key) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        lastSegment = low;
+        return low;
+    }
+}
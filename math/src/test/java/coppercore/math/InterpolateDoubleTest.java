@@ -0,0 +1,110 @@
+package coppercore.math;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import org.junit.jupiter.api.Test;
+
+class InterpolateDoubleTest {
+    private static InterpolateDouble table() {
+        HashMap<Double, Double> map = new HashMap<>();
+        map.put(3.0, 30.0);
+        map.put(1.0, 10.0);
+        map.put(2.0, 40.0);
+        map.put(5.0, 20.0);
+        return new InterpolateDouble(map, 0.0, 100.0);
+    }
+
+    @Test
+    void keysInTheTableGiveTheirValues() {
+        InterpolateDouble table = table();
+
+        assertEquals(10.0, table.getValue(1.0));
+        assertEquals(40.0, table.getValue(2.0));
+        assertEquals(30.0, table.getValue(3.0));
+        assertEquals(20.0, table.getValue(5.0));
+    }
+
+    @Test
+    void keysBetweenPointsAreInterpolated() {
+        InterpolateDouble table = table();
+
+        assertEquals(25.0, table.getValue(1.5), 1e-9);
+        assertEquals(35.0, table.getValue(2.5), 1e-9);
+        assertEquals(25.0, table.getValue(4.0), 1e-9);
+    }
+
+    @Test
+    void keysOutsideTheTableGiveTheNearestValue() {
+        InterpolateDouble table = table();
+
+        assertEquals(10.0, table.getValue(-100.0));
+        assertEquals(20.0, table.getValue(100.0));
+    }
+
+    @Test
+    void interpolatedValuesAreClamped() {
+        HashMap<Double, Double> map = new HashMap<>();
+        map.put(0.0, 0.0);
+        map.put(1.0, 10.0);
+        InterpolateDouble table = new InterpolateDouble(map, 2.0, 8.0);
+
+        assertEquals(2.0, table.getValue(0.1), 1e-9);
+        assertEquals(5.0, table.getValue(0.5), 1e-9);
+        assertEquals(8.0, table.getValue(0.9), 1e-9);
+    }
+
+    @Test
+    void lookupsInAnyOrderMatchAFreshTable() {
+        double[] keys = new double[200];
+        double[] values = new double[200];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i * 0.5;
+            values[i] = Math.sin(i);
+        }
+        InterpolateDouble table = new InterpolateDouble(keys, values, -10, 10);
+
+        double[] queries = {50.3, 50.4, 50.9, 51.2, 3.1, 99.4, 0.2, 75.25, 75.0, 74.9};
+        for (double query : queries) {
+            InterpolateDouble fresh = new InterpolateDouble(keys, values, -10, 10);
+            assertEquals(fresh.getValue(query), table.getValue(query), 1e-12);
+        }
+    }
+
+    @Test
+    void singlePointTableGivesItsValue() {
+        InterpolateDouble table =
+                new InterpolateDouble(new double[] {2.0}, new double[] {7.0}, 0, 10);
+
+        assertEquals(7.0, table.getValue(-1.0));
+        assertEquals(7.0, table.getValue(2.0));
+        assertEquals(7.0, table.getValue(3.0));
+    }
+
+    @Test
+    void interpolatedValuesMatchTheLerpExactly() {
+        double[] keys = {0.1, 0.7, 1.3, 2.9, 4.4};
+        double[] values = {3.3, -1.7, 12.9, 0.4, 7.1};
+        InterpolateDouble table = new InterpolateDouble(keys, values, -100, 100);
+
+        for (int segment = 0; segment < keys.length - 1; segment++) {
+            for (int step = 1; step < 100; step++) {
+                double key = keys[segment] + (keys[segment + 1] - keys[segment]) * step / 100;
+                double t = (key - keys[segment]) / (keys[segment + 1] - keys[segment]);
+                double expected = values[segment] * (1.0 - t) + t * values[segment + 1];
+                assertEquals(expected, table.getValue(key));
+            }
+        }
+    }
+
+    @Test
+    void invalidTablesAreRejected() {
+        assertThrows(RuntimeException.class, () -> new InterpolateDouble(new HashMap<>()));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new InterpolateDouble(new double[] {1, 2}, new double[] {1}, 0, 1));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new InterpolateDouble(new double[] {1, 1}, new double[] {1, 2}, 0, 1));
+    }
+}
@@ -0,0 +1,102 @@
+package coppercore.math;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class InterpolateGridTest {
+    // A linear function is reproduced exactly by bilinear and trilinear blending
+    private static double plane(double x, double y, double z) {
+        return 2 * x - 3 * y + 0.5 * z + 1;
+    }
+
+    private static InterpolateGrid linearGrid() {
+        double[] xs = {0, 1, 3, 6};
+        double[] ys = {-2, 0, 5};
+        double[] zs = {1, 2};
+        double[] values = new double[xs.length * ys.length * zs.length];
+        for (int i = 0; i < xs.length; i++) {
+            for (int j = 0; j < ys.length; j++) {
+                for (int k = 0; k < zs.length; k++) {
+                    values[(i * ys.length + j) * zs.length + k] = plane(xs[i], ys[j], zs[k]);
+                }
+            }
+        }
+        return new InterpolateGrid(new double[][] {xs, ys, zs}, values);
+    }
+
+    @Test
+    void oneInputInterpolatesLinearly() {
+        InterpolateGrid grid =
+                new InterpolateGrid(new double[][] {{0, 2, 4}}, new double[] {0, 10, 0});
+
+        assertEquals(5.0, grid.getValue(1.0), 1e-12);
+        assertEquals(10.0, grid.getValue(2.0), 1e-12);
+        assertEquals(2.5, grid.getValue(3.5), 1e-12);
+    }
+
+    @Test
+    void twoInputsInterpolateBilinearly() {
+        // values[i * 2 + j] at x = {0, 1}, y = {0, 1}
+        InterpolateGrid grid =
+                new InterpolateGrid(new double[][] {{0, 1}, {0, 1}}, new double[] {0, 1, 2, 4});
+
+        assertEquals(0.0, grid.getValue(0, 0), 1e-12);
+        assertEquals(1.0, grid.getValue(0, 1), 1e-12);
+        assertEquals(2.0, grid.getValue(1, 0), 1e-12);
+        assertEquals(4.0, grid.getValue(1, 1), 1e-12);
+        assertEquals(1.75, grid.getValue(0.5, 0.5), 1e-12);
+    }
+
+    @Test
+    void threeInputsReproduceALinearFunction() {
+        InterpolateGrid grid = linearGrid();
+
+        double[][] points = {{0.5, -1, 1.5}, {2.2, 3.3, 1.1}, {5.9, 4.9, 1.9}, {3, 0, 2}};
+        for (double[] point : points) {
+            assertEquals(
+                    plane(point[0], point[1], point[2]),
+                    grid.getValue(point[0], point[1], point[2]),
+                    1e-9);
+            assertEquals(plane(point[0], point[1], point[2]), grid.getValue(point), 1e-9);
+        }
+    }
+
+    @Test
+    void inputsOutsideTheGridAreClamped() {
+        InterpolateGrid grid = linearGrid();
+
+        assertEquals(plane(0, -2, 1), grid.getValue(-5, -10, 0), 1e-9);
+        assertEquals(plane(6, 5, 2), grid.getValue(100, 100, 100), 1e-9);
+        assertEquals(plane(6, 0, 1.5), grid.getValue(7, 0, 1.5), 1e-9);
+    }
+
+    @Test
+    void batchMatchesSingleLookups() {
+        InterpolateGrid grid = linearGrid();
+        double[] xs = {0.1, 2.5, 4.0, -1.0};
+        double[] ys = {-1.5, 2.0, 4.5, 9.0};
+        double[] zs = {1.2, 1.8, 1.0, 3.0};
+        double[] result = new double[4];
+
+        grid.getValues(xs, ys, zs, result);
+
+        for (int i = 0; i < xs.length; i++) {
+            assertEquals(grid.getValue(xs[i], ys[i], zs[i]), result[i]);
+        }
+    }
+
+    @Test
+    void invalidGridsAndQueriesAreRejected() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new InterpolateGrid(new double[][] {{0, 1}}, new double[] {0, 1, 2}));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new InterpolateGrid(new double[][] {{0, 0}}, new double[] {0, 1}));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new InterpolateGrid(new double[][] {{0}}, new double[] {0}));
+        assertThrows(IllegalArgumentException.class, () -> linearGrid().getValue(1.0, 2.0));
+    }
+}
@@ -0,0 +1,78 @@
+package coppercore.math;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import org.junit.jupiter.api.Test;
+
+class InterpolateSplineTest {
+    private static final double[] KEYS = {0, 1, 2, 3, 4, 5, 6};
+    // Increasing, with a sharp step and a flat part, where an ordinary cubic spline overshoots
+    private static final double[] VALUES = {0, 0.1, 0.2, 3, 3.1, 3.1, 10};
+
+    @Test
+    void curvePassesThroughEveryPoint() {
+        InterpolateSpline spline = new InterpolateSpline(KEYS, VALUES, -100, 100);
+
+        for (int i = 0; i < KEYS.length; i++) {
+            assertEquals(VALUES[i], spline.getValue(KEYS[i]), 1e-12);
+        }
+    }
+
+    @Test
+    void increasingPointsGiveAnIncreasingCurve() {
+        InterpolateSpline spline = new InterpolateSpline(KEYS, VALUES, -100, 100);
+
+        double previous = spline.getValue(0);
+        for (double key = 0.01; key <= 6; key += 0.01) {
+            double value = spline.getValue(key);
+            assertTrue(value >= previous - 1e-12, "Curve decreases at " + key);
+            previous = value;
+        }
+        assertEquals(3.1, spline.getValue(4.5), 1e-12);
+    }
+
+    @Test
+    void linearPointsGiveALine() {
+        double[] keys = {0, 1, 3, 4};
+        double[] values = {1, 3, 7, 9};
+        InterpolateSpline spline = new InterpolateSpline(keys, values, -10, 10);
+
+        assertEquals(5.6, spline.getValue(2.3), 1e-12);
+        assertEquals(2.0, spline.getDerivative(2.3), 1e-12);
+    }
+
+    @Test
+    void derivativeMatchesTheSlopeOfTheCurve() {
+        InterpolateSpline spline = new InterpolateSpline(KEYS, VALUES, -100, 100);
+
+        for (double key = 0.05; key < 6; key += 0.1) {
+            double slope = (spline.getValue(key + 1e-6) - spline.getValue(key - 1e-6)) / 2e-6;
+            assertEquals(slope, spline.getDerivative(key), 1e-4);
+        }
+    }
+
+    @Test
+    void valuesAreClampedLikeInterpolateDouble() {
+        HashMap<Double, Double> map = new HashMap<>();
+        for (int i = 0; i < KEYS.length; i++) {
+            map.put(KEYS[i], VALUES[i]);
+        }
+        InterpolateSpline spline = new InterpolateSpline(map, 0.5, 3.0);
+
+        assertEquals(0.0, spline.getValue(-1));
+        assertEquals(10.0, spline.getValue(7));
+        assertEquals(0.5, spline.getValue(0.5));
+        assertEquals(0.0, spline.getDerivative(0.5));
+        assertEquals(0.0, spline.getDerivative(-1));
+        assertEquals(3.0, spline.getValue(5.5));
+    }
+
+    @Test
+    void invalidTablesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new InterpolateSpline(new HashMap<>()));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new InterpolateSpline(new double[] {2, 1}, new double[] {1, 2}, 0, 1));
+    }
+}
@@ -0,0 +1,221 @@
+package coppercore.math.test;
+
+import static edu.wpi.first.units.Units.Microseconds;
+import static edu.wpi.first.units.Units.Seconds;
+
+import coppercore.math.ConcurrentCachedDataRead;
+import coppercore.math.ConcurrentCachedDataTime;
+import coppercore.math.ConcurrentCachedDataValue;
+import edu.wpi.first.util.WPIUtilJNI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentCachedDataTest {
+    private static final int READERS = 4;
+
+    @BeforeEach
+    @SuppressWarnings("unused")
+    void setUpMockTime() {
+        WPIUtilJNI.enableMockTime();
+        setMockTimeSeconds(0.0);
+    }
+
+    private void setMockTimeSeconds(double timeSeconds) {
+        WPIUtilJNI.setMockTime((long) Seconds.of(timeSeconds).in(Microseconds));
+    }
+
+    /**
+     * A cache that never goes stale and remembers the timestamp and generation of the last value
+     * each thread read, so a test can check them against the value that was returned.
+     */
+    private static class SnapshotCache extends ConcurrentCachedDataValue<Long> {
+        private final ThreadLocal<double[]> lastRead = ThreadLocal.withInitial(() -> new double[2]);
+
+        @Override
+        protected boolean isStale(double timestampSeconds, long generation) {
+            double[] snapshot = lastRead.get();
+            snapshot[0] = timestampSeconds;
+            snapshot[1] = generation;
+            return false;
+        }
+
+        @Override
+        protected void reset(long generation) {}
+    }
+
+    /** This runs the tasks on their own threads at once and rethrows the first failure. */
+    private static void runTogether(List<Runnable> tasks) throws InterruptedException {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (Runnable task : tasks) {
+            Thread thread =
+                    new Thread(
+                            () -> {
+                                try {
+                                    task.run();
+                                } catch (Throwable t) {
+                                    failure.compareAndSet(null, t);
+                                }
+                            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(30000);
+            Assertions.assertFalse(thread.isAlive(), "Thread did not finish");
+        }
+        if (failure.get() != null) {
+            Assertions.fail(failure.get());
+        }
+    }
+
+    @Test
+    public void readReturnsNullBeforeWrite() {
+        Assertions.assertNull(new ConcurrentCachedDataTime<Integer>(10).read());
+        Assertions.assertNull(new ConcurrentCachedDataRead<Integer>(10).read());
+    }
+
+    @Test
+    public void timeStaleTest() {
+        ConcurrentCachedDataTime<Integer> data = new ConcurrentCachedDataTime<>(1.5);
+        data.write(5);
+        setMockTimeSeconds(1.0);
+        Assertions.assertFalse(data.isStale());
+        Assertions.assertEquals(5, data.read());
+        data.write(null);
+        Assertions.assertEquals(5, data.read());
+        setMockTimeSeconds(1.5);
+        Assertions.assertTrue(data.isStale());
+        Assertions.assertNull(data.read());
+        data.write(6);
+        Assertions.assertEquals(6, data.read());
+        Assertions.assertEquals(1.5, data.getTimestamp());
+    }
+
+    @Test
+    public void timeStaleUsesSampleTimestamp() {
+        ConcurrentCachedDataTime<Integer> data = new ConcurrentCachedDataTime<>(0.1);
+        setMockTimeSeconds(2.0);
+        data.write(7, 1.95);
+        Assertions.assertEquals(7, data.read());
+        setMockTimeSeconds(2.05);
+        Assertions.assertNull(data.read());
+    }
+
+    @Test
+    public void readStaleTest() {
+        ConcurrentCachedDataRead<String> data = new ConcurrentCachedDataRead<>(3);
+        data.write("real");
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(3 - i, data.getReadsLeft());
+            Assertions.assertEquals("real", data.read());
+        }
+        Assertions.assertEquals(0, data.getReadsLeft());
+        Assertions.assertNull(data.read());
+        Assertions.assertNull(data.read());
+        data.write("fake");
+        Assertions.assertEquals(3, data.getReadsLeft());
+        Assertions.assertEquals("fake", data.read());
+    }
+
+    @Test
+    public void readBudgetIsSharedBetweenThreads() throws InterruptedException {
+        ConcurrentCachedDataRead<Integer> data = new ConcurrentCachedDataRead<>(1000);
+        AtomicInteger successes = new AtomicInteger();
+        for (int round = 0; round < 20; round++) {
+            data.write(round);
+            successes.set(0);
+            List<Runnable> readers = new ArrayList<>();
+            for (int i = 0; i < READERS; i++) {
+                readers.add(
+                        () -> {
+                            for (int j = 0; j < 500; j++) {
+                                if (data.read() != null) {
+                                    successes.incrementAndGet();
+                                }
+                            }
+                        });
+            }
+            runTogether(readers);
+            Assertions.assertEquals(1000, successes.get());
+        }
+    }
+
+    @Test
+    public void readBudgetIsCountedAgainstReturnedValue() throws InterruptedException {
+        int writes = 20000;
+        int maxReads = 2;
+        ConcurrentCachedDataRead<Integer> data = new ConcurrentCachedDataRead<>(maxReads);
+        AtomicInteger[] counts = new AtomicInteger[writes];
+        for (int i = 0; i < writes; i++) {
+            counts[i] = new AtomicInteger();
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(
+                () -> {
+                    for (int i = 0; i < writes; i++) {
+                        data.write(i);
+                    }
+                    done.set(true);
+                });
+        for (int i = 0; i < READERS; i++) {
+            tasks.add(
+                    () -> {
+                        while (!done.get()) {
+                            Integer value = data.read();
+                            if (value != null) {
+                                counts[value].incrementAndGet();
+                            }
+                        }
+                    });
+        }
+        runTogether(tasks);
+        for (int i = 0; i < writes; i++) {
+            Assertions.assertTrue(
+                    counts[i].get() <= maxReads, "Value " + i + " read " + counts[i] + " times");
+        }
+    }
+
+    @Test
+    public void readsAreNeverTorn() throws InterruptedException {
+        long writes = 200000;
+        SnapshotCache data = new SnapshotCache();
+        AtomicBoolean done = new AtomicBoolean();
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(
+                () -> {
+                    // The value, its timestamp and the generation of the write all match
+                    for (long i = 1; i <= writes; i++) {
+                        data.write(i, i);
+                    }
+                    done.set(true);
+                });
+        for (int i = 0; i < READERS; i++) {
+            tasks.add(
+                    () -> {
+                        long last = 0;
+                        while (!done.get()) {
+                            Long value = data.read();
+                            if (value == null) {
+                                continue;
+                            }
+                            double[] snapshot = data.lastRead.get();
+                            Assertions.assertEquals((double) value, snapshot[0]);
+                            Assertions.assertEquals((double) value, snapshot[1]);
+                            Assertions.assertTrue(value >= last, "Read went back in time");
+                            last = value;
+                        }
+                    });
+        }
+        runTogether(tasks);
+        Assertions.assertEquals(writes, data.read());
+        Assertions.assertEquals(writes, data.getTimestamp());
+    }
+}
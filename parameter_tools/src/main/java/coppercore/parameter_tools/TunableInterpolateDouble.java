@@ -0,0 +1,127 @@
+package coppercore.parameter_tools;
+
+import coppercore.math.InterpolateDouble;
+import coppercore.parameter_tools.json.JSONSync;
+import coppercore.parameter_tools.path_provider.PathProvider;
+
+/**
+ * An interpolation table loaded from a JSON file that can be reloaded while the robot is running,
+ * so that tables such as shooter speeds can be retuned without redeploying.
+ *
+ * <p>The loop reads an immutable {@link InterpolateDouble} through a single volatile reference.
+ * Reloading builds a whole new table from the file and then swaps the reference, so a lookup
+ * always uses either the old table or the new one, never a mix of the two, and never waits for a
+ * reload. If the file can't be read or holds an invalid table, the old table is kept.
+ *
+ * <p>The JSON file holds the keys and values as parallel arrays, for example:
+ *
+ * <pre>
+ * {
+ *   "keys": [1.0, 2.0, 3.5],
+ *   "values": [2000.0, 2600.0, 3400.0],
+ *   "minValue": 0.0,
+ *   "maxValue": 6000.0
+ * }
+ * </pre>
+ */
+public class TunableInterpolateDouble {
+    /** The contents of the JSON file for a table. */
+    public static class Points {
+        /** The keys of the table, in increasing order */
+        public double[] keys = new double[0];
+
+        /** The value at each key */
+        public double[] values = new double[0];
+
+        /** The smallest value an interpolated result can be */
+        public double minValue = -Double.MAX_VALUE;
+
+        /** The largest value an interpolated result can be */
+        public double maxValue = Double.MAX_VALUE;
+    }
+
+    private final JSONSync<Points> sync;
+    private volatile InterpolateDouble table;
+
+    /**
+     * Creates a table and loads it from a JSON file.
+     *
+     * @param file The file path for the JSON file.
+     * @param provider The PathProvider to resolve file paths; can be null.
+     * @throws RuntimeException if the file can't be read or doesn't hold a valid table
+     */
+    public TunableInterpolateDouble(String file, PathProvider provider) {
+        this(new JSONSync<>(new Points(), file, provider));
+    }
+
+    /**
+     * Creates a table and loads it through a JSONSync, such as one with a custom configuration.
+     *
+     * @param sync The JSONSync to load the table with.
+     * @throws RuntimeException if the file can't be read or doesn't hold a valid table
+     */
+    public TunableInterpolateDouble(JSONSync<Points> sync) {
+        this.sync = sync;
+        sync.loadData();
+        this.table = build(sync.getObject());
+    }
+
+    private static InterpolateDouble build(Points points) {
+        if (points == null || points.keys == null || points.values == null) {
+            throw new IllegalArgumentException("Table file is missing its keys or values");
+        }
+        return new InterpolateDouble(points.keys, points.values, points.minValue, points.maxValue);
+    }
+
+    /**
+     * Returns the interpolated value for the given key from the current table, without waiting
+     * for a reload that is in progress.
+     *
+     * @param key The key to interpolate
+     * @return The interpolated value
+     * @see InterpolateDouble#getValue(double)
+     */
+    public double getValue(double key) {
+        return table.getValue(key);
+    }
+
+    /**
+     * Gets the current table. Later reloads don't change the table that is returned, so this can
+     * be used to make several lookups from the same version of the table.
+     *
+     * @return The current table
+     */
+    public InterpolateDouble getTable() {
+        return table;
+    }
+
+    /**
+     * Loads the JSON file again and swaps in the new table. This can be called from any thread,
+     * such as from a dashboard button or a file watcher, while the loop keeps reading the old
+     * table.
+     *
+     * @return true if the new table was loaded, or false if the old table was kept because the
+     *     file couldn't be read or didn't hold a valid table
+     */
+    public synchronized boolean reload() {
+        try {
+            sync.loadData();
+            table = build(sync.getObject());
+            return true;
+        } catch (RuntimeException e) {
+            System.err.println("Could not reload interpolation table, keeping the old one: " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Swaps in a table made from the given points, without changing the JSON file.
+     *
+     * @param points The points of the new table
+     * @throws IllegalArgumentException if the points don't make a valid table, in which case the
+     *     old table is kept
+     */
+    public synchronized void setPoints(Points points) {
+        table = build(points);
+    }
+}
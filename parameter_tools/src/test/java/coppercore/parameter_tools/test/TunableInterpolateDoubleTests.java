@@ -0,0 +1,112 @@
+package coppercore.parameter_tools.test;
+
+import coppercore.math.InterpolateDouble;
+import coppercore.parameter_tools.TunableInterpolateDouble;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for loading and reloading a {@link TunableInterpolateDouble} from JSON. */
+public class TunableInterpolateDoubleTests {
+    private static final UnitTestingPathProvider provider =
+            new UnitTestingPathProvider().getDirectory("TunableInterpolateDoubleTests");
+
+    private static void writeTable(String file, String json) throws IOException {
+        Files.writeString(Path.of(provider.resolvePath(file)), json);
+    }
+
+    private static String table(double scale) {
+        return "{\"keys\": [1.0, 2.0, 4.0], \"values\": ["
+                + 1000 * scale
+                + ", "
+                + 2000 * scale
+                + ", "
+                + 3000 * scale
+                + "]}";
+    }
+
+    /** Tests that a table is loaded from its JSON file. */
+    @Test
+    public void LoadTableTest() {
+        TunableInterpolateDouble table =
+                new TunableInterpolateDouble("ShooterTable.json", provider);
+
+        Assertions.assertEquals(1000.0, table.getValue(1.0));
+        Assertions.assertEquals(1500.0, table.getValue(1.5), 1e-9);
+        Assertions.assertEquals(2500.0, table.getValue(3.0), 1e-9);
+        Assertions.assertEquals(3000.0, table.getValue(10.0));
+    }
+
+    /** Tests that reloading swaps in the new table without changing one already taken. */
+    @Test
+    public void ReloadTableTest() throws IOException {
+        writeTable("ReloadTable.json", table(1));
+        TunableInterpolateDouble table = new TunableInterpolateDouble("ReloadTable.json", provider);
+        InterpolateDouble before = table.getTable();
+
+        writeTable("ReloadTable.json", table(2));
+        Assertions.assertTrue(table.reload());
+
+        Assertions.assertEquals(3000.0, table.getValue(1.5), 1e-9);
+        Assertions.assertEquals(1500.0, before.getValue(1.5), 1e-9);
+    }
+
+    /** Tests that a failed reload keeps the old table. */
+    @Test
+    public void InvalidReloadKeepsTableTest() throws IOException {
+        writeTable("InvalidReload.json", table(1));
+        TunableInterpolateDouble table =
+                new TunableInterpolateDouble("InvalidReload.json", provider);
+
+        writeTable("InvalidReload.json", "{\"keys\": [2.0, 1.0], \"values\": [1.0, 2.0]}");
+        Assertions.assertFalse(table.reload());
+        Assertions.assertEquals(1500.0, table.getValue(1.5), 1e-9);
+
+        Files.delete(Path.of(provider.resolvePath("InvalidReload.json")));
+        Assertions.assertFalse(table.reload());
+        Assertions.assertEquals(1500.0, table.getValue(1.5), 1e-9);
+    }
+
+    /** Tests that lookups running during reloads always see one whole table. */
+    @Test
+    public void ConcurrentReloadTest() throws Exception {
+        writeTable("ConcurrentReload.json", table(1));
+        TunableInterpolateDouble table =
+                new TunableInterpolateDouble("ConcurrentReload.json", provider);
+        TunableInterpolateDouble.Points doubled = new TunableInterpolateDouble.Points();
+        doubled.keys = new double[] {1.0, 2.0, 4.0};
+        doubled.values = new double[] {2000.0, 4000.0, 6000.0};
+        TunableInterpolateDouble.Points original = new TunableInterpolateDouble.Points();
+        original.keys = doubled.keys;
+        original.values = new double[] {1000.0, 2000.0, 3000.0};
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread swapper =
+                new Thread(
+                        () -> {
+                            boolean flip = false;
+                            while (running.get()) {
+                                table.setPoints(flip ? original : doubled);
+                                flip = !flip;
+                            }
+                        });
+        swapper.start();
+        try {
+            for (int i = 0; i < 200_000; i++) {
+                // Both lookups come from the same table, so the ratio never mixes versions
+                InterpolateDouble current = table.getTable();
+                double low = current.getValue(1.0);
+                double high = current.getValue(4.0);
+                Assertions.assertEquals(3.0, high / low, 1e-12);
+                double value = table.getValue(1.5);
+                Assertions.assertTrue(value == 1500.0 || value == 3000.0, "Got " + value);
+            }
+        } finally {
+            running.set(false);
+            swapper.join();
+        }
+    }
+}